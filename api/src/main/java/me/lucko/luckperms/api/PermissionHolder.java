@@ -37,6 +37,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 import javax.annotation.Nonnull;
@@ -485,6 +486,19 @@ public interface PermissionHolder {
      */
     void clearTransientNodes();
 
+    /**
+     * Performs a number of changes to the holder as a single batch.
+     *
+     * <p>The holders cached data is only refreshed once all of the changes
+     * made by the action have been applied, instead of after each individual
+     * change.</p>
+     *
+     * @param action the action to apply
+     * @throws NullPointerException if the action is null
+     * @since 4.2
+     */
+    void batch(@Nonnull Consumer<? super PermissionHolder> action);
+
     /**
      * Sets a permission for the object
      *
@@ -318,6 +318,23 @@ public class LPBukkitPlugin extends AbstractLuckPermsPlugin {
         }
     }
 
+    /**
+     * Marks that the permission subscriptions for the given player need to be re-checked.
+     *
+     * @param player the player
+     */
+    public void markSubscriptionsDirty(Player player) {
+        LPSubscriptionMap subscriptionMap = this.subscriptionMap;
+        if (subscriptionMap != null) {
+            subscriptionMap.markDirty(player);
+        }
+    }
+
+    @Override
+    public void onUserPermissionsChange(User user) {
+        this.bootstrap.getPlayer(user.getUuid()).ifPresent(this::markSubscriptionsDirty);
+    }
+
     private File resolveConfig() {
         File configFile = new File(this.bootstrap.getDataFolder(), "config.yml");
         if (!configFile.exists()) {
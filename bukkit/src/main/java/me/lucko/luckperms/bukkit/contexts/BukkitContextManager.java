@@ -37,8 +37,11 @@ import org.bukkit.entity.Player;
 import java.util.EnumSet;
 
 public class BukkitContextManager extends AbstractContextManager<Player> {
+    private final LPBukkitPlugin bukkitPlugin;
+
     public BukkitContextManager(LPBukkitPlugin plugin) {
         super(plugin, Player.class);
+        this.bukkitPlugin = plugin;
     }
 
     @Override
@@ -51,4 +54,9 @@ public class BukkitContextManager extends AbstractContextManager<Player> {
 
         return Contexts.of(contextSet, settings);
     }
+
+    @Override
+    protected void onContextsChange(Player subject) {
+        this.bukkitPlugin.markSubscriptionsDirty(subject);
+    }
 }
@@ -28,6 +28,7 @@ package me.lucko.luckperms.bukkit.listeners;
 import me.lucko.luckperms.bukkit.LPBukkitPlugin;
 import me.lucko.luckperms.bukkit.model.permissible.LPPermissible;
 import me.lucko.luckperms.bukkit.model.permissible.PermissibleInjector;
+import me.lucko.luckperms.bukkit.model.server.LPSubscriptionMap;
 import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.listener.AbstractConnectionListener;
 import me.lucko.luckperms.common.locale.message.Message;
@@ -151,6 +152,9 @@ public class BukkitConnectionListener extends AbstractConnectionListener impleme
             t.printStackTrace();
         }
 
+        // Check the player's permission subscriptions now their permissible is in place
+        this.plugin.markSubscriptionsDirty(player);
+
         this.plugin.refreshAutoOp(player);
     }
 
@@ -181,6 +185,12 @@ public class BukkitConnectionListener extends AbstractConnectionListener impleme
             ex.printStackTrace();
         }
 
+        // Remove the player from the subscription index
+        LPSubscriptionMap subscriptionMap = this.plugin.getSubscriptionMap();
+        if (subscriptionMap != null) {
+            subscriptionMap.unsubscribe(player);
+        }
+
         // Handle auto op
         if (this.plugin.getConfiguration().get(ConfigKeys.AUTO_OP)) {
             player.setOp(false);
@@ -26,8 +26,10 @@
 package me.lucko.luckperms.bukkit.messaging;
 
 import com.esotericsoftware.kryonet.Connection;
+import com.google.common.collect.Iterables;
 import com.google.common.io.ByteArrayDataInput;
 import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
 import de.syscy.kagecloud.network.CloudConnection;
 import de.syscy.kagecloud.network.packet.PluginDataPacket;
 import de.syscy.kagecloud.network.packet.RelayPacket;
@@ -36,45 +38,202 @@ import de.syscy.kagecloud.util.ICloudPluginDataListener;
 import me.lucko.luckperms.api.messenger.IncomingMessageConsumer;
 import me.lucko.luckperms.api.messenger.Messenger;
 import me.lucko.luckperms.api.messenger.message.OutgoingMessage;
+import me.lucko.luckperms.api.messenger.message.type.UserUpdateMessage;
 import me.lucko.luckperms.bukkit.LPBukkitPlugin;
+import me.lucko.luckperms.common.buffers.BufferedRequest;
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.model.User;
 import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.messaging.PluginMessageListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.annotation.Nonnull;
 
 /**
  * An implementation of {@link Messenger} using the plugin messaging channels.
+ *
+ * <p>Messages sent in quick succession can be combined into a single packet, and updates to
+ * a single user can also be forwarded by the proxy straight to the server the user is connected to.</p>
  */
-public class KageCloudMessenger implements Messenger, ICloudPluginDataListener {
+public class KageCloudMessenger implements Messenger, ICloudPluginDataListener, PluginMessageListener {
 	private static final String CHANNEL = "lpuc";
 
+	/**
+	 * The proxy's plugin messaging channel, used to forward messages to the server a player is on
+	 */
+	private static final String BUNGEE_CHANNEL = "BungeeCord";
+
+	/**
+	 * Written in place of a message at the start of packets containing multiple messages.
+	 * Servers which don't understand batches will just fail to decode it.
+	 */
+	private static final String BATCH_HEADER = "lpucbatch";
+
+	private static final int MAX_BATCH_MESSAGES = 100;
+	private static final int MAX_BATCH_CHARS = 30000;
+
 	private final LPBukkitPlugin plugin;
 	private final IncomingMessageConsumer consumer;
 
+	private final Queue<String> pendingMessages = new ConcurrentLinkedQueue<>();
+	private final FlushBuffer flushBuffer;
+
 	private KageCloudSpigot cloudPlugin;
 
 	public KageCloudMessenger(LPBukkitPlugin plugin, IncomingMessageConsumer consumer) {
 		this.plugin = plugin;
 		this.consumer = consumer;
+		this.flushBuffer = new FlushBuffer(plugin);
 	}
 
 	public void init() {
 		cloudPlugin = (KageCloudSpigot) Bukkit.getPluginManager().getPlugin("KageCloudSpigot");
 		cloudPlugin.registerPluginDataListener(CHANNEL, this);
+
+		// always listen for forwarded messages, even if this server doesn't route its own
+		this.plugin.getBootstrap().getServer().getMessenger().registerOutgoingPluginChannel(this.plugin.getBootstrap(), BUNGEE_CHANNEL);
+		this.plugin.getBootstrap().getServer().getMessenger().registerIncomingPluginChannel(this.plugin.getBootstrap(), BUNGEE_CHANNEL, this);
 	}
 
 	@Override
 	public void close() {
-		this.plugin.getBootstrap().getServer().getMessenger().unregisterIncomingPluginChannel(this.plugin.getBootstrap(), CHANNEL);
-		this.plugin.getBootstrap().getServer().getMessenger().unregisterOutgoingPluginChannel(this.plugin.getBootstrap(), CHANNEL);
+		flush();
+
+		this.plugin.getBootstrap().getServer().getMessenger().unregisterIncomingPluginChannel(this.plugin.getBootstrap(), BUNGEE_CHANNEL, this);
+		this.plugin.getBootstrap().getServer().getMessenger().unregisterOutgoingPluginChannel(this.plugin.getBootstrap(), BUNGEE_CHANNEL);
 	}
 
 	@Override
 	public void sendOutgoingMessage(@Nonnull OutgoingMessage outgoingMessage) {
+		String message = outgoingMessage.asEncodedString();
+
+		// get updates to a single user to the server the user is connected to without waiting for the
+		// batch. the update is still broadcast below, as other servers may have the user loaded too
+		if(plugin.getConfiguration().get(ConfigKeys.KAGECLOUD_ROUTE_USER_UPDATES) && outgoingMessage instanceof UserUpdateMessage) {
+			forwardToPlayer(((UserUpdateMessage) outgoingMessage).getUser(), message);
+		}
+
+		// servers running older versions can only read one message per packet
+		if(!plugin.getConfiguration().get(ConfigKeys.KAGECLOUD_BATCH_MESSAGES)) {
+			sendPacket(Collections.singletonList(message));
+			return;
+		}
+
+		pendingMessages.add(message);
+		if(pendingMessages.size() >= MAX_BATCH_MESSAGES) {
+			plugin.getBootstrap().getScheduler().executeAsync(this::flush);
+		} else {
+			flushBuffer.request();
+		}
+	}
+
+	/**
+	 * Sends all pending messages, in as few packets as possible.
+	 */
+	private void flush() {
+		List<String> batch = new ArrayList<>();
+		int batchChars = 0;
+
+		String message;
+		while((message = pendingMessages.poll()) != null) {
+			if(!batch.isEmpty() && (batch.size() >= MAX_BATCH_MESSAGES || batchChars + message.length() > MAX_BATCH_CHARS)) {
+				sendPacket(batch);
+				batch = new ArrayList<>();
+				batchChars = 0;
+			}
+
+			batch.add(message);
+			batchChars += message.length();
+		}
+
+		if(!batch.isEmpty()) {
+			sendPacket(batch);
+		}
+	}
+
+	/**
+	 * Asks the proxy to forward a message to the server the given player is connected to.
+	 *
+	 * <p>The relay API can only address connection types, so this goes through the proxy's
+	 * plugin messaging channel instead, which needs a player on this server to carry it.</p>
+	 *
+	 * <p>The forwarded copy has the same id as the broadcast one, so the receiving server
+	 * only processes whichever arrives first.</p>
+	 *
+	 * @param uuid the player
+	 * @param message the encoded message
+	 */
+	private void forwardToPlayer(UUID uuid, String message) {
+		// the player is connected here, so there's nowhere to forward to
+		if(plugin.getBootstrap().getPlayer(uuid).isPresent()) {
+			return;
+		}
+
+		User user = plugin.getUserManager().getIfLoaded(uuid);
+		Optional<String> username = user == null ? Optional.empty() : user.getName();
+		Player carrier = Iterables.getFirst(plugin.getBootstrap().getServer().getOnlinePlayers(), null);
+		if(!username.isPresent() || carrier == null) {
+			return;
+		}
+
+		ByteArrayDataOutput packet = ByteStreams.newDataOutput();
+		writeMessages(packet, Collections.singletonList(message));
+		byte[] data = packet.toByteArray();
+		if(data.length > Short.MAX_VALUE) {
+			return;
+		}
+
+		ByteArrayDataOutput out = ByteStreams.newDataOutput();
+		out.writeUTF("ForwardToPlayer");
+		out.writeUTF(username.get());
+		out.writeUTF(CHANNEL);
+		out.writeShort(data.length);
+		out.write(data);
+
+		plugin.getBootstrap().getScheduler().executeSync(() -> {
+			if(carrier.isOnline()) {
+				carrier.sendPluginMessage(plugin.getBootstrap(), BUNGEE_CHANNEL, out.toByteArray());
+			}
+		});
+	}
+
+	private static void writeMessages(ByteArrayDataOutput out, List<String> messages) {
+		if(messages.size() == 1) {
+			out.writeUTF(messages.get(0));
+		} else {
+			out.writeUTF(BATCH_HEADER);
+			out.writeInt(messages.size());
+			for(String message : messages) {
+				out.writeUTF(message);
+			}
+		}
+	}
+
+	private void readMessages(ByteArrayDataInput in) {
+		String msg = in.readUTF();
+
+		if(msg.equals(BATCH_HEADER)) {
+			int count = in.readInt();
+			for(int i = 0; i < count; i++) {
+				this.consumer.consumeIncomingMessageAsString(in.readUTF());
+			}
+		} else {
+			this.consumer.consumeIncomingMessageAsString(msg);
+		}
+	}
+
+	private void sendPacket(List<String> messages) {
 		try {
 			PluginDataPacket packet = new PluginDataPacket(CHANNEL);
-			ByteArrayDataOutput out = packet.out();
-			out.writeUTF(outgoingMessage.asEncodedString());
-
+			writeMessages(packet.out(), messages);
 			cloudPlugin.getClient().sendTCP(RelayPacket.toAllOfType(CloudConnection.Type.SERVER, packet));
 		} catch(Exception ex) {
 			plugin.getLogger()
@@ -86,14 +245,45 @@ public class KageCloudMessenger implements Messenger, ICloudPluginDataListener {
 	@Override
 	public void onPluginData(Connection connection, PluginDataPacket pluginDataPacket) {
 		try {
-			ByteArrayDataInput in = pluginDataPacket.in();
-			String msg = in.readUTF();
-
-			this.consumer.consumeIncomingMessageAsString(msg);
+			readMessages(pluginDataPacket.in());
 		} catch(Exception ex) {
 			plugin.getLogger()
 				  .warn("An error occurred while receiving a plugin message: " + ex.getClass()
 																				   .getSimpleName() + " (" + ex.getMessage() + ")");
 		}
 	}
+
+	@Override
+	public void onPluginMessageReceived(String channel, Player player, byte[] bytes) {
+		if(!channel.equals(BUNGEE_CHANNEL)) {
+			return;
+		}
+
+		try {
+			ByteArrayDataInput in = ByteStreams.newDataInput(bytes);
+			if(!in.readUTF().equals(CHANNEL)) {
+				return;
+			}
+
+			byte[] data = new byte[in.readShort()];
+			in.readFully(data);
+			readMessages(ByteStreams.newDataInput(data));
+		} catch(Exception ex) {
+			plugin.getLogger()
+				  .warn("An error occurred while receiving a forwarded plugin message: " + ex.getClass()
+																							 .getSimpleName() + " (" + ex.getMessage() + ")");
+		}
+	}
+
+	private final class FlushBuffer extends BufferedRequest<Void> {
+		public FlushBuffer(LPBukkitPlugin plugin) {
+			super(50L, plugin.getBootstrap().getScheduler().async());
+		}
+
+		@Override
+		protected Void perform() {
+			flush();
+			return null;
+		}
+	}
 }
@@ -254,7 +254,11 @@ public class LPPermissible extends PermissibleBase {
 
     @Override
     public void recalculatePermissions() {
-        // do nothing
+        // called by bukkit when the op status of the player changes.
+        // also called by the PermissibleBase constructor, before our fields are set.
+        if (this.plugin != null) {
+            this.plugin.markSubscriptionsDirty(this.player);
+        }
     }
 
     @Override
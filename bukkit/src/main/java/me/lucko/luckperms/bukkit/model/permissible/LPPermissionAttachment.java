@@ -46,6 +46,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * PermissionAttachment for LuckPerms.
@@ -154,12 +155,26 @@ public class LPPermissionAttachment extends PermissionAttachment {
     public void hook() {
         this.hooked = true;
         this.permissible.attachments.add(this);
-        for (Map.Entry<String, Boolean> entry : this.perms.entrySet()) {
-            if (entry.getKey() == null || entry.getKey().isEmpty()) {
-                continue;
+        batch(attachment -> {
+            for (Map.Entry<String, Boolean> entry : this.perms.entrySet()) {
+                if (entry.getKey() == null || entry.getKey().isEmpty()) {
+                    continue;
+                }
+                setPermissionInternal(entry.getKey(), entry.getValue());
             }
-            setPermissionInternal(entry.getKey(), entry.getValue());
-        }
+        });
+    }
+
+    /**
+     * Applies a number of changes to this attachment as a single batch.
+     *
+     * <p>The users cached data is only recalculated once, after all of the
+     * changes have been made.</p>
+     *
+     * @param action the action to apply
+     */
+    public void batch(Consumer<? super LPPermissionAttachment> action) {
+        this.permissible.getUser().batch(holder -> action.accept(this));
     }
 
     private void setPermissionInternal(String name, boolean value) {
@@ -236,11 +251,15 @@ public class LPPermissionAttachment extends PermissionAttachment {
             return;
         }
 
-        if (previous != null) {
-            unsetPermissionInternal(permission);
+        if (previous == null) {
+            setPermissionInternal(permission, value);
+            return;
         }
 
-        setPermissionInternal(permission, value);
+        batch(attachment -> {
+            unsetPermissionInternal(permission);
+            setPermissionInternal(permission, value);
+        });
     }
 
     @Override
@@ -329,9 +348,11 @@ public class LPPermissionAttachment extends PermissionAttachment {
 
         @Override
         public void putAll(Map<? extends String, ? extends Boolean> m) {
-            for (Map.Entry<? extends String, ? extends Boolean> entry : m.entrySet()) {
-                put(entry.getKey(), entry.getValue());
-            }
+            batch(attachment -> {
+                for (Map.Entry<? extends String, ? extends Boolean> entry : m.entrySet()) {
+                    put(entry.getKey(), entry.getValue());
+                }
+            });
         }
 
         @Override
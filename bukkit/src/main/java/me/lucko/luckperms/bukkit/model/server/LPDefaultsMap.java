@@ -67,7 +67,8 @@ public final class LPDefaultsMap implements Map<Boolean, Set<Permission>> {
     private final Set<Permission> opSet = new DefaultPermissionSet(true);
     private final Set<Permission> nonOpSet = new DefaultPermissionSet(false);
 
-    // fully resolved defaults (accounts for child permissions too)
+    // fully resolved defaults (accounts for child permissions, and the defaults of
+    // all registered permissions too). shared by all DefaultsProcessor instances.
     private DefaultsCache opCache = new DefaultsCache(true);
     private DefaultsCache nonOpCache = new DefaultsCache(false);
 
@@ -98,9 +99,21 @@ public final class LPDefaultsMap implements Map<Boolean, Set<Permission>> {
         getCache(op).invalidate();
     }
 
+    /**
+     * Invalidates the resolved defaults for both op and non-op players.
+     */
+    public void invalidate() {
+        invalidate(true);
+        invalidate(false);
+    }
+
     /**
      * Queries whether a given permission should be granted by default.
      *
+     * <p>Permissions in the defaults sets (and their children) take priority,
+     * followed by the {@link Permission#getDefault() default} of any other
+     * permission registered with the server.</p>
+     *
      * @param permission the permission to query
      * @param isOp if the player is op
      * @return a tristate result
@@ -145,6 +158,11 @@ public final class LPDefaultsMap implements Map<Boolean, Set<Permission>> {
                     builder.putIfAbsent(child.getKey(), child.getValue());
                 }
             }
+
+            // then fill in the defaults of all other registered permissions
+            for (Map.Entry<String, Permission> perm : LPDefaultsMap.this.plugin.getPermissionMap().entrySet()) {
+                builder.putIfAbsent(perm.getKey(), perm.getValue().getDefault().getValue(this.op));
+            }
             return ImmutableMap.copyOf(builder);
         }
     }
@@ -175,6 +193,14 @@ public final class LPDefaultsMap implements Map<Boolean, Set<Permission>> {
             invalidate(this.op);
             return ret;
         }
+
+        // called by the plugin manager when the default of a permission changes
+        @Override
+        public boolean remove(Object object) {
+            boolean ret = super.remove(object);
+            invalidate(this.op);
+            return ret;
+        }
     }
 
 }
@@ -25,6 +25,9 @@
 
 package me.lucko.luckperms.bukkit.model.server;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
@@ -36,12 +39,15 @@ import org.bukkit.permissions.Permissible;
 import org.bukkit.plugin.PluginManager;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.WeakHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnull;
 
@@ -65,6 +71,12 @@ import javax.annotation.Nonnull;
  *
  * This class implements option 2 above. It is preferred because it is faster & uses less memory
  *
+ * Online players are tracked using a reverse index from permission to the players which
+ * have it set. Entries are created lazily when a permission is first looked up, and are
+ * then kept up to date by re-checking only the players marked via {@link #markDirty(Player)}.
+ * Permissions which haven't been looked up recently are dropped from the index, and players
+ * are only weakly referenced by it.
+ *
  * Injected by {@link InjectorSubscriptionMap}.
  */
 public final class LPSubscriptionMap extends HashMap<String, Map<Permissible, Boolean>> {
@@ -72,11 +84,88 @@ public final class LPSubscriptionMap extends HashMap<String, Map<Permissible, Bo
     // the plugin instance
     final LPBukkitPlugin plugin;
 
+    // permission --> the online players which have the permission set
+    private final Cache<String, Set<Permissible>> subscribers = Caffeine.newBuilder()
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .build();
+
+    // players whose permission data has changed since the index was last updated
+    private final Set<Player> dirtyPlayers = ConcurrentHashMap.newKeySet();
+
     public LPSubscriptionMap(LPBukkitPlugin plugin, Map<String, Map<Permissible, Boolean>> existingData) {
         super(existingData);
         this.plugin = plugin;
     }
 
+    /**
+     * Marks that the permission data for the given player may have changed, and
+     * that the player's subscriptions should be re-checked on the next lookup.
+     *
+     * @param player the player
+     */
+    public void markDirty(Player player) {
+        this.dirtyPlayers.add(player);
+    }
+
+    /**
+     * Removes the given player from all subscriptions.
+     *
+     * @param player the player
+     */
+    public void unsubscribe(Player player) {
+        this.dirtyPlayers.remove(player);
+        for (Set<Permissible> players : this.subscribers.asMap().values()) {
+            players.remove(player);
+        }
+    }
+
+    /**
+     * Gets the online players which have the given permission set.
+     *
+     * @param permission the permission
+     * @return a view of the subscribed players
+     */
+    private Set<Permissible> getSubscribers(String permission) {
+        processDirtyPlayers();
+
+        Set<Permissible> players = this.subscribers.get(permission, p -> {
+            Set<Permissible> ret = Collections.newSetFromMap(new MapMaker().weakKeys().makeMap());
+            for (Player player : this.plugin.getBootstrap().getServer().getOnlinePlayers()) {
+                if (player.isPermissionSet(p)) {
+                    ret.add(player);
+                }
+            }
+            return ret;
+        });
+        return Collections.unmodifiableSet(players);
+    }
+
+    private void processDirtyPlayers() {
+        if (this.dirtyPlayers.isEmpty()) {
+            return;
+        }
+
+        for (Iterator<Player> it = this.dirtyPlayers.iterator(); it.hasNext(); ) {
+            Player player = it.next();
+
+            // remove before checking, so changes made while we're checking cause another pass
+            it.remove();
+
+            if (!player.isOnline()) {
+                unsubscribe(player);
+                continue;
+            }
+
+            for (Map.Entry<String, Set<Permissible>> ent : this.subscribers.asMap().entrySet()) {
+                if (player.isPermissionSet(ent.getKey())) {
+                    ent.getValue().add(player);
+                } else {
+                    ent.getValue().remove(player);
+                }
+            }
+        }
+    }
+
     /*
      * The get method is the only one which is actually used by SimplePluginManager
      * we override it to always return a value - which means the null check in
@@ -207,9 +296,7 @@ public final class LPSubscriptionMap extends HashMap<String, Map<Permissible, Bo
         @Override
         public Set<Permissible> keySet() {
             // gather players (LPPermissibles)
-            Set<Permissible> players = LPSubscriptionMap.this.plugin.getBootstrap().getServer().getOnlinePlayers().stream()
-                    .filter(player -> player.isPermissionSet(this.permission))
-                    .collect(Collectors.toSet());
+            Set<Permissible> players = getSubscribers(this.permission);
 
             // then combine the players with the backing map
             return Sets.union(players, this.backing.keySet());
@@ -29,8 +29,6 @@ import me.lucko.luckperms.api.Tristate;
 import me.lucko.luckperms.bukkit.LPBukkitPlugin;
 import me.lucko.luckperms.common.processors.PermissionProcessor;
 
-import org.bukkit.permissions.Permission;
-
 /**
  * Permission Processor for Bukkits "default" permission system.
  */
@@ -45,12 +43,6 @@ public class DefaultsProcessor implements PermissionProcessor {
 
     @Override
     public Tristate hasPermission(String permission) {
-        Tristate t = this.plugin.getDefaultPermissionMap().lookupDefaultPermission(permission, this.isOp);
-        if (t != Tristate.UNDEFINED) {
-            return t;
-        }
-
-        Permission defPerm = this.plugin.getPermissionMap().get(permission);
-        return defPerm == null ? Tristate.UNDEFINED : Tristate.fromBoolean(defPerm.getDefault().getValue(this.isOp));
+        return this.plugin.getDefaultPermissionMap().lookupDefaultPermission(permission, this.isOp);
     }
 }
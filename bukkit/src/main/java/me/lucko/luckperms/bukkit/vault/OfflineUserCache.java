@@ -0,0 +1,81 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package me.lucko.luckperms.bukkit.vault;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import me.lucko.luckperms.bukkit.LPBukkitPlugin;
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.model.User;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+/**
+ * A bounded cache of read-only {@link User} data for players who aren't loaded.
+ *
+ * <p>Users are loaded as detached copies, so the cache doesn't register
+ * them with the user manager, post events for them, or save anything back.</p>
+ *
+ * <p>Lookups never block - if the users data hasn't been loaded yet, a load is
+ * requested in the background and null is returned. Once loaded, data is reloaded
+ * in the background after the configured ttl, and the previous value is returned
+ * in the meantime.</p>
+ */
+public class OfflineUserCache {
+
+    // uuid --> the users data, as loaded from storage
+    private final AsyncLoadingCache<UUID, User> cache;
+
+    public OfflineUserCache(LPBukkitPlugin plugin) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(plugin.getConfiguration().get(ConfigKeys.VAULT_OFFLINE_CACHE_SIZE))
+                .refreshAfterWrite(plugin.getConfiguration().get(ConfigKeys.VAULT_OFFLINE_CACHE_TTL), TimeUnit.SECONDS)
+                .buildAsync((uuid, executor) -> plugin.getStorage().loadDetachedUser(uuid));
+    }
+
+    /**
+     * Gets the cached data for the given user, requesting a load if it isn't present.
+     *
+     * @param uuid the users uuid
+     * @return the cached user, or null if the data hasn't been loaded yet
+     */
+    @Nullable
+    public User getIfLoaded(UUID uuid) {
+        CompletableFuture<User> future = this.cache.get(uuid);
+        if (!future.isDone() || future.isCompletedExceptionally()) {
+            return null;
+        }
+        return future.join();
+    }
+
+    public void invalidateAll() {
+        this.cache.synchronous().invalidateAll();
+    }
+}
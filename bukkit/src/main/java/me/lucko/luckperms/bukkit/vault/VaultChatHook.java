@@ -89,7 +89,7 @@ public class VaultChatHook extends AbstractVaultChat {
         if (uuid == null) {
             return null;
         }
-        User user = getUser(uuid);
+        User user = this.permissionHook.lookupUser(uuid);
         if (user == null) {
             return null;
         }
@@ -107,7 +107,7 @@ public class VaultChatHook extends AbstractVaultChat {
         if (uuid == null) {
             return null;
         }
-        User user = getUser(uuid);
+        User user = this.permissionHook.lookupUser(uuid);
         if (user == null) {
             return null;
         }
@@ -150,7 +150,7 @@ public class VaultChatHook extends AbstractVaultChat {
             return null;
         }
         Objects.requireNonNull(key, "key");
-        User user = getUser(uuid);
+        User user = this.permissionHook.lookupUser(uuid);
         if (user == null) {
             return null;
         }
@@ -25,12 +25,15 @@
 
 package me.lucko.luckperms.bukkit.vault;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.google.common.base.Preconditions;
 
 import me.lucko.luckperms.api.Contexts;
 import me.lucko.luckperms.api.Node;
 import me.lucko.luckperms.api.Tristate;
 import me.lucko.luckperms.api.context.ContextSet;
+import me.lucko.luckperms.api.context.ImmutableContextSet;
 import me.lucko.luckperms.api.context.MutableContextSet;
 import me.lucko.luckperms.bukkit.LPBukkitPlugin;
 import me.lucko.luckperms.common.caching.type.PermissionCache;
@@ -52,6 +55,7 @@ import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An implementation of the Vault {@link Permission} API using LuckPerms.
@@ -69,6 +73,9 @@ import java.util.concurrent.Executors;
  * The methods which query offline players will explicitly FAIL if the corresponding player is not online.
  * We cannot risk blocking the main thread to load in their data. Again, this is due to crap Vault
  * design. There is nothing I can do about it.
+ *
+ * If the offline cache is enabled, methods which only read data are instead answered using an
+ * {@link OfflineUserCache}, which loads the data of offline players in the background.
  */
 public class VaultPermissionHook extends AbstractVaultPermission {
 
@@ -78,9 +85,19 @@ public class VaultPermissionHook extends AbstractVaultPermission {
     // an executor for Vault modifications.
     private final ExecutorService executor;
 
+    // a cache of data for offline players, or null if the cache is disabled
+    private final OfflineUserCache offlineUserCache;
+
+    // lookup --> contexts, so repeated lookups in the same world reuse a single contexts instance
+    private final LoadingCache<LookupKey, Contexts> lookupContexts = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .build(this::calculateContextForLookup);
+
     public VaultPermissionHook(LPBukkitPlugin plugin) {
         this.plugin = plugin;
         this.executor = Executors.newSingleThreadExecutor();
+        this.offlineUserCache = plugin.getConfiguration().get(ConfigKeys.VAULT_OFFLINE_CACHE) ? new OfflineUserCache(plugin) : null;
         this.worldMappingFunction = world -> isIgnoreWorld() ? null : world;
     }
 
@@ -123,9 +140,9 @@ public class VaultPermissionHook extends AbstractVaultPermission {
         }
         Objects.requireNonNull(permission, "permission");
 
-        User user = getUser(uuid);
+        User user = lookupUser(uuid);
         if (user == null) {
-            return false;
+            return this.offlineUserCache != null && this.plugin.getConfiguration().get(ConfigKeys.VAULT_OFFLINE_CACHE_DEFAULT);
         }
 
         Contexts contexts = contextForLookup(user, world);
@@ -203,7 +220,7 @@ public class VaultPermissionHook extends AbstractVaultPermission {
             return new String[0];
         }
 
-        User user = getUser(uuid);
+        User user = lookupUser(uuid);
         if (user == null) {
             return new String[0];
         }
@@ -235,7 +252,7 @@ public class VaultPermissionHook extends AbstractVaultPermission {
             return null;
         }
 
-        User user = getUser(uuid);
+        User user = lookupUser(uuid);
         if (user == null) {
             return null;
         }
@@ -307,6 +324,21 @@ public class VaultPermissionHook extends AbstractVaultPermission {
         return this.plugin.getUserManager().getIfLoaded(uuid);
     }
 
+    /**
+     * Gets a user for a read-only lookup, falling back to the offline cache
+     * if the user isn't loaded.
+     *
+     * @param uuid the users uuid
+     * @return the user, or null if their data isn't available
+     */
+    User lookupUser(UUID uuid) {
+        User user = getUser(uuid);
+        if (user == null && this.offlineUserCache != null) {
+            user = this.offlineUserCache.getIfLoaded(uuid);
+        }
+        return user;
+    }
+
     private Group getGroup(String name) {
         return this.plugin.getGroupManager().getByDisplayName(name);
     }
@@ -336,38 +368,83 @@ public class VaultPermissionHook extends AbstractVaultPermission {
 
     // utility method for getting a contexts instance for a given vault lookup.
     Contexts contextForLookup(User user, String world) {
-        MutableContextSet context;
+        ImmutableContextSet base;
 
         Player player = Optional.ofNullable(user).flatMap(u -> this.plugin.getBootstrap().getPlayer(u.getUuid())).orElse(null);
         if (player != null) {
-            context = this.plugin.getContextManager().getApplicableContext(player).mutableCopy();
+            base = this.plugin.getContextManager().getApplicableContext(player);
         } else {
-            context = this.plugin.getContextManager().getStaticContext().mutableCopy();
+            base = this.plugin.getContextManager().getStaticContext();
         }
 
         String playerWorld = player == null ? null : player.getWorld().getName();
 
         // if world is null, we want to do a lookup in the players current context
         // if world is not null, we want to do a lookup in that specific world
+        String lookupWorld = null;
         if (world != null && !world.isEmpty() && !world.equalsIgnoreCase(playerWorld)) {
+            lookupWorld = world.toLowerCase();
+        }
+
+        String vaultServer = useVaultServer() ? getVaultServer() : null;
+        return this.lookupContexts.get(new LookupKey(base, lookupWorld, vaultServer, isIncludeGlobal()));
+    }
+
+    private Contexts calculateContextForLookup(LookupKey key) {
+        MutableContextSet context = key.base.mutableCopy();
+
+        if (key.world != null) {
             // remove already accumulated worlds
             context.removeAll(Contexts.WORLD_KEY);
             // add the vault world
-            context.add(Contexts.WORLD_KEY, world.toLowerCase());
+            context.add(Contexts.WORLD_KEY, key.world);
         }
 
         // if we're using a special vault server
-        if (useVaultServer()) {
+        if (key.vaultServer != null) {
             // remove the normal server context from the set
             context.remove(Contexts.SERVER_KEY, getServer());
 
             // add the vault specific server
-            if (!getVaultServer().equals("global")) {
-                context.add(Contexts.SERVER_KEY, getVaultServer());
+            if (!key.vaultServer.equals("global")) {
+                context.add(Contexts.SERVER_KEY, key.vaultServer);
             }
         }
 
-        return Contexts.of(context, isIncludeGlobal(), true, true, true, true, false);
+        return this.plugin.getContextManager().intern(Contexts.of(context, key.includeGlobal, true, true, true, true, false));
+    }
+
+    /**
+     * The inputs to {@link #contextForLookup(User, String)}
+     */
+    private static final class LookupKey {
+        private final ImmutableContextSet base;
+        private final String world;
+        private final String vaultServer;
+        private final boolean includeGlobal;
+
+        private LookupKey(ImmutableContextSet base, String world, String vaultServer, boolean includeGlobal) {
+            this.base = base;
+            this.world = world;
+            this.vaultServer = vaultServer;
+            this.includeGlobal = includeGlobal;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if (!(o instanceof LookupKey)) return false;
+            final LookupKey other = (LookupKey) o;
+            return this.base.equals(other.base) &&
+                    Objects.equals(this.world, other.world) &&
+                    Objects.equals(this.vaultServer, other.vaultServer) &&
+                    this.includeGlobal == other.includeGlobal;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.base, this.world, this.vaultServer, this.includeGlobal);
+        }
     }
 
     // utility methods for modifying the state of PermissionHolders
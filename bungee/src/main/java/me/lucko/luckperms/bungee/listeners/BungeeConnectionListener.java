@@ -37,6 +37,7 @@ import net.md_5.bungee.api.connection.ProxiedPlayer;
 import net.md_5.bungee.api.event.LoginEvent;
 import net.md_5.bungee.api.event.PlayerDisconnectEvent;
 import net.md_5.bungee.api.event.PostLoginEvent;
+import net.md_5.bungee.api.event.ServerConnectEvent;
 import net.md_5.bungee.api.plugin.Listener;
 import net.md_5.bungee.event.EventHandler;
 import net.md_5.bungee.event.EventPriority;
@@ -129,6 +130,19 @@ public class BungeeConnectionListener extends AbstractConnectionListener impleme
         }
     }
 
+    // Listen at the last priority, so the target server is final
+    @EventHandler(priority = EventPriority.HIGHEST)
+    public void onServerConnect(ServerConnectEvent e) {
+        if (e.isCancelled() || !this.plugin.getConfiguration().get(ConfigKeys.LOGIN_PREFETCH_HINTS)) {
+            return;
+        }
+
+        /* Tell the target server that the player is on their way, so it can
+           start loading their data before the connection reaches it. */
+        ProxiedPlayer player = e.getPlayer();
+        this.plugin.getMessagingService().ifPresent(service -> service.pushLoginHint(player.getUniqueId(), player.getName(), e.getTarget().getName()));
+    }
+
     // Wait until the last priority to unload, so plugins can still perform permission checks on this event
     @EventHandler(priority = EventPriority.HIGHEST)
     public void onPlayerQuit(PlayerDisconnectEvent e) {
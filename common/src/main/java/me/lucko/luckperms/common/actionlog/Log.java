@@ -193,6 +193,16 @@ public class Log {
         return this.content;
     }
 
+    public LogPage getPage(LogFilter filter, int pageNo, int entriesPerPage) {
+        LogPage.Builder page = LogPage.builder(pageNo, entriesPerPage);
+        for (ExtendedLogEntry e : this.content) {
+            if (filter.matches(e)) {
+                page.accept(e);
+            }
+        }
+        return page.build();
+    }
+
     @SuppressWarnings("WeakerAccess")
     public static class Builder {
         private final SortedSet<ExtendedLogEntry> content = new TreeSet<>();
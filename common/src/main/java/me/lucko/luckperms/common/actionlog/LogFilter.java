@@ -0,0 +1,229 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.actionlog;
+
+import me.lucko.luckperms.api.LogEntry;
+
+import java.util.Objects;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+/**
+ * Describes a subset of the action log, used to query a single page of entries
+ * from storage without loading the whole log into memory.
+ *
+ * <p>Any property which is null (or unbounded) is not used to constrain the query.</p>
+ */
+public final class LogFilter {
+    private static final LogFilter ALL = new LogFilter(null, null, null, null, null, 0L, Long.MAX_VALUE);
+
+    /**
+     * Gets a filter which matches all entries
+     *
+     * @return a filter matching all entries
+     */
+    public static LogFilter all() {
+        return ALL;
+    }
+
+    /**
+     * Gets a filter which matches entries performed by the given actor
+     *
+     * @param actor the actor
+     * @return the filter
+     */
+    public static LogFilter actor(UUID actor) {
+        return new LogFilter(null, Objects.requireNonNull(actor, "actor"), null, null, null, 0L, Long.MAX_VALUE);
+    }
+
+    /**
+     * Gets a filter which matches entries acting upon the given user
+     *
+     * @param uuid the user
+     * @return the filter
+     */
+    public static LogFilter user(UUID uuid) {
+        return new LogFilter(LogEntry.Type.USER, null, Objects.requireNonNull(uuid, "uuid"), null, null, 0L, Long.MAX_VALUE);
+    }
+
+    /**
+     * Gets a filter which matches entries acting upon the given group
+     *
+     * @param name the group name
+     * @return the filter
+     */
+    public static LogFilter group(String name) {
+        return new LogFilter(LogEntry.Type.GROUP, null, null, Objects.requireNonNull(name, "name"), null, 0L, Long.MAX_VALUE);
+    }
+
+    /**
+     * Gets a filter which matches entries acting upon the given track
+     *
+     * @param name the track name
+     * @return the filter
+     */
+    public static LogFilter track(String name) {
+        return new LogFilter(LogEntry.Type.TRACK, null, null, Objects.requireNonNull(name, "name"), null, 0L, Long.MAX_VALUE);
+    }
+
+    /**
+     * Gets a filter which matches entries matching the given search query
+     *
+     * @param query the query
+     * @return the filter
+     * @see ExtendedLogEntry#matchesSearch(String)
+     */
+    public static LogFilter search(String query) {
+        return new LogFilter(null, null, null, null, Objects.requireNonNull(query, "query").toLowerCase(), 0L, Long.MAX_VALUE);
+    }
+
+    private final LogEntry.Type type;
+    private final UUID actor;
+    private final UUID acted;
+    private final String actedName;
+    private final String query;
+    private final long startTime;
+    private final long endTime;
+
+    private LogFilter(LogEntry.Type type, UUID actor, UUID acted, String actedName, String query, long startTime, long endTime) {
+        this.type = type;
+        this.actor = actor;
+        this.acted = acted;
+        this.actedName = actedName;
+        this.query = query;
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+
+    /**
+     * Returns a copy of this filter, which only matches entries with a
+     * timestamp in the given (inclusive) range.
+     *
+     * @param startTime the start of the range, in unix seconds
+     * @param endTime the end of the range, in unix seconds
+     * @return the new filter
+     */
+    public LogFilter between(long startTime, long endTime) {
+        if (startTime > endTime) {
+            throw new IllegalArgumentException("startTime cannot be greater than endTime: " + startTime + " > " + endTime);
+        }
+        return new LogFilter(this.type, this.actor, this.acted, this.actedName, this.query, startTime, endTime);
+    }
+
+    @Nullable
+    public LogEntry.Type getType() {
+        return this.type;
+    }
+
+    @Nullable
+    public UUID getActor() {
+        return this.actor;
+    }
+
+    @Nullable
+    public UUID getActed() {
+        return this.acted;
+    }
+
+    @Nullable
+    public String getActedName() {
+        return this.actedName;
+    }
+
+    /**
+     * Gets the (lowercase) search query
+     *
+     * @return the search query
+     */
+    @Nullable
+    public String getQuery() {
+        return this.query;
+    }
+
+    public long getStartTime() {
+        return this.startTime;
+    }
+
+    public long getEndTime() {
+        return this.endTime;
+    }
+
+    public boolean hasTimeRange() {
+        return this.startTime != 0L || this.endTime != Long.MAX_VALUE;
+    }
+
+    /**
+     * Gets if this filter doesn't constrain the entries it matches at all
+     *
+     * @return true if this filter matches all entries
+     */
+    public boolean matchesAll() {
+        return this.type == null && this.actor == null && this.acted == null && this.actedName == null && this.query == null && !hasTimeRange();
+    }
+
+    /**
+     * Tests if the given entry is matched by this filter
+     *
+     * @param entry the entry
+     * @return true if the entry matches
+     */
+    public boolean matches(LogEntry entry) {
+        if (entry.getTimestamp() < this.startTime || entry.getTimestamp() > this.endTime) {
+            return false;
+        }
+        if (this.type != null && entry.getType() != this.type) {
+            return false;
+        }
+        if (this.actor != null && !entry.getActor().equals(this.actor)) {
+            return false;
+        }
+        if (this.acted != null && !entry.getActed().map(this.acted::equals).orElse(false)) {
+            return false;
+        }
+        if (this.actedName != null && !entry.getActedName().equals(this.actedName)) {
+            return false;
+        }
+        if (this.query != null) {
+            return entry.getActorName().toLowerCase().contains(this.query) ||
+                    entry.getActedName().toLowerCase().contains(this.query) ||
+                    entry.getAction().toLowerCase().contains(this.query);
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "LogFilter(" +
+                "type=" + this.type + ", " +
+                "actor=" + this.actor + ", " +
+                "acted=" + this.acted + ", " +
+                "actedName=" + this.actedName + ", " +
+                "query=" + this.query + ", " +
+                "startTime=" + this.startTime + ", " +
+                "endTime=" + this.endTime + ")";
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.actionlog;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.SortedMap;
+
+/**
+ * A single page of entries from the action log.
+ *
+ * <p>Entries are numbered from oldest to newest, starting at 1, consistent
+ * with the numbering used by {@link Log}.</p>
+ */
+public final class LogPage {
+
+    /**
+     * Page number used to request the last (most recent) page of results,
+     * when the total number of pages isn't yet known.
+     */
+    public static final int LAST_PAGE = Integer.MIN_VALUE;
+
+    /**
+     * Gets the number of pages required to display the given number of entries
+     *
+     * @param totalEntries the total number of entries
+     * @param entriesPerPage the number of entries per page
+     * @return the number of pages
+     */
+    public static int getMaxPages(int totalEntries, int entriesPerPage) {
+        return (int) Math.ceil((double) totalEntries / (double) entriesPerPage);
+    }
+
+    /**
+     * Resolves the page number which should be returned for a request
+     *
+     * @param pageNo the requested page number, or {@link #LAST_PAGE}
+     * @param totalEntries the total number of matching entries
+     * @param entriesPerPage the number of entries per page
+     * @return the resolved page number, which may be out of range
+     */
+    public static int resolvePage(int pageNo, int totalEntries, int entriesPerPage) {
+        return pageNo == LAST_PAGE ? getMaxPages(totalEntries, entriesPerPage) : pageNo;
+    }
+
+    /**
+     * Gets if the given page number is within the range of available pages
+     *
+     * @param pageNo the page number
+     * @param totalEntries the total number of matching entries
+     * @param entriesPerPage the number of entries per page
+     * @return true if the page has content
+     */
+    public static boolean isInRange(int pageNo, int totalEntries, int entriesPerPage) {
+        return pageNo >= 1 && pageNo <= getMaxPages(totalEntries, entriesPerPage);
+    }
+
+    /**
+     * Gets the zero-based offset of the first entry on the given page
+     *
+     * @param pageNo the (in range) page number
+     * @param entriesPerPage the number of entries per page
+     * @return the offset
+     */
+    public static int getOffset(int pageNo, int entriesPerPage) {
+        return (pageNo - 1) * entriesPerPage;
+    }
+
+    /**
+     * Creates a page from a list of entries which have already been selected
+     * for the given page.
+     *
+     * @param pageNo the resolved page number
+     * @param entriesPerPage the number of entries per page
+     * @param totalEntries the total number of matching entries
+     * @param entries the entries on the page, oldest first
+     * @return the page
+     */
+    public static LogPage of(int pageNo, int entriesPerPage, int totalEntries, List<ExtendedLogEntry> entries) {
+        ImmutableSortedMap.Builder<Integer, ExtendedLogEntry> content = ImmutableSortedMap.naturalOrder();
+        int index = isInRange(pageNo, totalEntries, entriesPerPage) ? getOffset(pageNo, entriesPerPage) : 0;
+        for (ExtendedLogEntry e : entries) {
+            content.put(++index, e);
+        }
+        return new LogPage(pageNo, getMaxPages(totalEntries, entriesPerPage), totalEntries, content.build());
+    }
+
+    /**
+     * Creates a new builder, which selects entries for a page from a stream
+     * of entries, oldest first.
+     *
+     * @param pageNo the requested page number, or {@link #LAST_PAGE}
+     * @param entriesPerPage the number of entries per page
+     * @return a new builder
+     */
+    public static Builder builder(int pageNo, int entriesPerPage) {
+        return new Builder(pageNo, entriesPerPage);
+    }
+
+    private final int pageNumber;
+    private final int maxPages;
+    private final int totalEntries;
+    private final SortedMap<Integer, ExtendedLogEntry> content;
+
+    private LogPage(int pageNumber, int maxPages, int totalEntries, SortedMap<Integer, ExtendedLogEntry> content) {
+        this.pageNumber = pageNumber;
+        this.maxPages = maxPages;
+        this.totalEntries = totalEntries;
+        this.content = content;
+    }
+
+    /**
+     * Gets the page number. If the requested page was out of range, this
+     * is returned as requested, and the page will have no content.
+     *
+     * @return the page number
+     */
+    public int getPageNumber() {
+        return this.pageNumber;
+    }
+
+    public int getMaxPages() {
+        return this.maxPages;
+    }
+
+    public int getTotalEntries() {
+        return this.totalEntries;
+    }
+
+    /**
+     * Gets the entries on this page, keyed by their position in the full
+     * (filtered) log.
+     *
+     * @return the page content
+     */
+    public SortedMap<Integer, ExtendedLogEntry> getContent() {
+        return this.content;
+    }
+
+    public static final class Builder {
+        private final int pageNo;
+        private final int entriesPerPage;
+
+        // the entries selected for the page so far
+        private final Deque<ExtendedLogEntry> buffer = new ArrayDeque<>();
+        private int count = 0;
+
+        private Builder(int pageNo, int entriesPerPage) {
+            if (entriesPerPage < 1) {
+                throw new IllegalArgumentException("entriesPerPage cannot be less than 1: " + entriesPerPage);
+            }
+            this.pageNo = pageNo;
+            this.entriesPerPage = entriesPerPage;
+        }
+
+        public Builder accept(ExtendedLogEntry entry) {
+            int index = this.count++;
+
+            if (this.pageNo == LAST_PAGE) {
+                // we don't know where the last page starts yet, so just retain a window
+                // of the most recent entries, and trim it down in #build
+                this.buffer.addLast(entry);
+                if (this.buffer.size() > this.entriesPerPage) {
+                    this.buffer.removeFirst();
+                }
+            } else if (this.pageNo >= 1 && index / this.entriesPerPage == this.pageNo - 1) {
+                this.buffer.addLast(entry);
+            }
+            return this;
+        }
+
+        public LogPage build() {
+            int page = resolvePage(this.pageNo, this.count, this.entriesPerPage);
+            if (this.pageNo == LAST_PAGE && page >= 1) {
+                int lastPageSize = this.count - getOffset(page, this.entriesPerPage);
+                while (this.buffer.size() > lastPageSize) {
+                    this.buffer.removeFirst();
+                }
+            }
+            return of(page, this.entriesPerPage, this.count, ImmutableList.copyOf(this.buffer));
+        }
+    }
+}
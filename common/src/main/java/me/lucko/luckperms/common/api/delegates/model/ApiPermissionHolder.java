@@ -59,6 +59,7 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 import javax.annotation.Nonnull;
@@ -340,6 +341,12 @@ public class ApiPermissionHolder implements me.lucko.luckperms.api.PermissionHol
         this.handle.clearTransientNodes();
     }
 
+    @Override
+    public void batch(@Nonnull Consumer<? super me.lucko.luckperms.api.PermissionHolder> action) {
+        Objects.requireNonNull(action, "action");
+        this.handle.batch(holder -> action.accept(this));
+    }
+
     @Nonnull
     @Override
     public List<LocalizedNode> resolveInheritances(Contexts contexts) {
@@ -36,6 +36,8 @@ import me.lucko.luckperms.common.node.factory.NodeFactory;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.sender.Sender;
 import me.lucko.luckperms.common.storage.Storage;
+import me.lucko.luckperms.common.storage.StorageExecutor;
+import me.lucko.luckperms.common.storage.StorageExecutor.Priority;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
@@ -215,7 +217,7 @@ public class Exporter implements Runnable {
                         // actually export the user. this output will be fed to the writing function when we have all of the user's data.
                         List<String> output = new ArrayList<>();
 
-                        User user = this.plugin.getStorage().loadUser(uuid, null).join();
+                        User user = StorageExecutor.withPriority(Priority.BACKGROUND, () -> this.plugin.getStorage().loadUser(uuid, null)).join();
                         output.add("# Export user: " + user.getUuid().toString() + " - " + user.getName().orElse("unknown username"));
 
                         boolean inDefault = false;
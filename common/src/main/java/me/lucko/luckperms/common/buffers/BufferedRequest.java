@@ -25,9 +25,14 @@
 
 package me.lucko.luckperms.common.buffers;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import java.lang.ref.WeakReference;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 
@@ -37,20 +42,38 @@ import java.util.function.Supplier;
  * Waits for the buffer time to pass before performing the operation. If the task is called again in that time, the
  * buffer time is reset.
  *
+ * <p>The wait is scheduled as a deadline, so no thread is used until the operation is performed. If the executor
+ * is a {@link ScheduledExecutorService}, it is used to schedule the deadline, otherwise a shared timer thread is
+ * used.</p>
+ *
  * @param <T> the return type
  */
 public abstract class BufferedRequest<T> {
+    private static ScheduledExecutorService sharedTimer = null;
+
+    private static synchronized ScheduledExecutorService getSharedTimer() {
+        if (sharedTimer == null) {
+            ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                    .setNameFormat("luckperms-buffer-timer")
+                    .setDaemon(true)
+                    .build());
+            timer.setRemoveOnCancelPolicy(true);
+            sharedTimer = timer;
+        }
+        return sharedTimer;
+    }
+
     private final long bufferTimeMillis;
-    private final long sleepInterval;
     private final Executor executor;
+    private final ScheduledExecutorService timer;
 
     private WeakReference<Processor<T>> processor = null;
     private final ReentrantLock lock = new ReentrantLock();
 
-    public BufferedRequest(long bufferTimeMillis, long sleepInterval, Executor executor) {
+    public BufferedRequest(long bufferTimeMillis, Executor executor) {
         this.bufferTimeMillis = bufferTimeMillis;
-        this.sleepInterval = sleepInterval;
         this.executor = executor;
+        this.timer = executor instanceof ScheduledExecutorService ? (ScheduledExecutorService) executor : getSharedTimer();
     }
 
     public CompletableFuture<T> request() {
@@ -58,13 +81,13 @@ public abstract class BufferedRequest<T> {
         try {
             if (this.processor != null) {
                 Processor<T> p = this.processor.get();
-                if (p != null && p.isUsable()) {
-                    return p.getAndExtend();
+                if (p != null && p.extend()) {
+                    return p.get();
                 }
             }
 
-            Processor<T> p = new Processor<>(this.bufferTimeMillis, this.sleepInterval, this::perform);
-            this.executor.execute(p);
+            Processor<T> p = new Processor<>(this.bufferTimeMillis, this::perform, this.executor, this.timer);
+            p.schedule();
             this.processor = new WeakReference<>(p);
             return p.get();
 
@@ -81,68 +104,73 @@ public abstract class BufferedRequest<T> {
 
     private static class Processor<R> implements Runnable {
         private final long delayMillis;
-        private final long sleepMillis;
         private final Supplier<R> supplier;
-        private final ReentrantLock lock = new ReentrantLock();
+        private final Executor executor;
+        private final ScheduledExecutorService timer;
         private final CompletableFuture<R> future = new CompletableFuture<>();
+
+        // guarded by 'this'
         private boolean usable = true;
         private long executionTime;
 
-        public Processor(long delayMillis, long sleepMillis, Supplier<R> supplier) {
+        public Processor(long delayMillis, Supplier<R> supplier, Executor executor, ScheduledExecutorService timer) {
             this.delayMillis = delayMillis;
-            this.sleepMillis = sleepMillis;
             this.supplier = supplier;
+            this.executor = executor;
+            this.timer = timer;
         }
 
-        @Override
-        public void run() {
-            this.lock.lock();
-            try {
+        public void schedule() {
+            synchronized (this) {
                 this.executionTime = System.currentTimeMillis() + this.delayMillis;
-            } finally {
-                this.lock.unlock();
             }
+            this.timer.schedule(this, this.delayMillis, TimeUnit.MILLISECONDS);
+        }
 
-            while (true) {
-                this.lock.lock();
-                try {
-                    if (System.currentTimeMillis() > this.executionTime) {
-                        this.usable = false;
-                        break;
-                    }
-
-                } finally {
-                    this.lock.unlock();
+        /**
+         * Called when the deadline may have been reached.
+         */
+        @Override
+        public void run() {
+            long remaining;
+            synchronized (this) {
+                remaining = this.executionTime - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    this.usable = false;
                 }
+            }
 
-                try {
-                    Thread.sleep(this.sleepMillis);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
+            // the deadline was extended since this was scheduled, so wait for the rest of it
+            if (remaining > 0) {
+                this.timer.schedule(this, remaining, TimeUnit.MILLISECONDS);
+                return;
             }
 
-            R result = this.supplier.get();
-            this.future.complete(result);
+            this.executor.execute(() -> {
+                try {
+                    this.future.complete(this.supplier.get());
+                } catch (Throwable e) {
+                    this.future.completeExceptionally(e);
+                    throw e;
+                }
+            });
         }
 
         public CompletableFuture<R> get() {
             return this.future;
         }
 
-        public CompletableFuture<R> getAndExtend() {
-            this.lock.lock();
-            try {
-                this.executionTime = System.currentTimeMillis() + this.delayMillis;
-            } finally {
-                this.lock.unlock();
+        /**
+         * Extends the deadline, if the operation hasn't started yet.
+         *
+         * @return true if the deadline was extended, false if the processor can no longer be used
+         */
+        public synchronized boolean extend() {
+            if (!this.usable) {
+                return false;
             }
-
-            return this.future;
-        }
-
-        public boolean isUsable() {
-            return this.usable;
+            this.executionTime = System.currentTimeMillis() + this.delayMillis;
+            return true;
         }
     }
 
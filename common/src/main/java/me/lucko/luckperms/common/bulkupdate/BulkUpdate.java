@@ -29,8 +29,10 @@ import me.lucko.luckperms.common.bulkupdate.action.Action;
 import me.lucko.luckperms.common.bulkupdate.query.Query;
 import me.lucko.luckperms.common.node.model.NodeDataContainer;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * Represents a query to be applied to a set of data.
@@ -47,10 +49,26 @@ public final class BulkUpdate {
     // a set of constraints which data must match to be acted upon
     private final List<Query> queries;
 
-    public BulkUpdate(DataType dataType, Action action, List<Query> queries) {
+    // if changes should only be counted, and not actually applied
+    private final boolean dryRun;
+
+    // the progress & outcome of this update
+    private final BulkUpdateStatistics statistics = new BulkUpdateStatistics();
+
+    public BulkUpdate(DataType dataType, Action action, List<Query> queries, boolean dryRun) {
         this.dataType = dataType;
         this.action = action;
         this.queries = queries;
+        this.dryRun = dryRun;
+    }
+
+    /**
+     * Returns a copy of this update which only counts the data it would affect.
+     *
+     * @return a dry run copy of this update
+     */
+    public BulkUpdate asDryRun() {
+        return new BulkUpdate(this.dataType, this.action, this.queries, true);
     }
 
     /**
@@ -82,6 +100,39 @@ public final class BulkUpdate {
         return this.action.apply(from);
     }
 
+    /**
+     * Applies this query to the given set of nodes, and records the outcome.
+     *
+     * @param nodes the nodes to base changes from
+     * @param users if the nodes belong to a user, as opposed to a group
+     * @return the resultant nodes, or null if no changes would be made
+     */
+    public Set<NodeDataContainer> apply(Set<NodeDataContainer> nodes, boolean users) {
+        Set<NodeDataContainer> results = new HashSet<>(nodes.size());
+        int affected = 0;
+        for (NodeDataContainer node : nodes) {
+            NodeDataContainer result = apply(node);
+            if (!node.equals(result)) {
+                affected++;
+            }
+            if (result != null) {
+                results.add(result);
+            }
+        }
+
+        if (results.equals(nodes)) {
+            affected = 0;
+        }
+
+        if (users) {
+            this.statistics.recordUser(affected);
+        } else {
+            this.statistics.recordGroup(affected);
+        }
+
+        return affected == 0 ? null : results;
+    }
+
     /**
      * Converts this {@link BulkUpdate} to SQL syntax
      *
@@ -97,9 +148,14 @@ public final class BulkUpdate {
         // (DELETE FROM or UPDATE)
         this.action.appendSql(builder);
 
+        appendConstraints(builder);
+        return builder;
+    }
+
+    private void appendConstraints(PreparedStatementBuilder builder) {
         // if there are no constraints, just return without a WHERE clause
         if (this.queries.isEmpty()) {
-            return builder;
+            return;
         }
 
         // append constraints
@@ -114,7 +170,20 @@ public final class BulkUpdate {
 
             query.appendSql(builder);
         }
+    }
 
+    /**
+     * Converts this {@link BulkUpdate} to an SQL query which counts the rows and
+     * distinct holders it would affect.
+     *
+     * @param holderColumn the column identifying the holder
+     * @return this query in SQL form
+     */
+    public PreparedStatementBuilder buildAsSqlCount(String holderColumn) {
+        // SELECT COUNT(*), COUNT(DISTINCT holder) FROM {table} WHERE ...
+        PreparedStatementBuilder builder = new PreparedStatementBuilder();
+        builder.append("SELECT COUNT(*), COUNT(DISTINCT " + holderColumn + ") FROM {table}");
+        appendConstraints(builder);
         return builder;
     }
 
@@ -130,6 +199,14 @@ public final class BulkUpdate {
         return this.queries;
     }
 
+    public boolean isDryRun() {
+        return this.dryRun;
+    }
+
+    public BulkUpdateStatistics getStatistics() {
+        return this.statistics;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == this) return true;
@@ -138,12 +215,13 @@ public final class BulkUpdate {
 
         return Objects.equals(this.getDataType(), that.getDataType()) &&
                 Objects.equals(this.getAction(), that.getAction()) &&
-                Objects.equals(this.getQueries(), that.getQueries());
+                Objects.equals(this.getQueries(), that.getQueries()) &&
+                this.isDryRun() == that.isDryRun();
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(getDataType(), getAction(), getQueries());
+        return Objects.hash(getDataType(), getAction(), getQueries(), isDryRun());
     }
 
     @Override
@@ -151,6 +229,7 @@ public final class BulkUpdate {
         return "BulkUpdate(" +
                 "dataType=" + this.getDataType() + ", " +
                 "action=" + this.getAction() + ", " +
-                "constraints=" + this.getQueries() + ")";
+                "constraints=" + this.getQueries() + ", " +
+                "dryRun=" + this.isDryRun() + ")";
     }
 }
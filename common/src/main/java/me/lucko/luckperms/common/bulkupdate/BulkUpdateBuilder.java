@@ -51,6 +51,9 @@ public class BulkUpdateBuilder {
     // a set of constraints which data must match to be acted upon
     private final Set<Query> queries = new LinkedHashSet<>();
 
+    // if changes should only be counted, and not actually applied
+    private boolean dryRun = false;
+
     private BulkUpdateBuilder() {
     }
 
@@ -69,12 +72,17 @@ public class BulkUpdateBuilder {
         return this;
     }
 
+    public BulkUpdateBuilder dryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+        return this;
+    }
+
     public BulkUpdate build() {
         if (this.action == null) {
             throw new IllegalStateException("no action specified");
         }
 
-        return new BulkUpdate(this.dataType, this.action, ImmutableList.copyOf(this.queries));
+        return new BulkUpdate(this.dataType, this.action, ImmutableList.copyOf(this.queries), this.dryRun);
     }
 
     @Override
@@ -82,6 +90,7 @@ public class BulkUpdateBuilder {
         return "BulkUpdateBuilder(" +
                 "dataType=" + this.dataType + ", " +
                 "action=" + this.action + ", " +
-                "constraints=" + this.queries + ")";
+                "constraints=" + this.queries + ", " +
+                "dryRun=" + this.dryRun + ")";
     }
 }
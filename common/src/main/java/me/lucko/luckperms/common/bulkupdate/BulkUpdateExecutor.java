@@ -0,0 +1,116 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.bulkupdate;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Splits the data processed by a {@link BulkUpdate} into chunks, and processes
+ * them in parallel using a bounded pool of worker threads.
+ */
+public final class BulkUpdateExecutor {
+
+    /**
+     * The default number of workers - bulk updates are mostly limited by I/O,
+     * so it's worth having a few more threads than there are cores
+     */
+    public static final int DEFAULT_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+
+    /**
+     * Processes the elements of the given iterator in chunks, in parallel.
+     *
+     * <p>The number of chunks waiting to be processed is bounded, so the source is only read as
+     * fast as workers can keep up with it. If any chunk fails, no further chunks are submitted,
+     * and the first exception is rethrown once the in-flight chunks have completed.</p>
+     *
+     * @param source the source of elements
+     * @param chunkSize the number of elements in each chunk
+     * @param threads the maximum number of workers
+     * @param processor the chunk processor
+     * @param <T> the element type
+     * @throws Exception the first exception thrown by the processor
+     */
+    public static <T> void process(Iterator<T> source, int chunkSize, int threads, ChunkProcessor<T> processor) throws Exception {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads, threads,
+                30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * 2),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("luckperms-bulkupdate-%d").build(),
+                // once the queue is full, process chunks on the reading thread
+                new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        try {
+            while (source.hasNext() && failure.get() == null) {
+                List<T> chunk = new ArrayList<>(chunkSize);
+                while (source.hasNext() && chunk.size() < chunkSize) {
+                    chunk.add(source.next());
+                }
+
+                executor.execute(() -> {
+                    if (failure.get() != null) {
+                        return;
+                    }
+                    try {
+                        processor.process(chunk);
+                    } catch (Exception e) {
+                        failure.compareAndSet(null, e);
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+
+        Exception e = failure.get();
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    /**
+     * Processes a chunk of elements
+     *
+     * @param <T> the element type
+     */
+    @FunctionalInterface
+    public interface ChunkProcessor<T> {
+        void process(List<T> chunk) throws Exception;
+    }
+
+    private BulkUpdateExecutor() {}
+
+}
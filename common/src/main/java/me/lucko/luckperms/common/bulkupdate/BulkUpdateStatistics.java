@@ -0,0 +1,122 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.bulkupdate;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records the progress and outcome of a {@link BulkUpdate}.
+ *
+ * <p>Updates may be applied by several threads at once, so all counters are atomic.</p>
+ */
+public final class BulkUpdateStatistics {
+
+    // the number of holders which have been checked so far
+    private final AtomicInteger processedUsers = new AtomicInteger(0);
+    private final AtomicInteger processedGroups = new AtomicInteger(0);
+
+    // the number of holders which were (or would have been, in a dry run) changed
+    private final AtomicInteger affectedUsers = new AtomicInteger(0);
+    private final AtomicInteger affectedGroups = new AtomicInteger(0);
+
+    // the number of nodes which were (or would have been) changed or deleted
+    private final AtomicInteger affectedNodes = new AtomicInteger(0);
+
+    /**
+     * Records that a user has been processed
+     *
+     * @param affectedNodes the number of the user's nodes which were affected
+     */
+    public void recordUser(int affectedNodes) {
+        this.processedUsers.incrementAndGet();
+        if (affectedNodes > 0) {
+            this.affectedUsers.incrementAndGet();
+            this.affectedNodes.addAndGet(affectedNodes);
+        }
+    }
+
+    /**
+     * Records that a group has been processed
+     *
+     * @param affectedNodes the number of the group's nodes which were affected
+     */
+    public void recordGroup(int affectedNodes) {
+        this.processedGroups.incrementAndGet();
+        if (affectedNodes > 0) {
+            this.affectedGroups.incrementAndGet();
+            this.affectedNodes.addAndGet(affectedNodes);
+        }
+    }
+
+    /**
+     * Records the result of a query which affected a number of holders at once,
+     * without processing them individually (e.g. a SQL statement)
+     *
+     * @param users if the holders were users
+     * @param affectedHolders the number of affected holders
+     * @param affectedNodes the number of affected nodes
+     */
+    public void recordBatch(boolean users, int affectedHolders, int affectedNodes) {
+        if (users) {
+            this.processedUsers.addAndGet(affectedHolders);
+            this.affectedUsers.addAndGet(affectedHolders);
+        } else {
+            this.processedGroups.addAndGet(affectedHolders);
+            this.affectedGroups.addAndGet(affectedHolders);
+        }
+        this.affectedNodes.addAndGet(affectedNodes);
+    }
+
+    public int getProcessedUsers() {
+        return this.processedUsers.get();
+    }
+
+    public int getProcessedGroups() {
+        return this.processedGroups.get();
+    }
+
+    public int getAffectedUsers() {
+        return this.affectedUsers.get();
+    }
+
+    public int getAffectedGroups() {
+        return this.affectedGroups.get();
+    }
+
+    public int getAffectedNodes() {
+        return this.affectedNodes.get();
+    }
+
+    @Override
+    public String toString() {
+        return "BulkUpdateStatistics(" +
+                "processedUsers=" + this.getProcessedUsers() + ", " +
+                "processedGroups=" + this.getProcessedGroups() + ", " +
+                "affectedUsers=" + this.getAffectedUsers() + ", " +
+                "affectedGroups=" + this.getAffectedGroups() + ", " +
+                "affectedNodes=" + this.getAffectedNodes() + ")";
+    }
+}
@@ -29,6 +29,8 @@ import com.rethinkdb.gen.ast.ReqlExpr;
 import com.rethinkdb.gen.ast.ReqlFunction1;
 import me.lucko.luckperms.common.bulkupdate.PreparedStatementBuilder;
 
+import org.bson.conversions.Bson;
+
 /**
  * A method of comparing two strings
  */
@@ -57,4 +59,14 @@ public interface Comparison {
     void appendSql(PreparedStatementBuilder builder);
 
     ReqlFunction1 createReqlFilter(String fieldName, String expression);
+
+    /**
+     * Creates a MongoDB query filter which matches values of the given field
+     * satisfying this comparison.
+     *
+     * @param fieldName the name of the field
+     * @param expression the expression
+     * @return the filter
+     */
+    Bson createMongoFilter(String fieldName, String expression);
 }
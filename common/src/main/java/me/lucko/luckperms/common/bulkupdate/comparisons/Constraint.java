@@ -25,10 +25,13 @@
 
 package me.lucko.luckperms.common.bulkupdate.comparisons;
 
+import com.mongodb.client.model.Filters;
 import com.rethinkdb.gen.ast.ReqlExpr;
 import com.rethinkdb.gen.ast.ReqlFunction1;
 import me.lucko.luckperms.common.bulkupdate.PreparedStatementBuilder;
 
+import org.bson.conversions.Bson;
+
 public class Constraint {
 
     public static Constraint of(Comparison comparison, String expression) {
@@ -68,6 +71,18 @@ public class Constraint {
         return comparison.createReqlFilter(fieldName, expression);
     }
 
+    /**
+     * Creates a MongoDB query filter which matches documents containing an element
+     * in the given array whose field satisfies this constraint.
+     *
+     * @param arrayName the name of the array
+     * @param fieldName the name of the field within each array element
+     * @return the filter
+     */
+    public Bson createMongoFilter(String arrayName, String fieldName) {
+        return Filters.elemMatch(arrayName, this.comparison.createMongoFilter(fieldName, this.expression));
+    }
+
     public Comparison getComparison() {
         return this.comparison;
     }
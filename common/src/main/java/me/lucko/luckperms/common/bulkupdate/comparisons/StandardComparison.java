@@ -25,11 +25,17 @@
 
 package me.lucko.luckperms.common.bulkupdate.comparisons;
 
+import com.mongodb.client.model.Filters;
 import com.rethinkdb.RethinkDB;
 import com.rethinkdb.gen.ast.ReqlExpr;
 import com.rethinkdb.gen.ast.ReqlFunction1;
 import me.lucko.luckperms.common.bulkupdate.PreparedStatementBuilder;
 
+import org.bson.BsonRegularExpression;
+import org.bson.conversions.Bson;
+
+import java.util.regex.Pattern;
+
 /**
  * An enumeration of standard {@link Comparison}s.
  */
@@ -44,6 +50,11 @@ public enum StandardComparison implements Comparison {
         public ReqlFunction1 createReqlFilter(String fieldName, String expression) {
             return row -> row.g(fieldName).eq(fieldName, expression);
         }
+
+        @Override
+        public Bson createMongoFilter(String fieldName, String expression) {
+            return Filters.eq(fieldName, new BsonRegularExpression("^" + Pattern.quote(expression) + "$", "i"));
+        }
     },
 
     NOT_EQUAL("!=", "!=") {
@@ -56,48 +67,49 @@ public enum StandardComparison implements Comparison {
         public ReqlFunction1 createReqlFilter(String fieldName, String expression) {
             return row -> RethinkDB.r.not(row.g(fieldName).eq(fieldName, expression));
         }
+
+        @Override
+        public Bson createMongoFilter(String fieldName, String expression) {
+            return Filters.not(EQUAL.createMongoFilter(fieldName, expression));
+        }
     },
 
     SIMILAR("~~", "LIKE") {
         @Override
         public boolean matches(String str, String expr) {
-            // form expression
-            expr = expr.toLowerCase();
-            expr = expr.replace(".", "\\.");
-
-            // convert from SQL LIKE syntax to regex
-            expr = expr.replace("_", ".");
-            expr = expr.replace("%", ".*");
-
-            return str.toLowerCase().matches(expr);
+            return compileLike(expr).matcher(str).matches();
         }
 
         @Override
         public ReqlFunction1 createReqlFilter(String fieldName, String expression) {
             return row -> row.g(fieldName).match(expression);
         }
+
+        @Override
+        public Bson createMongoFilter(String fieldName, String expression) {
+            return Filters.eq(fieldName, new BsonRegularExpression(likeToRegex(expression), "is"));
+        }
     },
 
     NOT_SIMILAR("!~", "NOT LIKE") {
         @Override
         public boolean matches(String str, String expr) {
-            // form expression
-            expr = expr.toLowerCase();
-            expr = expr.replace(".", "\\.");
-
-            // convert from SQL LIKE syntax to regex
-            expr = expr.replace("_", ".");
-            expr = expr.replace("%", ".*");
-
-            return !str.toLowerCase().matches(expr);
+            return !compileLike(expr).matcher(str).matches();
         }
 
         @Override
         public ReqlFunction1 createReqlFilter(String fieldName, String expression) {
             return row -> RethinkDB.r.not(row.g(fieldName).match(expression));
         }
+
+        @Override
+        public Bson createMongoFilter(String fieldName, String expression) {
+            return Filters.not(SIMILAR.createMongoFilter(fieldName, expression));
+        }
     };
 
+    private static final String REGEX_METACHARACTERS = "\\^$.|?*+()[]{}";
+
     private final String symbol;
     private final String asSql;
 
@@ -121,6 +133,45 @@ public enum StandardComparison implements Comparison {
         return this.symbol;
     }
 
+    /**
+     * Compiles an SQL LIKE expression into a case insensitive pattern, which matches
+     * in the same way as the regex sent to MongoDB.
+     *
+     * @param expression the LIKE expression
+     * @return the pattern
+     */
+    static Pattern compileLike(String expression) {
+        return Pattern.compile(likeToRegex(expression), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.DOTALL);
+    }
+
+    /**
+     * Converts an SQL LIKE expression to an equivalent anchored regular expression.
+     *
+     * <p>Wildcards match any character (including line terminators), so the regex should be
+     * used with the "dotall" flag.</p>
+     *
+     * @param expression the LIKE expression
+     * @return the regex
+     */
+    static String likeToRegex(String expression) {
+        StringBuilder sb = new StringBuilder("^");
+        for (char c : expression.toCharArray()) {
+            if (c == '%') {
+                sb.append(".*");
+            } else if (c == '_') {
+                sb.append('.');
+            } else {
+                // escape each metacharacter individually, rather than relying on \Q...\E
+                // quoting, so the regex is interpreted the same way by every engine
+                if (REGEX_METACHARACTERS.indexOf(c) != -1) {
+                    sb.append('\\');
+                }
+                sb.append(c);
+            }
+        }
+        return sb.append("$").toString();
+    }
+
     public static StandardComparison parseComparison(String s) {
         for (StandardComparison t : values()) {
             if (t.getSymbol().equals(s)) {
@@ -234,6 +234,7 @@ public abstract class AbstractCachedData implements CachedData {
     public void recalculatePermissions(@Nonnull Contexts contexts) {
         Objects.requireNonNull(contexts, "contexts");
         this.permission.synchronous().refresh(contexts);
+        onPermissionsChange();
     }
 
     @Override
@@ -258,6 +259,7 @@ public abstract class AbstractCachedData implements CachedData {
 
         // invalidate any previous setting
         this.permission.synchronous().invalidate(contexts);
+        onPermissionsChange();
 
         // if the previous value is already calculated, use it when recalculating.
         PermissionCache value = getIfReady(previous);
@@ -341,6 +343,7 @@ public abstract class AbstractCachedData implements CachedData {
     public void invalidatePermissions(@Nonnull Contexts contexts) {
         Objects.requireNonNull(contexts, "contexts");
         this.permission.synchronous().invalidate(contexts);
+        onPermissionsChange();
     }
 
     @Override
@@ -358,6 +361,7 @@ public abstract class AbstractCachedData implements CachedData {
     @Override
     public void invalidatePermissions() {
         this.permission.synchronous().invalidateAll();
+        onPermissionsChange();
     }
 
     @Override
@@ -368,6 +372,15 @@ public abstract class AbstractCachedData implements CachedData {
     @Override
     public void invalidatePermissionCalculators() {
         this.permission.synchronous().asMap().values().forEach(PermissionCache::invalidateCache);
+        onPermissionsChange();
+    }
+
+    /**
+     * Called when the permission data held by this instance has been invalidated or
+     * recalculated.
+     */
+    protected void onPermissionsChange() {
+
     }
 
     public void invalidate() {
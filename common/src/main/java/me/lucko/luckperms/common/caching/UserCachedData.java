@@ -44,4 +44,9 @@ public class UserCachedData extends HolderCachedData<User> implements UserData {
     protected PermissionCalculatorMetadata getMetadataForContexts(Contexts contexts) {
         return PermissionCalculatorMetadata.of(HolderType.USER, this.holder.getFriendlyName(), contexts.getContexts());
     }
+
+    @Override
+    protected void onPermissionsChange() {
+        this.plugin.onUserPermissionsChange(this.holder);
+    }
 }
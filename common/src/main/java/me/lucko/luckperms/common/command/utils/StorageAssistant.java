@@ -134,7 +134,7 @@ public final class StorageAssistant {
 
         Optional<InternalMessagingService> messagingService = plugin.getMessagingService();
         if (messagingService.isPresent() && plugin.getConfiguration().get(ConfigKeys.AUTO_PUSH_UPDATES)) {
-            messagingService.get().getUpdateBuffer().request();
+            messagingService.get().pushGroupUpdate(group);
         }
     }
 
@@ -158,7 +158,7 @@ public final class StorageAssistant {
 
         Optional<InternalMessagingService> messagingService = plugin.getMessagingService();
         if (messagingService.isPresent() && plugin.getConfiguration().get(ConfigKeys.AUTO_PUSH_UPDATES)) {
-            messagingService.get().getUpdateBuffer().request();
+            messagingService.get().pushTrackUpdate(track);
         }
     }
 
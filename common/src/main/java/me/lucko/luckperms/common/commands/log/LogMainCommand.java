@@ -27,7 +27,8 @@ package me.lucko.luckperms.common.commands.log;
 
 import com.google.common.collect.ImmutableList;
 
-import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogFilter;
+import me.lucko.luckperms.common.actionlog.LogPage;
 import me.lucko.luckperms.common.command.abstraction.Command;
 import me.lucko.luckperms.common.command.abstraction.MainCommand;
 import me.lucko.luckperms.common.locale.LocaleManager;
@@ -35,6 +36,7 @@ import me.lucko.luckperms.common.locale.command.CommandSpec;
 import me.lucko.luckperms.common.locale.message.Message;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.sender.Sender;
+import me.lucko.luckperms.common.storage.Storage;
 
 import java.util.Collections;
 import java.util.List;
@@ -42,11 +44,11 @@ import java.util.Optional;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
-public class LogMainCommand extends MainCommand<Log, Object> {
+public class LogMainCommand extends MainCommand<Storage, Object> {
     private final ReentrantLock lock = new ReentrantLock();
 
     public LogMainCommand(LocaleManager locale) {
-        super(CommandSpec.LOG.localize(locale), "Log", 1, ImmutableList.<Command<Log, ?>>builder()
+        super(CommandSpec.LOG.localize(locale), "Log", 1, ImmutableList.<Command<Storage, ?>>builder()
                 .add(new LogRecent(locale))
                 .add(new LogSearch(locale))
                 .add(new LogNotify(locale))
@@ -68,18 +70,38 @@ public class LogMainCommand extends MainCommand<Log, Object> {
     }
 
     @Override
-    protected Log getTarget(Object target, LuckPermsPlugin plugin, Sender sender) {
-        Log log = plugin.getStorage().getLog().join();
+    protected Storage getTarget(Object target, LuckPermsPlugin plugin, Sender sender) {
+        // sub commands query the log page they need directly from storage
+        return plugin.getStorage();
+    }
 
-        if (log == null) {
-            Message.LOG_LOAD_ERROR.send(sender);
+    /**
+     * Loads a page of the log, informing the sender if it couldn't be loaded.
+     *
+     * @param storage the storage to load from
+     * @param sender the sender
+     * @param filter the filter to apply
+     * @param pageNo the page number
+     * @param entriesPerPage the number of entries per page
+     * @return the page, or null if it couldn't be loaded
+     */
+    static LogPage loadPage(Storage storage, Sender sender, LogFilter filter, int pageNo, int entriesPerPage) {
+        LogPage page;
+        try {
+            page = storage.getLogPage(filter, pageNo, entriesPerPage).join();
+        } catch (Exception e) {
+            e.printStackTrace();
+            page = null;
         }
 
-        return log;
+        if (page == null) {
+            Message.LOG_LOAD_ERROR.send(sender);
+        }
+        return page;
     }
 
     @Override
-    protected void cleanup(Log log, LuckPermsPlugin plugin) {
+    protected void cleanup(Storage storage, LuckPermsPlugin plugin) {
 
     }
 
@@ -90,7 +112,7 @@ public class LogMainCommand extends MainCommand<Log, Object> {
 
     @Override
     public List<String> tabComplete(LuckPermsPlugin plugin, Sender sender, List<String> args) {
-        final List<Command<Log, ?>> subs = getChildren().get().stream()
+        final List<Command<Storage, ?>> subs = getChildren().get().stream()
                 .filter(s -> s.isAuthorized(sender))
                 .collect(Collectors.toList());
 
@@ -107,7 +129,7 @@ public class LogMainCommand extends MainCommand<Log, Object> {
                     .collect(Collectors.toList());
         }
 
-        Optional<Command<Log, ?>> o = subs.stream()
+        Optional<Command<Storage, ?>> o = subs.stream()
                 .filter(s -> s.getName().equalsIgnoreCase(args.get(0)))
                 .limit(1)
                 .findAny();
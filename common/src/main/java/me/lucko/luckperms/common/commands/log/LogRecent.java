@@ -26,7 +26,8 @@
 package me.lucko.luckperms.common.commands.log;
 
 import me.lucko.luckperms.common.actionlog.ExtendedLogEntry;
-import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogFilter;
+import me.lucko.luckperms.common.actionlog.LogPage;
 import me.lucko.luckperms.common.command.CommandResult;
 import me.lucko.luckperms.common.command.abstraction.SubCommand;
 import me.lucko.luckperms.common.command.access.CommandPermission;
@@ -37,6 +38,7 @@ import me.lucko.luckperms.common.locale.message.Message;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.sender.Sender;
 import me.lucko.luckperms.common.storage.DataConstraints;
+import me.lucko.luckperms.common.storage.Storage;
 import me.lucko.luckperms.common.utils.DurationFormatter;
 import me.lucko.luckperms.common.utils.Predicates;
 import me.lucko.luckperms.common.utils.Uuids;
@@ -46,7 +48,7 @@ import java.util.Map;
 import java.util.SortedMap;
 import java.util.UUID;
 
-public class LogRecent extends SubCommand<Log> {
+public class LogRecent extends SubCommand<Storage> {
     private static final int ENTRIES_PER_PAGE = 10;
     
     public LogRecent(LocaleManager locale) {
@@ -54,10 +56,10 @@ public class LogRecent extends SubCommand<Log> {
     }
 
     @Override
-    public CommandResult execute(LuckPermsPlugin plugin, Sender sender, Log log, List<String> args, String label) {
+    public CommandResult execute(LuckPermsPlugin plugin, Sender sender, Storage storage, List<String> args, String label) {
         if (args.isEmpty()) {
             // No page or user
-            return showLog(log.getRecentMaxPages(ENTRIES_PER_PAGE), null, sender, log);
+            return showLog(LogPage.LAST_PAGE, null, sender, storage);
         }
 
         if (args.size() == 1) {
@@ -65,7 +67,7 @@ public class LogRecent extends SubCommand<Log> {
             try {
                 int p = Integer.parseInt(args.get(0));
                 // page
-                return showLog(p, null, sender, log);
+                return showLog(p, null, sender, storage);
             } catch (NumberFormatException ignored) {
             }
         }
@@ -103,32 +105,38 @@ public class LogRecent extends SubCommand<Log> {
 
         if (args.size() != 2) {
             // Just user
-            return showLog(log.getRecentMaxPages(uuid, ENTRIES_PER_PAGE), uuid, sender, log);
+            return showLog(LogPage.LAST_PAGE, uuid, sender, storage);
         } else {
             try {
                 int p = Integer.parseInt(args.get(1));
                 // User and page
-                return showLog(p, uuid, sender, log);
+                return showLog(p, uuid, sender, storage);
             } catch (NumberFormatException e) {
                 // Invalid page
-                return showLog(-1, null, sender, log);
+                return showLog(-1, null, sender, storage);
             }
         }
     }
 
-    private static CommandResult showLog(int page, UUID filter, Sender sender, Log log) {
-        int maxPage = (filter != null) ? log.getRecentMaxPages(filter, ENTRIES_PER_PAGE) : log.getRecentMaxPages(ENTRIES_PER_PAGE);
+    private static CommandResult showLog(int page, UUID filter, Sender sender, Storage storage) {
+        LogPage logPage = LogMainCommand.loadPage(storage, sender, filter != null ? LogFilter.actor(filter) : LogFilter.all(), page, ENTRIES_PER_PAGE);
+        if (logPage == null) {
+            return CommandResult.LOADING_ERROR;
+        }
+
+        int maxPage = logPage.getMaxPages();
         if (maxPage == 0) {
             Message.LOG_NO_ENTRIES.send(sender);
             return CommandResult.STATE_ERROR;
         }
 
+        page = logPage.getPageNumber();
         if (page < 1 || page > maxPage) {
             Message.LOG_INVALID_PAGE_RANGE.send(sender, maxPage);
             return CommandResult.INVALID_ARGS;
         }
 
-        SortedMap<Integer, ExtendedLogEntry> entries = (filter != null) ? log.getRecent(page, filter, ENTRIES_PER_PAGE) : log.getRecent(page, ENTRIES_PER_PAGE);
+        SortedMap<Integer, ExtendedLogEntry> entries = logPage.getContent();
         if (filter != null) {
             String name = entries.values().stream().findAny().get().getActorName();
             if (name.contains("@")) {
@@ -26,7 +26,8 @@
 package me.lucko.luckperms.common.commands.log;
 
 import me.lucko.luckperms.common.actionlog.ExtendedLogEntry;
-import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogFilter;
+import me.lucko.luckperms.common.actionlog.LogPage;
 import me.lucko.luckperms.common.command.CommandResult;
 import me.lucko.luckperms.common.command.abstraction.SubCommand;
 import me.lucko.luckperms.common.command.access.CommandPermission;
@@ -35,6 +36,7 @@ import me.lucko.luckperms.common.locale.command.CommandSpec;
 import me.lucko.luckperms.common.locale.message.Message;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.sender.Sender;
+import me.lucko.luckperms.common.storage.Storage;
 import me.lucko.luckperms.common.utils.DurationFormatter;
 import me.lucko.luckperms.common.utils.Predicates;
 
@@ -43,7 +45,7 @@ import java.util.Map;
 import java.util.SortedMap;
 import java.util.stream.Collectors;
 
-public class LogSearch extends SubCommand<Log> {
+public class LogSearch extends SubCommand<Storage> {
     private static final int ENTRIES_PER_PAGE = 10;
 
     public LogSearch(LocaleManager locale) {
@@ -51,8 +53,8 @@ public class LogSearch extends SubCommand<Log> {
     }
 
     @Override
-    public CommandResult execute(LuckPermsPlugin plugin, Sender sender, Log log, List<String> args, String label) {
-        int page = Integer.MIN_VALUE;
+    public CommandResult execute(LuckPermsPlugin plugin, Sender sender, Storage storage, List<String> args, String label) {
+        int page = LogPage.LAST_PAGE;
         if (args.size() > 1) {
             try {
                 page = Integer.parseInt(args.get(args.size() - 1));
@@ -63,22 +65,25 @@ public class LogSearch extends SubCommand<Log> {
 
         final String query = args.stream().collect(Collectors.joining(" "));
 
-        int maxPage = log.getSearchMaxPages(query, ENTRIES_PER_PAGE);
+        LogPage logPage = LogMainCommand.loadPage(storage, sender, LogFilter.search(query), page, ENTRIES_PER_PAGE);
+        if (logPage == null) {
+            return CommandResult.LOADING_ERROR;
+        }
+
+        int maxPage = logPage.getMaxPages();
         if (maxPage == 0) {
             Message.LOG_NO_ENTRIES.send(sender);
             return CommandResult.STATE_ERROR;
         }
 
-        if (page == Integer.MIN_VALUE) {
-            page = maxPage;
-        }
+        page = logPage.getPageNumber();
 
         if (page < 1 || page > maxPage) {
             Message.LOG_INVALID_PAGE_RANGE.send(sender, maxPage);
             return CommandResult.INVALID_ARGS;
         }
 
-        SortedMap<Integer, ExtendedLogEntry> entries = log.getSearch(page, query, ENTRIES_PER_PAGE);
+        SortedMap<Integer, ExtendedLogEntry> entries = logPage.getContent();
         Message.LOG_SEARCH_HEADER.send(sender, query, page, maxPage);
 
         long now = System.currentTimeMillis() / 1000L;
@@ -26,7 +26,8 @@
 package me.lucko.luckperms.common.commands.log;
 
 import me.lucko.luckperms.common.actionlog.ExtendedLogEntry;
-import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogFilter;
+import me.lucko.luckperms.common.actionlog.LogPage;
 import me.lucko.luckperms.common.command.CommandResult;
 import me.lucko.luckperms.common.command.abstraction.SubCommand;
 import me.lucko.luckperms.common.command.access.CommandPermission;
@@ -37,6 +38,7 @@ import me.lucko.luckperms.common.locale.message.Message;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.sender.Sender;
 import me.lucko.luckperms.common.storage.DataConstraints;
+import me.lucko.luckperms.common.storage.Storage;
 import me.lucko.luckperms.common.utils.DurationFormatter;
 import me.lucko.luckperms.common.utils.Predicates;
 
@@ -44,7 +46,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
 
-public class LogTrackHistory extends SubCommand<Log> {
+public class LogTrackHistory extends SubCommand<Storage> {
     private static final int ENTRIES_PER_PAGE = 10;
 
     public LogTrackHistory(LocaleManager locale) {
@@ -52,9 +54,9 @@ public class LogTrackHistory extends SubCommand<Log> {
     }
 
     @Override
-    public CommandResult execute(LuckPermsPlugin plugin, Sender sender, Log log, List<String> args, String label) {
+    public CommandResult execute(LuckPermsPlugin plugin, Sender sender, Storage storage, List<String> args, String label) {
         String track = args.get(0).toLowerCase();
-        int page = Integer.MIN_VALUE;
+        int page = LogPage.LAST_PAGE;
 
         if (args.size() == 2) {
             try {
@@ -71,22 +73,25 @@ public class LogTrackHistory extends SubCommand<Log> {
             return CommandResult.INVALID_ARGS;
         }
 
-        int maxPage = log.getTrackHistoryMaxPages(track, ENTRIES_PER_PAGE);
+        LogPage logPage = LogMainCommand.loadPage(storage, sender, LogFilter.track(track), page, ENTRIES_PER_PAGE);
+        if (logPage == null) {
+            return CommandResult.LOADING_ERROR;
+        }
+
+        int maxPage = logPage.getMaxPages();
         if (maxPage == 0) {
             Message.LOG_NO_ENTRIES.send(sender);
             return CommandResult.STATE_ERROR;
         }
 
-        if (page == Integer.MIN_VALUE) {
-            page = maxPage;
-        }
+        page = logPage.getPageNumber();
 
         if (page < 1 || page > maxPage) {
             Message.LOG_INVALID_PAGE_RANGE.send(sender, maxPage);
             return CommandResult.INVALID_ARGS;
         }
 
-        SortedMap<Integer, ExtendedLogEntry> entries = log.getTrackHistory(page, track, ENTRIES_PER_PAGE);
+        SortedMap<Integer, ExtendedLogEntry> entries = logPage.getContent();
         String name = entries.values().stream().findAny().get().getActedName();
         Message.LOG_HISTORY_TRACK_HEADER.send(sender, name, page, maxPage);
 
@@ -26,7 +26,8 @@
 package me.lucko.luckperms.common.commands.log;
 
 import me.lucko.luckperms.common.actionlog.ExtendedLogEntry;
-import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogFilter;
+import me.lucko.luckperms.common.actionlog.LogPage;
 import me.lucko.luckperms.common.command.CommandResult;
 import me.lucko.luckperms.common.command.abstraction.SubCommand;
 import me.lucko.luckperms.common.command.access.CommandPermission;
@@ -37,6 +38,7 @@ import me.lucko.luckperms.common.locale.message.Message;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.sender.Sender;
 import me.lucko.luckperms.common.storage.DataConstraints;
+import me.lucko.luckperms.common.storage.Storage;
 import me.lucko.luckperms.common.utils.DurationFormatter;
 import me.lucko.luckperms.common.utils.Predicates;
 import me.lucko.luckperms.common.utils.Uuids;
@@ -46,7 +48,7 @@ import java.util.Map;
 import java.util.SortedMap;
 import java.util.UUID;
 
-public class LogUserHistory extends SubCommand<Log> {
+public class LogUserHistory extends SubCommand<Storage> {
     private static final int ENTRIES_PER_PAGE = 10;
 
     public LogUserHistory(LocaleManager locale) {
@@ -54,16 +56,17 @@ public class LogUserHistory extends SubCommand<Log> {
     }
 
     @Override
-    public CommandResult execute(LuckPermsPlugin plugin, Sender sender, Log log, List<String> args, String label) {
+    public CommandResult execute(LuckPermsPlugin plugin, Sender sender, Storage storage, List<String> args, String label) {
         String target = args.get(0);
-        int page = Integer.MIN_VALUE;
+        int page = LogPage.LAST_PAGE;
 
         if (args.size() == 2) {
             try {
                 page = Integer.parseInt(args.get(1));
             } catch (NumberFormatException e) {
                 // invalid page
-                return showLog(-1, null, sender, log);
+                Message.LOG_INVALID_PAGE.send(sender);
+                return CommandResult.INVALID_ARGS;
             }
         }
 
@@ -96,26 +99,28 @@ public class LogUserHistory extends SubCommand<Log> {
             }
         }
 
-        if (page == Integer.MIN_VALUE) {
-            page = log.getUserHistoryMaxPages(uuid, ENTRIES_PER_PAGE);
-        }
-
-        return showLog(page, uuid, sender, log);
+        return showLog(page, uuid, sender, storage);
     }
 
-    private static CommandResult showLog(int page, UUID user, Sender sender, Log log) {
-        int maxPage = log.getUserHistoryMaxPages(user, ENTRIES_PER_PAGE);
+    private static CommandResult showLog(int page, UUID user, Sender sender, Storage storage) {
+        LogPage logPage = LogMainCommand.loadPage(storage, sender, LogFilter.user(user), page, ENTRIES_PER_PAGE);
+        if (logPage == null) {
+            return CommandResult.LOADING_ERROR;
+        }
+
+        int maxPage = logPage.getMaxPages();
         if (maxPage == 0) {
             Message.LOG_NO_ENTRIES.send(sender);
             return CommandResult.STATE_ERROR;
         }
 
+        page = logPage.getPageNumber();
         if (page < 1 || page > maxPage) {
             Message.LOG_INVALID_PAGE_RANGE.send(sender, maxPage);
             return CommandResult.INVALID_ARGS;
         }
 
-        SortedMap<Integer, ExtendedLogEntry> entries = log.getUserHistory(page, user, ENTRIES_PER_PAGE);
+        SortedMap<Integer, ExtendedLogEntry> entries = logPage.getContent();
         String name = entries.values().stream().findAny().get().getActedName();
         Message.LOG_HISTORY_USER_HEADER.send(sender, name, page, maxPage);
 
@@ -30,6 +30,7 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 
 import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdateBuilder;
+import me.lucko.luckperms.common.bulkupdate.BulkUpdateStatistics;
 import me.lucko.luckperms.common.bulkupdate.DataType;
 import me.lucko.luckperms.common.bulkupdate.action.DeleteAction;
 import me.lucko.luckperms.common.bulkupdate.action.UpdateAction;
@@ -47,6 +48,7 @@ import me.lucko.luckperms.common.locale.LocaleManager;
 import me.lucko.luckperms.common.locale.command.CommandSpec;
 import me.lucko.luckperms.common.locale.message.Message;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.plugin.SchedulerTask;
 import me.lucko.luckperms.common.sender.Sender;
 import me.lucko.luckperms.common.utils.Predicates;
 
@@ -55,6 +57,8 @@ import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 public class BulkUpdateCommand extends SingleCommand {
+    private static final long PROGRESS_INTERVAL_SECONDS = 5;
+
     private final Cache<String, BulkUpdate> pendingOperations = Caffeine.newBuilder().expireAfterWrite(30, TimeUnit.SECONDS).build();
 
     public BulkUpdateCommand(LocaleManager locale) {
@@ -63,21 +67,42 @@ public class BulkUpdateCommand extends SingleCommand {
 
     @Override
     public CommandResult execute(LuckPermsPlugin plugin, Sender sender, List<String> args, String label) throws CommandException {
-        if (args.size() == 2 && args.get(0).equalsIgnoreCase("confirm")) {
+        if (args.size() == 2 && (args.get(0).equalsIgnoreCase("confirm") || args.get(0).equalsIgnoreCase("dryrun"))) {
+            boolean dryRun = args.get(0).equalsIgnoreCase("dryrun");
 
             String id = args.get(1);
-            BulkUpdate operation = this.pendingOperations.asMap().remove(id);
+            BulkUpdate operation = dryRun ? this.pendingOperations.getIfPresent(id) : this.pendingOperations.asMap().remove(id);
 
             if (operation == null) {
                 Message.BULK_UPDATE_UNKNOWN_ID.send(sender, id);
                 return CommandResult.INVALID_ARGS;
             }
 
-            Message.BULK_UPDATE_STARTING.send(sender);
+            if (dryRun) {
+                // keep the operation around so it can be confirmed afterwards
+                this.pendingOperations.put(id, operation);
+                operation = operation.asDryRun();
+                Message.BULK_UPDATE_DRY_RUN_STARTING.send(sender);
+            } else {
+                Message.BULK_UPDATE_STARTING.send(sender);
+            }
+
+            BulkUpdateStatistics statistics = operation.getStatistics();
+            SchedulerTask progressTask = plugin.getBootstrap().getScheduler().asyncRepeating(
+                    () -> Message.BULK_UPDATE_PROGRESS.send(sender, statistics.getProcessedUsers(), statistics.getProcessedGroups()),
+                    PROGRESS_INTERVAL_SECONDS, TimeUnit.SECONDS
+            );
+
             plugin.getStorage().applyBulkUpdate(operation).whenCompleteAsync((v, ex) -> {
+                progressTask.cancel();
                 if (ex == null) {
-                    plugin.getUpdateTaskBuffer().requestDirectly();
-                    Message.BULK_UPDATE_SUCCESS.send(sender);
+                    if (dryRun) {
+                        Message.BULK_UPDATE_DRY_RUN_SUCCESS.send(sender);
+                    } else {
+                        plugin.getUpdateTaskBuffer().requestDirectly();
+                        Message.BULK_UPDATE_SUCCESS.send(sender);
+                    }
+                    Message.BULK_UPDATE_STATISTICS.send(sender, statistics.getAffectedUsers(), statistics.getAffectedGroups(), statistics.getAffectedNodes());
                 } else {
                     ex.printStackTrace();
                     Message.BULK_UPDATE_FAILURE.send(sender);
@@ -152,7 +177,7 @@ public class BulkUpdateCommand extends SingleCommand {
         this.pendingOperations.put(id, bulkUpdate);
 
         Message.BULK_UPDATE_QUEUED.send(sender, bulkUpdate.buildAsSql().toReadableString().replace("{table}", bulkUpdate.getDataType().getName()));
-        Message.BULK_UPDATE_CONFIRM.send(sender, label, id);
+        Message.BULK_UPDATE_CONFIRM.send(sender, label, id, label, id);
 
         return CommandResult.SUCCESS;
     }
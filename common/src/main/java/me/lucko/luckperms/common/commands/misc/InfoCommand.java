@@ -40,6 +40,7 @@ import me.lucko.luckperms.common.utils.Predicates;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 public class InfoCommand extends SingleCommand {
     public InfoCommand(LocaleManager locale) {
@@ -61,8 +62,21 @@ public class InfoCommand extends SingleCommand {
             Message.EMPTY.send(sender, "&f-     &3" + e.getKey() + ": " + formatValue(e.getValue()));
         }
 
+        Message.EMPTY.send(sender, "&f-  &bMessaging:");
+        Optional<InternalMessagingService> messagingService = plugin.getMessagingService();
+        Message.EMPTY.send(sender, "&f-     &3Type: &f" + messagingService.map(InternalMessagingService::getName).orElse("None"));
+        if (messagingService.isPresent()) {
+            for (Map.Entry<String, String> e : messagingService.get().getMeta().entrySet()) {
+                Message.EMPTY.send(sender, "&f-     &3" + e.getKey() + ": " + formatValue(e.getValue()));
+            }
+        }
+
+        Message.EMPTY.send(sender, "&f-  &bLogins:");
+        for (Map.Entry<String, String> e : plugin.getConnectionListener().getMeta().entrySet()) {
+            Message.EMPTY.send(sender, "&f-     &3" + e.getKey() + ": " + formatValue(e.getValue()));
+        }
+
         Message.INFO_MIDDLE.send(sender,
-                plugin.getMessagingService().map(InternalMessagingService::getName).orElse("None"),
                 plugin.getContextManager().getStaticContextString().orElse("None"),
                 plugin.getBootstrap().getPlayerCount(),
                 plugin.getConnectionListener().getUniqueConnections().size(),
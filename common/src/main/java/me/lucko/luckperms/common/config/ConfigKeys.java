@@ -36,10 +36,12 @@ import me.lucko.luckperms.common.assignments.AssignmentRule;
 import me.lucko.luckperms.common.config.keys.BooleanKey;
 import me.lucko.luckperms.common.config.keys.CustomKey;
 import me.lucko.luckperms.common.config.keys.EnduringKey;
+import me.lucko.luckperms.common.config.keys.IntegerKey;
 import me.lucko.luckperms.common.config.keys.LowercaseStringKey;
 import me.lucko.luckperms.common.config.keys.MapKey;
 import me.lucko.luckperms.common.config.keys.StringKey;
 import me.lucko.luckperms.common.graph.TraversalAlgorithm;
+import me.lucko.luckperms.common.listener.LoginPipeline;
 import me.lucko.luckperms.common.metastacking.SimpleMetaStackDefinition;
 import me.lucko.luckperms.common.metastacking.StandardStackElements;
 import me.lucko.luckperms.common.model.TemporaryModifier;
@@ -95,6 +97,11 @@ public final class ConfigKeys {
         return val;
     }));
 
+    /**
+     * If syncs should only reload the holders which have changed since the last sync, where the storage method supports it
+     */
+    public static final ConfigKey<Boolean> INCREMENTAL_SYNC = EnduringKey.wrap(BooleanKey.of("incremental-sync", false));
+
     /**
      * The lookup settings for contexts (care should be taken to not mutate this method)
      */
@@ -120,6 +127,35 @@ public final class ConfigKeys {
      */
     public static final ConfigKey<Boolean> ALLOW_INVALID_USERNAMES = BooleanKey.of("allow-invalid-usernames", false);
 
+    /**
+     * The number of logins which can load data at once. A value <= 0 matches the storage connection pool size.
+     */
+    public static final ConfigKey<Integer> LOGIN_MAX_CONCURRENT_LOADS = EnduringKey.wrap(CustomKey.of(c -> {
+        int val = c.getInt("login.max-concurrent-loads", 0);
+        if (val <= 0) {
+            val = ConfigKeys.DATABASE_VALUES.get(c).getMaxPoolSize();
+        }
+        return Math.max(1, val);
+    }));
+
+    /**
+     * How many seconds a login waits for its data to load
+     */
+    public static final ConfigKey<Integer> LOGIN_TIMEOUT = CustomKey.of(c -> Math.max(1, c.getInt("login.timeout", 30)));
+
+    /**
+     * What happens to a login when its data isn't loaded in time
+     */
+    public static final ConfigKey<LoginPipeline.TimeoutAction> LOGIN_TIMEOUT_ACTION = CustomKey.of(c -> {
+        return c.getString("login.timeout-action", "kick").equalsIgnoreCase("allow") ? LoginPipeline.TimeoutAction.ALLOW : LoginPipeline.TimeoutAction.KICK;
+    });
+
+    /**
+     * If proxies should tell other servers when a player is about to connect, and
+     * if servers should start loading data when told
+     */
+    public static final ConfigKey<Boolean> LOGIN_PREFETCH_HINTS = BooleanKey.of("login.prefetch-hints", false);
+
     /**
      * If LuckPerms should produce extra logging output when it handles logins.
      */
@@ -358,6 +394,26 @@ public final class ConfigKeys {
      */
     public static final ConfigKey<Boolean> VAULT_DEBUG = BooleanKey.of("vault-debug", false);
 
+    /**
+     * If Vault lookups for offline players should be answered from a cache which is loaded in the background
+     */
+    public static final ConfigKey<Boolean> VAULT_OFFLINE_CACHE = EnduringKey.wrap(BooleanKey.of("vault-offline-cache.enabled", false));
+
+    /**
+     * The maximum number of offline players to hold in the Vault offline cache
+     */
+    public static final ConfigKey<Integer> VAULT_OFFLINE_CACHE_SIZE = EnduringKey.wrap(CustomKey.of(c -> Math.max(1, c.getInt("vault-offline-cache.max-size", 1000))));
+
+    /**
+     * The number of seconds after which data in the Vault offline cache is reloaded
+     */
+    public static final ConfigKey<Integer> VAULT_OFFLINE_CACHE_TTL = EnduringKey.wrap(CustomKey.of(c -> Math.max(1, c.getInt("vault-offline-cache.ttl", 300))));
+
+    /**
+     * The result of Vault permission checks for offline players whose data hasn't been loaded yet
+     */
+    public static final ConfigKey<Boolean> VAULT_OFFLINE_CACHE_DEFAULT = BooleanKey.of("vault-offline-cache.default-permission-value", false);
+
     /**
      * The world rewrites map
      */
@@ -413,6 +469,11 @@ public final class ConfigKeys {
      */
     public static final ConfigKey<String> SQL_TABLE_PREFIX = EnduringKey.wrap(StringKey.of("data.table_prefix", "luckperms_"));
 
+    /**
+     * If uuids in SQL tables should be stored in binary columns, converting any existing tables
+     */
+    public static final ConfigKey<Boolean> SQL_BINARY_UUIDS = EnduringKey.wrap(BooleanKey.of("data.binary-uuids", false));
+
     /**
      * The prefix for any MongoDB collections
      */
@@ -428,11 +489,41 @@ public final class ConfigKeys {
      */
     public static final ConfigKey<String> STORAGE_METHOD = EnduringKey.wrap(LowercaseStringKey.of("storage-method", "h2"));
 
+    /**
+     * The number of threads used to run storage operations
+     */
+    public static final ConfigKey<Integer> STORAGE_EXECUTOR_THREADS = EnduringKey.wrap(CustomKey.of(c -> Math.max(1, c.getInt("storage-executor.threads", 4))));
+
+    /**
+     * The number of queued storage operations at which further operations are rejected
+     */
+    public static final ConfigKey<Integer> STORAGE_EXECUTOR_QUEUE_LIMIT = EnduringKey.wrap(IntegerKey.of("storage-executor.queue-limit", 1000));
+
+    /**
+     * If groups and tracks should be kept in a local snapshot, and loaded from it on startup
+     */
+    public static final ConfigKey<Boolean> LOCAL_SNAPSHOT = EnduringKey.wrap(BooleanKey.of("local-snapshot", false));
+
     /**
      * If storage files should be monitored for changes
      */
     public static final ConfigKey<Boolean> WATCH_FILES = BooleanKey.of("watch-files", true);
 
+    /**
+     * The size in KB at which the file action log is rotated into a new segment
+     */
+    public static final ConfigKey<Integer> FILE_ACTION_LOG_MAX_SEGMENT_SIZE = EnduringKey.wrap(IntegerKey.of("file-action-log.max-segment-size", 1024));
+
+    /**
+     * The age in hours at which the file action log is rotated into a new segment
+     */
+    public static final ConfigKey<Integer> FILE_ACTION_LOG_MAX_SEGMENT_AGE = EnduringKey.wrap(IntegerKey.of("file-action-log.max-segment-age", -1));
+
+    /**
+     * If rotated file action log segments should be compressed
+     */
+    public static final ConfigKey<Boolean> FILE_ACTION_LOG_COMPRESS_SEGMENTS = EnduringKey.wrap(BooleanKey.of("file-action-log.compress-rotated-segments", true));
+
     /**
      * If split storage is being used
      */
@@ -456,11 +547,36 @@ public final class ConfigKeys {
      */
     public static final ConfigKey<String> MESSAGING_SERVICE = EnduringKey.wrap(LowercaseStringKey.of("messaging-service", "none"));
 
+    /**
+     * If the sql messaging service should listen for notifications of new messages, when using PostgreSQL
+     */
+    public static final ConfigKey<Boolean> SQL_MESSAGING_LISTEN_NOTIFY = EnduringKey.wrap(BooleanKey.of("sql-messaging-listen-notify", false));
+
+    /**
+     * If the kagecloud messaging service should combine messages sent in quick succession into a single packet
+     */
+    public static final ConfigKey<Boolean> KAGECLOUD_BATCH_MESSAGES = EnduringKey.wrap(BooleanKey.of("kagecloud-batch-messages", false));
+
+    /**
+     * If the kagecloud messaging service should also forward updates to a user straight to the server the user is connected to
+     */
+    public static final ConfigKey<Boolean> KAGECLOUD_ROUTE_USER_UPDATES = EnduringKey.wrap(BooleanKey.of("kagecloud-route-user-updates", false));
+
     /**
      * If updates should be automatically pushed by the messaging service
      */
     public static final ConfigKey<Boolean> AUTO_PUSH_UPDATES = EnduringKey.wrap(BooleanKey.of("auto-push-updates", true));
 
+    /**
+     * If updates to groups and tracks should be pushed as messages targeting the changed object, instead of a full sync
+     */
+    public static final ConfigKey<Boolean> PUSH_TARGETED_UPDATES = EnduringKey.wrap(BooleanKey.of("push-targeted-updates", false));
+
+    /**
+     * If updates to users made in quick succession should be combined into a single message
+     */
+    public static final ConfigKey<Boolean> PUSH_BATCHED_USER_UPDATES = EnduringKey.wrap(BooleanKey.of("push-batched-user-updates", false));
+
     /**
      * If LuckPerms should push logging entries to connected servers via the messaging service
      */
@@ -28,6 +28,8 @@ package me.lucko.luckperms.common.contexts;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 
 import me.lucko.luckperms.api.Contexts;
 import me.lucko.luckperms.api.caching.MetaContexts;
@@ -71,6 +73,9 @@ public abstract class AbstractContextManager<T> implements ContextManager<T> {
     // caches static context lookups
     private final StaticLookupCache staticLookupCache = new StaticLookupCache();
 
+    // pool of canonical contexts instances, so lookups in the same contexts share an instance
+    private final Interner<Contexts> contextsPool = Interners.newWeakInterner();
+
     protected AbstractContextManager(LuckPermsPlugin plugin, Class<T> subjectClass) {
         this.plugin = plugin;
         this.subjectClass = subjectClass;
@@ -138,6 +143,11 @@ public abstract class AbstractContextManager<T> implements ContextManager<T> {
         }
     }
 
+    @Override
+    public Contexts intern(Contexts contexts) {
+        return this.contextsPool.intern(contexts);
+    }
+
     @Override
     public Contexts formContexts(ImmutableContextSet contextSet) {
         return Contexts.of(contextSet, this.plugin.getConfiguration().get(ConfigKeys.LOOKUP_SETTINGS));
@@ -171,6 +181,16 @@ public abstract class AbstractContextManager<T> implements ContextManager<T> {
         }
 
         this.subjectCaches.invalidate(subject);
+        onContextsChange(subject);
+    }
+
+    /**
+     * Called when the contexts for a subject have changed, or have been invalidated.
+     *
+     * @param subject the subject
+     */
+    protected void onContextsChange(T subject) {
+
     }
 
     Contexts calculate(T subject) {
@@ -190,7 +210,7 @@ public abstract class AbstractContextManager<T> implements ContextManager<T> {
             }
         }
 
-        return formContexts(subject, accumulator.makeImmutable());
+        return intern(formContexts(subject, accumulator.makeImmutable()));
     }
 
     private Contexts calculateStatic() {
@@ -210,7 +230,7 @@ public abstract class AbstractContextManager<T> implements ContextManager<T> {
             }
         }
 
-        return formContexts(accumulator.makeImmutable());
+        return intern(formContexts(accumulator.makeImmutable()));
     }
 
     private final class StaticLookupCache extends ExpiringCache<Contexts> {
@@ -113,6 +113,17 @@ public interface ContextManager<T> {
      */
     Contexts formContexts(ImmutableContextSet contextSet);
 
+    /**
+     * Gets the canonical instance of the given {@link Contexts}.
+     *
+     * <p>Equal contexts passed to this method will resolve to the same instance,
+     * meaning they can be compared (e.g. as cache keys) by identity.</p>
+     *
+     * @param contexts the contexts
+     * @return the canonical instance
+     */
+    Contexts intern(Contexts contexts);
+
     /**
      * Forms a "default" {@link MetaContexts} instance from {@link Contexts}.
      *
@@ -43,6 +43,9 @@ public final class ContextsCache<T> extends ExpiringCache<Contexts> {
     private final T subject;
     private final AbstractContextManager<T> contextManager;
 
+    // the previously supplied value, used to detect changes
+    private volatile Contexts previous = null;
+
     public ContextsCache(T subject, AbstractContextManager<T> contextManager) {
         super(50L, TimeUnit.MILLISECONDS); // expire roughly every tick
         this.subject = subject;
@@ -52,7 +55,12 @@ public final class ContextsCache<T> extends ExpiringCache<Contexts> {
     @Nonnull
     @Override
     protected Contexts supply() {
-        return this.contextManager.calculate(this.subject);
+        Contexts contexts = this.contextManager.calculate(this.subject);
+        if (this.previous != null && !this.previous.equals(contexts)) {
+            this.contextManager.onContextsChange(this.subject);
+        }
+        this.previous = contexts;
+        return contexts;
     }
 
     public Contexts getContexts() {
@@ -192,6 +192,18 @@ public abstract class AbstractEventBus<P> implements EventBus, AutoCloseable {
         }
     }
 
+    /**
+     * Gets if there are any handlers registered in this event bus which would
+     * receive an event of the given type
+     *
+     * @param eventClass the event class
+     * @return true if there are applicable handlers
+     */
+    public boolean shouldPost(Class<? extends LuckPermsEvent> eventClass) {
+        List<LuckPermsEventHandler<?>> handlers = this.handlerCache.get(eventClass);
+        return handlers != null && !handlers.isEmpty();
+    }
+
     /**
      * Fires the given event to all registered handlers in this event bus
      *
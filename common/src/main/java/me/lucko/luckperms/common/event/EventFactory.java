@@ -25,6 +25,8 @@
 
 package me.lucko.luckperms.common.event;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
@@ -36,9 +38,14 @@ import me.lucko.luckperms.api.caching.UserData;
 import me.lucko.luckperms.api.event.LuckPermsEvent;
 import me.lucko.luckperms.api.event.cause.CreationCause;
 import me.lucko.luckperms.api.event.cause.DeletionCause;
+import me.lucko.luckperms.api.event.group.GroupDataRecalculateEvent;
 import me.lucko.luckperms.api.event.log.LogBroadcastEvent;
 import me.lucko.luckperms.api.event.log.LogNotifyEvent;
+import me.lucko.luckperms.api.event.node.NodeAddEvent;
+import me.lucko.luckperms.api.event.node.NodeClearEvent;
+import me.lucko.luckperms.api.event.node.NodeRemoveEvent;
 import me.lucko.luckperms.api.event.source.Source;
+import me.lucko.luckperms.api.event.user.UserDataRecalculateEvent;
 import me.lucko.luckperms.common.api.delegates.model.ApiPermissionHolder;
 import me.lucko.luckperms.common.api.delegates.model.ApiUser;
 import me.lucko.luckperms.common.event.impl.EventConfigReload;
@@ -85,22 +92,36 @@ import me.lucko.luckperms.common.sender.Sender;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.annotation.Nullable;
 
 public final class EventFactory {
-    private final AbstractEventBus eventBus;
+    private final AbstractEventBus<?> eventBus;
 
-    public EventFactory(AbstractEventBus eventBus) {
+    public EventFactory(AbstractEventBus<?> eventBus) {
         this.eventBus = eventBus;
     }
 
-    public AbstractEventBus getEventBus() {
+    public AbstractEventBus<?> getEventBus() {
         return this.eventBus;
     }
 
+    /**
+     * Gets if there are any handlers which would receive an event of the given type.
+     *
+     * <p>Used to avoid constructing events (and any data they contain) which
+     * nobody is listening for.</p>
+     *
+     * @param eventClass the event class
+     * @return true if the event should be posted
+     */
+    public boolean shouldPost(Class<? extends LuckPermsEvent> eventClass) {
+        return this.eventBus.shouldPost(eventClass);
+    }
+
     private void fireEventAsync(LuckPermsEvent event) {
         this.eventBus.fireEventAsync(event);
     }
@@ -168,20 +189,38 @@ public final class EventFactory {
     }
 
     public void handleNodeAdd(Node node, PermissionHolder target, Collection<? extends Node> before, Collection<? extends Node> after) {
-        EventNodeAdd event = new EventNodeAdd(node, getDelegate(target), ImmutableSet.copyOf(before), ImmutableSet.copyOf(after));
+        if (!shouldPost(NodeAddEvent.class)) {
+            return;
+        }
+
+        EventNodeAdd event = new EventNodeAdd(node, getDelegate(target), lazyCopy(before), lazyCopy(after));
         fireEventAsync(event);
     }
 
     public void handleNodeClear(PermissionHolder target, Collection<? extends Node> before, Collection<? extends Node> after) {
-        EventNodeClear event = new EventNodeClear(getDelegate(target), ImmutableSet.copyOf(before), ImmutableSet.copyOf(after));
+        if (!shouldPost(NodeClearEvent.class)) {
+            return;
+        }
+
+        EventNodeClear event = new EventNodeClear(getDelegate(target), lazyCopy(before), lazyCopy(after));
         fireEventAsync(event);
     }
 
     public void handleNodeRemove(Node node, PermissionHolder target, Collection<? extends Node> before, Collection<? extends Node> after) {
-        EventNodeRemove event = new EventNodeRemove(node, getDelegate(target), ImmutableSet.copyOf(before), ImmutableSet.copyOf(after));
+        if (!shouldPost(NodeRemoveEvent.class)) {
+            return;
+        }
+
+        EventNodeRemove event = new EventNodeRemove(node, getDelegate(target), lazyCopy(before), lazyCopy(after));
         fireEventAsync(event);
     }
 
+    // the node collections passed to these events are already immutable snapshots,
+    // so we only need to copy them into a set if a handler actually reads them
+    private static Supplier<Set<Node>> lazyCopy(Collection<? extends Node> nodes) {
+        return Suppliers.memoize(() -> ImmutableSet.copyOf(nodes));
+    }
+
     public void handleConfigReload() {
         EventConfigReload event = new EventConfigReload();
         fireEventAsync(event);
@@ -248,10 +287,18 @@ public final class EventFactory {
 
     public void handleDataRecalculate(PermissionHolder holder) {
         if (holder.getType().isUser()) {
+            if (!shouldPost(UserDataRecalculateEvent.class)) {
+                return;
+            }
+
             User user = (User) holder;
             EventUserDataRecalculate event = new EventUserDataRecalculate(user.getApiDelegate(), user.getCachedData());
             fireEventAsync(event);
         } else {
+            if (!shouldPost(GroupDataRecalculateEvent.class)) {
+                return;
+            }
+
             Group group = (Group) holder;
             EventGroupDataRecalculate event = new EventGroupDataRecalculate(group.getApiDelegate(), group.getCachedData());
             fireEventAsync(event);
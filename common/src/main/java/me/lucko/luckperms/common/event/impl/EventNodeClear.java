@@ -25,6 +25,8 @@
 
 package me.lucko.luckperms.common.event.impl;
 
+import com.google.common.base.Supplier;
+
 import me.lucko.luckperms.api.Group;
 import me.lucko.luckperms.api.Node;
 import me.lucko.luckperms.api.PermissionHolder;
@@ -39,10 +41,10 @@ import javax.annotation.Nonnull;
 public class EventNodeClear extends AbstractEvent implements NodeClearEvent {
 
     private final PermissionHolder target;
-    private final Set<Node> dataBefore;
-    private final Set<Node> dataAfter;
+    private final Supplier<Set<Node>> dataBefore;
+    private final Supplier<Set<Node>> dataAfter;
 
-    public EventNodeClear(PermissionHolder target, Set<Node> dataBefore, Set<Node> dataAfter) {
+    public EventNodeClear(PermissionHolder target, Supplier<Set<Node>> dataBefore, Supplier<Set<Node>> dataAfter) {
         this.target = target;
         this.dataBefore = dataBefore;
         this.dataAfter = dataAfter;
@@ -67,13 +69,13 @@ public class EventNodeClear extends AbstractEvent implements NodeClearEvent {
     @Nonnull
     @Override
     public Set<Node> getDataBefore() {
-        return this.dataBefore;
+        return this.dataBefore.get();
     }
 
     @Nonnull
     @Override
     public Set<Node> getDataAfter() {
-        return this.dataAfter;
+        return this.dataAfter.get();
     }
 
     @Override
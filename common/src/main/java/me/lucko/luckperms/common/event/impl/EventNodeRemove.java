@@ -25,6 +25,8 @@
 
 package me.lucko.luckperms.common.event.impl;
 
+import com.google.common.base.Supplier;
+
 import me.lucko.luckperms.api.Group;
 import me.lucko.luckperms.api.Node;
 import me.lucko.luckperms.api.PermissionHolder;
@@ -40,10 +42,10 @@ public class EventNodeRemove extends AbstractEvent implements NodeRemoveEvent {
 
     private final Node node;
     private final PermissionHolder target;
-    private final Set<Node> dataBefore;
-    private final Set<Node> dataAfter;
+    private final Supplier<Set<Node>> dataBefore;
+    private final Supplier<Set<Node>> dataAfter;
 
-    public EventNodeRemove(Node node, PermissionHolder target, Set<Node> dataBefore, Set<Node> dataAfter) {
+    public EventNodeRemove(Node node, PermissionHolder target, Supplier<Set<Node>> dataBefore, Supplier<Set<Node>> dataAfter) {
         this.node = node;
         this.target = target;
         this.dataBefore = dataBefore;
@@ -75,13 +77,13 @@ public class EventNodeRemove extends AbstractEvent implements NodeRemoveEvent {
     @Nonnull
     @Override
     public Set<Node> getDataBefore() {
-        return this.dataBefore;
+        return this.dataBefore.get();
     }
 
     @Nonnull
     @Override
     public Set<Node> getDataAfter() {
-        return this.dataAfter;
+        return this.dataAfter.get();
     }
 
     @Override
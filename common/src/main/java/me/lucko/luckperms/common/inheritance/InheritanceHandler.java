@@ -28,13 +28,18 @@ package me.lucko.luckperms.common.inheritance;
 import me.lucko.luckperms.api.Contexts;
 import me.lucko.luckperms.api.LookupSetting;
 import me.lucko.luckperms.api.Node;
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.graph.TraversalAlgorithm;
 import me.lucko.luckperms.common.model.Group;
 import me.lucko.luckperms.common.model.PermissionHolder;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Provides {@link InheritanceGraph}s.
@@ -73,6 +78,31 @@ public class InheritanceHandler {
         return new ContextualGraph(this.plugin, contexts);
     }
 
+    /**
+     * Finds the loaded holders which inherit (directly or indirectly) from any of the given groups.
+     *
+     * <p>Holders are matched by the names of the groups they inherit, so this also finds the
+     * dependents of groups which have since been deleted and unloaded.</p>
+     *
+     * @param groups the names of the groups
+     * @return the dependent holders
+     */
+    public List<PermissionHolder> findDependents(Collection<String> groups) {
+        TraversalAlgorithm algorithm = this.plugin.getConfiguration().get(ConfigKeys.INHERITANCE_TRAVERSAL_ALGORITHM);
+        return Stream.concat(this.plugin.getGroupManager().getAll().values().stream(), this.plugin.getUserManager().getAll().values().stream())
+                .filter(holder -> {
+                    for (PermissionHolder h : this.nonContextualGraph.traverse(algorithm, holder)) {
+                        for (Node n : h.getOwnGroupNodes()) {
+                            if (groups.contains(n.getGroupName())) {
+                                return true;
+                            }
+                        }
+                    }
+                    return false;
+                })
+                .collect(Collectors.toList());
+    }
+
     private static final class NonContextualGraph implements InheritanceGraph {
         private final LuckPermsPlugin plugin;
 
@@ -31,20 +31,30 @@ import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.storage.PlayerSaveResultImpl;
+import me.lucko.luckperms.common.storage.StorageExecutor;
+import me.lucko.luckperms.common.storage.StorageExecutor.Priority;
 
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 
+import javax.annotation.Nullable;
+
 /**
  * Abstract listener utility for handling new player connections
  */
 public abstract class AbstractConnectionListener implements ConnectionListener {
     private final LuckPermsPlugin plugin;
     private final Set<UUID> uniqueConnections = ConcurrentHashMap.newKeySet();
+    private final LoginPipeline loginPipeline;
 
     protected AbstractConnectionListener(LuckPermsPlugin plugin) {
         this.plugin = plugin;
+        this.loginPipeline = new LoginPipeline(plugin, this::processLogin);
     }
 
     @Override
@@ -52,18 +62,39 @@ public abstract class AbstractConnectionListener implements ConnectionListener {
         return this.uniqueConnections;
     }
 
+    @Override
+    public void prefetch(UUID uuid, String username) {
+        this.loginPipeline.prefetch(uuid, username);
+    }
+
+    @Override
+    public Map<String, String> getMeta() {
+        return this.loginPipeline.getMeta();
+    }
+
     protected void recordConnection(UUID uuid) {
         this.uniqueConnections.add(uuid);
     }
 
+    /**
+     * Loads data for a connecting player, through the {@link LoginPipeline}.
+     *
+     * @param u the uuid of the player
+     * @param username the username of the player
+     * @return the loaded user
+     */
     public User loadUser(UUID u, String username) {
+        return this.loginPipeline.load(u, username);
+    }
+
+    private User processLogin(UUID u, String username, @Nullable CompletableFuture<User> prefetched) {
         final long startTime = System.currentTimeMillis();
 
         // register with the housekeeper to avoid accidental unloads
         this.plugin.getUserManager().getHouseKeeper().registerUsage(u);
 
         // save uuid data.
-        PlayerSaveResult saveResult = this.plugin.getStorage().savePlayerData(u, username).join();
+        PlayerSaveResult saveResult = StorageExecutor.withPriority(Priority.LOGIN, () -> this.plugin.getStorage().savePlayerData(u, username)).join();
         if (saveResult.includes(PlayerSaveResultImpl.Status.CLEAN_INSERT)) {
             this.plugin.getEventFactory().handleUserFirstLogin(u, username);
         }
@@ -74,7 +105,18 @@ public abstract class AbstractConnectionListener implements ConnectionListener {
             this.plugin.getLogger().warn("This is usually because the server is not authenticating correctly. If you're using BungeeCord, please ensure that IP-Forwarding is setup correctly!");
         }
 
-        User user = this.plugin.getStorage().loadUser(u, username).join();
+        // use the prefetched data if it has been loaded, otherwise load it now - a
+        // prefetch still queued in the background lane would only hold the login up
+        User prefetchedUser = null;
+        if (prefetched != null && prefetched.isDone()) {
+            try {
+                prefetchedUser = prefetched.join();
+            } catch (CompletionException | CancellationException e) {
+                // the prefetch failed - just load again
+            }
+        }
+
+        User user = prefetchedUser != null ? prefetchedUser : StorageExecutor.withPriority(Priority.LOGIN, () -> this.plugin.getStorage().loadUser(u, username)).join();
         if (user == null) {
             throw new NullPointerException("User is null");
         } else {
@@ -88,7 +130,7 @@ public abstract class AbstractConnectionListener implements ConnectionListener {
 
             // If they were given a default, persist the new assignments back to the storage.
             if (save) {
-                this.plugin.getStorage().saveUser(user).join();
+                StorageExecutor.withPriority(Priority.LOGIN, () -> this.plugin.getStorage().saveUser(user)).join();
             }
         }
 
@@ -25,6 +25,7 @@
 
 package me.lucko.luckperms.common.listener;
 
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
@@ -40,4 +41,19 @@ public interface ConnectionListener {
      */
     Set<UUID> getUniqueConnections();
 
+    /**
+     * Starts loading data for a player who is expected to connect soon.
+     *
+     * @param uuid the uuid of the player
+     * @param username the username of the player
+     */
+    void prefetch(UUID uuid, String username);
+
+    /**
+     * Gets statistics about the logins handled by this listener
+     *
+     * @return the meta
+     */
+    Map<String, String> getMeta();
+
 }
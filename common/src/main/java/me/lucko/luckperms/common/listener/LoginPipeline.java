@@ -0,0 +1,279 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package me.lucko.luckperms.common.listener;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.model.UserIdentifier;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.storage.StorageExecutor;
+import me.lucko.luckperms.common.storage.StorageExecutor.Priority;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+/**
+ * Loads user data for incoming connections.
+ *
+ * <p>Loads are run by a fixed number of workers, so a slow storage backend
+ * can't end up with every connecting player holding a connection. Each login
+ * waits for its data up to a deadline, after which it is either denied, or
+ * allowed with default data while the load finishes in the background.</p>
+ *
+ * <p>A users data can also be loaded ahead of time by {@link #prefetch(UUID, String)},
+ * in which case the login uses the prefetched data instead of loading it again.
+ * Prefetching only loads - the rest of the login is processed when the player
+ * actually connects.</p>
+ */
+public class LoginPipeline {
+
+    /**
+     * How long a prefetched load is kept around waiting for the connection to arrive
+     */
+    private static final long PREFETCH_EXPIRY_SECONDS = 30;
+
+    /**
+     * What to do with a login when its data isn't loaded in time
+     */
+    public enum TimeoutAction {
+        KICK, ALLOW
+    }
+
+    /**
+     * Processes the login of a player
+     */
+    @FunctionalInterface
+    public interface LoginHandler {
+
+        /**
+         * Processes a login, returning the loaded user.
+         *
+         * @param uuid the uuid of the player
+         * @param username the username of the player
+         * @param prefetched the prefetched data for the player, if any
+         * @return the loaded user
+         */
+        User processLogin(UUID uuid, String username, @Nullable CompletableFuture<User> prefetched);
+    }
+
+    private final LuckPermsPlugin plugin;
+    private final LoginHandler handler;
+
+    private final ThreadPoolExecutor executor;
+
+    // logins currently being processed. entries are removed once processing completes
+    private final Map<UUID, CompletableFuture<User>> inFlight = new ConcurrentHashMap<>();
+
+    // prefetched loads, waiting for their connection to arrive
+    private final Cache<UUID, CompletableFuture<User>> prefetched = Caffeine.newBuilder()
+            .expireAfterWrite(PREFETCH_EXPIRY_SECONDS, TimeUnit.SECONDS)
+            .build();
+
+    private final Timing queueWait = new Timing();
+    private final Timing loadTime = new Timing();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong prefetchHits = new AtomicLong();
+
+    public LoginPipeline(LuckPermsPlugin plugin, LoginHandler handler) {
+        this.plugin = plugin;
+        this.handler = handler;
+
+        int workers = plugin.getConfiguration().get(ConfigKeys.LOGIN_MAX_CONCURRENT_LOADS);
+        this.executor = new ThreadPoolExecutor(workers, workers, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("luckperms-login-%d").build()
+        );
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Starts loading data for a player who is expected to connect soon.
+     *
+     * <p>Only the users data is loaded - the rest of the login is processed
+     * if and when they connect.</p>
+     *
+     * @param uuid the uuid of the player
+     * @param username the username of the player
+     */
+    public void prefetch(UUID uuid, String username) {
+        if (this.plugin.getUserManager().getIfLoaded(uuid) != null) {
+            return;
+        }
+
+        this.prefetched.get(uuid, u -> {
+            // register with the housekeeper, so the data isn't unloaded before they connect
+            this.plugin.getUserManager().getHouseKeeper().registerUsage(u);
+
+            // prefetches aren't capped by the login workers, so they mustn't take
+            // the login lane - otherwise a burst of hints could starve real logins
+            return StorageExecutor.withPriority(Priority.BACKGROUND, () -> this.plugin.getStorage().loadUser(u, username));
+        });
+    }
+
+    /**
+     * Loads data for a connecting player, waiting at most until the configured deadline.
+     *
+     * @param uuid the uuid of the player
+     * @param username the username of the player
+     * @return the loaded user
+     * @throws LoginTimeoutException if the data wasn't loaded in time, and
+     *                               the timeout action is to kick
+     */
+    public User load(UUID uuid, String username) {
+        CompletableFuture<User> future = submit(uuid, username);
+
+        long timeout = this.plugin.getConfiguration().get(ConfigKeys.LOGIN_TIMEOUT);
+        try {
+            return future.get(timeout, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        } catch (TimeoutException e) {
+            this.timeouts.incrementAndGet();
+            return handleTimeout(uuid, username, future, timeout);
+        }
+    }
+
+    private User handleTimeout(UUID uuid, String username, CompletableFuture<User> future, long timeout) {
+        if (this.plugin.getConfiguration().get(ConfigKeys.LOGIN_TIMEOUT_ACTION) == TimeoutAction.KICK) {
+            // don't bother loading if the worker hasn't got to it yet
+            future.cancel(false);
+            throw new LoginTimeoutException("Data for " + uuid + " - " + username + " was not loaded within " + timeout + " seconds");
+        }
+
+        // let them in with the defaults - the load carries on in the background,
+        // and fills in the same user instance once it completes. until then, the
+        // user is provisional, so the defaults are never saved over their actual data.
+        this.plugin.getLogger().warn("Data for " + username + " was not loaded within " + timeout + " seconds - allowing login with default data.");
+        User user = this.plugin.getUserManager().getOrMake(UserIdentifier.of(uuid, username));
+        user.setProvisional(true);
+        this.plugin.getUserManager().giveDefaultIfNeeded(user, false);
+
+        future.whenComplete((loaded, t) -> {
+            if (t == null) {
+                // the load may have completed before the user was marked as provisional
+                user.setProvisional(false);
+            } else {
+                this.plugin.getLogger().warn("Data for " + username + " failed to load after their login was allowed - they will keep the default data, which won't be saved, until they reconnect.");
+            }
+        });
+        return user;
+    }
+
+    private CompletableFuture<User> submit(UUID uuid, String username) {
+        CompletableFuture<User> future = new CompletableFuture<>();
+        CompletableFuture<User> existing = this.inFlight.putIfAbsent(uuid, future);
+        if (existing != null) {
+            return existing;
+        }
+
+        // keep the entry until processing completes (or is cancelled), so a
+        // reconnect while the load is still running picks up the same load
+        future.whenComplete((user, t) -> this.inFlight.remove(uuid, future));
+
+        CompletableFuture<User> prefetched = this.prefetched.asMap().remove(uuid);
+        if (prefetched != null) {
+            this.prefetchHits.incrementAndGet();
+        }
+
+        final long queuedTime = System.currentTimeMillis();
+        this.executor.execute(() -> {
+            if (future.isCancelled()) {
+                return;
+            }
+
+            final long startTime = System.currentTimeMillis();
+            this.queueWait.record(startTime - queuedTime);
+            try {
+                future.complete(this.handler.processLogin(uuid, username, prefetched));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                this.loadTime.record(System.currentTimeMillis() - startTime);
+            }
+        });
+        return future;
+    }
+
+    public Map<String, String> getMeta() {
+        Map<String, String> meta = new LinkedHashMap<>();
+        meta.put("Workers", this.executor.getActiveCount() + "/" + this.executor.getMaximumPoolSize() + " (queued " + this.executor.getQueue().size() + ")");
+        meta.put("Queue Wait", this.queueWait.toString());
+        meta.put("Load Time", this.loadTime.toString());
+        meta.put("Timeouts", String.valueOf(this.timeouts.get()));
+        meta.put("Prefetch Hits", String.valueOf(this.prefetchHits.get()));
+        return meta;
+    }
+
+    /**
+     * Thrown when a login is denied because its data wasn't loaded in time
+     */
+    public static final class LoginTimeoutException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public LoginTimeoutException(String message) {
+            super(message);
+        }
+    }
+
+    private static final class Timing {
+        // the weight given to the latest sample in the average
+        private static final double SMOOTHING = 0.1;
+
+        private final AtomicLong max = new AtomicLong();
+        private volatile double average = 0;
+
+        private synchronized void record(long millis) {
+            this.average += (millis - this.average) * SMOOTHING;
+            this.max.accumulateAndGet(millis, Math::max);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.1f", this.average) + "ms (max " + this.max.get() + "ms)";
+        }
+    }
+}
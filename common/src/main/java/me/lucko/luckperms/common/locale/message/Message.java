@@ -184,7 +184,6 @@ public enum Message {
             false
     ),
     INFO_MIDDLE(
-            "{PREFIX}&f-  &bMessaging: &f{}" + "\n" +
             "{PREFIX}&f-  &bInstance:" + "\n" +
             "{PREFIX}&f-     &3Static contexts: &f{}" + "\n" +
             "{PREFIX}&f-     &3Online Players: &a{} &7(&a{}&7 unique)" + "\n" +
@@ -302,11 +301,15 @@ public enum Message {
     BULK_UPDATE_INVALID_CONSTRAINT("&cInvalid constraint &4{}&c. Constraints should be in the format '&f<field> <comparison operator> <value>&c'.", true),
     BULK_UPDATE_INVALID_COMPARISON("&cInvalid comparison operator '&4{}&c'. Expected one of the following: &f==  !=  ~~  ~!", true),
     BULK_UPDATE_QUEUED("&aBulk update operation was queued. &7(&f{}&7)", true),
-    BULK_UPDATE_CONFIRM("&aRun &b/{} bulkupdate confirm {} &ato execute the update.", true),
+    BULK_UPDATE_CONFIRM("&aRun &b/{} bulkupdate confirm {} &ato execute the update, or &b/{} bulkupdate dryrun {} &ato count what it would change.", true),
     BULK_UPDATE_UNKNOWN_ID("&aOperation with id &b{}&a does not exist or has expired.", true),
 
     BULK_UPDATE_STARTING("&aRunning bulk update.", true),
+    BULK_UPDATE_DRY_RUN_STARTING("&aRunning bulk update as a dry run. No changes will be made.", true),
+    BULK_UPDATE_PROGRESS("&7Bulk update in progress. Processed &f{}&7 users and &f{}&7 groups so far.", true),
     BULK_UPDATE_SUCCESS("&bBulk update completed successfully.", true),
+    BULK_UPDATE_DRY_RUN_SUCCESS("&bBulk update dry run completed successfully.", true),
+    BULK_UPDATE_STATISTICS("&7Affected users: &a{}&7, groups: &a{}&7, nodes: &a{}", true),
     BULK_UPDATE_FAILURE("&cBulk update failed. Check the console for errors.", true),
 
     USER_INFO_GENERAL(
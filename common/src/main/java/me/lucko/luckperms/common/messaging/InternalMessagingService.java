@@ -29,8 +29,13 @@ import me.lucko.luckperms.api.LogEntry;
 import me.lucko.luckperms.api.messenger.Messenger;
 import me.lucko.luckperms.api.messenger.MessengerProvider;
 import me.lucko.luckperms.common.buffers.BufferedRequest;
+import me.lucko.luckperms.common.model.Group;
+import me.lucko.luckperms.common.model.Track;
 import me.lucko.luckperms.common.model.User;
 
+import java.util.Map;
+import java.util.UUID;
+
 public interface InternalMessagingService {
 
     /**
@@ -42,6 +47,13 @@ public interface InternalMessagingService {
 
     Messenger getMessenger();
 
+    /**
+     * Gets statistics about the messages received by this service
+     *
+     * @return the meta
+     */
+    Map<String, String> getMeta();
+
     MessengerProvider getMessengerProvider();
 
     /**
@@ -62,6 +74,24 @@ public interface InternalMessagingService {
      */
     void pushUpdate();
 
+    /**
+     * Pushes an update for a specific group.
+     *
+     * <p>Falls back to a general update if targeted updates are disabled.</p>
+     *
+     * @param group the group
+     */
+    void pushGroupUpdate(Group group);
+
+    /**
+     * Pushes an update for a specific track.
+     *
+     * <p>Falls back to a general update if targeted updates are disabled.</p>
+     *
+     * @param track the track
+     */
+    void pushTrackUpdate(Track track);
+
     /**
      * Pushes an update for a specific user.
      *
@@ -69,6 +99,16 @@ public interface InternalMessagingService {
      */
     void pushUserUpdate(User user);
 
+    /**
+     * Tells connected servers that a player is about to connect to one of
+     * them, so it can start loading the players data.
+     *
+     * @param uuid the uuid of the player
+     * @param username the username of the player
+     * @param server the name of the server the player is connecting to
+     */
+    void pushLoginHint(UUID uuid, String username, String server);
+
     /**
      * Pushes a log entry to connected servers.
      *
@@ -37,24 +37,55 @@ import me.lucko.luckperms.common.actionlog.ExtendedLogEntry;
 import me.lucko.luckperms.common.buffers.BufferedRequest;
 import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.messaging.message.LogMessageImpl;
+import me.lucko.luckperms.common.messaging.message.LoginHintMessageImpl;
+import me.lucko.luckperms.common.messaging.message.TargetedUpdateMessageImpl;
 import me.lucko.luckperms.common.messaging.message.UpdateMessageImpl;
+import me.lucko.luckperms.common.messaging.message.UserBatchUpdateMessageImpl;
 import me.lucko.luckperms.common.messaging.message.UserUpdateMessageImpl;
+import me.lucko.luckperms.common.messaging.sql.AbstractSqlMessenger;
+import me.lucko.luckperms.common.model.Group;
+import me.lucko.luckperms.common.model.NodeMapType;
+import me.lucko.luckperms.common.model.PermissionHolder;
+import me.lucko.luckperms.common.model.Track;
 import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.node.model.NodeDataContainer;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 import javax.annotation.Nonnull;
 
 public class LuckPermsMessagingService implements InternalMessagingService, IncomingMessageConsumer {
+    private static final int MAX_DIFF_SIZE = 50;
+    private static final int MAX_USER_BATCH_SIZE = 100;
+
     private final LuckPermsPlugin plugin;
-    private final Set<UUID> receivedMessages;
+    private final MessageIdTracker idTracker = new MessageIdTracker();
+    private final AtomicLong resyncs = new AtomicLong(0);
+
+    /**
+     * The state of each group as of the last targeted update sent or received,
+     * used to compute diffs against
+     */
+    private final Map<String, Set<NodeDataContainer>> groupSnapshots = new ConcurrentHashMap<>();
     private final PushUpdateBuffer updateBuffer;
 
+    /**
+     * Users which have changed, but which haven't been included in a message yet
+     */
+    private final Set<UUID> pendingUserUpdates = ConcurrentHashMap.newKeySet();
+    private final PushUserUpdateBuffer userUpdateBuffer;
+
     private final MessengerProvider messengerProvider;
     private final Messenger messenger;
 
@@ -65,8 +96,8 @@ public class LuckPermsMessagingService implements InternalMessagingService, Inco
         this.messenger = messengerProvider.obtain(this);
         Objects.requireNonNull(this.messenger, "messenger");
 
-        this.receivedMessages = Collections.synchronizedSet(new HashSet<>());
         this.updateBuffer = new PushUpdateBuffer(plugin);
+        this.userUpdateBuffer = new PushUserUpdateBuffer(plugin);
     }
 
     @Override
@@ -94,10 +125,63 @@ public class LuckPermsMessagingService implements InternalMessagingService, Inco
         return this.updateBuffer;
     }
 
+    @Override
+    public Map<String, String> getMeta() {
+        Map<String, String> meta = new LinkedHashMap<>();
+        meta.put("Duplicates Dropped", String.valueOf(this.idTracker.getDuplicates()));
+        meta.put("Missed Messages", String.valueOf(this.idTracker.getMissed()));
+        meta.put("Resyncs", String.valueOf(this.resyncs.get()));
+        if (this.messenger instanceof AbstractSqlMessenger) {
+            meta.putAll(((AbstractSqlMessenger) this.messenger).getMeta());
+        }
+        return meta;
+    }
+
+    /**
+     * Generates the id for an outgoing message. This must only be called once
+     * the message is certain to be sent.
+     *
+     * @return the id
+     */
     private UUID generatePingId() {
-        UUID uuid = UUID.randomUUID();
-        this.receivedMessages.add(uuid);
-        return uuid;
+        return this.idTracker.nextId();
+    }
+
+    /**
+     * Generates the id for an outgoing update to a single user.
+     *
+     * <p>If the messenger may also route the update directly to the server the user is on,
+     * that server can receive it out of order with the rest of the sequence, so it can't
+     * take a sequenced id.</p>
+     *
+     * @return the id
+     */
+    private UUID generateUserPingId() {
+        if (this.plugin.getConfiguration().get(ConfigKeys.KAGECLOUD_ROUTE_USER_UPDATES)) {
+            return this.idTracker.nextUnsequencedId();
+        }
+        return generatePingId();
+    }
+
+    /**
+     * Records the receipt of a message, and checks if it should be processed.
+     *
+     * @param id the message id
+     * @return true if the message is new
+     */
+    private boolean acceptMessage(UUID id) {
+        switch (this.idTracker.accept(id)) {
+            case NEW:
+                return true;
+            case NEW_AFTER_GAP:
+                // we've missed messages from this origin, so we can't know what else changed
+                this.plugin.getLogger().warn("[" + getName() + " Messaging] Detected missed messages before id: " + id + " - requesting a sync.");
+                this.resyncs.incrementAndGet();
+                this.plugin.getUpdateTaskBuffer().request();
+                return true;
+            default:
+                return false;
+        }
     }
 
     @Override
@@ -109,19 +193,117 @@ public class LuckPermsMessagingService implements InternalMessagingService, Inco
         });
     }
 
+    @Override
+    public void pushGroupUpdate(Group group) {
+        if (!this.plugin.getConfiguration().get(ConfigKeys.PUSH_TARGETED_UPDATES)) {
+            this.updateBuffer.request();
+            return;
+        }
+
+        this.plugin.getBootstrap().getScheduler().executeAsync(() -> {
+            Set<NodeDataContainer> nodes = snapshotNodes(group);
+            Set<NodeDataContainer> previous = this.groupSnapshots.put(group.getName(), nodes);
+
+            // only include a diff if we know what other servers should have, and it's reasonably small
+            TargetedUpdateMessageImpl.NodeDiff diff = null;
+            if (previous != null) {
+                diff = TargetedUpdateMessageImpl.NodeDiff.between(previous, nodes);
+                if (diff.size() > MAX_DIFF_SIZE) {
+                    diff = null;
+                }
+            }
+
+            UUID requestId = generatePingId();
+            this.plugin.getLogger().info("[" + getName() + " Messaging] Sending group ping for '" + group.getName() + "' with id: " + requestId);
+            this.messenger.sendOutgoingMessage(new TargetedUpdateMessageImpl(requestId, TargetedUpdateMessageImpl.Target.GROUP, group.getName(), diff));
+        });
+    }
+
+    @Override
+    public void pushTrackUpdate(Track track) {
+        if (!this.plugin.getConfiguration().get(ConfigKeys.PUSH_TARGETED_UPDATES)) {
+            this.updateBuffer.request();
+            return;
+        }
+
+        this.plugin.getBootstrap().getScheduler().executeAsync(() -> {
+            UUID requestId = generatePingId();
+            this.plugin.getLogger().info("[" + getName() + " Messaging] Sending track ping for '" + track.getName() + "' with id: " + requestId);
+            this.messenger.sendOutgoingMessage(new TargetedUpdateMessageImpl(requestId, TargetedUpdateMessageImpl.Target.TRACK, track.getName(), null));
+        });
+    }
+
     @Override
     public void pushUserUpdate(User user) {
+        if (!this.plugin.getConfiguration().get(ConfigKeys.PUSH_BATCHED_USER_UPDATES)) {
+            this.plugin.getBootstrap().getScheduler().executeAsync(() -> {
+                UUID requestId = generateUserPingId();
+                this.plugin.getLogger().info("[" + getName() + " Messaging] Sending user ping for '" + user.getFriendlyName() + "' with id: " + requestId);
+                this.messenger.sendOutgoingMessage(new UserUpdateMessageImpl(requestId, user.getUuid()));
+            });
+            return;
+        }
+
+        this.pendingUserUpdates.add(user.getUuid());
+
+        // don't let a constant stream of changes hold back the batch indefinitely
+        if (this.pendingUserUpdates.size() >= MAX_USER_BATCH_SIZE) {
+            this.plugin.getBootstrap().getScheduler().executeAsync(this::flushUserUpdates);
+        } else {
+            this.userUpdateBuffer.request();
+        }
+    }
+
+    /**
+     * Sends messages for all pending user updates, combining them into
+     * batches where possible.
+     */
+    private void flushUserUpdates() {
+        Set<UUID> batch = new HashSet<>();
+        Iterator<UUID> it = this.pendingUserUpdates.iterator();
+        while (it.hasNext()) {
+            batch.add(it.next());
+            it.remove();
+
+            if (batch.size() >= MAX_USER_BATCH_SIZE) {
+                sendUserUpdates(batch);
+                batch = new HashSet<>();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            sendUserUpdates(batch);
+        }
+    }
+
+    private void sendUserUpdates(Set<UUID> users) {
+        if (users.size() == 1) {
+            UUID requestId = generateUserPingId();
+            UUID user = users.iterator().next();
+            this.plugin.getLogger().info("[" + getName() + " Messaging] Sending user ping for '" + user + "' with id: " + requestId);
+            this.messenger.sendOutgoingMessage(new UserUpdateMessageImpl(requestId, user));
+        } else {
+            UUID requestId = generatePingId();
+            this.plugin.getLogger().info("[" + getName() + " Messaging] Sending user ping for " + users.size() + " users with id: " + requestId);
+            this.messenger.sendOutgoingMessage(new UserBatchUpdateMessageImpl(requestId, users));
+        }
+    }
+
+    @Override
+    public void pushLoginHint(UUID uuid, String username, String server) {
         this.plugin.getBootstrap().getScheduler().executeAsync(() -> {
             UUID requestId = generatePingId();
-            this.plugin.getLogger().info("[" + getName() + " Messaging] Sending user ping for '" + user.getFriendlyName() + "' with id: " + requestId);
-            this.messenger.sendOutgoingMessage(new UserUpdateMessageImpl(requestId, user.getUuid()));
+            this.messenger.sendOutgoingMessage(new LoginHintMessageImpl(requestId, uuid, username, server));
         });
     }
 
     @Override
     public void pushLog(LogEntry logEntry) {
         this.plugin.getBootstrap().getScheduler().executeAsync(() -> {
-            UUID requestId = generatePingId();
+            // the publish event can cancel the message, so it can't take a sequenced id - otherwise
+            // other servers would see a gap and resync. a missed log entry doesn't affect any
+            // cached data anyway.
+            UUID requestId = this.idTracker.nextUnsequencedId();
 
             if (this.plugin.getEventFactory().handleLogNetworkPublish(!this.plugin.getConfiguration().get(ConfigKeys.PUSH_LOG_ENTRIES), requestId, logEntry)) {
                 return;
@@ -138,7 +320,7 @@ public class LuckPermsMessagingService implements InternalMessagingService, Inco
 
         if (message instanceof UpdateMessage) {
             UpdateMessage msg = (UpdateMessage) message;
-            if (!this.receivedMessages.add(msg.getId())) {
+            if (!acceptMessage(msg.getId())) {
                 return false;
             }
 
@@ -153,7 +335,7 @@ public class LuckPermsMessagingService implements InternalMessagingService, Inco
 
         } else if (message instanceof UserUpdateMessage) {
             UserUpdateMessage msg = (UserUpdateMessage) message;
-            if (!this.receivedMessages.add(msg.getId())) {
+            if (!acceptMessage(msg.getId())) {
                 return false;
             }
 
@@ -171,9 +353,63 @@ public class LuckPermsMessagingService implements InternalMessagingService, Inco
             this.plugin.getStorage().loadUser(user.getUuid(), null);
             return true;
 
+        } else if (message instanceof UserBatchUpdateMessageImpl) {
+            UserBatchUpdateMessageImpl msg = (UserBatchUpdateMessageImpl) message;
+            if (!acceptMessage(msg.getId())) {
+                return false;
+            }
+
+            Set<UUID> users = msg.getUsers().stream()
+                    .filter(uuid -> this.plugin.getUserManager().getIfLoaded(uuid) != null)
+                    .collect(Collectors.toSet());
+
+            if (users.isEmpty()) {
+                return true;
+            }
+
+            this.plugin.getLogger().info("[" + getName() + " Messaging] Received user update ping for " + users.size() + " loaded users with id: " + msg.getId());
+
+            if (this.plugin.getEventFactory().handleNetworkPreSync(false, msg.getId())) {
+                return true;
+            }
+
+            this.plugin.getStorage().loadUsers(users);
+            return true;
+
+        } else if (message instanceof LoginHintMessageImpl) {
+            LoginHintMessageImpl msg = (LoginHintMessageImpl) message;
+            if (!acceptMessage(msg.getId())) {
+                return false;
+            }
+
+            // only prefetch for players connecting to this server
+            if (this.plugin.getConfiguration().get(ConfigKeys.LOGIN_PREFETCH_HINTS) && msg.getServer().equalsIgnoreCase(this.plugin.getConfiguration().get(ConfigKeys.SERVER))) {
+                this.plugin.getConnectionListener().prefetch(msg.getUser(), msg.getUsername());
+            }
+            return true;
+
+        } else if (message instanceof TargetedUpdateMessageImpl) {
+            TargetedUpdateMessageImpl msg = (TargetedUpdateMessageImpl) message;
+            if (!acceptMessage(msg.getId())) {
+                return false;
+            }
+
+            this.plugin.getLogger().info("[" + getName() + " Messaging] Received " + msg.getTarget().name().toLowerCase() + " update ping for '" + msg.getName() + "' with id: " + msg.getId());
+
+            if (this.plugin.getEventFactory().handleNetworkPreSync(false, msg.getId())) {
+                return true;
+            }
+
+            if (msg.getTarget() == TargetedUpdateMessageImpl.Target.GROUP) {
+                handleGroupUpdate(msg.getName(), msg.getDiff());
+            } else {
+                handleTrackUpdate(msg.getName());
+            }
+            return true;
+
         } else if (message instanceof LogMessage) {
             LogMessage msg = (LogMessage) message;
-            if (!this.receivedMessages.add(msg.getId())) {
+            if (!acceptMessage(msg.getId())) {
                 return false;
             }
 
@@ -201,13 +437,96 @@ public class LuckPermsMessagingService implements InternalMessagingService, Inco
             return consumeIncomingMessage(decoded);
         }
 
+        decoded = UserBatchUpdateMessageImpl.decode(encodedString);
+        if (decoded != null) {
+            return consumeIncomingMessage(decoded);
+        }
+
+        decoded = LoginHintMessageImpl.decode(encodedString);
+        if (decoded != null) {
+            return consumeIncomingMessage(decoded);
+        }
+
+        decoded = TargetedUpdateMessageImpl.decode(encodedString);
+        if (decoded != null) {
+            return consumeIncomingMessage(decoded);
+        }
+
         decoded = LogMessageImpl.decode(encodedString);
-        return decoded != null && consumeIncomingMessage(decoded);
+        if (decoded != null) {
+            return consumeIncomingMessage(decoded);
+        }
+
+        // most likely a type of message added in a newer version. we can't tell what it
+        // was notifying us of, so the only safe option is to sync everything
+        this.plugin.getLogger().warn("[" + getName() + " Messaging] Unable to decode incoming message - requesting a sync.");
+        this.resyncs.incrementAndGet();
+        this.plugin.getUpdateTaskBuffer().request();
+        return false;
+    }
+
+    private void handleGroupUpdate(String name, TargetedUpdateMessageImpl.NodeDiff diff) {
+        Group group = this.plugin.getGroupManager().getIfLoaded(name);
+
+        // try to patch our copy of the group, if it's in the state the diff expects
+        if (group != null && diff != null) {
+            group.getIoLock().lock();
+            try {
+                Set<NodeDataContainer> nodes = snapshotNodes(group);
+                if (diff.appliesTo(nodes)) {
+                    Set<NodeDataContainer> result = diff.applyTo(nodes);
+                    group.setNodes(NodeMapType.ENDURING, result.stream().map(NodeDataContainer::toNode).collect(Collectors.toSet()));
+                    this.groupSnapshots.put(name, result);
+                    invalidateDependents(group);
+                    return;
+                }
+            } finally {
+                group.getIoLock().unlock();
+            }
+        }
+
+        // otherwise, just reload the group from storage
+        this.plugin.getStorage().loadGroup(name).thenAccept(loaded -> {
+            if (loaded.isPresent()) {
+                this.groupSnapshots.put(name, snapshotNodes(loaded.get()));
+                invalidateDependents(loaded.get());
+            } else if (group != null) {
+                // the group has been deleted
+                this.groupSnapshots.remove(name);
+                this.plugin.getGroupManager().unload(group);
+                invalidateDependents(group);
+            }
+        });
+    }
+
+    private void handleTrackUpdate(String name) {
+        Track track = this.plugin.getTrackManager().getIfLoaded(name);
+        this.plugin.getStorage().loadTrack(name).thenAccept(loaded -> {
+            if (!loaded.isPresent() && track != null) {
+                // the track has been deleted
+                this.plugin.getTrackManager().unload(track);
+            }
+        });
+    }
+
+    /**
+     * Invalidates the cached data of loaded holders which inherit from the given group.
+     *
+     * @param group the group which changed
+     */
+    private void invalidateDependents(Group group) {
+        this.plugin.getInheritanceHandler().findDependents(Collections.singleton(group.getName())).forEach(PermissionHolder::invalidateCache);
+    }
+
+    private static Set<NodeDataContainer> snapshotNodes(Group group) {
+        return group.enduringData().immutable().values().stream()
+                .map(NodeDataContainer::fromNode)
+                .collect(Collectors.toSet());
     }
 
     private final class PushUpdateBuffer extends BufferedRequest<Void> {
         public PushUpdateBuffer(LuckPermsPlugin plugin) {
-            super(2000L, 200L, plugin.getBootstrap().getScheduler().async());
+            super(2000L, plugin.getBootstrap().getScheduler().async());
         }
 
         @Override
@@ -216,4 +535,16 @@ public class LuckPermsMessagingService implements InternalMessagingService, Inco
             return null;
         }
     }
+
+    private final class PushUserUpdateBuffer extends BufferedRequest<Void> {
+        public PushUserUpdateBuffer(LuckPermsPlugin plugin) {
+            super(250L, plugin.getBootstrap().getScheduler().async());
+        }
+
+        @Override
+        protected Void perform() {
+            flushUserUpdates();
+            return null;
+        }
+    }
 }
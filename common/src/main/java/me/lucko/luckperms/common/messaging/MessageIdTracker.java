@@ -0,0 +1,221 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.messaging;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import me.lucko.luckperms.common.utils.ExpiringSet;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates and tracks the ids of messages sent via the messaging service.
+ *
+ * <p>Generated ids encode the origin (a random id for each server instance) and a per-origin
+ * sequence number, in the form of a version 8 ("custom") UUID. The ids of received messages are
+ * checked against a small sliding window for their origin, which detects duplicates, as well as
+ * gaps in the sequence caused by lost messages.</p>
+ *
+ * <p>Ids in any other format (e.g. from older versions) are deduplicated using a time-bounded
+ * set instead.</p>
+ */
+public class MessageIdTracker {
+    private static final int VERSION = 8;
+    private static final int WINDOW_SIZE = Long.SIZE;
+
+    /**
+     * The outcome of receiving a message id
+     */
+    public enum Status {
+
+        /**
+         * The message hasn't been seen before
+         */
+        NEW,
+
+        /**
+         * The message hasn't been seen before, but some messages from the same origin
+         * before it were never received
+         */
+        NEW_AFTER_GAP,
+
+        /**
+         * The message has already been received, or was sent by this instance
+         */
+        DUPLICATE
+    }
+
+    // the origin id of this instance, with the version bits set
+    private final long origin;
+    private final AtomicLong sequence = new AtomicLong(0);
+
+    // the window for each origin we've received messages from
+    private final Cache<Long, Window> windows = Caffeine.newBuilder().expireAfterAccess(1, TimeUnit.HOURS).build();
+
+    // ids which aren't in the sequenced format
+    private final Set<UUID> unsequenced = new ExpiringSet<>(1, TimeUnit.HOURS);
+
+    private final AtomicLong duplicates = new AtomicLong(0);
+    private final AtomicLong missed = new AtomicLong(0);
+
+    public MessageIdTracker() {
+        this.origin = (ThreadLocalRandom.current().nextLong() & ~0xF000L) | ((long) VERSION << 12);
+    }
+
+    /**
+     * Generates the id for a new outgoing message
+     *
+     * @return the id
+     */
+    public UUID nextId() {
+        return new UUID(this.origin, this.sequence.getAndIncrement());
+    }
+
+    /**
+     * Generates the id for a new outgoing message which isn't part of the sequence.
+     *
+     * <p>These ids can be allocated without the message necessarily being sent, as
+     * other instances don't expect to receive them in any particular order.</p>
+     *
+     * @return the id
+     */
+    public UUID nextUnsequencedId() {
+        UUID id = UUID.randomUUID();
+        synchronized (this.unsequenced) {
+            // ensure our own message is ignored if it's echoed back to us
+            this.unsequenced.add(id);
+        }
+        return id;
+    }
+
+    /**
+     * Records the receipt of a message id
+     *
+     * @param id the id
+     * @return the status of the message
+     */
+    public Status accept(UUID id) {
+        if (id.version() != VERSION) {
+            synchronized (this.unsequenced) {
+                if (!this.unsequenced.contains(id)) {
+                    this.unsequenced.add(id);
+                    return Status.NEW;
+                }
+            }
+            this.duplicates.incrementAndGet();
+            return Status.DUPLICATE;
+        }
+
+        long origin = id.getMostSignificantBits();
+        if (origin == this.origin) {
+            // our own message, echoed back to us
+            return Status.DUPLICATE;
+        }
+
+        Window window = this.windows.get(origin, o -> new Window());
+        long missed = window.accept(id.getLeastSignificantBits());
+        if (missed < 0) {
+            this.duplicates.incrementAndGet();
+            return Status.DUPLICATE;
+        }
+        if (missed > 0) {
+            this.missed.addAndGet(missed);
+            return Status.NEW_AFTER_GAP;
+        }
+        return Status.NEW;
+    }
+
+    /**
+     * Gets the number of duplicate messages which have been received
+     *
+     * @return the number of duplicates
+     */
+    public long getDuplicates() {
+        return this.duplicates.get();
+    }
+
+    /**
+     * Gets the number of messages which were detected as missing
+     *
+     * @return the number of missed messages
+     */
+    public long getMissed() {
+        return this.missed.get();
+    }
+
+    /**
+     * A sliding window over the most recent sequence numbers received from an origin
+     */
+    private static final class Window {
+        // the highest sequence number received so far, or -1
+        private long highest = -1;
+
+        // bit n is set if (highest - n) has been received
+        private long received = 0L;
+
+        /**
+         * Records the receipt of a sequence number
+         *
+         * @param seq the sequence number
+         * @return -1 if it has already been received, otherwise the number of preceding
+         *         sequence numbers which were skipped
+         */
+        synchronized long accept(long seq) {
+            if (this.highest == -1) {
+                this.highest = seq;
+                this.received = 1L;
+                return 0;
+            }
+
+            if (seq > this.highest) {
+                long shift = seq - this.highest;
+                this.received = (shift >= WINDOW_SIZE ? 0L : this.received << shift) | 1L;
+                this.highest = seq;
+                return shift - 1;
+            }
+
+            long offset = this.highest - seq;
+            if (offset >= WINDOW_SIZE) {
+                // too old to tell - assume we've already seen it
+                return -1;
+            }
+
+            long bit = 1L << offset;
+            if ((this.received & bit) != 0) {
+                return -1;
+            }
+
+            // a late arrival - the gap it left will have already been reported
+            this.received |= bit;
+            return 0;
+        }
+    }
+}
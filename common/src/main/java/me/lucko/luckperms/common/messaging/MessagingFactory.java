@@ -37,6 +37,7 @@ import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.storage.dao.sql.SqlDao;
 import me.lucko.luckperms.common.storage.dao.sql.connection.hikari.MariaDbConnectionFactory;
 import me.lucko.luckperms.common.storage.dao.sql.connection.hikari.MySqlConnectionFactory;
+import me.lucko.luckperms.common.storage.dao.sql.connection.hikari.PostgreConnectionFactory;
 
 import javax.annotation.Nonnull;
 
@@ -130,7 +131,7 @@ public class MessagingFactory<P extends LuckPermsPlugin> {
         @Override
         public Messenger obtain(@Nonnull IncomingMessageConsumer incomingMessageConsumer) {
             SqlDao dao = (SqlDao) getPlugin().getStorage().getDao();
-            Preconditions.checkState(dao.getProvider() instanceof MySqlConnectionFactory || dao.getProvider() instanceof MariaDbConnectionFactory, "not a supported sql type");
+            Preconditions.checkState(dao.getProvider() instanceof MySqlConnectionFactory || dao.getProvider() instanceof MariaDbConnectionFactory || dao.getProvider() instanceof PostgreConnectionFactory, "not a supported sql type");
 
             SqlMessenger sql = new SqlMessenger(getPlugin(), dao, incomingMessageConsumer);
             sql.init();
@@ -0,0 +1,121 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package me.lucko.luckperms.common.messaging.message;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Tells other servers that a player is about to connect to one of them.
+ *
+ * <p>Sent by proxies when a player starts connecting to a backend server, so
+ * that the server can start loading the players data before the connection
+ * arrives.</p>
+ */
+public class LoginHintMessageImpl extends AbstractMessage {
+    private static final String LOGIN_HINT_HEADER = "loginhint:";
+
+    public static LoginHintMessageImpl decode(String msg) {
+        if (msg.startsWith(LOGIN_HINT_HEADER) && msg.length() > LOGIN_HINT_HEADER.length()) {
+            String content = msg.substring(LOGIN_HINT_HEADER.length());
+            return decodeContent(content);
+        }
+
+        return null;
+    }
+
+    private final UUID userUuid;
+    private final String username;
+    private final String server;
+
+    public LoginHintMessageImpl(UUID id, UUID userUuid, String username, String server) {
+        super(id);
+        this.userUuid = userUuid;
+        this.username = username;
+        this.server = server;
+    }
+
+    @Nonnull
+    public UUID getUser() {
+        return this.userUuid;
+    }
+
+    @Nonnull
+    public String getUsername() {
+        return this.username;
+    }
+
+    /**
+     * Gets the name of the server the player is connecting to
+     *
+     * @return the server name
+     */
+    @Nonnull
+    public String getServer() {
+        return this.server;
+    }
+
+    @Nonnull
+    @Override
+    public String asEncodedString() {
+        return LOGIN_HINT_HEADER + encodeContent(getId(), this.userUuid, this.username, this.server);
+    }
+
+    private static String encodeContent(UUID id, UUID userUuid, String username, String server) {
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        byte[] serverName = server.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocate(Long.BYTES * 4 + Integer.BYTES + name.length + serverName.length);
+        buf.putLong(id.getMostSignificantBits());
+        buf.putLong(id.getLeastSignificantBits());
+        buf.putLong(userUuid.getMostSignificantBits());
+        buf.putLong(userUuid.getLeastSignificantBits());
+        buf.putInt(name.length);
+        buf.put(name);
+        buf.put(serverName);
+        return Base64.getEncoder().encodeToString(buf.array());
+    }
+
+    private static LoginHintMessageImpl decodeContent(String s) {
+        try {
+            byte[] bytes = Base64.getDecoder().decode(s);
+            ByteBuffer buf = ByteBuffer.wrap(bytes);
+            UUID id = new UUID(buf.getLong(), buf.getLong());
+            UUID userUuid = new UUID(buf.getLong(), buf.getLong());
+
+            byte[] name = new byte[buf.getInt()];
+            buf.get(name);
+            byte[] serverName = new byte[buf.remaining()];
+            buf.get(serverName);
+            return new LoginHintMessageImpl(id, userUuid, new String(name, StandardCharsets.UTF_8), new String(serverName, StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException | BufferUnderflowException | NegativeArraySizeException e) {
+            return null;
+        }
+    }
+}
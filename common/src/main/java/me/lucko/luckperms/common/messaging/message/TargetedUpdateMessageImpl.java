@@ -0,0 +1,326 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.messaging.message;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import me.lucko.luckperms.common.contexts.ContextSetJsonSerializer;
+import me.lucko.luckperms.common.node.model.NodeDataContainer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Notifies other servers of a change to a specific group or track.
+ *
+ * <p>Receivers only need to reload (or patch) the object which changed, as opposed
+ * to the full sync triggered by an {@link UpdateMessageImpl}.</p>
+ */
+public class TargetedUpdateMessageImpl extends AbstractMessage {
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+    private static final String TARGETED_UPDATE_HEADER = "targetedupdate:";
+
+    public static TargetedUpdateMessageImpl decode(String msg) {
+        if (msg.startsWith(TARGETED_UPDATE_HEADER) && msg.length() > TARGETED_UPDATE_HEADER.length()) {
+            String content = msg.substring(TARGETED_UPDATE_HEADER.length());
+
+            try {
+                return decodeContent(GSON.fromJson(content, JsonObject.class));
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        return null;
+    }
+
+    private final Target target;
+    private final String name;
+    private final NodeDiff diff;
+
+    public TargetedUpdateMessageImpl(UUID id, Target target, String name, @Nullable NodeDiff diff) {
+        super(id);
+        this.target = target;
+        this.name = name;
+        this.diff = diff;
+    }
+
+    public Target getTarget() {
+        return this.target;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Gets the changes made to the target's nodes, if they were included in the message.
+     *
+     * @return the diff, or null
+     */
+    @Nullable
+    public NodeDiff getDiff() {
+        return this.diff;
+    }
+
+    @Nonnull
+    @Override
+    public String asEncodedString() {
+        return TARGETED_UPDATE_HEADER + GSON.toJson(encodeContent());
+    }
+
+    private JsonObject encodeContent() {
+        JsonObject data = new JsonObject();
+        data.add("id", new JsonPrimitive(uuidToString(getId())));
+        data.add("target", new JsonPrimitive(this.target.name()));
+        data.add("name", new JsonPrimitive(this.name));
+
+        if (this.diff != null) {
+            JsonObject diff = new JsonObject();
+            diff.add("baseDigest", new JsonPrimitive(this.diff.baseDigest));
+            diff.add("added", serializeNodes(this.diff.added));
+            diff.add("removed", serializeNodes(this.diff.removed));
+            data.add("diff", diff);
+        }
+
+        return data;
+    }
+
+    private static TargetedUpdateMessageImpl decodeContent(JsonObject object) {
+        UUID id = uuidFromString(object.get("id").getAsString());
+        if (id == null) {
+            return null;
+        }
+
+        Target target = Target.valueOf(object.get("target").getAsString());
+        String name = object.get("name").getAsString();
+
+        NodeDiff diff = null;
+        if (object.has("diff")) {
+            JsonObject diffObject = object.get("diff").getAsJsonObject();
+
+            // diffs without a digest of their base can't be safely applied,
+            // so the receiver falls back to reloading the target
+            if (diffObject.has("baseDigest")) {
+                diff = new NodeDiff(
+                        diffObject.get("baseDigest").getAsString(),
+                        deserializeNodes(diffObject.get("added").getAsJsonArray()),
+                        deserializeNodes(diffObject.get("removed").getAsJsonArray())
+                );
+            }
+        }
+
+        return new TargetedUpdateMessageImpl(id, target, name, diff);
+    }
+
+    private static JsonArray serializeNodes(Set<NodeDataContainer> nodes) {
+        JsonArray arr = new JsonArray();
+        for (NodeDataContainer node : nodes) {
+            JsonObject data = new JsonObject();
+            data.add("permission", new JsonPrimitive(node.getPermission()));
+            data.add("value", new JsonPrimitive(node.getValue()));
+            data.add("server", new JsonPrimitive(node.getServer()));
+            data.add("world", new JsonPrimitive(node.getWorld()));
+            data.add("expiry", new JsonPrimitive(node.getExpiry()));
+            data.add("context", ContextSetJsonSerializer.serializeContextSet(node.getContexts()));
+            arr.add(data);
+        }
+        return arr;
+    }
+
+    private static Set<NodeDataContainer> deserializeNodes(JsonArray arr) {
+        Set<NodeDataContainer> nodes = new HashSet<>();
+        for (JsonElement element : arr) {
+            JsonObject data = element.getAsJsonObject();
+            nodes.add(NodeDataContainer.of(
+                    data.get("permission").getAsString(),
+                    data.get("value").getAsBoolean(),
+                    data.get("server").getAsString(),
+                    data.get("world").getAsString(),
+                    data.get("expiry").getAsLong(),
+                    ContextSetJsonSerializer.deserializeContextSet(data.get("context")).makeImmutable()
+            ));
+        }
+        return nodes;
+    }
+
+    private static String uuidToString(UUID uuid) {
+        ByteBuffer buf = ByteBuffer.allocate(Long.BYTES * 2);
+        buf.putLong(uuid.getMostSignificantBits());
+        buf.putLong(uuid.getLeastSignificantBits());
+        return Base64.getEncoder().encodeToString(buf.array());
+    }
+
+    private static UUID uuidFromString(String s) {
+        try {
+            byte[] bytes = Base64.getDecoder().decode(s);
+            ByteBuffer buf = ByteBuffer.wrap(bytes);
+            return new UUID(buf.getLong(), buf.getLong());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The type of object a message targets
+     */
+    public enum Target {
+        GROUP, TRACK
+    }
+
+    /**
+     * The changes made to a set of nodes.
+     *
+     * <p>The diff records a digest of the nodes it was computed against, so receivers
+     * can check their copy is in the same state before applying it.</p>
+     */
+    public static final class NodeDiff {
+
+        /**
+         * Computes the diff between two sets of nodes
+         *
+         * @param from the previous nodes
+         * @param to the current nodes
+         * @return the diff
+         */
+        public static NodeDiff between(Set<NodeDataContainer> from, Set<NodeDataContainer> to) {
+            Set<NodeDataContainer> added = new HashSet<>(to);
+            added.removeAll(from);
+            Set<NodeDataContainer> removed = new HashSet<>(from);
+            removed.removeAll(to);
+            return new NodeDiff(digest(from), added, removed);
+        }
+
+        /**
+         * Computes a SHA-256 digest of a set of nodes, which is independent of
+         * the order they are iterated in.
+         *
+         * @param nodes the nodes
+         * @return the digest, base64 encoded
+         */
+        static String digest(Set<NodeDataContainer> nodes) {
+            List<String> encoded = new ArrayList<>(nodes.size());
+            for (NodeDataContainer node : nodes) {
+                encoded.add(encodeNode(node));
+            }
+            Collections.sort(encoded);
+
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+            }
+            for (String node : encoded) {
+                digest.update(node.getBytes(StandardCharsets.UTF_8));
+            }
+            return Base64.getEncoder().encodeToString(digest.digest());
+        }
+
+        // every field is length-prefixed, so the encodings can be concatenated unambiguously
+        private static String encodeNode(NodeDataContainer node) {
+            List<String> contexts = new ArrayList<>();
+            for (Map.Entry<String, String> context : node.getContexts().toSet()) {
+                contexts.add(lengthPrefixed(context.getKey()) + lengthPrefixed(context.getValue()));
+            }
+            Collections.sort(contexts);
+
+            StringBuilder sb = new StringBuilder()
+                    .append(lengthPrefixed(node.getPermission()))
+                    .append(node.getValue() ? 't' : 'f')
+                    .append(lengthPrefixed(node.getServer()))
+                    .append(lengthPrefixed(node.getWorld()))
+                    .append(node.getExpiry()).append(';')
+                    .append(contexts.size()).append(';');
+            contexts.forEach(sb::append);
+            return lengthPrefixed(sb.toString());
+        }
+
+        private static String lengthPrefixed(String s) {
+            return s.length() + ":" + s;
+        }
+
+        private final String baseDigest;
+        private final Set<NodeDataContainer> added;
+        private final Set<NodeDataContainer> removed;
+
+        private NodeDiff(String baseDigest, Set<NodeDataContainer> added, Set<NodeDataContainer> removed) {
+            this.baseDigest = baseDigest;
+            this.added = added;
+            this.removed = removed;
+        }
+
+        /**
+         * Gets the number of nodes which were changed
+         *
+         * @return the size of the diff
+         */
+        public int size() {
+            return this.added.size() + this.removed.size();
+        }
+
+        /**
+         * Returns if this diff was computed against the given nodes.
+         *
+         * @param nodes the nodes
+         * @return true if the diff can be applied
+         */
+        public boolean appliesTo(Set<NodeDataContainer> nodes) {
+            return digest(nodes).equals(this.baseDigest);
+        }
+
+        /**
+         * Applies this diff to the given nodes
+         *
+         * @param nodes the nodes
+         * @return the resultant nodes
+         */
+        public Set<NodeDataContainer> applyTo(Set<NodeDataContainer> nodes) {
+            Set<NodeDataContainer> result = new HashSet<>(nodes);
+            result.removeAll(this.removed);
+            result.addAll(this.added);
+            return result;
+        }
+    }
+}
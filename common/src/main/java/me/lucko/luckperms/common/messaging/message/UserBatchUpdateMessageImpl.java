@@ -0,0 +1,100 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package me.lucko.luckperms.common.messaging.message;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Notifies other servers of changes to a number of users at once.
+ *
+ * <p>Receivers reload all of the affected users which they have loaded in a
+ * single storage call, instead of handling one {@link UserUpdateMessageImpl}
+ * for each user.</p>
+ */
+public class UserBatchUpdateMessageImpl extends AbstractMessage {
+    private static final String USER_BATCH_UPDATE_HEADER = "userbatchupdate:";
+
+    public static UserBatchUpdateMessageImpl decode(String msg) {
+        if (msg.startsWith(USER_BATCH_UPDATE_HEADER) && msg.length() > USER_BATCH_UPDATE_HEADER.length()) {
+            String content = msg.substring(USER_BATCH_UPDATE_HEADER.length());
+            return decodeContent(content);
+        }
+
+        return null;
+    }
+
+    private final Set<UUID> users;
+
+    public UserBatchUpdateMessageImpl(UUID id, Set<UUID> users) {
+        super(id);
+        this.users = ImmutableSet.copyOf(users);
+    }
+
+    @Nonnull
+    public Set<UUID> getUsers() {
+        return this.users;
+    }
+
+    @Nonnull
+    @Override
+    public String asEncodedString() {
+        return USER_BATCH_UPDATE_HEADER + encodeContent(getId(), this.users);
+    }
+
+    private static String encodeContent(UUID id, Set<UUID> users) {
+        ByteBuffer buf = ByteBuffer.allocate(Long.BYTES * 2 * (users.size() + 1));
+        buf.putLong(id.getMostSignificantBits());
+        buf.putLong(id.getLeastSignificantBits());
+        for (UUID user : users) {
+            buf.putLong(user.getMostSignificantBits());
+            buf.putLong(user.getLeastSignificantBits());
+        }
+        return Base64.getEncoder().encodeToString(buf.array());
+    }
+
+    private static UserBatchUpdateMessageImpl decodeContent(String s) {
+        try {
+            byte[] bytes = Base64.getDecoder().decode(s);
+            ByteBuffer buf = ByteBuffer.wrap(bytes);
+            UUID id = new UUID(buf.getLong(), buf.getLong());
+
+            ImmutableSet.Builder<UUID> users = ImmutableSet.builder();
+            while (buf.hasRemaining()) {
+                users.add(new UUID(buf.getLong(), buf.getLong()));
+            }
+            return new UserBatchUpdateMessageImpl(id, users.build());
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            return null;
+        }
+    }
+}
@@ -29,36 +29,104 @@ import me.lucko.luckperms.api.messenger.IncomingMessageConsumer;
 import me.lucko.luckperms.api.messenger.Messenger;
 import me.lucko.luckperms.api.messenger.message.OutgoingMessage;
 
+import java.lang.reflect.Method;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nonnull;
 
 /**
  * An implementation of {@link Messenger} using SQL.
+ *
+ * <p>Supports MySQL, MariaDB and PostgreSQL. On PostgreSQL, servers can also
+ * {@link #listenForNotifications() listen} for new messages instead of relying
+ * on polling alone.</p>
  */
 public abstract class AbstractSqlMessenger implements Messenger {
 
+    /** How long messages are picked up by polls for */
+    private static final int MESSAGE_EXPIRY_SECONDS = 30;
+
+    /** How long messages are kept in the table for */
+    private static final int HOUSEKEEPING_EXPIRY_SECONDS = 60;
+
+    /** How long to wait for notifications for at a time, if the driver supports blocking */
+    private static final int NOTIFICATION_WAIT_MILLIS = 5000;
+
+    /** How often to check for notifications, if the driver doesn't support blocking */
+    private static final long NOTIFICATION_CHECK_INTERVAL_MILLIS = 250;
+
+    /** How long the listening connection is held before it is re-established */
+    private static final long LISTEN_CONNECTION_LIFETIME_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
     private final IncomingMessageConsumer consumer;
     private long lastId = -1;
+    private volatile boolean closed = false;
+
+    // counters, shown in the messaging service meta
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong polls = new AtomicLong();
+    private final AtomicLong receivedMessages = new AtomicLong();
+    private final AtomicLong totalLatencyMillis = new AtomicLong();
+    private final AtomicLong maxLatencyMillis = new AtomicLong();
 
     protected AbstractSqlMessenger(IncomingMessageConsumer consumer) {
         this.consumer = consumer;
     }
 
     protected abstract Connection getConnection() throws SQLException;
+
+    /**
+     * Gets a connection to listen for notifications on. The connection is held
+     * for a long time, so ideally shouldn't come from a shared pool.
+     *
+     * @return a connection
+     * @throws SQLException if a connection couldn't be obtained
+     */
+    protected Connection getListenConnection() throws SQLException {
+        return getConnection();
+    }
     protected abstract String getTableName();
 
+    /**
+     * Gets if the database is PostgreSQL, as opposed to MySQL or MariaDB.
+     *
+     * @return if the database is PostgreSQL
+     */
+    protected abstract boolean isPostgreSql();
+
+    private String quote(String identifier) {
+        String quote = isPostgreSql() ? "\"" : "`";
+        return quote + identifier + quote;
+    }
+
     public void init() throws SQLException {
+        String table = quote(getTableName());
         try (Connection c = getConnection()) {
             // init table
-            try (PreparedStatement ps = c.prepareStatement("CREATE TABLE IF NOT EXISTS `" + getTableName() + "` (`id` INT AUTO_INCREMENT NOT NULL, `time` TIMESTAMP NOT NULL, `msg` TEXT NOT NULL, PRIMARY KEY (`id`))")) {
+            String create = isPostgreSql() ?
+                    "CREATE TABLE IF NOT EXISTS " + table + " (\"id\" SERIAL NOT NULL, \"time\" TIMESTAMP NOT NULL, \"msg\" TEXT NOT NULL, PRIMARY KEY (\"id\"))" :
+                    "CREATE TABLE IF NOT EXISTS " + table + " (`id` INT AUTO_INCREMENT NOT NULL, `time` TIMESTAMP NOT NULL, `msg` TEXT NOT NULL, PRIMARY KEY (`id`))";
+            try (PreparedStatement ps = c.prepareStatement(create)) {
                 ps.execute();
             }
+            // index the time column, so expired messages can be found without scanning the table
+            if (!timeIndexExists(c)) {
+                try (PreparedStatement ps = c.prepareStatement("CREATE INDEX " + quote(getTableName() + "_time") + " ON " + table + " (" + quote("time") + ")")) {
+                    ps.execute();
+                }
+            }
             // pull last id
-            try (PreparedStatement ps = c.prepareStatement("SELECT MAX(`id`) as `latest` FROM `" + getTableName() + "`")) {
+            try (PreparedStatement ps = c.prepareStatement("SELECT MAX(" + quote("id") + ") as " + quote("latest") + " FROM " + table)) {
                 try (ResultSet rs = ps.executeQuery()) {
                     if (rs.next()) {
                         this.lastId = rs.getLong("latest");
@@ -68,46 +136,210 @@ public abstract class AbstractSqlMessenger implements Messenger {
         }
     }
 
+    private boolean timeIndexExists(Connection c) throws SQLException {
+        DatabaseMetaData meta = c.getMetaData();
+
+        // find the table name as it is actually stored by the database
+        String tableName = null;
+        try (ResultSet rs = meta.getTables(null, null, "%", null)) {
+            while (rs.next()) {
+                if (rs.getString(3).equalsIgnoreCase(getTableName())) {
+                    tableName = rs.getString(3);
+                    break;
+                }
+            }
+        }
+
+        if (tableName == null) {
+            return false;
+        }
+
+        try (ResultSet rs = meta.getIndexInfo(null, null, tableName, false, false)) {
+            while (rs.next()) {
+                String column = rs.getString("COLUMN_NAME");
+                if (column != null && column.equalsIgnoreCase("time")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     @Override
     public void sendOutgoingMessage(@Nonnull OutgoingMessage outgoingMessage) {
         try (Connection c = getConnection()) {
-            try (PreparedStatement ps = c.prepareStatement("INSERT INTO " + getTableName() + "(`time`, `msg`) VALUES(NOW(), ?)")) {
+            try (PreparedStatement ps = c.prepareStatement("INSERT INTO " + quote(getTableName()) + "(" + quote("time") + ", " + quote("msg") + ") VALUES(LOCALTIMESTAMP, ?)")) {
                 ps.setString(1, outgoingMessage.asEncodedString());
                 ps.execute();
+                this.queries.incrementAndGet();
+            }
+            if (isPostgreSql()) {
+                // wake up any servers listening for messages
+                try (PreparedStatement ps = c.prepareStatement("SELECT pg_notify(?, '')")) {
+                    ps.setString(1, getTableName());
+                    ps.execute();
+                    this.queries.incrementAndGet();
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
 
-    public void pollMessages() {
+    /**
+     * Reads and consumes any new messages.
+     *
+     * @return the number of messages received
+     */
+    public synchronized int pollMessages() {
+        int received = 0;
         try (Connection c = getConnection()) {
-            try (PreparedStatement ps = c.prepareStatement("SELECT `id`, `msg` FROM " + getTableName() + " WHERE `id` > ? AND (NOW() - `time` < 30)")) {
+            // written so that both conditions can be resolved using the primary key & time indexes.
+            // the current time is selected too, so latency can be measured against the database clock
+            try (PreparedStatement ps = c.prepareStatement("SELECT " + quote("id") + ", " + quote("time") + ", " + quote("msg") + ", LOCALTIMESTAMP AS " + quote("now") + " FROM " + quote(getTableName()) + " WHERE " + quote("id") + " > ? AND " + quote("time") + " > LOCALTIMESTAMP - INTERVAL '" + MESSAGE_EXPIRY_SECONDS + "' SECOND ORDER BY " + quote("id"))) {
                 ps.setLong(1, this.lastId);
                 try (ResultSet rs = ps.executeQuery()) {
+                    this.queries.incrementAndGet();
+                    this.polls.incrementAndGet();
                     while (rs.next()) {
                         long id = rs.getLong("id");
                         this.lastId = Math.max(this.lastId, id);
+                        recordLatency(rs.getTimestamp("time"), rs.getTimestamp("now"));
 
                         String message = rs.getString("msg");
                         this.consumer.consumeIncomingMessageAsString(message);
+                        received++;
                     }
                 }
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
+        return received;
+    }
+
+    private void recordLatency(Timestamp sent, Timestamp now) {
+        if (sent == null || now == null) {
+            return;
+        }
+        long latency = Math.max(0, now.getTime() - sent.getTime());
+        this.receivedMessages.incrementAndGet();
+        this.totalLatencyMillis.addAndGet(latency);
+        this.maxLatencyMillis.accumulateAndGet(latency, Math::max);
     }
 
     public void runHousekeeping() {
         try (Connection c = getConnection()) {
-            try (PreparedStatement ps = c.prepareStatement("DELETE FROM " + getTableName() + " WHERE (NOW() - `time` > 60)")) {
+            try (PreparedStatement ps = c.prepareStatement("DELETE FROM " + quote(getTableName()) + " WHERE " + quote("time") + " < LOCALTIMESTAMP - INTERVAL '" + HOUSEKEEPING_EXPIRY_SECONDS + "' SECOND")) {
                 ps.execute();
+                this.queries.incrementAndGet();
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Listens for the notifications sent by other servers after they insert a
+     * message, and polls for new messages as soon as one arrives.
+     *
+     * <p>Blocks until the messenger is closed. Only supported by PostgreSQL.</p>
+     */
+    public void listenForNotifications() {
+        while (!this.closed) {
+            try (Connection c = getListenConnection()) {
+                listen(c);
+            } catch (Exception e) {
+                if (this.closed) {
+                    return;
+                }
+                e.printStackTrace();
+
+                // wait a while before trying to reconnect
+                try {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(5));
+                } catch (InterruptedException ex) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void listen(Connection c) throws Exception {
+        // the driver is loaded in a separate classloader, so its methods have to be accessed reflectively
+        Connection pgConnection = c.unwrap(Connection.class);
+        Method getNotifications;
+        boolean blocking;
+        try {
+            getNotifications = pgConnection.getClass().getMethod("getNotifications", int.class);
+            blocking = true;
+        } catch (NoSuchMethodException e) {
+            getNotifications = pgConnection.getClass().getMethod("getNotifications");
+            blocking = false;
+        }
+
+        try (Statement s = c.createStatement()) {
+            s.execute("LISTEN " + quote(getTableName()));
+        }
+
+        try {
+            // catch up on anything sent while we weren't listening
+            pollMessages();
+
+            long expiry = System.currentTimeMillis() + LISTEN_CONNECTION_LIFETIME_MILLIS;
+            while (!this.closed && System.currentTimeMillis() < expiry) {
+                Object[] notifications;
+                if (blocking) {
+                    notifications = (Object[]) getNotifications.invoke(pgConnection, NOTIFICATION_WAIT_MILLIS);
+                } else {
+                    // older drivers only read notifications from the connection when a query is executed
+                    try (Statement s = c.createStatement()) {
+                        s.execute("SELECT 1");
+                        this.queries.incrementAndGet();
+                    }
+                    notifications = (Object[]) getNotifications.invoke(pgConnection);
+                }
+
+                if (notifications != null && notifications.length != 0) {
+                    pollMessages();
+                } else if (!blocking) {
+                    Thread.sleep(NOTIFICATION_CHECK_INTERVAL_MILLIS);
+                }
+            }
+        } finally {
+            // stop listening before the connection is returned
+            try (Statement s = c.createStatement()) {
+                s.execute("UNLISTEN *");
+            } catch (SQLException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Gets statistics about the messenger, for display alongside the messaging service info.
+     *
+     * <p>Latency is the time between a message being inserted and it being
+     * read by this server, measured using the database clock.</p>
+     *
+     * @return the statistics
+     */
+    public Map<String, String> getMeta() {
+        Map<String, String> meta = new LinkedHashMap<>();
+        long received = this.receivedMessages.get();
+        meta.put("Queries", String.valueOf(this.queries.get()));
+        meta.put("Polls", String.valueOf(this.polls.get()));
+        meta.put("Messages Received", String.valueOf(received));
+        if (received != 0) {
+            meta.put("Average Latency", (this.totalLatencyMillis.get() / received) + "ms");
+            meta.put("Max Latency", this.maxLatencyMillis.get() + "ms");
+        }
+        return meta;
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+    }
 
 }
@@ -25,23 +25,51 @@
 
 package me.lucko.luckperms.common.messaging.sql;
 
+import com.zaxxer.hikari.HikariDataSource;
+
 import me.lucko.luckperms.api.messenger.IncomingMessageConsumer;
+import me.lucko.luckperms.api.messenger.message.OutgoingMessage;
+import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.plugin.SchedulerTask;
 import me.lucko.luckperms.common.plugin.scheduler.SchedulerAdapter;
 import me.lucko.luckperms.common.storage.dao.sql.SqlDao;
+import me.lucko.luckperms.common.storage.dao.sql.connection.hikari.HikariConnectionFactory;
+import me.lucko.luckperms.common.storage.dao.sql.connection.hikari.PostgreConnectionFactory;
 
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.concurrent.TimeUnit;
 
+import javax.annotation.Nonnull;
+
 public class SqlMessenger extends AbstractSqlMessenger {
+
+    /** The shortest interval between polls, used right after messages have been sent or received */
+    private static final long MIN_POLL_INTERVAL_MILLIS = 200;
+
+    /** The longest interval between polls, which the poller backs off to while idle */
+    private static final long MAX_POLL_INTERVAL_MILLIS = 2000;
+
+    /** The longest interval between polls while listening for notifications, as a fallback */
+    private static final long MAX_LISTENING_POLL_INTERVAL_MILLIS = 10000;
+
     private final LuckPermsPlugin plugin;
     private final SqlDao sqlDao;
 
     private SchedulerTask pollTask;
     private SchedulerTask housekeepingTask;
 
+    /** The thread listening for notifications, if any. Listening blocks indefinitely, so it isn't run by the scheduler. */
+    private Thread listenThread;
+
+    /** The connection used by the listener, kept out of the storage pool since it is held indefinitely */
+    private HikariDataSource listenDataSource;
+
+    private long maxPollInterval = MAX_POLL_INTERVAL_MILLIS;
+    private volatile long pollInterval = MIN_POLL_INTERVAL_MILLIS;
+    private volatile long nextPoll = 0;
+
     public SqlMessenger(LuckPermsPlugin plugin, SqlDao sqlDao, IncomingMessageConsumer consumer) {
         super(consumer);
         this.plugin = plugin;
@@ -56,12 +84,48 @@ public class SqlMessenger extends AbstractSqlMessenger {
             throw new RuntimeException(e);
         }
 
-        // schedule poll tasks
         SchedulerAdapter scheduler = this.plugin.getBootstrap().getScheduler();
-        this.pollTask = scheduler.asyncRepeating(this::pollMessages, 1, TimeUnit.SECONDS);
+
+        // listen for notifications if possible, and only poll occasionally in case any are missed
+        if (isPostgreSql() && this.plugin.getConfiguration().get(ConfigKeys.SQL_MESSAGING_LISTEN_NOTIFY)) {
+            this.maxPollInterval = MAX_LISTENING_POLL_INTERVAL_MILLIS;
+            this.listenDataSource = ((HikariConnectionFactory) this.sqlDao.getProvider()).createDedicatedDataSource("messenger-listen");
+            this.listenThread = new Thread(this::listenForNotifications, "luckperms-sql-messenger-listen");
+            this.listenThread.setDaemon(true);
+            this.listenThread.start();
+        }
+
+        // schedule poll tasks
+        this.pollTask = scheduler.asyncRepeating(this::tickPoll, MIN_POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
         this.housekeepingTask = scheduler.asyncRepeating(this::runHousekeeping, 30, TimeUnit.SECONDS);
     }
 
+    /**
+     * Polls for messages if the current poll interval has elapsed, then adjusts
+     * the interval - backing off while idle, and tightening after activity.
+     */
+    private void tickPoll() {
+        if (System.currentTimeMillis() < this.nextPoll) {
+            return;
+        }
+
+        if (pollMessages() != 0) {
+            this.pollInterval = MIN_POLL_INTERVAL_MILLIS;
+        } else {
+            this.pollInterval = Math.min(this.pollInterval * 2, this.maxPollInterval);
+        }
+        this.nextPoll = System.currentTimeMillis() + this.pollInterval;
+    }
+
+    @Override
+    public void sendOutgoingMessage(@Nonnull OutgoingMessage outgoingMessage) {
+        super.sendOutgoingMessage(outgoingMessage);
+
+        // changes tend to come in bursts, so poll more frequently for a while
+        this.pollInterval = MIN_POLL_INTERVAL_MILLIS;
+        this.nextPoll = Math.min(this.nextPoll, System.currentTimeMillis() + MIN_POLL_INTERVAL_MILLIS);
+    }
+
     @Override
     public void close() {
         SchedulerTask task = this.pollTask;
@@ -77,6 +141,24 @@ public class SqlMessenger extends AbstractSqlMessenger {
         this.housekeepingTask = null;
 
         super.close();
+
+        // wake the listener up, and give it a chance to release its connection
+        Thread listenThread = this.listenThread;
+        if (listenThread != null) {
+            listenThread.interrupt();
+            try {
+                listenThread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.listenThread = null;
+        }
+
+        HikariDataSource listenDataSource = this.listenDataSource;
+        if (listenDataSource != null) {
+            listenDataSource.close();
+            this.listenDataSource = null;
+        }
     }
 
     @Override
@@ -84,8 +166,22 @@ public class SqlMessenger extends AbstractSqlMessenger {
         return this.sqlDao.getProvider().getConnection();
     }
 
+    @Override
+    protected Connection getListenConnection() throws SQLException {
+        HikariDataSource listenDataSource = this.listenDataSource;
+        if (listenDataSource == null) {
+            throw new SQLException("Not listening for notifications.");
+        }
+        return listenDataSource.getConnection();
+    }
+
     @Override
     protected String getTableName() {
         return this.sqlDao.getPrefix().apply("{prefix}messages");
     }
+
+    @Override
+    protected boolean isPostgreSql() {
+        return this.sqlDao.getProvider() instanceof PostgreConnectionFactory;
+    }
 }
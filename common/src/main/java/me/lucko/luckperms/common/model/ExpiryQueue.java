@@ -0,0 +1,140 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package me.lucko.luckperms.common.model;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * A queue of the times at which the temporary nodes of holders expire.
+ *
+ * <p>Entries are added when temporary nodes are added to a {@link NodeMap}, and
+ * aren't removed if the node is removed before it expires. Holders are
+ * identified by their type and object name, so entries don't keep unloaded
+ * holders in memory.</p>
+ */
+public final class ExpiryQueue {
+    private final NavigableSet<Entry> entries = new ConcurrentSkipListSet<>();
+
+    /**
+     * Schedules the holder to be audited once the given time has passed.
+     *
+     * @param holder the holder
+     * @param expiryTime the expiry time, in unix seconds
+     */
+    public void schedule(PermissionHolder holder, long expiryTime) {
+        schedule(holder.getType(), holder.getObjectName(), expiryTime);
+    }
+
+    void schedule(HolderType type, String objectName, long expiryTime) {
+        this.entries.add(new Entry(expiryTime, type, objectName));
+    }
+
+    /**
+     * Removes and returns the entries which have expired.
+     *
+     * @param now the current time, in unix seconds
+     * @return the expired entries
+     */
+    public List<Entry> pollExpired(long now) {
+        List<Entry> expired = new ArrayList<>();
+        Iterator<Entry> it = this.entries.iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            // nodes only count as expired once the expiry time has passed
+            if (entry.expiryTime >= now) {
+                break;
+            }
+            expired.add(entry);
+            it.remove();
+        }
+        return expired;
+    }
+
+    /**
+     * Re-adds an entry which couldn't be processed.
+     *
+     * @param entry the entry
+     */
+    public void reschedule(Entry entry) {
+        this.entries.add(entry);
+    }
+
+    public static final class Entry implements Comparable<Entry> {
+        private final long expiryTime;
+        private final HolderType type;
+        private final String objectName;
+
+        private Entry(long expiryTime, HolderType type, String objectName) {
+            this.expiryTime = expiryTime;
+            this.type = type;
+            this.objectName = objectName;
+        }
+
+        public long getExpiryTime() {
+            return this.expiryTime;
+        }
+
+        public HolderType getType() {
+            return this.type;
+        }
+
+        public String getObjectName() {
+            return this.objectName;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            int i = Long.compare(this.expiryTime, o.expiryTime);
+            if (i != 0) {
+                return i;
+            }
+            i = this.type.compareTo(o.type);
+            if (i != 0) {
+                return i;
+            }
+            return this.objectName.compareTo(o.objectName);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if (!(o instanceof Entry)) return false;
+            Entry other = (Entry) o;
+            return this.expiryTime == other.expiryTime && this.type == other.type && this.objectName.equals(other.objectName);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Long.hashCode(this.expiryTime);
+            result = 31 * result + this.type.hashCode();
+            result = 31 * result + this.objectName.hashCode();
+            return result;
+        }
+    }
+}
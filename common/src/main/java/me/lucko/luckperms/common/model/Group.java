@@ -68,7 +68,7 @@ public class Group extends PermissionHolder implements Identifiable<String> {
     }
 
     @Override
-    protected void invalidateCache() {
+    public void invalidateCache() {
         super.invalidateCache();
 
         // invalidate our caches
@@ -44,6 +44,7 @@ import me.lucko.luckperms.common.node.model.ImmutableLocalizedNode;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -181,6 +182,10 @@ public final class NodeMap {
         if (node.isGroupNode() && node.getValue()) {
             this.inheritanceMap.put(context, n);
         }
+
+        if (node.isTemporary()) {
+            this.holder.getPlugin().getExpiryQueue().schedule(this.holder, node.getExpiryUnixTime());
+        }
     }
 
     void remove(Node node) {
@@ -204,15 +209,18 @@ public final class NodeMap {
         add(node);
     }
 
-    void clear() {
+    boolean clear() {
+        boolean ret = !this.map.isEmpty();
         this.map.clear();
         this.inheritanceMap.clear();
+        return ret;
     }
 
-    void clear(ContextSet contextSet) {
+    boolean clear(ContextSet contextSet) {
         ImmutableContextSet context = contextSet.makeImmutable();
-        this.map.removeAll(context);
+        boolean ret = !this.map.removeAll(context).isEmpty();
         this.inheritanceMap.removeAll(context);
+        return ret;
     }
 
     void setContent(Collection<? extends Node> set) {
@@ -227,6 +235,25 @@ public final class NodeMap {
         setContent(multimap.values());
     }
 
+    /**
+     * Gets if the map currently holds exactly the given nodes.
+     *
+     * @param set the nodes
+     * @return true if the content is the same
+     */
+    boolean hasContent(Collection<? extends Node> set) {
+        Set<Node> current = new HashSet<>();
+        for (LocalizedNode n : this.map.values()) {
+            current.add(n.getNode());
+        }
+
+        Set<Node> other = new HashSet<>();
+        for (Node n : set) {
+            other.add(n instanceof LocalizedNode ? ((LocalizedNode) n).getNode() : n);
+        }
+        return current.equals(other);
+    }
+
     boolean removeIf(Predicate<? super LocalizedNode> predicate) {
         boolean ret = this.map.values().removeIf(predicate);
         this.inheritanceMap.values().removeIf(predicate);
@@ -40,6 +40,10 @@ import me.lucko.luckperms.api.StandardNodeEquality;
 import me.lucko.luckperms.api.Tristate;
 import me.lucko.luckperms.api.context.ContextSet;
 import me.lucko.luckperms.api.context.ImmutableContextSet;
+import me.lucko.luckperms.api.event.LuckPermsEvent;
+import me.lucko.luckperms.api.event.node.NodeAddEvent;
+import me.lucko.luckperms.api.event.node.NodeClearEvent;
+import me.lucko.luckperms.api.event.node.NodeRemoveEvent;
 import me.lucko.luckperms.common.caching.HolderCachedData;
 import me.lucko.luckperms.common.caching.type.MetaAccumulator;
 import me.lucko.luckperms.common.config.ConfigKeys;
@@ -65,8 +69,11 @@ import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 
+import javax.annotation.Nullable;
+
 /**
  * Represents an object that can hold permissions, (a user or group)
  *
@@ -123,6 +130,19 @@ public abstract class PermissionHolder {
      */
     private final Lock ioLock = new ReentrantLock();
 
+    /**
+     * Lock held for the duration of a batch operation
+     * @see #batch(Consumer)
+     */
+    private final ReentrantLock batchLock = new ReentrantLock();
+
+    /**
+     * If the holders cached data has been invalidated during the current batch.
+     *
+     * <p>Only accessed by the thread holding the {@link #batchLock}.</p>
+     */
+    private boolean batchInvalidated = false;
+
     /**
      * Comparator used to ordering groups when calculating inheritance
      */
@@ -208,16 +228,87 @@ public abstract class PermissionHolder {
         getCachedData().invalidate();
     }
 
-    protected void invalidateCache() {
+    /**
+     * Invalidates all of the holder's caches, including its cached data.
+     */
+    public void invalidateCache() {
         this.enduringNodes.invalidate();
         this.transientNodes.invalidate();
 
+        // if we're in the middle of a batch, wait until it has finished
+        if (this.batchLock.isHeldByCurrentThread()) {
+            this.batchInvalidated = true;
+            return;
+        }
+
         invalidateCachedData();
-        getPlugin().getEventFactory().handleDataRecalculate(this);
+        if (shouldPostEvents()) {
+            getPlugin().getEventFactory().handleDataRecalculate(this);
+        }
+    }
+
+    /**
+     * Gets if events should be posted for changes to this holder.
+     *
+     * @return true if events should be posted
+     */
+    protected boolean shouldPostEvents() {
+        return true;
+    }
+
+    /**
+     * Performs a number of changes to this holder as a single batch.
+     *
+     * <p>Batches are applied under a lock, and the holders cached data is only
+     * invalidated (and a recalculate event only posted) once all of the changes
+     * have been made.</p>
+     *
+     * @param action the action to apply
+     */
+    public void batch(Consumer<? super PermissionHolder> action) {
+        this.batchLock.lock();
+        try {
+            action.accept(this);
+        } finally {
+            try {
+                // only apply the invalidation when the outermost batch completes
+                if (this.batchLock.getHoldCount() == 1 && this.batchInvalidated) {
+                    this.batchInvalidated = false;
+                    invalidateCachedData();
+                    if (shouldPostEvents()) {
+                        getPlugin().getEventFactory().handleDataRecalculate(this);
+                    }
+                }
+            } finally {
+                this.batchLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Takes a snapshot of the holders enduring nodes, for use as the "before" state
+     * of a node mutate event.
+     *
+     * @param eventClass the type of event which will be posted
+     * @return the snapshot, or null if the event won't be posted
+     */
+    @Nullable
+    private ImmutableCollection<? extends Node> snapshotForEvent(Class<? extends LuckPermsEvent> eventClass) {
+        if (!shouldPostEvents() || !this.plugin.getEventFactory().shouldPost(eventClass)) {
+            return null;
+        }
+        return enduringData().immutable().values();
     }
 
     public void setNodes(NodeMapType type, Set<? extends Node> set) {
-        getData(type).setContent(set);
+        NodeMap data = getData(type);
+
+        // avoid recalculating cached data when reloading a holder which hasn't changed
+        if (data.hasContent(set)) {
+            return;
+        }
+
+        data.setContent(set);
         invalidateCache();
     }
 
@@ -266,7 +357,7 @@ public abstract class PermissionHolder {
     }
 
     public boolean removeIf(Predicate<? super LocalizedNode> predicate, Runnable taskIfSuccess) {
-        ImmutableCollection<? extends Node> before = enduringData().immutable().values();
+        ImmutableCollection<? extends Node> before = snapshotForEvent(NodeClearEvent.class);
         if (!this.enduringNodes.removeIf(predicate)) {
             return false;
         }
@@ -274,9 +365,10 @@ public abstract class PermissionHolder {
             taskIfSuccess.run();
         }
         invalidateCache();
-        ImmutableCollection<? extends Node> after = enduringData().immutable().values();
 
-        this.plugin.getEventFactory().handleNodeClear(this, before, after);
+        if (before != null) {
+            this.plugin.getEventFactory().handleNodeClear(this, before, enduringData().immutable().values());
+        }
         return true;
     }
 
@@ -285,7 +377,7 @@ public abstract class PermissionHolder {
     }
 
     public boolean removeIf(ContextSet contextSet, Predicate<? super LocalizedNode> predicate, Runnable taskIfSuccess) {
-        ImmutableCollection<? extends Node> before = enduringData().immutable().values();
+        ImmutableCollection<? extends Node> before = snapshotForEvent(NodeClearEvent.class);
         if (!this.enduringNodes.removeIf(contextSet, predicate)) {
             return false;
         }
@@ -293,9 +385,10 @@ public abstract class PermissionHolder {
             taskIfSuccess.run();
         }
         invalidateCache();
-        ImmutableCollection<? extends Node> after = enduringData().immutable().values();
 
-        this.plugin.getEventFactory().handleNodeClear(this, before, after);
+        if (before != null) {
+            this.plugin.getEventFactory().handleNodeClear(this, before, enduringData().immutable().values());
+        }
         return true;
     }
 
@@ -455,7 +548,7 @@ public abstract class PermissionHolder {
         // we don't call events for transient nodes
         boolean transientWork = this.transientNodes.auditTemporaryNodes(null);
 
-        ImmutableCollection<? extends LocalizedNode> before = enduringData().immutable().values();
+        ImmutableCollection<? extends Node> before = snapshotForEvent(NodeRemoveEvent.class);
         Set<Node> removed = new HashSet<>();
 
         boolean enduringWork = this.enduringNodes.auditTemporaryNodes(removed);
@@ -464,9 +557,11 @@ public abstract class PermissionHolder {
             invalidateCache();
 
             // call event
-            ImmutableCollection<? extends Node> after = enduringData().immutable().values();
-            for (Node r : removed) {
-                this.plugin.getEventFactory().handleNodeRemove(r, this, before, after);
+            if (before != null) {
+                ImmutableCollection<? extends Node> after = enduringData().immutable().values();
+                for (Node r : removed) {
+                    this.plugin.getEventFactory().handleNodeRemove(r, this, before, after);
+                }
             }
         }
 
@@ -540,12 +635,13 @@ public abstract class PermissionHolder {
             return DataMutateResult.ALREADY_HAS;
         }
 
-        ImmutableCollection<? extends Node> before = enduringData().immutable().values();
+        ImmutableCollection<? extends Node> before = snapshotForEvent(NodeAddEvent.class);
         this.enduringNodes.add(node);
         invalidateCache();
-        ImmutableCollection<? extends Node> after = enduringData().immutable().values();
 
-        this.plugin.getEventFactory().handleNodeAdd(node, this, before, after);
+        if (before != null) {
+            this.plugin.getEventFactory().handleNodeAdd(node, this, before, enduringData().immutable().values());
+        }
         return DataMutateResult.SUCCESS;
     }
 
@@ -570,12 +666,13 @@ public abstract class PermissionHolder {
                     Node newNode = node.toBuilder().setExpiry(previous.getExpiryUnixTime() + node.getSecondsTilExpiry()).build();
 
                     // Remove the old node & add the new one.
-                    ImmutableCollection<? extends Node> before = enduringData().immutable().values();
+                    ImmutableCollection<? extends Node> before = snapshotForEvent(NodeAddEvent.class);
                     this.enduringNodes.replace(newNode, previous);
                     invalidateCache();
-                    ImmutableCollection<? extends Node> after = enduringData().immutable().values();
 
-                    this.plugin.getEventFactory().handleNodeAdd(newNode, this, before, after);
+                    if (before != null) {
+                        this.plugin.getEventFactory().handleNodeAdd(newNode, this, before, enduringData().immutable().values());
+                    }
                     return Maps.immutableEntry(DataMutateResult.SUCCESS, newNode);
                 }
 
@@ -590,12 +687,13 @@ public abstract class PermissionHolder {
                     // Only replace if the new expiry time is greater than the old one.
                     if (node.getExpiryUnixTime() > previous.getExpiryUnixTime()) {
 
-                        ImmutableCollection<? extends Node> before = enduringData().immutable().values();
+                        ImmutableCollection<? extends Node> before = snapshotForEvent(NodeAddEvent.class);
                         this.enduringNodes.replace(node, previous);
                         invalidateCache();
-                        ImmutableCollection<? extends Node> after = enduringData().immutable().values();
 
-                        this.plugin.getEventFactory().handleNodeAdd(node, this, before, after);
+                        if (before != null) {
+                            this.plugin.getEventFactory().handleNodeAdd(node, this, before, enduringData().immutable().values());
+                        }
                         return Maps.immutableEntry(DataMutateResult.SUCCESS, node);
                     }
                 }
@@ -633,12 +731,13 @@ public abstract class PermissionHolder {
             return DataMutateResult.LACKS;
         }
 
-        ImmutableCollection<? extends Node> before = enduringData().immutable().values();
+        ImmutableCollection<? extends Node> before = snapshotForEvent(NodeRemoveEvent.class);
         this.enduringNodes.remove(node);
         invalidateCache();
-        ImmutableCollection<? extends Node> after = enduringData().immutable().values();
 
-        this.plugin.getEventFactory().handleNodeRemove(node, this, before, after);
+        if (before != null) {
+            this.plugin.getEventFactory().handleNodeRemove(node, this, before, enduringData().immutable().values());
+        }
         return DataMutateResult.SUCCESS;
     }
 
@@ -661,30 +760,28 @@ public abstract class PermissionHolder {
      * Clear all of the holders permission nodes
      */
     public boolean clearNodes() {
-        ImmutableCollection<? extends Node> before = enduringData().immutable().values();
-        this.enduringNodes.clear();
-        invalidateCache();
-        ImmutableCollection<? extends Node> after = enduringData().immutable().values();
-
-        if (before.size() == after.size()) {
+        ImmutableCollection<? extends Node> before = snapshotForEvent(NodeClearEvent.class);
+        if (!this.enduringNodes.clear()) {
             return false;
         }
+        invalidateCache();
 
-        this.plugin.getEventFactory().handleNodeClear(this, before, after);
+        if (before != null) {
+            this.plugin.getEventFactory().handleNodeClear(this, before, enduringData().immutable().values());
+        }
         return true;
     }
 
     public boolean clearNodes(ContextSet contextSet) {
-        ImmutableCollection<? extends Node> before = enduringData().immutable().values();
-        this.enduringNodes.clear(contextSet);
-        invalidateCache();
-        ImmutableCollection<? extends Node> after = enduringData().immutable().values();
-
-        if (before.size() == after.size()) {
+        ImmutableCollection<? extends Node> before = snapshotForEvent(NodeClearEvent.class);
+        if (!this.enduringNodes.clear(contextSet)) {
             return false;
         }
+        invalidateCache();
 
-        this.plugin.getEventFactory().handleNodeClear(this, before, after);
+        if (before != null) {
+            this.plugin.getEventFactory().handleNodeClear(this, before, enduringData().immutable().values());
+        }
         return true;
     }
 
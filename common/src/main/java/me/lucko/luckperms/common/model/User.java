@@ -61,23 +61,82 @@ public class User extends PermissionHolder implements Identifiable<UserIdentifie
      */
     private final UserCachedData cachedData;
 
+    /**
+     * If this instance is a detached copy of the users data
+     */
+    private final boolean detached;
+
+    /**
+     * If the user only holds provisional data, because their actual data
+     * hasn't been loaded yet
+     */
+    private volatile boolean provisional = false;
+
     public User(UUID uuid, String name, LuckPermsPlugin plugin) {
+        this(uuid, name, plugin, false);
+    }
+
+    public User(UUID uuid, LuckPermsPlugin plugin) {
+        this(uuid, null, plugin);
+    }
+
+    private User(UUID uuid, String name, LuckPermsPlugin plugin, boolean detached) {
         super(plugin);
         this.uuid = uuid;
+        this.detached = detached;
         setName(name, false);
 
         this.primaryGroup = plugin.getConfiguration().get(ConfigKeys.PRIMARY_GROUP_CALCULATION).apply(this);
 
         this.cachedData = new UserCachedData(this);
-        getPlugin().getEventFactory().handleUserCacheLoad(this, this.cachedData);
+        if (!detached) {
+            getPlugin().getEventFactory().handleUserCacheLoad(this, this.cachedData);
+        }
     }
 
-    public User(UUID uuid, LuckPermsPlugin plugin) {
-        this(uuid, null, plugin);
+    /**
+     * Creates a detached user instance.
+     *
+     * <p>Detached instances are never registered with the user manager, and
+     * no events are posted for them. They are used to hold a read-only copy of
+     * the data of users who aren't loaded.</p>
+     *
+     * @param uuid the users uuid
+     * @param plugin the plugin instance
+     * @return a new detached user
+     */
+    public static User detached(UUID uuid, LuckPermsPlugin plugin) {
+        return new User(uuid, null, plugin, true);
+    }
+
+    public boolean isDetached() {
+        return this.detached;
+    }
+
+    /**
+     * Gets if the user only holds provisional data (e.g. defaults given while
+     * their actual data is still loading).
+     *
+     * <p>Provisional data is never saved, as it would overwrite the users actual data.
+     * The user stops being provisional once their data is loaded successfully.</p>
+     *
+     * @return true if the users data is provisional
+     */
+    public boolean isProvisional() {
+        return this.provisional;
+    }
+
+    public void setProvisional(boolean provisional) {
+        this.provisional = provisional;
+    }
+
+    @Override
+    protected boolean shouldPostEvents() {
+        return !this.detached;
     }
 
     @Override
-    protected void invalidateCache() {
+    public void invalidateCache() {
         super.invalidateCache();
 
         // invalidate our caches
@@ -49,7 +49,9 @@ import me.lucko.luckperms.common.logging.Logger;
 import me.lucko.luckperms.common.logging.SenderLogger;
 import me.lucko.luckperms.common.messaging.InternalMessagingService;
 import me.lucko.luckperms.common.messaging.MessagingFactory;
+import me.lucko.luckperms.common.model.ExpiryQueue;
 import me.lucko.luckperms.common.sender.Sender;
+import me.lucko.luckperms.common.storage.LocalSnapshot;
 import me.lucko.luckperms.common.storage.Storage;
 import me.lucko.luckperms.common.storage.StorageFactory;
 import me.lucko.luckperms.common.storage.StorageType;
@@ -76,9 +78,11 @@ public abstract class AbstractLuckPermsPlugin implements LuckPermsPlugin {
     private LuckPermsConfiguration configuration;
     private LocaleManager localeManager;
     private FileWatcher fileWatcher = null;
+    private LocalSnapshot localSnapshot = null;
     private Storage storage;
     private InternalMessagingService messagingService = null;
     private BufferedRequest<Void> updateTaskBuffer;
+    private ExpiryQueue expiryQueue;
     private InheritanceHandler inheritanceHandler;
     private CalculatorFactory calculatorFactory;
     private LuckPermsApiProvider apiProvider;
@@ -139,12 +143,17 @@ public abstract class AbstractLuckPermsPlugin implements LuckPermsPlugin {
         // setup the update task buffer
         this.updateTaskBuffer = new UpdateTaskBuffer(this);
 
+        if (getConfiguration().get(ConfigKeys.LOCAL_SNAPSHOT)) {
+            this.localSnapshot = new LocalSnapshot(this);
+        }
+
         // register commands
         registerCommands();
 
         // load internal managers
         getLogger().info("Loading internal permission managers...");
         this.inheritanceHandler = new InheritanceHandler(this);
+        this.expiryQueue = new ExpiryQueue();
 
         // setup user/group/track manager
         setupManagers();
@@ -173,11 +182,17 @@ public abstract class AbstractLuckPermsPlugin implements LuckPermsPlugin {
         getBootstrap().getScheduler().asyncLater(() -> this.updateTaskBuffer.request(), 2, TimeUnit.SECONDS);
 
         // run an update instantly.
-        getLogger().info("Performing initial data load...");
-        try {
-            new UpdateTask(this, true).run();
-        } catch (Exception e) {
-            e.printStackTrace();
+        if (this.localSnapshot != null && this.localSnapshot.load()) {
+            // reconcile with the storage in the background
+            getLogger().info("Loaded groups and tracks from the local snapshot - performing initial data load in the background...");
+            getBootstrap().getScheduler().executeAsync(() -> new UpdateTask(this, true).run());
+        } else {
+            getLogger().info("Performing initial data load...");
+            try {
+                new UpdateTask(this, true).run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
         }
 
         // init housekeeping tasks
@@ -197,6 +212,11 @@ public abstract class AbstractLuckPermsPlugin implements LuckPermsPlugin {
         // remove any hooks into the platform
         removePlatformHooks();
 
+        // save the latest data to the local snapshot
+        if (this.localSnapshot != null) {
+            this.localSnapshot.save();
+        }
+
         // close storage
         getLogger().info("Closing storage...");
         this.storage.shutdown();
@@ -286,6 +306,11 @@ public abstract class AbstractLuckPermsPlugin implements LuckPermsPlugin {
         return Optional.ofNullable(this.fileWatcher);
     }
 
+    @Override
+    public Optional<LocalSnapshot> getLocalSnapshot() {
+        return Optional.ofNullable(this.localSnapshot);
+    }
+
     @Override
     public Storage getStorage() {
         return this.storage;
@@ -301,6 +326,11 @@ public abstract class AbstractLuckPermsPlugin implements LuckPermsPlugin {
         return this.updateTaskBuffer;
     }
 
+    @Override
+    public ExpiryQueue getExpiryQueue() {
+        return this.expiryQueue;
+    }
+
     @Override
     public InheritanceHandler getInheritanceHandler() {
         return this.inheritanceHandler;
@@ -44,9 +44,11 @@ import me.lucko.luckperms.common.managers.group.GroupManager;
 import me.lucko.luckperms.common.managers.track.TrackManager;
 import me.lucko.luckperms.common.managers.user.UserManager;
 import me.lucko.luckperms.common.messaging.InternalMessagingService;
+import me.lucko.luckperms.common.model.ExpiryQueue;
 import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.plugin.bootstrap.LuckPermsBootstrap;
 import me.lucko.luckperms.common.sender.Sender;
+import me.lucko.luckperms.common.storage.LocalSnapshot;
 import me.lucko.luckperms.common.storage.Storage;
 import me.lucko.luckperms.common.storage.dao.file.FileWatcher;
 import me.lucko.luckperms.common.treeview.PermissionRegistry;
@@ -220,6 +222,13 @@ public interface LuckPermsPlugin {
      */
     Optional<FileWatcher> getFileWatcher();
 
+    /**
+     * Gets the local snapshot of groups and tracks, if enabled.
+     *
+     * @return the local snapshot
+     */
+    Optional<LocalSnapshot> getLocalSnapshot();
+
     /**
      * Gets a calculated context instance for the user using the rules of the platform.
      *
@@ -253,6 +262,13 @@ public interface LuckPermsPlugin {
      */
     BufferedRequest<Void> getUpdateTaskBuffer();
 
+    /**
+     * Gets the queue of temporary node expiry times, used by the {@link me.lucko.luckperms.common.tasks.ExpireTemporaryTask}.
+     *
+     * @return the expiry queue
+     */
+    ExpiryQueue getExpiryQueue();
+
     /**
      * Called at the end of the sync task.
      */
@@ -260,4 +276,13 @@ public interface LuckPermsPlugin {
 
     }
 
+    /**
+     * Called when the cached permission data for a user is invalidated or recalculated.
+     *
+     * @param user the user
+     */
+    default void onUserPermissionsChange(User user) {
+
+    }
+
 }
@@ -34,16 +34,21 @@ import me.lucko.luckperms.api.PlayerSaveResult;
 import me.lucko.luckperms.api.event.cause.CreationCause;
 import me.lucko.luckperms.api.event.cause.DeletionCause;
 import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogFilter;
+import me.lucko.luckperms.common.actionlog.LogPage;
 import me.lucko.luckperms.common.api.delegates.model.ApiStorage;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
 import me.lucko.luckperms.common.bulkupdate.comparisons.Constraint;
+import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.model.Group;
 import me.lucko.luckperms.common.model.Track;
 import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.storage.StorageExecutor.Priority;
 import me.lucko.luckperms.common.storage.dao.AbstractDao;
 import me.lucko.luckperms.common.storage.wrappings.PhasedStorage;
 
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -52,6 +57,8 @@ import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Implements {@link Storage} using an {@link AbstractDao}.
@@ -64,14 +71,29 @@ public class AbstractStorage implements Storage {
         return PhasedStorage.wrap(base);
     }
 
+    /**
+     * How often {@link #pollChanges()} should return all changes, regardless
+     * of what the dao reports
+     */
+    private static final long FULL_SYNC_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
     private final LuckPermsPlugin plugin;
     private final AbstractDao dao;
 
+    private final Object changesLock = new Object();
+    private long changesVersion = -1;
+    private long lastFullSync = 0;
+
+    private final StorageExecutor executor;
     private final ApiStorage apiDelegate;
 
     private AbstractStorage(LuckPermsPlugin plugin, AbstractDao dao) {
         this.plugin = plugin;
         this.dao = dao;
+        this.executor = new StorageExecutor(
+                plugin.getConfiguration().get(ConfigKeys.STORAGE_EXECUTOR_THREADS),
+                plugin.getConfiguration().get(ConfigKeys.STORAGE_EXECUTOR_QUEUE_LIMIT)
+        );
         this.apiDelegate = new ApiStorage(plugin, this);
     }
 
@@ -80,26 +102,60 @@ public class AbstractStorage implements Storage {
         return this.dao;
     }
 
-    private <T> CompletableFuture<T> makeFuture(Callable<T> supplier) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                return supplier.call();
-            } catch (Exception e) {
-                Throwables.propagateIfPossible(e);
-                throw new CompletionException(e);
-            }
-        }, this.dao.getPlugin().getBootstrap().getScheduler().async());
+    private <T> CompletableFuture<T> makeFuture(Priority priority, Callable<T> supplier) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return call(supplier);
+                } catch (Exception e) {
+                    Throwables.propagateIfPossible(e);
+                    throw new CompletionException(e);
+                }
+            }, this.executor.lane(priority));
+        } catch (RejectedExecutionException e) {
+            return rejectedFuture(e);
+        }
     }
 
-    private CompletableFuture<Void> makeFuture(ThrowingRunnable runnable) {
-        return CompletableFuture.runAsync(() -> {
-            try {
-                runnable.run();
-            } catch (Exception e) {
-                Throwables.propagateIfPossible(e);
-                throw new CompletionException(e);
+    private CompletableFuture<Void> makeFuture(Priority priority, ThrowingRunnable runnable) {
+        try {
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    call(() -> {
+                        runnable.run();
+                        return null;
+                    });
+                } catch (Exception e) {
+                    Throwables.propagateIfPossible(e);
+                    throw new CompletionException(e);
+                }
+            }, this.executor.lane(priority));
+        } catch (RejectedExecutionException e) {
+            return rejectedFuture(e);
+        }
+    }
+
+    private <T> T call(Callable<T> operation) throws Exception {
+        try {
+            return operation.call();
+        } catch (Exception e) {
+            // retry once if the dao was able to recover from the failure
+            if (!this.dao.recover(e)) {
+                throw e;
             }
-        }, this.dao.getPlugin().getBootstrap().getScheduler().async());
+            return operation.call();
+        }
+    }
+
+    private static <T> CompletableFuture<T> rejectedFuture(RejectedExecutionException e) {
+        // the executor is overloaded - fail the operation, instead of blocking the caller
+        return failedFuture(e);
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(Exception e) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
     }
 
     @Override
@@ -128,6 +184,9 @@ public class AbstractStorage implements Storage {
 
     @Override
     public void shutdown() {
+        // let queued operations finish before the dao is shutdown
+        this.executor.shutdown();
+
         try {
             this.dao.shutdown();
         } catch (Exception e) {
@@ -138,48 +197,105 @@ public class AbstractStorage implements Storage {
 
     @Override
     public Map<String, String> getMeta() {
-        return this.dao.getMeta();
+        Map<String, String> meta = new LinkedHashMap<>(this.dao.getMeta());
+        meta.putAll(this.executor.getMeta());
+        return meta;
     }
 
     @Override
     public CompletableFuture<Void> logAction(LogEntry entry) {
-        return makeFuture(() -> this.dao.logAction(entry));
+        return makeFuture(Priority.BACKGROUND, () -> this.dao.logAction(entry));
     }
 
     @Override
     public CompletableFuture<Log> getLog() {
-        return makeFuture(this.dao::getLog);
+        return makeFuture(Priority.INTERACTIVE, this.dao::getLog);
+    }
+
+    @Override
+    public CompletableFuture<LogPage> getLogPage(LogFilter filter, int pageNo, int entriesPerPage) {
+        return makeFuture(Priority.INTERACTIVE, () -> this.dao.getLogPage(filter, pageNo, entriesPerPage));
     }
 
     @Override
     public CompletableFuture<Void> applyBulkUpdate(BulkUpdate bulkUpdate) {
-        return makeFuture(() -> this.dao.applyBulkUpdate(bulkUpdate));
+        return makeFuture(Priority.BACKGROUND, () -> this.dao.applyBulkUpdate(bulkUpdate));
+    }
+
+    @Override
+    public CompletableFuture<StorageChanges> pollChanges() {
+        return makeFuture(Priority.BACKGROUND, () -> {
+            synchronized (this.changesLock) {
+                StorageChanges changes = this.dao.getChanges(this.changesVersion);
+                long now = System.currentTimeMillis();
+
+                if (this.changesVersion == -1 || now - this.lastFullSync > FULL_SYNC_INTERVAL) {
+                    changes = StorageChanges.all(changes.getVersion());
+                }
+                if (changes.isAll()) {
+                    this.lastFullSync = now;
+                }
+
+                this.changesVersion = changes.getVersion();
+                return changes;
+            }
+        });
+    }
+
+    @Override
+    public void markAllChanged() {
+        synchronized (this.changesLock) {
+            this.lastFullSync = 0;
+        }
     }
 
     @Override
     public CompletableFuture<User> loadUser(UUID uuid, String username) {
-        return makeFuture(() -> {
+        return makeFuture(Priority.INTERACTIVE, () -> {
             User user = this.dao.loadUser(uuid, username);
             if (user != null) {
+                // the user now holds their actual data
+                user.setProvisional(false);
                 this.plugin.getEventFactory().handleUserLoad(user);
             }
             return user;
         });
     }
 
+    @Override
+    public CompletableFuture<User> loadDetachedUser(UUID uuid) {
+        return makeFuture(Priority.BACKGROUND, () -> this.dao.loadDetachedUser(uuid));
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, User>> loadUsers(Set<UUID> uuids) {
+        return makeFuture(Priority.BACKGROUND, () -> {
+            Map<UUID, User> users = this.dao.loadUsers(uuids);
+            for (User user : users.values()) {
+                user.setProvisional(false);
+                this.plugin.getEventFactory().handleUserLoad(user);
+            }
+            return users;
+        });
+    }
+
     @Override
     public CompletableFuture<Void> saveUser(User user) {
-        return makeFuture(() -> this.dao.saveUser(user));
+        if (user.isProvisional()) {
+            // saving would overwrite the users actual data
+            return failedFuture(new IllegalStateException("Data for " + user.getFriendlyName() + " hasn't been loaded - refusing to save provisional data"));
+        }
+        return makeFuture(Priority.INTERACTIVE, () -> this.dao.saveUser(user));
     }
 
     @Override
     public CompletableFuture<Set<UUID>> getUniqueUsers() {
-        return makeFuture(this.dao::getUniqueUsers);
+        return makeFuture(Priority.BACKGROUND, this.dao::getUniqueUsers);
     }
 
     @Override
     public CompletableFuture<List<HeldPermission<UUID>>> getUsersWithPermission(Constraint constraint) {
-        return makeFuture(() -> {
+        return makeFuture(Priority.INTERACTIVE, () -> {
             List<HeldPermission<UUID>> result = this.dao.getUsersWithPermission(constraint);
             result.removeIf(entry -> entry.asNode().hasExpired());
             return ImmutableList.copyOf(result);
@@ -188,7 +304,7 @@ public class AbstractStorage implements Storage {
 
     @Override
     public CompletableFuture<Group> createAndLoadGroup(String name, CreationCause cause) {
-        return makeFuture(() -> {
+        return makeFuture(Priority.INTERACTIVE, () -> {
             Group group = this.dao.createAndLoadGroup(name);
             if (group != null) {
                 this.plugin.getEventFactory().handleGroupCreate(group, cause);
@@ -199,7 +315,7 @@ public class AbstractStorage implements Storage {
 
     @Override
     public CompletableFuture<Optional<Group>> loadGroup(String name) {
-        return makeFuture(() -> {
+        return makeFuture(Priority.INTERACTIVE, () -> {
             Optional<Group> group = this.dao.loadGroup(name);
             if (group.isPresent()) {
                 this.plugin.getEventFactory().handleGroupLoad(group.get());
@@ -208,9 +324,20 @@ public class AbstractStorage implements Storage {
         });
     }
 
+    @Override
+    public CompletableFuture<Map<String, Group>> loadGroups(Set<String> names) {
+        return makeFuture(Priority.BACKGROUND, () -> {
+            Map<String, Group> groups = this.dao.loadGroups(names);
+            for (Group group : groups.values()) {
+                this.plugin.getEventFactory().handleGroupLoad(group);
+            }
+            return groups;
+        });
+    }
+
     @Override
     public CompletableFuture<Void> loadAllGroups() {
-        return makeFuture(() -> {
+        return makeFuture(Priority.BACKGROUND, () -> {
             this.dao.loadAllGroups();
             this.plugin.getEventFactory().handleGroupLoadAll();
         });
@@ -218,12 +345,12 @@ public class AbstractStorage implements Storage {
 
     @Override
     public CompletableFuture<Void> saveGroup(Group group) {
-        return makeFuture(() -> this.dao.saveGroup(group));
+        return makeFuture(Priority.INTERACTIVE, () -> this.dao.saveGroup(group));
     }
 
     @Override
     public CompletableFuture<Void> deleteGroup(Group group, DeletionCause cause) {
-        return makeFuture(() -> {
+        return makeFuture(Priority.INTERACTIVE, () -> {
             this.dao.deleteGroup(group);
             this.plugin.getEventFactory().handleGroupDelete(group, cause);
         });
@@ -231,7 +358,7 @@ public class AbstractStorage implements Storage {
 
     @Override
     public CompletableFuture<List<HeldPermission<String>>> getGroupsWithPermission(Constraint constraint) {
-        return makeFuture(() -> {
+        return makeFuture(Priority.INTERACTIVE, () -> {
             List<HeldPermission<String>> result = this.dao.getGroupsWithPermission(constraint);
             result.removeIf(entry -> entry.asNode().hasExpired());
             return ImmutableList.copyOf(result);
@@ -240,7 +367,7 @@ public class AbstractStorage implements Storage {
 
     @Override
     public CompletableFuture<Track> createAndLoadTrack(String name, CreationCause cause) {
-        return makeFuture(() -> {
+        return makeFuture(Priority.INTERACTIVE, () -> {
             Track track = this.dao.createAndLoadTrack(name);
             if (track != null) {
                 this.plugin.getEventFactory().handleTrackCreate(track, cause);
@@ -251,7 +378,7 @@ public class AbstractStorage implements Storage {
 
     @Override
     public CompletableFuture<Optional<Track>> loadTrack(String name) {
-        return makeFuture(() -> {
+        return makeFuture(Priority.INTERACTIVE, () -> {
             Optional<Track> track = this.dao.loadTrack(name);
             if (track.isPresent()) {
                 this.plugin.getEventFactory().handleTrackLoad(track.get());
@@ -262,7 +389,7 @@ public class AbstractStorage implements Storage {
 
     @Override
     public CompletableFuture<Void> loadAllTracks() {
-        return makeFuture(() -> {
+        return makeFuture(Priority.BACKGROUND, () -> {
             this.dao.loadAllTracks();
             this.plugin.getEventFactory().handleTrackLoadAll();
         });
@@ -270,12 +397,12 @@ public class AbstractStorage implements Storage {
 
     @Override
     public CompletableFuture<Void> saveTrack(Track track) {
-        return makeFuture(() -> this.dao.saveTrack(track));
+        return makeFuture(Priority.INTERACTIVE, () -> this.dao.saveTrack(track));
     }
 
     @Override
     public CompletableFuture<Void> deleteTrack(Track track, DeletionCause cause) {
-        return makeFuture(() -> {
+        return makeFuture(Priority.INTERACTIVE, () -> {
             this.dao.deleteTrack(track);
             this.plugin.getEventFactory().handleTrackDelete(track, cause);
          });
@@ -283,7 +410,7 @@ public class AbstractStorage implements Storage {
 
     @Override
     public CompletableFuture<PlayerSaveResult> savePlayerData(UUID uuid, String username) {
-        return makeFuture(() -> {
+        return makeFuture(Priority.INTERACTIVE, () -> {
             PlayerSaveResult result = this.dao.savePlayerData(uuid, username);
             if (result != null) {
                 this.plugin.getEventFactory().handlePlayerDataSave(uuid, username, result);
@@ -294,11 +421,11 @@ public class AbstractStorage implements Storage {
 
     @Override
     public CompletableFuture<UUID> getPlayerUuid(String username) {
-        return makeFuture(() -> this.dao.getPlayerUuid(username));
+        return makeFuture(Priority.INTERACTIVE, () -> this.dao.getPlayerUuid(username));
     }
 
     @Override
     public CompletableFuture<String> getPlayerName(UUID uuid) {
-        return makeFuture(() -> this.dao.getPlayerName(uuid));
+        return makeFuture(Priority.INTERACTIVE, () -> this.dao.getPlayerName(uuid));
     }
 }
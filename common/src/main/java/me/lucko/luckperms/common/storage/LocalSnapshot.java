@@ -0,0 +1,166 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package me.lucko.luckperms.common.storage;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import me.lucko.luckperms.api.Node;
+import me.lucko.luckperms.common.model.Group;
+import me.lucko.luckperms.common.model.NodeMapType;
+import me.lucko.luckperms.common.model.Track;
+import me.lucko.luckperms.common.node.factory.NodeFactory;
+import me.lucko.luckperms.common.node.model.NodeDataContainer;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.web.WebEditor;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A local copy of the groups and tracks held in storage.
+ *
+ * <p>The snapshot is written after each successful sync, and is used to load
+ * groups and tracks on startup without waiting for the storage.</p>
+ */
+public class LocalSnapshot {
+    private static final Gson GSON = new Gson();
+
+    private final LuckPermsPlugin plugin;
+    private final Path file;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public LocalSnapshot(LuckPermsPlugin plugin) {
+        this.plugin = plugin;
+        this.file = plugin.getBootstrap().getDataDirectory().resolve("snapshot.json.gz");
+    }
+
+    /**
+     * Loads the groups and tracks in the snapshot.
+     *
+     * @return true if the snapshot was loaded
+     */
+    public boolean load() {
+        this.lock.lock();
+        try {
+            if (!Files.exists(this.file)) {
+                return false;
+            }
+
+            JsonObject data;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(this.file)), StandardCharsets.UTF_8))) {
+                data = GSON.fromJson(reader, JsonObject.class);
+            }
+
+            // the snapshot is only valid for the storage it was taken from
+            if (data == null || !data.has("storage") || !data.get("storage").getAsString().equals(this.plugin.getStorage().getName())) {
+                return false;
+            }
+
+            JsonObject groups = data.get("groups").getAsJsonObject();
+            if (!groups.has(NodeFactory.DEFAULT_GROUP_NAME)) {
+                return false;
+            }
+
+            for (Map.Entry<String, JsonElement> e : groups.entrySet()) {
+                Set<Node> nodes = WebEditor.deserializePermissions(e.getValue().getAsJsonArray()).stream()
+                        .map(NodeDataContainer::toNode)
+                        .collect(Collectors.toSet());
+
+                Group group = this.plugin.getGroupManager().getOrMake(e.getKey());
+                group.setNodes(NodeMapType.ENDURING, nodes);
+            }
+
+            for (Map.Entry<String, JsonElement> e : data.get("tracks").getAsJsonObject().entrySet()) {
+                List<String> trackGroups = new ArrayList<>();
+                for (JsonElement group : e.getValue().getAsJsonArray()) {
+                    trackGroups.add(group.getAsString());
+                }
+
+                Track track = this.plugin.getTrackManager().getOrMake(e.getKey());
+                track.setGroups(trackGroups);
+            }
+            return true;
+        } catch (Exception e) {
+            this.plugin.getLogger().warn("Unable to load the local snapshot: " + e.getMessage());
+            return false;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the currently loaded groups and tracks to the snapshot.
+     */
+    public void save() {
+        JsonObject groups = new JsonObject();
+        for (Group group : this.plugin.getGroupManager().getAll().values()) {
+            groups.add(group.getName(), WebEditor.serializePermissions(group.enduringData().immutable().values().stream().map(NodeDataContainer::fromNode)));
+        }
+
+        JsonObject tracks = new JsonObject();
+        for (Track track : this.plugin.getTrackManager().getAll().values()) {
+            JsonArray trackGroups = new JsonArray();
+            track.getGroups().forEach(trackGroups::add);
+            tracks.add(track.getName(), trackGroups);
+        }
+
+        JsonObject data = new JsonObject();
+        data.addProperty("storage", this.plugin.getStorage().getName());
+        data.add("groups", groups);
+        data.add("tracks", tracks);
+
+        this.lock.lock();
+        try {
+            // write to a temporary file first, so a partially written snapshot is never loaded
+            Path temp = this.file.resolveSibling(this.file.getFileName().toString() + ".tmp");
+            try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(temp)), StandardCharsets.UTF_8))) {
+                GSON.toJson(data, writer);
+            }
+            Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+}
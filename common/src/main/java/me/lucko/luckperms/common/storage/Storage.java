@@ -31,6 +31,8 @@ import me.lucko.luckperms.api.PlayerSaveResult;
 import me.lucko.luckperms.api.event.cause.CreationCause;
 import me.lucko.luckperms.api.event.cause.DeletionCause;
 import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogFilter;
+import me.lucko.luckperms.common.actionlog.LogPage;
 import me.lucko.luckperms.common.api.delegates.model.ApiStorage;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
 import me.lucko.luckperms.common.bulkupdate.comparisons.Constraint;
@@ -67,10 +69,39 @@ public interface Storage {
 
     CompletableFuture<Log> getLog();
 
+    CompletableFuture<LogPage> getLogPage(LogFilter filter, int pageNo, int entriesPerPage);
+
     CompletableFuture<Void> applyBulkUpdate(BulkUpdate bulkUpdate);
 
+    /**
+     * Gets the changes made to the storage since the last call.
+     *
+     * <p>Returns {@link StorageChanges#isAll() all changes} on the first call,
+     * and periodically after that, in case anything has modified the storage
+     * without recording its changes.</p>
+     *
+     * @return the changes
+     */
+    CompletableFuture<StorageChanges> pollChanges();
+
+    /**
+     * Makes the next call to {@link #pollChanges()} return all changes.
+     */
+    void markAllChanged();
+
     CompletableFuture<User> loadUser(UUID uuid, String username);
 
+    /**
+     * Loads a read-only copy of a users data, without registering the user
+     * with the user manager, posting any events, or saving any changes back.
+     *
+     * @param uuid the users uuid
+     * @return a detached user
+     */
+    CompletableFuture<User> loadDetachedUser(UUID uuid);
+
+    CompletableFuture<Map<UUID, User>> loadUsers(Set<UUID> uuids);
+
     CompletableFuture<Void> saveUser(User user);
 
     CompletableFuture<Set<UUID>> getUniqueUsers();
@@ -81,6 +112,14 @@ public interface Storage {
 
     CompletableFuture<Optional<Group>> loadGroup(String name);
 
+    /**
+     * Loads a number of groups at once.
+     *
+     * @param names the names of the groups
+     * @return the groups which exist, by name
+     */
+    CompletableFuture<Map<String, Group>> loadGroups(Set<String> names);
+
     CompletableFuture<Void> loadAllGroups();
 
     CompletableFuture<Void> saveGroup(Group group);
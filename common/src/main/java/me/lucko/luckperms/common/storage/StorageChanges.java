@@ -0,0 +1,109 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package me.lucko.luckperms.common.storage;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The holders which have changed in storage since a given version.
+ *
+ * <p>Versions are opaque to callers, and are only meaningful to the storage
+ * implementation which produced them.</p>
+ */
+public final class StorageChanges {
+
+    /**
+     * Creates an instance indicating that anything may have changed, and a
+     * full sync is required.
+     *
+     * @param version the current version
+     * @return the changes
+     */
+    public static StorageChanges all(long version) {
+        return new StorageChanges(version, true, ImmutableSet.of(), ImmutableSet.of(), ImmutableSet.of());
+    }
+
+    public static StorageChanges of(long version, Set<UUID> users, Set<String> groups, Set<String> tracks) {
+        return new StorageChanges(version, false, ImmutableSet.copyOf(users), ImmutableSet.copyOf(groups), ImmutableSet.copyOf(tracks));
+    }
+
+    private final long version;
+    private final boolean all;
+    private final Set<UUID> users;
+    private final Set<String> groups;
+    private final Set<String> tracks;
+
+    private StorageChanges(long version, boolean all, Set<UUID> users, Set<String> groups, Set<String> tracks) {
+        this.version = version;
+        this.all = all;
+        this.users = users;
+        this.groups = groups;
+        this.tracks = tracks;
+    }
+
+    /**
+     * Gets the version of the storage these changes bring the caller up to.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Gets if anything may have changed, in which case the individual sets
+     * of changes should be ignored.
+     *
+     * @return if a full sync is required
+     */
+    public boolean isAll() {
+        return this.all;
+    }
+
+    public Set<UUID> getUsers() {
+        return this.users;
+    }
+
+    public Set<String> getGroups() {
+        return this.groups;
+    }
+
+    public Set<String> getTracks() {
+        return this.tracks;
+    }
+
+    public boolean isEmpty() {
+        return !this.all && this.users.isEmpty() && this.groups.isEmpty() && this.tracks.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "StorageChanges(version=" + this.version + ", all=" + this.all + ", users=" + this.users.size() +
+                ", groups=" + this.groups + ", tracks=" + this.tracks + ")";
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package me.lucko.luckperms.common.storage;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * The executor used to run storage operations.
+ *
+ * <p>Operations are queued in priority lanes, so that player logins aren't
+ * held up behind interactive commands, and neither are held up behind
+ * background work.</p>
+ *
+ * <p>Each lane holds at most the queue limit of operations, and background work
+ * is also refused once the total number of queued operations reaches the limit.
+ * Operations which are refused are rejected with a {@link RejectedExecutionException},
+ * rather than being run on the (possibly latency sensitive) thread which submitted them.</p>
+ */
+public class StorageExecutor {
+
+    /**
+     * The priority lanes, in order of priority
+     */
+    public enum Priority {
+        LOGIN, INTERACTIVE, BACKGROUND
+    }
+
+    private static final ThreadLocal<Priority> PRIORITY_OVERRIDE = new ThreadLocal<>();
+
+    /**
+     * Runs an action, overriding the priority of any storage operations
+     * submitted by it on the current thread.
+     *
+     * @param priority the priority to use
+     * @param action the action
+     * @param <T> the return type
+     * @return the result of the action
+     */
+    public static <T> T withPriority(Priority priority, Supplier<T> action) {
+        Priority previous = PRIORITY_OVERRIDE.get();
+        PRIORITY_OVERRIDE.set(priority);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                PRIORITY_OVERRIDE.remove();
+            } else {
+                PRIORITY_OVERRIDE.set(previous);
+            }
+        }
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final int queueLimit;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Priority, Lane> lanes = new EnumMap<>(Priority.class);
+
+    public StorageExecutor(int threads, int queueLimit) {
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("luckperms-storage-%d").build()
+        );
+        this.queueLimit = queueLimit;
+        for (Priority priority : Priority.values()) {
+            this.lanes.put(priority, new Lane());
+        }
+    }
+
+    /**
+     * Gets an executor which submits tasks to this executor, using the given
+     * priority unless it has been overridden.
+     *
+     * @param priority the default priority
+     * @return an executor
+     * @see #withPriority(Priority, Supplier)
+     */
+    public Executor lane(Priority priority) {
+        return task -> execute(priority, task);
+    }
+
+    /**
+     * Submits a task to the executor.
+     *
+     * @param defaultPriority the priority to use, unless it has been overridden
+     * @param task the task
+     * @throws RejectedExecutionException if the queue for the priority is full
+     */
+    public void execute(Priority defaultPriority, Runnable task) {
+        Priority override = PRIORITY_OVERRIDE.get();
+        Priority priority = override != null ? override : defaultPriority;
+
+        Lane lane = this.lanes.get(priority);
+        if (lane.queued.incrementAndGet() > this.queueLimit || (priority == Priority.BACKGROUND && getQueueDepth() >= this.queueLimit)) {
+            lane.queued.decrementAndGet();
+            lane.rejected.incrementAndGet();
+            throw new RejectedExecutionException("Too many queued " + priority.name().toLowerCase() + " storage operations");
+        }
+
+        this.executor.execute(new QueuedTask(priority, this.sequence.getAndIncrement(), lane, task));
+    }
+
+    public int getQueueDepth() {
+        return this.executor.getQueue().size();
+    }
+
+    public int getQueueDepth(Priority priority) {
+        return this.lanes.get(priority).queued.get();
+    }
+
+    /**
+     * Gets the average time recent operations in the given lane have spent queued.
+     *
+     * @param priority the lane
+     * @return the average wait time, in milliseconds
+     */
+    public double getAverageWaitMillis(Priority priority) {
+        return this.lanes.get(priority).averageWaitMillis;
+    }
+
+    public long getMaxWaitMillis(Priority priority) {
+        return this.lanes.get(priority).maxWaitMillis.get();
+    }
+
+    public long getRejected(Priority priority) {
+        return this.lanes.get(priority).rejected.get();
+    }
+
+    public Map<String, String> getMeta() {
+        StringBuilder queued = new StringBuilder();
+        StringBuilder waits = new StringBuilder();
+        StringBuilder rejected = new StringBuilder();
+        for (Priority priority : Priority.values()) {
+            String name = priority.name().toLowerCase();
+            if (queued.length() != 0) {
+                queued.append(", ");
+                waits.append(", ");
+                rejected.append(", ");
+            }
+            queued.append(name).append('=').append(getQueueDepth(priority));
+            rejected.append(name).append('=').append(getRejected(priority));
+            waits.append(name).append('=').append(String.format("%.1f", getAverageWaitMillis(priority)))
+                    .append("ms (max ").append(getMaxWaitMillis(priority)).append("ms)");
+        }
+
+        Map<String, String> meta = new LinkedHashMap<>();
+        meta.put("Executor Queue", queued.toString());
+        meta.put("Executor Wait", waits.toString());
+        meta.put("Executor Rejected", rejected.toString());
+        return meta;
+    }
+
+    public void shutdown() {
+        this.executor.shutdown();
+        try {
+            this.executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static final class Lane {
+        // the weight given to the latest sample in the average wait time
+        private static final double WAIT_SMOOTHING = 0.1;
+
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong maxWaitMillis = new AtomicLong();
+        private volatile double averageWaitMillis = 0;
+
+        private synchronized void recordWait(long waitMillis) {
+            this.averageWaitMillis += (waitMillis - this.averageWaitMillis) * WAIT_SMOOTHING;
+            this.maxWaitMillis.accumulateAndGet(waitMillis, Math::max);
+        }
+    }
+
+    private static final class QueuedTask implements Runnable, Comparable<QueuedTask> {
+        private final Priority priority;
+        private final long sequence;
+        private final Lane lane;
+        private final Runnable delegate;
+        private final long queuedAt = System.nanoTime();
+
+        private QueuedTask(Priority priority, long sequence, Lane lane, Runnable delegate) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.lane = lane;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void run() {
+            this.lane.queued.decrementAndGet();
+            this.lane.recordWait(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.queuedAt));
+
+            try {
+                this.delegate.run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
+        @Override
+        public int compareTo(QueuedTask o) {
+            int i = this.priority.compareTo(o.priority);
+            if (i != 0) {
+                return i;
+            }
+            return Long.compare(this.sequence, o.sequence);
+        }
+    }
+}
@@ -29,14 +29,18 @@ import me.lucko.luckperms.api.HeldPermission;
 import me.lucko.luckperms.api.LogEntry;
 import me.lucko.luckperms.api.PlayerSaveResult;
 import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogFilter;
+import me.lucko.luckperms.common.actionlog.LogPage;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
 import me.lucko.luckperms.common.bulkupdate.comparisons.Constraint;
 import me.lucko.luckperms.common.model.Group;
 import me.lucko.luckperms.common.model.Track;
 import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.storage.StorageChanges;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -71,14 +75,62 @@ public abstract class AbstractDao {
         return Collections.emptyMap();
     }
 
+    /**
+     * Called when an operation fails, to give the implementation a chance to
+     * recover from the failure.
+     *
+     * @param e the exception thrown by the operation
+     * @return true if the operation should be retried
+     */
+    public boolean recover(Exception e) {
+        return false;
+    }
+
     public abstract void logAction(LogEntry entry) throws Exception;
 
     public abstract Log getLog() throws Exception;
 
+    public LogPage getLogPage(LogFilter filter, int pageNo, int entriesPerPage) throws Exception {
+        // fallback for implementations which can't query the log directly
+        return getLog().getPage(filter, pageNo, entriesPerPage);
+    }
+
     public abstract void applyBulkUpdate(BulkUpdate bulkUpdate) throws Exception;
 
+    /**
+     * Gets the holders which have changed since the given version.
+     *
+     * @param since a version returned by a previous call, or -1 to get just the current version
+     * @return the changes
+     * @throws Exception if an error occurs
+     */
+    public StorageChanges getChanges(long since) throws Exception {
+        // fallback for implementations which don't track changes
+        return StorageChanges.all(0);
+    }
+
     public abstract User loadUser(UUID uuid, String username) throws Exception;
 
+    /**
+     * Loads a read-only copy of a users data, without registering the user with
+     * the user manager.
+     *
+     * @param uuid the users uuid
+     * @return a detached user
+     * @throws Exception if an error occurs
+     * @see User#detached(UUID, LuckPermsPlugin)
+     */
+    public abstract User loadDetachedUser(UUID uuid) throws Exception;
+
+    public Map<UUID, User> loadUsers(Set<UUID> uuids) throws Exception {
+        // fallback for implementations which can't load users in bulk
+        Map<UUID, User> users = new HashMap<>();
+        for (UUID uuid : uuids) {
+            users.put(uuid, loadUser(uuid, null));
+        }
+        return users;
+    }
+
     public abstract void saveUser(User user) throws Exception;
 
     public abstract Set<UUID> getUniqueUsers() throws Exception;
@@ -89,6 +141,18 @@ public abstract class AbstractDao {
 
     public abstract Optional<Group> loadGroup(String name) throws Exception;
 
+    public Map<String, Group> loadGroups(Set<String> names) throws Exception {
+        // fallback for implementations which can't load groups in bulk
+        Map<String, Group> groups = new HashMap<>();
+        for (String name : names) {
+            Optional<Group> group = loadGroup(name);
+            if (group.isPresent()) {
+                groups.put(name, group.get());
+            }
+        }
+        return groups;
+    }
+
     public abstract void loadAllGroups() throws Exception;
 
     public abstract void saveGroup(Group group) throws Exception;
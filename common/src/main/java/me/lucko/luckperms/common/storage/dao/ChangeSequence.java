@@ -0,0 +1,110 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package me.lucko.luckperms.common.storage.dao;
+
+import java.util.Iterator;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the ids read from a sequentially numbered log of changes.
+ *
+ * <p>Ids are allocated when a change is recorded, but a change can become visible to
+ * readers after changes with higher ids (e.g. if the transaction inserting it commits
+ * later). Ids which are skipped over are remembered as gaps, and re-read until they
+ * appear, or until they are old enough to assume they will never be committed.</p>
+ */
+public class ChangeSequence {
+
+    /** How long a gap is re-read for */
+    private static final long GAP_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /** The most gaps which are tracked at once - any more are assumed to be permanent */
+    private static final int MAX_GAPS = 1000;
+
+    // the ids which were skipped over, and when they were first noticed
+    private final SortedMap<Long, Long> gaps = new TreeMap<>();
+
+    // the highest id accepted in the current read
+    private long cursor;
+
+    /**
+     * Starts a read of the changes made since the given version.
+     *
+     * @param since the version the caller is at
+     * @return the id to read changes after
+     */
+    public synchronized long readFrom(long since) {
+        long now = System.currentTimeMillis();
+        Iterator<Long> it = this.gaps.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next() > GAP_TIMEOUT_MILLIS) {
+                it.remove();
+            }
+        }
+
+        // gaps above the caller's version will be read anyway
+        this.gaps.tailMap(since + 1).clear();
+
+        this.cursor = since;
+        return this.gaps.isEmpty() ? since : Math.min(since, this.gaps.firstKey() - 1);
+    }
+
+    /**
+     * Records that a change has been read. Changes must be read in order of their id.
+     *
+     * @param since the version the caller is at
+     * @param id the id of the change
+     * @return true if the change hasn't been seen before, and should be processed
+     */
+    public synchronized boolean accept(long since, long id) {
+        if (id <= since) {
+            // a change which was missing before
+            return this.gaps.remove(id) != null;
+        }
+
+        if (id <= this.cursor) {
+            return false;
+        }
+
+        long missing = id - this.cursor - 1;
+        if (missing > 0 && this.gaps.size() + missing <= MAX_GAPS) {
+            long now = System.currentTimeMillis();
+            for (long gap = this.cursor + 1; gap < id; gap++) {
+                this.gaps.put(gap, now);
+            }
+        }
+        this.cursor = id;
+        return true;
+    }
+
+    /**
+     * Forgets all gaps, for example when the caller is about to perform a full sync.
+     */
+    public synchronized void reset() {
+        this.gaps.clear();
+    }
+}
@@ -186,68 +186,80 @@ public class RethinkDBDao extends AbstractDao {
 		user.getIoLock().lock();
 
 		try {
-			List<NodeDataContainer> data = new ArrayList<>();
-			String primaryGroup = null;
-			String userName = null;
-
-			// Collect user permissions
-			Cursor<Map<String, Object>> playerDataCursor = r.table(USER_PERMISSIONS_TABLE)
-															.filter(r.hashMap("uuid", user.getUuid().toString()))
-															.run(getConnection());
-
-			for(Map<String, Object> playerDataMap : playerDataCursor) {
-				String permission = (String) playerDataMap.get("permission");
-				boolean value = (boolean) playerDataMap.get("value");
-				String server = (String) playerDataMap.get("server");
-				String world = (String) playerDataMap.get("world");
-				long expiry = (long) playerDataMap.get("expiry");
-				String contexts = (String) playerDataMap.get("contexts");
-				data.add(deserializeNode(permission, value, server, world, expiry, contexts));
-			}
+			readUser(user);
+		} finally {
+			user.getIoLock().unlock();
+		}
+		return user;
+	}
 
-			// Collect user meta (username & primary group)
-			Cursor<Map<String, Object>> mainDataCursor = r.table(PLAYERS_TABLE)
-														  .filter(r.hashMap("uuid", user.getUuid().toString()))
-														  .run(getConnection());
+	@Override
+	public User loadDetachedUser(UUID uuid) {
+		User user = User.detached(uuid, this.plugin);
+		readUser(user);
+		return user;
+	}
 
-			if(mainDataCursor.hasNext()) {
-				Map<String, Object> mainDataMap = mainDataCursor.next();
-				userName = (String) mainDataMap.get("username");
-				primaryGroup = (String) mainDataMap.get("primary_group");
-			}
+	private void readUser(User user) {
+		List<NodeDataContainer> data = new ArrayList<>();
+		String primaryGroup = null;
+		String userName = null;
 
-			// update username & primary group
-			if(primaryGroup == null) {
-				primaryGroup = NodeFactory.DEFAULT_GROUP_NAME;
-			}
-			user.getPrimaryGroup().setStoredValue(primaryGroup);
+		// Collect user permissions
+		Cursor<Map<String, Object>> playerDataCursor = r.table(USER_PERMISSIONS_TABLE)
+														.filter(r.hashMap("uuid", user.getUuid().toString()))
+														.run(getConnection());
+
+		for(Map<String, Object> playerDataMap : playerDataCursor) {
+			String permission = (String) playerDataMap.get("permission");
+			boolean value = (boolean) playerDataMap.get("value");
+			String server = (String) playerDataMap.get("server");
+			String world = (String) playerDataMap.get("world");
+			long expiry = (long) playerDataMap.get("expiry");
+			String contexts = (String) playerDataMap.get("contexts");
+			data.add(deserializeNode(permission, value, server, world, expiry, contexts));
+		}
 
-			// Update their username to what was in the storage if the one in the local instance is null
-			user.setName(userName, true);
+		// Collect user meta (username & primary group)
+		Cursor<Map<String, Object>> mainDataCursor = r.table(PLAYERS_TABLE)
+													  .filter(r.hashMap("uuid", user.getUuid().toString()))
+													  .run(getConnection());
 
-			// If the user has any data in storage
-			if(!data.isEmpty()) {
-				Set<Node> nodes = data.stream().map(NodeDataContainer::toNode).collect(Collectors.toSet());
-				user.setNodes(NodeMapType.ENDURING, nodes);
+		if(mainDataCursor.hasNext()) {
+			Map<String, Object> mainDataMap = mainDataCursor.next();
+			userName = (String) mainDataMap.get("username");
+			primaryGroup = (String) mainDataMap.get("primary_group");
+		}
 
-				// Save back to the store if data they were given any defaults or had permissions expire
-				if(this.plugin.getUserManager().giveDefaultIfNeeded(user, false) | user.auditTemporaryPermissions()) {
-					// This should be fine, as the lock will be acquired by the same thread.
-					saveUser(user);
-				}
+		// update username & primary group
+		if(primaryGroup == null) {
+			primaryGroup = NodeFactory.DEFAULT_GROUP_NAME;
+		}
+		user.getPrimaryGroup().setStoredValue(primaryGroup);
 
-			} else {
-				// User has no data in storage.
-				if(this.plugin.getUserManager().shouldSave(user)) {
-					user.clearNodes();
-					user.getPrimaryGroup().setStoredValue(null);
-					this.plugin.getUserManager().giveDefaultIfNeeded(user, false);
-				}
+		// Update their username to what was in the storage if the one in the local instance is null
+		user.setName(userName, true);
+
+		// If the user has any data in storage
+		if(!data.isEmpty()) {
+			Set<Node> nodes = data.stream().map(NodeDataContainer::toNode).collect(Collectors.toSet());
+			user.setNodes(NodeMapType.ENDURING, nodes);
+
+			// Save back to the store if data they were given any defaults or had permissions expire
+			// (detached copies are read-only)
+			if((this.plugin.getUserManager().giveDefaultIfNeeded(user, false) | user.auditTemporaryPermissions()) && !user.isDetached()) {
+				// This should be fine, as the lock will be acquired by the same thread.
+				saveUser(user);
+			}
+
+		} else {
+			// User has no data in storage.
+			if(this.plugin.getUserManager().shouldSave(user)) {
+				user.clearNodes();
+				user.getPrimaryGroup().setStoredValue(null);
+				this.plugin.getUserManager().giveDefaultIfNeeded(user, false);
 			}
-		} finally {
-			user.getIoLock().unlock();
 		}
-		return user;
 	}
 
 	@Override
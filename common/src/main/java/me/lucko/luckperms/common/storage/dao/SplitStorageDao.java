@@ -31,6 +31,8 @@ import me.lucko.luckperms.api.HeldPermission;
 import me.lucko.luckperms.api.LogEntry;
 import me.lucko.luckperms.api.PlayerSaveResult;
 import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogFilter;
+import me.lucko.luckperms.common.actionlog.LogPage;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
 import me.lucko.luckperms.common.bulkupdate.comparisons.Constraint;
 import me.lucko.luckperms.common.model.Group;
@@ -38,6 +40,7 @@ import me.lucko.luckperms.common.model.Track;
 import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.storage.SplitStorageType;
+import me.lucko.luckperms.common.storage.StorageChanges;
 import me.lucko.luckperms.common.storage.StorageType;
 
 import java.util.LinkedHashMap;
@@ -104,6 +107,11 @@ public class SplitStorageDao extends AbstractDao {
         return this.backing.get(this.types.get(SplitStorageType.LOG)).getLog();
     }
 
+    @Override
+    public LogPage getLogPage(LogFilter filter, int pageNo, int entriesPerPage) throws Exception {
+        return this.backing.get(this.types.get(SplitStorageType.LOG)).getLogPage(filter, pageNo, entriesPerPage);
+    }
+
     @Override
     public void applyBulkUpdate(BulkUpdate bulkUpdate) throws Exception {
         StorageType userType = this.types.get(SplitStorageType.USER);
@@ -117,11 +125,40 @@ public class SplitStorageDao extends AbstractDao {
         }
     }
 
+    @Override
+    public StorageChanges getChanges(long since) throws Exception {
+        // each backing dao has its own notion of versions, so changes can only be tracked if one is used for everything
+        StorageType userType = this.types.get(SplitStorageType.USER);
+        if (userType != this.types.get(SplitStorageType.GROUP) || userType != this.types.get(SplitStorageType.TRACK)) {
+            return StorageChanges.all(0);
+        }
+        return this.backing.get(userType).getChanges(since);
+    }
+
     @Override
     public User loadUser(UUID uuid, String username) throws Exception {
         return this.backing.get(this.types.get(SplitStorageType.USER)).loadUser(uuid, username);
     }
 
+    @Override
+    public boolean recover(Exception e) {
+        boolean retry = false;
+        for (AbstractDao ds : this.backing.values()) {
+            retry |= ds.recover(e);
+        }
+        return retry;
+    }
+
+    @Override
+    public User loadDetachedUser(UUID uuid) throws Exception {
+        return this.backing.get(this.types.get(SplitStorageType.USER)).loadDetachedUser(uuid);
+    }
+
+    @Override
+    public Map<UUID, User> loadUsers(Set<UUID> uuids) throws Exception {
+        return this.backing.get(this.types.get(SplitStorageType.USER)).loadUsers(uuids);
+    }
+
     @Override
     public void saveUser(User user) throws Exception {
         this.backing.get(this.types.get(SplitStorageType.USER)).saveUser(user);
@@ -147,6 +184,11 @@ public class SplitStorageDao extends AbstractDao {
         return this.backing.get(this.types.get(SplitStorageType.GROUP)).loadGroup(name);
     }
 
+    @Override
+    public Map<String, Group> loadGroups(Set<String> names) throws Exception {
+        return this.backing.get(this.types.get(SplitStorageType.GROUP)).loadGroups(names);
+    }
+
     @Override
     public void loadAllGroups() throws Exception {
         this.backing.get(this.types.get(SplitStorageType.GROUP)).loadAllGroups();
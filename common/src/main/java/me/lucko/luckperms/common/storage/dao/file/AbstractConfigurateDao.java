@@ -35,6 +35,8 @@ import me.lucko.luckperms.api.Node;
 import me.lucko.luckperms.api.PlayerSaveResult;
 import me.lucko.luckperms.api.context.ImmutableContextSet;
 import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogFilter;
+import me.lucko.luckperms.common.actionlog.LogPage;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
 import me.lucko.luckperms.common.contexts.ContextSetConfigurateSerializer;
 import me.lucko.luckperms.common.model.Group;
@@ -66,7 +68,6 @@ import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
@@ -137,7 +138,7 @@ public abstract class AbstractConfigurateDao extends AbstractDao {
         this.uuidDataFile = MoreFiles.createFileIfNotExists(this.dataDirectory.resolve("uuidcache.txt"));
         this.uuidCache.load(this.uuidDataFile);
 
-        this.actionLogger.init(this.dataDirectory.resolve("actions.json"));
+        this.actionLogger.init(this.dataDirectory.resolve("actions"), this.dataDirectory.resolve("actions.json"));
     }
 
     @Override
@@ -156,14 +157,14 @@ public abstract class AbstractConfigurateDao extends AbstractDao {
         return this.actionLogger.getLog();
     }
 
-    protected ConfigurationNode processBulkUpdate(BulkUpdate bulkUpdate, ConfigurationNode node) {
-        Set<NodeDataContainer> nodes = readNodes(node);
-        Set<NodeDataContainer> results = nodes.stream()
-                .map(bulkUpdate::apply)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
+    @Override
+    public LogPage getLogPage(LogFilter filter, int pageNo, int entriesPerPage) throws IOException {
+        return this.actionLogger.getLogPage(filter, pageNo, entriesPerPage);
+    }
 
-        if (nodes.equals(results)) {
+    protected ConfigurationNode processBulkUpdate(BulkUpdate bulkUpdate, ConfigurationNode node, boolean users) {
+        Set<NodeDataContainer> results = bulkUpdate.apply(readNodes(node), users);
+        if (results == null || bulkUpdate.isDryRun()) {
             return null;
         }
 
@@ -176,30 +177,7 @@ public abstract class AbstractConfigurateDao extends AbstractDao {
         User user = this.plugin.getUserManager().getOrMake(UserIdentifier.of(uuid, username));
         user.getIoLock().lock();
         try {
-            ConfigurationNode object = readFile(StorageLocation.USER, uuid.toString());
-            if (object != null) {
-                String name = object.getNode("name").getString();
-                user.getPrimaryGroup().setStoredValue(object.getNode(this.loader instanceof JsonLoader ? "primaryGroup" : "primary-group").getString());
-
-                Set<Node> nodes = readNodes(object).stream().map(NodeDataContainer::toNode).collect(Collectors.toSet());
-                user.setNodes(NodeMapType.ENDURING, nodes);
-                user.setName(name, true);
-
-                boolean save = this.plugin.getUserManager().giveDefaultIfNeeded(user, false);
-                if (user.getName().isPresent() && (name == null || !user.getName().get().equalsIgnoreCase(name))) {
-                    save = true;
-                }
-
-                if (save | user.auditTemporaryPermissions()) {
-                    saveUser(user);
-                }
-            } else {
-                if (this.plugin.getUserManager().shouldSave(user)) {
-                    user.clearNodes();
-                    user.getPrimaryGroup().setStoredValue(null);
-                    this.plugin.getUserManager().giveDefaultIfNeeded(user, false);
-                }
-            }
+            readUser(user);
         } catch (Exception e) {
             throw reportException(uuid.toString(), e);
         } finally {
@@ -208,6 +186,45 @@ public abstract class AbstractConfigurateDao extends AbstractDao {
         return user;
     }
 
+    @Override
+    public User loadDetachedUser(UUID uuid) {
+        User user = User.detached(uuid, this.plugin);
+        try {
+            readUser(user);
+        } catch (Exception e) {
+            throw reportException(uuid.toString(), e);
+        }
+        return user;
+    }
+
+    private void readUser(User user) throws Exception {
+        ConfigurationNode object = readFile(StorageLocation.USER, user.getUuid().toString());
+        if (object != null) {
+            String name = object.getNode("name").getString();
+            user.getPrimaryGroup().setStoredValue(object.getNode(this.loader instanceof JsonLoader ? "primaryGroup" : "primary-group").getString());
+
+            Set<Node> nodes = readNodes(object).stream().map(NodeDataContainer::toNode).collect(Collectors.toSet());
+            user.setNodes(NodeMapType.ENDURING, nodes);
+            user.setName(name, true);
+
+            boolean save = this.plugin.getUserManager().giveDefaultIfNeeded(user, false);
+            if (user.getName().isPresent() && (name == null || !user.getName().get().equalsIgnoreCase(name))) {
+                save = true;
+            }
+
+            // detached copies are read-only
+            if ((save | user.auditTemporaryPermissions()) && !user.isDetached()) {
+                saveUser(user);
+            }
+        } else {
+            if (this.plugin.getUserManager().shouldSave(user)) {
+                user.clearNodes();
+                user.getPrimaryGroup().setStoredValue(null);
+                this.plugin.getUserManager().giveDefaultIfNeeded(user, false);
+            }
+        }
+    }
+
     @Override
     public void saveUser(User user) {
         user.getIoLock().lock();
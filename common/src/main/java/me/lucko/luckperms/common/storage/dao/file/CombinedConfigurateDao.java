@@ -33,14 +33,17 @@ import me.lucko.luckperms.common.managers.track.TrackManager;
 import me.lucko.luckperms.common.node.model.NodeDataContainer;
 import me.lucko.luckperms.common.node.model.NodeHeldPermission;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.storage.StorageChanges;
 import me.lucko.luckperms.common.storage.dao.file.loader.ConfigurateLoader;
 
 import ninja.leaping.configurate.ConfigurationNode;
 import ninja.leaping.configurate.loader.ConfigurationLoader;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -67,6 +70,10 @@ public class CombinedConfigurateDao extends AbstractConfigurateDao {
         private ConfigurationNode node = null;
         private final ReentrantLock lock = new ReentrantLock();
 
+        // the modification time of the file when it was last loaded. saves aren't
+        // recorded, so local changes are picked up by the next sync like any other
+        private long lastModified = 0;
+
         private CachedLoader(Path path) {
             this.path = path;
             this.loader = CombinedConfigurateDao.super.loader.loader(path);
@@ -79,11 +86,38 @@ public class CombinedConfigurateDao extends AbstractConfigurateDao {
             }
         }
 
+        private long getFileModified() {
+            try {
+                return Files.exists(this.path) ? Files.getLastModifiedTime(this.path).toMillis() : 0;
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+
+        /**
+         * Reloads the file if it has been modified since it was last loaded.
+         *
+         * @return true if the file was reloaded
+         */
+        public boolean reloadIfModified() {
+            this.lock.lock();
+            try {
+                if (getFileModified() == this.lastModified) {
+                    return false;
+                }
+                reload();
+                return true;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
         public ConfigurationNode getNode() throws IOException {
             this.lock.lock();
             try {
                 if (this.node == null) {
                     this.node = this.loader.load();
+                    this.lastModified = getFileModified();
                 }
 
                 return this.node;
@@ -102,6 +136,7 @@ public class CombinedConfigurateDao extends AbstractConfigurateDao {
                 if (this.node == null || reload) {
                     recordChange();
                     this.node = this.loader.load();
+                    this.lastModified = getFileModified();
                 }
 
                 action.accept(this.node);
@@ -132,6 +167,7 @@ public class CombinedConfigurateDao extends AbstractConfigurateDao {
                 try {
                     recordChange();
                     this.node = this.loader.load();
+                    this.lastModified = getFileModified();
                 } catch (IOException e) {
                     e.printStackTrace();
                 }
@@ -215,6 +251,21 @@ public class CombinedConfigurateDao extends AbstractConfigurateDao {
         }
     }
 
+    @Override
+    public StorageChanges getChanges(long since) {
+        // individual holders can't be told apart within a file, so if any of
+        // the files have been modified externally everything is reloaded
+        boolean users = this.usersLoader.reloadIfModified();
+        boolean groups = this.groupsLoader.reloadIfModified();
+        boolean tracks = this.tracksLoader.reloadIfModified();
+
+        long version = since + 1;
+        if (since == -1 || users || groups || tracks) {
+            return StorageChanges.all(version);
+        }
+        return StorageChanges.of(version, Collections.emptySet(), Collections.emptySet(), Collections.emptySet());
+    }
+
     @Override
     public void shutdown() {
         try {
@@ -238,17 +289,17 @@ public class CombinedConfigurateDao extends AbstractConfigurateDao {
     @Override
     public void applyBulkUpdate(BulkUpdate bulkUpdate) throws Exception {
         if (bulkUpdate.getDataType().isIncludingUsers()) {
-            this.usersLoader.apply(true, true, root -> {
+            this.usersLoader.apply(!bulkUpdate.isDryRun(), true, root -> {
                 for (Map.Entry<Object, ? extends ConfigurationNode> entry : root.getChildrenMap().entrySet()) {
-                    processBulkUpdate(bulkUpdate, entry.getValue());
+                    processBulkUpdate(bulkUpdate, entry.getValue(), true);
                 }
             });
         }
 
         if (bulkUpdate.getDataType().isIncludingGroups()) {
-            this.groupsLoader.apply(true, true, root -> {
+            this.groupsLoader.apply(!bulkUpdate.isDryRun(), true, root -> {
                 for (Map.Entry<Object, ? extends ConfigurationNode> entry : root.getChildrenMap().entrySet()) {
-                    processBulkUpdate(bulkUpdate, entry.getValue());
+                    processBulkUpdate(bulkUpdate, entry.getValue(), false);
                 }
             });
         }
@@ -26,56 +26,163 @@
 package me.lucko.luckperms.common.storage.dao.file;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
 import com.google.gson.stream.JsonReader;
-import com.google.gson.stream.JsonWriter;
 
 import me.lucko.luckperms.api.LogEntry;
 import me.lucko.luckperms.common.actionlog.ExtendedLogEntry;
 import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogFilter;
+import me.lucko.luckperms.common.actionlog.LogPage;
 import me.lucko.luckperms.common.buffers.BufferedRequest;
+import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.utils.MoreFiles;
 import me.lucko.luckperms.common.utils.gson.JObject;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
 import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * Stores action log entries in a series of append-only JSON-lines segment files.
+ *
+ * <p>New entries are appended to the active segment. Once the active segment becomes too
+ * large or too old, it is rotated into an immutable segment, and optionally compressed.</p>
+ *
+ * <p>Rotated segments are named {@code <sequence>-<entries>-<min timestamp>-<max timestamp>.jsonl},
+ * which allows queries to skip over segments which can't contain the entries they need,
+ * without having to open them.</p>
+ */
 public class FileActionLogger {
     private static final JsonParser JSON_PARSER = new JsonParser();
     private static final Gson GSON = new Gson();
 
+    private static final String ACTIVE_SEGMENT_NAME = "actions.jsonl";
+    private static final String MIGRATION_STAGING_NAME = "actions.json.migrating";
+    private static final Pattern SEGMENT_NAME_PATTERN = Pattern.compile("^(\\d+)-(\\d+)-(\\d+)-(\\d+)\\.jsonl(\\.gz)?$");
+
+    private final LuckPermsPlugin plugin;
+
+    /**
+     * The directory containing the log segments
+     */
+    private Path directory;
+
     /**
-     * The path to save logger content to
+     * The maximum size of the active segment in bytes, or 0 if rotation by size is disabled
      */
-    private Path contentFile;
+    private long maxSegmentSize;
 
     /**
-     * Lock to ensure the file isn't written to by multiple threads
+     * The maximum age of the active segment in seconds, or 0 if rotation by age is disabled
      */
-    private final ReentrantLock writeLock = new ReentrantLock();
+    private long maxSegmentAge;
+
+    /**
+     * If rotated segments should be compressed
+     */
+    private boolean compressSegments;
+
+    /**
+     * Lock to ensure segments aren't written to or rotated whilst being read
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
     /**
      * The queue of entries pending save to the file
      */
     private final Queue<LogEntry> entryQueue = new ConcurrentLinkedQueue<>();
 
+    /**
+     * The rotated segments, oldest first
+     */
+    private final List<Segment> segments = new ArrayList<>();
+
+    /**
+     * The segment currently being appended to
+     */
+    private Segment active;
+
     private final SaveBuffer saveBuffer;
 
     public FileActionLogger(LuckPermsPlugin plugin) {
+        this.plugin = plugin;
         this.saveBuffer = new SaveBuffer(plugin);
     }
 
-    public void init(Path contentFile) {
-        this.contentFile = contentFile;
+    public void init(Path directory, Path legacyFile) throws IOException {
+        this.directory = MoreFiles.createDirectoriesIfNotExists(directory);
+        this.maxSegmentSize = Math.max(0, this.plugin.getConfiguration().get(ConfigKeys.FILE_ACTION_LOG_MAX_SEGMENT_SIZE)) * 1024L;
+        this.maxSegmentAge = TimeUnit.HOURS.toSeconds(Math.max(0, this.plugin.getConfiguration().get(ConfigKeys.FILE_ACTION_LOG_MAX_SEGMENT_AGE)));
+        this.compressSegments = this.plugin.getConfiguration().get(ConfigKeys.FILE_ACTION_LOG_COMPRESS_SEGMENTS);
+
+        this.lock.writeLock().lock();
+        try {
+            // find existing rotated segments
+            this.segments.clear();
+            try (Stream<Path> files = Files.list(this.directory)) {
+                files.map(Segment::parse)
+                        .filter(Objects::nonNull)
+                        .sorted(Comparator.comparingInt(s -> s.sequence))
+                        .forEach(this.segments::add);
+            }
+
+            // one-time migration from the old single json array format
+            Path staging = this.directory.resolve(MIGRATION_STAGING_NAME);
+            if (Files.exists(legacyFile)) {
+                migrateLegacyFile(legacyFile, staging);
+            } else if (Files.exists(staging)) {
+                // a previous migration was interrupted after the legacy file was retired,
+                // but before the migrated entries were moved into place
+                promoteMigratedEntries(staging);
+            }
+
+            // read the state of the active segment
+            this.active = new Segment(this.directory.resolve(ACTIVE_SEGMENT_NAME), nextSequence(), false);
+            if (Files.exists(this.active.file)) {
+                readSegment(this.active, this.active::record);
+                this.active.size = Files.size(this.active.file);
+
+                // terminate any partially written line, so the next append doesn't get mangled
+                if (this.active.size != 0 && !endsWithNewline(this.active.file)) {
+                    try (OutputStream out = Files.newOutputStream(this.active.file, StandardOpenOption.APPEND)) {
+                        out.write('\n');
+                    }
+                    this.active.size++;
+                }
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
     }
 
     public void logAction(LogEntry entry) {
@@ -84,89 +191,325 @@ public class FileActionLogger {
     }
 
     public void flush() {
-        this.writeLock.lock();
+        // don't perform the i/o process if there's nothing to be written
+        if (this.entryQueue.peek() == null) {
+            return;
+        }
+
+        this.lock.writeLock().lock();
         try {
-            // don't perform the i/o process if there's nothing to be written
-            if (this.entryQueue.peek() == null) {
-                return;
+            // poll the queue for new entries
+            List<LogEntry> entries = new ArrayList<>();
+            for (LogEntry e; (e = this.entryQueue.poll()) != null; ) {
+                entries.add(e);
             }
+            append(entries);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
 
-            try {
-                // read existing array data into memory
-                JsonArray array;
+    public Log getLog() throws IOException {
+        flush();
 
-                if (Files.exists(this.contentFile)) {
-                    try (JsonReader reader = new JsonReader(Files.newBufferedReader(this.contentFile, StandardCharsets.UTF_8))) {
-                        array = JSON_PARSER.parse(reader).getAsJsonArray();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        array = new JsonArray();
-                    }
-                } else {
-                    array = new JsonArray();
+        Log.Builder log = Log.builder();
+        this.lock.readLock().lock();
+        try {
+            for (Segment segment : this.segments) {
+                readSegment(segment, log::add);
+            }
+            readSegment(this.active, log::add);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return log.build();
+    }
+
+    public LogPage getLogPage(LogFilter filter, int pageNo, int entriesPerPage) throws IOException {
+        flush();
+
+        this.lock.readLock().lock();
+        try {
+            List<Segment> segments = new ArrayList<>(this.segments);
+            segments.add(this.active);
+
+            if (filter.matchesAll()) {
+                return getUnfilteredPage(segments, pageNo, entriesPerPage);
+            }
+
+            LogPage.Builder page = LogPage.builder(pageNo, entriesPerPage);
+            for (Segment segment : segments) {
+                // skip segments which don't overlap the requested time range
+                if (segment.entries == 0 || segment.maxTimestamp < filter.getStartTime() || segment.minTimestamp > filter.getEndTime()) {
+                    continue;
                 }
 
-                // poll the queue for new entries
-                for (LogEntry e; (e = this.entryQueue.poll()) != null; ) {
-                    JObject object = new JObject()
-                            .add("timestamp", e.getTimestamp())
-                            .add("actor", e.getActor().toString())
-                            .add("actorName", e.getActorName())
-                            .add("type", Character.toString(e.getType().getCode()))
-                            .add("actedName", e.getActedName())
-                            .add("action", e.getAction());
-
-                    if (e.getActed().isPresent()) {
-                        object.add("acted", e.getActed().get().toString());
+                readSegment(segment, e -> {
+                    if (filter.matches(e)) {
+                        page.accept(e);
                     }
+                });
+            }
+            return page.build();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
 
-                    array.add(object.toJson());
+    private LogPage getUnfilteredPage(List<Segment> segments, int pageNo, int entriesPerPage) throws IOException {
+        int total = segments.stream().mapToInt(s -> s.entries).sum();
+        int page = LogPage.resolvePage(pageNo, total, entriesPerPage);
+
+        List<ExtendedLogEntry> entries = new ArrayList<>();
+        if (LogPage.isInRange(page, total, entriesPerPage)) {
+            int start = LogPage.getOffset(page, entriesPerPage);
+            int end = start + entriesPerPage;
+
+            // only open the segments which contain the requested page
+            int index = 0;
+            for (Segment segment : segments) {
+                if (index >= end) {
+                    break;
                 }
+                if (index + segment.entries > start) {
+                    int[] i = {index};
+                    readSegment(segment, e -> {
+                        int n = i[0]++;
+                        if (n >= start && n < end) {
+                            entries.add(e);
+                        }
+                    });
+                }
+                index += segment.entries;
+            }
+        }
+
+        return LogPage.of(page, entriesPerPage, total, entries);
+    }
 
-                // write the full content back to the file
-                try (JsonWriter writer = new JsonWriter(Files.newBufferedWriter(this.contentFile, StandardCharsets.UTF_8))) {
-                    writer.setIndent("  ");
-                    GSON.toJson(array, writer);
+    private void append(List<? extends LogEntry> entries) throws IOException {
+        OutputStream out = null;
+        try {
+            for (LogEntry entry : entries) {
+                if (shouldRotate(entry.getTimestamp())) {
+                    if (out != null) {
+                        out.close();
+                        out = null;
+                    }
+                    rotate();
+                }
+
+                if (out == null) {
+                    out = new BufferedOutputStream(Files.newOutputStream(this.active.file, StandardOpenOption.CREATE, StandardOpenOption.APPEND));
                 }
-            } catch (IOException e) {
-                e.printStackTrace();
+
+                byte[] line = (GSON.toJson(serializeEntry(entry)) + "\n").getBytes(StandardCharsets.UTF_8);
+                out.write(line);
+                this.active.size += line.length;
+                this.active.record(entry);
             }
         } finally {
-            this.writeLock.unlock();
+            if (out != null) {
+                out.close();
+            }
         }
     }
 
-    public Log getLog() throws IOException {
-        Log.Builder log = Log.builder();
-        try (JsonReader reader = new JsonReader(Files.newBufferedReader(this.contentFile, StandardCharsets.UTF_8))) {
-            JsonArray array = JSON_PARSER.parse(reader).getAsJsonArray();
-            for (JsonElement element : array) {
-                JsonObject object = element.getAsJsonObject();
-
-                UUID actedUuid = null;
-                if (object.has("acted")) {
-                    actedUuid = UUID.fromString(object.get("acted").getAsString());
+    private boolean shouldRotate(long nextTimestamp) {
+        if (this.active.entries == 0) {
+            return false;
+        }
+        return (this.maxSegmentSize > 0 && this.active.size >= this.maxSegmentSize) ||
+                (this.maxSegmentAge > 0 && nextTimestamp - this.active.minTimestamp >= this.maxSegmentAge);
+    }
+
+    private void rotate() throws IOException {
+        Segment active = this.active;
+        this.segments.add(seal(active));
+        this.active = new Segment(active.file, active.sequence + 1, false);
+    }
+
+    private Segment seal(Segment segment) throws IOException {
+        String name = segment.sequence + "-" + segment.entries + "-" + segment.minTimestamp + "-" + segment.maxTimestamp + ".jsonl";
+        Path rotated = this.directory.resolve(name);
+        Files.move(segment.file, rotated);
+
+        if (this.compressSegments) {
+            Path compressed = this.directory.resolve(name + ".gz");
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+                Files.copy(rotated, out);
+            }
+            Files.delete(rotated);
+            rotated = compressed;
+        }
+
+        return Segment.parse(rotated);
+    }
+
+    private void migrateLegacyFile(Path legacyFile, Path staging) throws IOException {
+        this.plugin.getLogger().info("Migrating action log from " + legacyFile.getFileName() + " to the segmented format...");
+
+        // the entries are written to a staging file, which only becomes part of the log once the
+        // legacy file has been retired. if the migration is interrupted, it either starts again from
+        // scratch, or resumes from the complete staging file - entries are never imported twice.
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(legacyFile, StandardCharsets.UTF_8));
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(staging))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                ExtendedLogEntry entry = parseEntry(JSON_PARSER.parse(reader).getAsJsonObject());
+                out.write((GSON.toJson(serializeEntry(entry)) + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            reader.endArray();
+        }
+
+        Files.move(legacyFile, legacyFile.resolveSibling(legacyFile.getFileName() + ".migrated"));
+        promoteMigratedEntries(staging);
+        this.plugin.getLogger().info("Action log migration complete.");
+    }
+
+    private void promoteMigratedEntries(Path staging) throws IOException {
+        Segment migrated = new Segment(staging, nextSequence(), false);
+        readSegment(migrated, migrated::record);
+
+        if (migrated.entries == 0) {
+            Files.delete(staging);
+            return;
+        }
+        this.segments.add(seal(migrated));
+    }
+
+    private int nextSequence() {
+        return this.segments.isEmpty() ? 1 : this.segments.get(this.segments.size() - 1).sequence + 1;
+    }
+
+    private static void readSegment(Segment segment, Consumer<ExtendedLogEntry> consumer) throws IOException {
+        if (!Files.exists(segment.file)) {
+            return;
+        }
+
+        InputStream in = Files.newInputStream(segment.file);
+        if (segment.compressed) {
+            in = new GZIPInputStream(in);
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
                 }
 
-                ExtendedLogEntry e = ExtendedLogEntry.build()
-                        .timestamp(object.get("timestamp").getAsLong())
-                        .actor(UUID.fromString(object.get("actor").getAsString()))
-                        .actorName(object.get("actorName").getAsString())
-                        .type(LogEntry.Type.valueOf(object.get("type").getAsCharacter()))
-                        .acted(actedUuid)
-                        .actedName(object.get("actedName").getAsString())
-                        .action(object.get("action").getAsString())
-                        .build();
-
-                log.add(e);
+                ExtendedLogEntry entry;
+                try {
+                    entry = parseEntry(JSON_PARSER.parse(line).getAsJsonObject());
+                } catch (JsonParseException | IllegalStateException | IllegalArgumentException | NullPointerException e) {
+                    // skip lines which were only partially written
+                    continue;
+                }
+                consumer.accept(entry);
             }
         }
-        return log.build();
+    }
+
+    private static boolean endsWithNewline(Path file) throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+            channel.position(channel.size() - 1);
+            ByteBuffer buf = ByteBuffer.allocate(1);
+            channel.read(buf);
+            return buf.get(0) == '\n';
+        }
+    }
+
+    private static JsonElement serializeEntry(LogEntry e) {
+        JObject object = new JObject()
+                .add("timestamp", e.getTimestamp())
+                .add("actor", e.getActor().toString())
+                .add("actorName", e.getActorName())
+                .add("type", Character.toString(e.getType().getCode()))
+                .add("actedName", e.getActedName())
+                .add("action", e.getAction());
+
+        if (e.getActed().isPresent()) {
+            object.add("acted", e.getActed().get().toString());
+        }
+
+        return object.toJson();
+    }
+
+    private static ExtendedLogEntry parseEntry(JsonObject object) {
+        UUID actedUuid = null;
+        if (object.has("acted")) {
+            actedUuid = UUID.fromString(object.get("acted").getAsString());
+        }
+
+        return ExtendedLogEntry.build()
+                .timestamp(object.get("timestamp").getAsLong())
+                .actor(UUID.fromString(object.get("actor").getAsString()))
+                .actorName(object.get("actorName").getAsString())
+                .type(LogEntry.Type.valueOf(object.get("type").getAsCharacter()))
+                .acted(actedUuid)
+                .actedName(object.get("actedName").getAsString())
+                .action(object.get("action").getAsString())
+                .build();
+    }
+
+    /**
+     * A segment of the log
+     */
+    private static final class Segment {
+
+        /**
+         * Parses the information encoded in the name of a rotated segment
+         *
+         * @param file the segment file
+         * @return the segment, or null if the file isn't a rotated segment
+         */
+        static Segment parse(Path file) {
+            Matcher matcher = SEGMENT_NAME_PATTERN.matcher(file.getFileName().toString());
+            if (!matcher.matches()) {
+                return null;
+            }
+
+            Segment segment = new Segment(file, Integer.parseInt(matcher.group(1)), matcher.group(5) != null);
+            segment.entries = Integer.parseInt(matcher.group(2));
+            segment.minTimestamp = Long.parseLong(matcher.group(3));
+            segment.maxTimestamp = Long.parseLong(matcher.group(4));
+            return segment;
+        }
+
+        private final Path file;
+        private final int sequence;
+        private final boolean compressed;
+
+        // the following are only mutated for the active segment
+        private int entries = 0;
+        private long minTimestamp = 0L;
+        private long maxTimestamp = 0L;
+        private long size = 0L;
+
+        private Segment(Path file, int sequence, boolean compressed) {
+            this.file = file;
+            this.sequence = sequence;
+            this.compressed = compressed;
+        }
+
+        void record(LogEntry entry) {
+            if (this.entries == 0) {
+                this.minTimestamp = entry.getTimestamp();
+                this.maxTimestamp = entry.getTimestamp();
+            } else {
+                this.minTimestamp = Math.min(this.minTimestamp, entry.getTimestamp());
+                this.maxTimestamp = Math.max(this.maxTimestamp, entry.getTimestamp());
+            }
+            this.entries++;
+        }
     }
 
     private final class SaveBuffer extends BufferedRequest<Void> {
         public SaveBuffer(LuckPermsPlugin plugin) {
-            super(2000L, 500L, plugin.getBootstrap().getScheduler().async());
+            super(2000L, plugin.getBootstrap().getScheduler().async());
         }
 
         @Override
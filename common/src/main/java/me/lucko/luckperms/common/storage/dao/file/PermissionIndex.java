@@ -0,0 +1,493 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage.dao.file;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import me.lucko.luckperms.common.bulkupdate.comparisons.Constraint;
+import me.lucko.luckperms.common.bulkupdate.comparisons.StandardComparison;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.utils.MoreFiles;
+import me.lucko.luckperms.common.utils.gson.JObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * An on-disk inverted index from permissions to the holders (users or groups) which have them.
+ *
+ * <p>Searches evaluate their constraint against the distinct permissions in the index, and then
+ * only need to read the files of the holders which matched.</p>
+ *
+ * <p>The index is persisted as a JSON-lines journal. Each line records the (lowercased)
+ * permissions held by a single holder, along with the last modified time of the holder's file.
+ * Later lines replace earlier ones, and the journal is compacted once it accumulates too many
+ * superseded lines.</p>
+ *
+ * <p>When loaded, the index is reconciled against the files on disk, so changes made whilst the
+ * server was offline are picked up. If the journal is missing or unreadable, this amounts to a
+ * full rebuild.</p>
+ */
+public class PermissionIndex {
+    private static final JsonParser JSON_PARSER = new JsonParser();
+    private static final Gson GSON = new Gson();
+
+    private static final int VERSION = 1;
+    private static final int MIN_COMPACTION_THRESHOLD = 1000;
+
+    private final LuckPermsPlugin plugin;
+
+    /**
+     * The name of the holder type, used in log messages
+     */
+    private final String typeName;
+
+    /**
+     * The directory containing the holder files
+     */
+    private final Path directory;
+
+    /**
+     * The file extension of the holder files
+     */
+    private final String fileExtension;
+
+    /**
+     * The journal file
+     */
+    private final Path indexFile;
+
+    /**
+     * Reads the permissions held in a holder file
+     */
+    private final PermissionReader reader;
+
+    /**
+     * Lock held whilst the index is being loaded or rebuilt
+     */
+    private final Object loadLock = new Object();
+
+    // the following are guarded by 'this'
+
+    private boolean loaded = false;
+
+    /**
+     * Updates received whilst the index is being loaded, applied once loading completes.
+     * A null value marks a removal.
+     */
+    private Map<String, Entry> pending = null;
+
+    private Map<String, Entry> holders = new HashMap<>();
+    private final Map<String, Set<String>> index = new HashMap<>();
+    private int journalLines = 0;
+
+    public PermissionIndex(LuckPermsPlugin plugin, String typeName, Path directory, String fileExtension, Path indexFile, PermissionReader reader) {
+        this.plugin = plugin;
+        this.typeName = typeName;
+        this.directory = directory;
+        this.fileExtension = fileExtension;
+        this.indexFile = indexFile;
+        this.reader = reader;
+    }
+
+    /**
+     * Loads the index from disk and reconciles it with the holder files, if it hasn't been
+     * loaded already.
+     *
+     * <p>Updates made whilst loading is in progress are queued, so this doesn't block saves.</p>
+     *
+     * @throws IOException if the holder directory cannot be read
+     */
+    public void load() throws IOException {
+        synchronized (this.loadLock) {
+            synchronized (this) {
+                if (this.loaded) {
+                    return;
+                }
+                this.pending = new HashMap<>();
+            }
+
+            try {
+                Map<String, Entry> holders = new HashMap<>();
+                boolean dirty = !readJournal(holders);
+                if (dirty) {
+                    this.plugin.getLogger().info("Building " + this.typeName + " permission index, this may take a while...");
+                }
+                dirty |= reconcile(holders);
+
+                synchronized (this) {
+                    for (Map.Entry<String, Entry> update : this.pending.entrySet()) {
+                        if (update.getValue() == null) {
+                            holders.remove(update.getKey());
+                        } else {
+                            holders.put(update.getKey(), update.getValue());
+                        }
+                    }
+
+                    this.holders = holders;
+                    this.index.clear();
+                    for (Map.Entry<String, Entry> e : holders.entrySet()) {
+                        addToIndex(e.getKey(), e.getValue().permissions);
+                    }
+                    this.loaded = true;
+
+                    if (dirty || !this.pending.isEmpty() || shouldCompact()) {
+                        compact();
+                    }
+                }
+            } finally {
+                synchronized (this) {
+                    this.pending = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the permissions now held by a holder, after its file has been written.
+     *
+     * @param holder the holder
+     * @param file the holder's file
+     * @param permissions the permissions, or null if the file has been deleted
+     */
+    public synchronized void update(String holder, Path file, Set<String> permissions) {
+        Entry entry = null;
+        if (permissions != null) {
+            entry = new Entry(lastModified(file), lowercase(permissions));
+        }
+
+        if (this.pending != null) {
+            this.pending.put(holder, entry);
+            return;
+        }
+
+        // not loaded yet - the changes will be picked up by the reconcile when it is
+        if (!this.loaded) {
+            return;
+        }
+
+        Entry previous = entry == null ? this.holders.remove(holder) : this.holders.put(holder, entry);
+        if (previous != null) {
+            removeFromIndex(holder, previous.permissions);
+        }
+        if (entry != null) {
+            addToIndex(holder, entry.permissions);
+        }
+
+        try {
+            appendJournal(holder, entry);
+            if (shouldCompact()) {
+                compact();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Re-reads a holder file which has been modified externally.
+     *
+     * @param file the holder's file
+     */
+    public void refresh(Path file) {
+        String holder = getHolder(file);
+        try {
+            update(holder, file, Files.exists(file) ? this.reader.read(file) : null);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Gets the holders which have a permission satisfying the given constraint.
+     *
+     * <p>The returned holders are candidates - callers should still evaluate the constraint
+     * against the contents of the holder's file.</p>
+     *
+     * @param constraint the constraint
+     * @return the matching holders
+     * @throws IOException if the index had to be loaded, and loading failed
+     */
+    public Set<String> getHolders(Constraint constraint) throws IOException {
+        load();
+
+        synchronized (this) {
+            // fast path - lookup the permission directly
+            if (constraint.getComparison() == StandardComparison.EQUAL) {
+                Set<String> holders = this.index.get(constraint.getExpression().toLowerCase());
+                return holders == null ? Collections.emptySet() : new HashSet<>(holders);
+            }
+
+            Set<String> holders = new HashSet<>();
+            for (Map.Entry<String, Set<String>> e : this.index.entrySet()) {
+                if (constraint.eval(e.getKey())) {
+                    holders.addAll(e.getValue());
+                }
+            }
+            return holders;
+        }
+    }
+
+    private void addToIndex(String holder, Set<String> permissions) {
+        for (String permission : permissions) {
+            this.index.computeIfAbsent(permission, p -> new HashSet<>()).add(holder);
+        }
+    }
+
+    private void removeFromIndex(String holder, Set<String> permissions) {
+        for (String permission : permissions) {
+            Set<String> holders = this.index.get(permission);
+            if (holders != null) {
+                holders.remove(holder);
+                if (holders.isEmpty()) {
+                    this.index.remove(permission);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the journal into the given map.
+     *
+     * @param holders the map to read into
+     * @return false if the journal was missing or invalid, and needs to be rewritten
+     */
+    private boolean readJournal(Map<String, Entry> holders) {
+        if (!Files.exists(this.indexFile)) {
+            return false;
+        }
+
+        boolean valid = true;
+        int lines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(this.indexFile, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null || JSON_PARSER.parse(header).getAsJsonObject().get("version").getAsInt() != VERSION) {
+                return false;
+            }
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                try {
+                    JsonObject object = JSON_PARSER.parse(line).getAsJsonObject();
+                    String holder = object.get("holder").getAsString();
+                    if (object.has("deleted")) {
+                        holders.remove(holder);
+                    } else {
+                        Set<String> permissions = new HashSet<>();
+                        for (JsonElement permission : object.get("permissions").getAsJsonArray()) {
+                            permissions.add(permission.getAsString());
+                        }
+                        holders.put(holder, new Entry(object.get("modified").getAsLong(), permissions));
+                    }
+                    lines++;
+                } catch (JsonParseException | IllegalStateException | NullPointerException | UnsupportedOperationException e) {
+                    // a partially written line - the reconcile will pick up the change it described,
+                    // but the journal needs rewriting before anything else is appended to it.
+                    valid = false;
+                }
+            }
+        } catch (IOException | JsonParseException | IllegalStateException | NullPointerException | UnsupportedOperationException e) {
+            this.plugin.getLogger().warn("Unable to read the " + this.typeName + " permission index, it will be rebuilt.");
+            holders.clear();
+            return false;
+        }
+
+        this.journalLines = lines;
+        return valid;
+    }
+
+    /**
+     * Brings the given holders map up to date with the holder files on disk.
+     *
+     * @param holders the holders map
+     * @return true if any changes were made
+     * @throws IOException if the directory cannot be listed
+     */
+    private boolean reconcile(Map<String, Entry> holders) throws IOException {
+        boolean changed = false;
+        Set<String> seen = new HashSet<>();
+
+        try (Stream<Path> files = Files.list(this.directory)) {
+            Iterator<Path> it = files.filter(p -> p.getFileName().toString().endsWith(this.fileExtension)).iterator();
+            while (it.hasNext()) {
+                Path file = it.next();
+                String holder = getHolder(file);
+                seen.add(holder);
+
+                long modified = lastModified(file);
+                Entry existing = holders.get(holder);
+                if (existing != null && existing.modified == modified) {
+                    continue;
+                }
+
+                try {
+                    Set<String> permissions = this.reader.read(file);
+                    holders.put(holder, new Entry(modified, permissions == null ? Collections.emptySet() : lowercase(permissions)));
+                } catch (Exception e) {
+                    this.plugin.getLogger().warn("Unable to index " + this.typeName + " file " + file.getFileName());
+                    e.printStackTrace();
+                    holders.remove(holder);
+                }
+                changed = true;
+            }
+        }
+
+        changed |= holders.keySet().retainAll(seen);
+        return changed;
+    }
+
+    private void appendJournal(String holder, Entry entry) throws IOException {
+        if (!Files.exists(this.indexFile)) {
+            compact();
+            return;
+        }
+
+        try (BufferedWriter writer = Files.newBufferedWriter(this.indexFile, StandardCharsets.UTF_8, StandardOpenOption.APPEND)) {
+            writer.write(GSON.toJson(serializeEntry(holder, entry)));
+            writer.write('\n');
+        }
+        this.journalLines++;
+    }
+
+    private boolean shouldCompact() {
+        return this.journalLines > Math.max(MIN_COMPACTION_THRESHOLD, this.holders.size() * 2);
+    }
+
+    /**
+     * Rewrites the journal so it contains a single line for each holder.
+     */
+    private void compact() {
+        try {
+            MoreFiles.createDirectoriesIfNotExists(this.indexFile.getParent());
+            Path temp = this.indexFile.resolveSibling(this.indexFile.getFileName() + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write(GSON.toJson(new JObject().add("version", VERSION).toJson()));
+                writer.write('\n');
+                for (Map.Entry<String, Entry> e : this.holders.entrySet()) {
+                    writer.write(GSON.toJson(serializeEntry(e.getKey(), e.getValue())));
+                    writer.write('\n');
+                }
+            }
+            Files.move(temp, this.indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.journalLines = this.holders.size();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private String getHolder(Path file) {
+        String fileName = file.getFileName().toString();
+        return fileName.substring(0, fileName.length() - this.fileExtension.length());
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return -1L;
+        }
+    }
+
+    private static Set<String> lowercase(Set<String> permissions) {
+        Set<String> ret = new HashSet<>(permissions.size());
+        for (String permission : permissions) {
+            ret.add(permission.toLowerCase());
+        }
+        return ret;
+    }
+
+    private static JsonElement serializeEntry(String holder, Entry entry) {
+        if (entry == null) {
+            return new JObject()
+                    .add("holder", holder)
+                    .add("deleted", true)
+                    .toJson();
+        }
+
+        JsonArray permissions = new JsonArray();
+        for (String permission : entry.permissions) {
+            permissions.add(permission);
+        }
+
+        return new JObject()
+                .add("holder", holder)
+                .add("modified", entry.modified)
+                .add("permissions", permissions)
+                .toJson();
+    }
+
+    /**
+     * Reads the permissions held in a holder file
+     */
+    @FunctionalInterface
+    public interface PermissionReader {
+
+        /**
+         * Reads the permissions held in the given file
+         *
+         * @param file the file
+         * @return the permissions, or null if the file doesn't exist
+         * @throws Exception if the file couldn't be read
+         */
+        Set<String> read(Path file) throws Exception;
+    }
+
+    /**
+     * The indexed state of a single holder
+     */
+    private static final class Entry {
+        private final long modified;
+        private final Set<String> permissions;
+
+        private Entry(long modified, Set<String> permissions) {
+            this.modified = modified;
+            this.permissions = permissions;
+        }
+    }
+
+}
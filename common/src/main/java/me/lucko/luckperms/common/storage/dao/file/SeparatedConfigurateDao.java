@@ -27,6 +27,7 @@ package me.lucko.luckperms.common.storage.dao.file;
 
 import me.lucko.luckperms.api.HeldPermission;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
+import me.lucko.luckperms.common.bulkupdate.BulkUpdateExecutor;
 import me.lucko.luckperms.common.bulkupdate.comparisons.Constraint;
 import me.lucko.luckperms.common.managers.group.GroupManager;
 import me.lucko.luckperms.common.managers.track.TrackManager;
@@ -34,6 +35,7 @@ import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.node.model.NodeDataContainer;
 import me.lucko.luckperms.common.node.model.NodeHeldPermission;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.storage.StorageChanges;
 import me.lucko.luckperms.common.storage.dao.file.loader.ConfigurateLoader;
 import me.lucko.luckperms.common.utils.MoreFiles;
 import me.lucko.luckperms.common.utils.Uuids;
@@ -44,14 +46,22 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class SeparatedConfigurateDao extends AbstractConfigurateDao {
+    private static final int BULK_UPDATE_CHUNK_SIZE = 64;
+
+    // allowance for the granularity of file modification times
+    private static final long MODIFIED_TIME_TOLERANCE = 2000;
+
     private final String fileExtension;
 
     private Path usersDirectory;
@@ -62,6 +72,12 @@ public class SeparatedConfigurateDao extends AbstractConfigurateDao {
     private FileWatcher.WatchedLocation groupWatcher = null;
     private FileWatcher.WatchedLocation trackWatcher = null;
 
+    private PermissionIndex userIndex;
+    private PermissionIndex groupIndex;
+
+    // the modification times of loaded users' files, as seen by the last call to getChanges
+    private final Map<UUID, Long> userFileTimes = new ConcurrentHashMap<>();
+
     /**
      * Creates a new configurate dao
      *
@@ -94,16 +110,29 @@ public class SeparatedConfigurateDao extends AbstractConfigurateDao {
     protected void saveFile(StorageLocation location, String name, ConfigurationNode node) throws IOException {
         Path file = getDirectory(location).resolve(name + this.fileExtension);
         registerFileAction(location, file);
-        saveFile(file, node);
+        saveFile(location, file, node);
     }
 
-    private void saveFile(Path file, ConfigurationNode node) throws IOException {
+    private void saveFile(StorageLocation location, Path file, ConfigurationNode node) throws IOException {
         if (node == null) {
             Files.deleteIfExists(file);
-            return;
+        } else {
+            this.loader.loader(file).save(node);
         }
 
-        this.loader.loader(file).save(node);
+        PermissionIndex index = getIndex(location);
+        if (index != null) {
+            index.update(getHolderName(file), file, node == null ? null : readPermissions(node));
+        }
+    }
+
+    private Set<String> readPermissions(Path file) throws IOException {
+        ConfigurationNode node = readFile(file);
+        return node == null ? null : readPermissions(node);
+    }
+
+    private static Set<String> readPermissions(ConfigurationNode node) {
+        return readNodes(node).stream().map(NodeDataContainer::getPermission).collect(Collectors.toSet());
     }
 
     private Path getDirectory(StorageLocation location) {
@@ -119,10 +148,34 @@ public class SeparatedConfigurateDao extends AbstractConfigurateDao {
         }
     }
 
+    private PermissionIndex getIndex(StorageLocation location) {
+        switch (location) {
+            case USER:
+                return this.userIndex;
+            case GROUP:
+                return this.groupIndex;
+            default:
+                return null;
+        }
+    }
+
+    private String getHolderName(Path file) {
+        String fileName = file.getFileName().toString();
+        return fileName.substring(0, fileName.length() - this.fileExtension.length());
+    }
+
     private Predicate<Path> getFileTypeFilter() {
         return path -> path.getFileName().toString().endsWith(this.fileExtension);
     }
 
+    private static long getModifiedTime(Path file) {
+        try {
+            return Files.exists(file) ? Files.getLastModifiedTime(file).toMillis() : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
     private void registerFileAction(StorageLocation type, Path file) {
         switch (type) {
             case USER:
@@ -153,6 +206,20 @@ public class SeparatedConfigurateDao extends AbstractConfigurateDao {
         this.groupsDirectory = MoreFiles.createDirectoryIfNotExists(super.dataDirectory.resolve("groups"));
         this.tracksDirectory = MoreFiles.createDirectoryIfNotExists(super.dataDirectory.resolve("tracks"));
 
+        Path indexDirectory = super.dataDirectory.resolve("index");
+        this.userIndex = new PermissionIndex(this.plugin, "user", this.usersDirectory, this.fileExtension, indexDirectory.resolve("users.jsonl"), this::readPermissions);
+        this.groupIndex = new PermissionIndex(this.plugin, "group", this.groupsDirectory, this.fileExtension, indexDirectory.resolve("groups.jsonl"), this::readPermissions);
+
+        // load the indexes in the background, any searches made in the meantime will wait for them.
+        this.plugin.getBootstrap().getScheduler().executeAsync(() -> {
+            try {
+                this.userIndex.load();
+                this.groupIndex.load();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+
         // Listen for file changes.
         FileWatcher watcher = this.plugin.getFileWatcher().orElse(null);
         if (watcher != null) {
@@ -164,6 +231,8 @@ public class SeparatedConfigurateDao extends AbstractConfigurateDao {
                     return;
                 }
 
+                this.userIndex.refresh(path);
+
                 String user = s.substring(0, s.length() - this.fileExtension.length());
                 UUID uuid = Uuids.parseNullable(user);
                 if (uuid == null) {
@@ -185,6 +254,8 @@ public class SeparatedConfigurateDao extends AbstractConfigurateDao {
                     return;
                 }
 
+                this.groupIndex.refresh(path);
+
                 String groupName = s.substring(0, s.length() - this.fileExtension.length());
                 this.plugin.getLogger().info("[FileWatcher] Detected change in group file for " + groupName + " - reloading...");
                 this.plugin.getUpdateTaskBuffer().request();
@@ -208,38 +279,81 @@ public class SeparatedConfigurateDao extends AbstractConfigurateDao {
     @Override
     public void applyBulkUpdate(BulkUpdate bulkUpdate) throws Exception {
         if (bulkUpdate.getDataType().isIncludingUsers()) {
-            try (Stream<Path> s = Files.list(getDirectory(StorageLocation.USER))) {
-                s.filter(getFileTypeFilter()).forEach(file -> {
-                    try {
-                        registerFileAction(StorageLocation.USER, file);
-                        ConfigurationNode object = readFile(file);
-                        ConfigurationNode results = processBulkUpdate(bulkUpdate, object);
-                        if (results != null) {
-                            saveFile(file, object);
-                        }
-                    } catch (Exception e) {
-                        throw reportException(file.getFileName().toString(), e);
-                    }
-                });
-            }
+            applyBulkUpdate(bulkUpdate, StorageLocation.USER);
         }
 
         if (bulkUpdate.getDataType().isIncludingGroups()) {
-            try (Stream<Path> s = Files.list(getDirectory(StorageLocation.GROUP))) {
-                s.filter(getFileTypeFilter()).forEach(file -> {
+            applyBulkUpdate(bulkUpdate, StorageLocation.GROUP);
+        }
+    }
+
+    private void applyBulkUpdate(BulkUpdate bulkUpdate, StorageLocation location) throws Exception {
+        try (Stream<Path> s = Files.list(getDirectory(location))) {
+            BulkUpdateExecutor.process(s.filter(getFileTypeFilter()).iterator(), BULK_UPDATE_CHUNK_SIZE, BulkUpdateExecutor.DEFAULT_THREADS, chunk -> {
+                for (Path file : chunk) {
                     try {
-                        registerFileAction(StorageLocation.GROUP, file);
+                        registerFileAction(location, file);
                         ConfigurationNode object = readFile(file);
-                        ConfigurationNode results = processBulkUpdate(bulkUpdate, object);
+                        if (object == null) {
+                            continue;
+                        }
+
+                        ConfigurationNode results = processBulkUpdate(bulkUpdate, object, location == StorageLocation.USER);
                         if (results != null) {
-                            saveFile(file, object);
+                            saveFile(location, file, object);
                         }
                     } catch (Exception e) {
                         throw reportException(file.getFileName().toString(), e);
                     }
-                });
+                }
+            });
+        }
+    }
+
+    @Override
+    public StorageChanges getChanges(long since) throws IOException {
+        // versions are the time at which changes were last looked for
+        long version = System.currentTimeMillis();
+
+        // only the modification times of loaded users are tracked, so they need to be recorded even on the first call
+        Set<UUID> users = new HashSet<>();
+        Set<UUID> loadedUsers = new HashSet<>();
+        for (User user : this.plugin.getUserManager().getAll().values()) {
+            UUID uuid = user.getUuid();
+            loadedUsers.add(uuid);
+
+            long modified = getModifiedTime(this.usersDirectory.resolve(uuid.toString() + this.fileExtension));
+            Long previous = this.userFileTimes.put(uuid, modified);
+            if (previous == null ? modified >= since - MODIFIED_TIME_TOLERANCE : previous != modified) {
+                users.add(uuid);
             }
         }
+        this.userFileTimes.keySet().retainAll(loadedUsers);
+
+        if (since == -1) {
+            return StorageChanges.all(version);
+        }
+
+        Set<String> groups = getChangedHolders(this.groupsDirectory, since);
+        this.plugin.getGroupManager().getAll().keySet().stream()
+                .filter(name -> !Files.exists(this.groupsDirectory.resolve(name + this.fileExtension)))
+                .forEach(groups::add);
+
+        Set<String> tracks = getChangedHolders(this.tracksDirectory, since);
+        this.plugin.getTrackManager().getAll().keySet().stream()
+                .filter(name -> !Files.exists(this.tracksDirectory.resolve(name + this.fileExtension)))
+                .forEach(tracks::add);
+
+        return StorageChanges.of(version, users, groups, tracks);
+    }
+
+    private Set<String> getChangedHolders(Path directory, long since) throws IOException {
+        try (Stream<Path> stream = Files.list(directory)) {
+            return stream.filter(getFileTypeFilter())
+                    .filter(p -> getModifiedTime(p) >= since - MODIFIED_TIME_TOLERANCE)
+                    .map(this::getHolderName)
+                    .collect(Collectors.toCollection(HashSet::new));
+        }
     }
 
     @Override
@@ -256,25 +370,26 @@ public class SeparatedConfigurateDao extends AbstractConfigurateDao {
     @Override
     public List<HeldPermission<UUID>> getUsersWithPermission(Constraint constraint) throws Exception {
         List<HeldPermission<UUID>> held = new ArrayList<>();
-        try (Stream<Path> stream = Files.list(getDirectory(StorageLocation.USER))) {
-            stream.filter(getFileTypeFilter())
-                    .forEach(file -> {
-                        String fileName = file.getFileName().toString();
-                        try {
-                            registerFileAction(StorageLocation.USER, file);
-                            ConfigurationNode object = readFile(file);
-                            UUID holder = UUID.fromString(fileName.substring(0, fileName.length() - this.fileExtension.length()));
-                            Set<NodeDataContainer> nodes = readNodes(object);
-                            for (NodeDataContainer e : nodes) {
-                                if (!constraint.eval(e.getPermission())) {
-                                    continue;
-                                }
-                                held.add(NodeHeldPermission.of(holder, e));
-                            }
-                        } catch (Exception e) {
-                            throw reportException(file.getFileName().toString(), e);
-                        }
-                    });
+        for (String holderName : this.userIndex.getHolders(constraint)) {
+            Path file = getDirectory(StorageLocation.USER).resolve(holderName + this.fileExtension);
+            try {
+                registerFileAction(StorageLocation.USER, file);
+                ConfigurationNode object = readFile(file);
+                if (object == null) {
+                    continue;
+                }
+
+                UUID holder = UUID.fromString(holderName);
+                Set<NodeDataContainer> nodes = readNodes(object);
+                for (NodeDataContainer e : nodes) {
+                    if (!constraint.eval(e.getPermission())) {
+                        continue;
+                    }
+                    held.add(NodeHeldPermission.of(holder, e));
+                }
+            } catch (Exception e) {
+                throw reportException(file.getFileName().toString(), e);
+            }
         }
         return held;
     }
@@ -312,25 +427,25 @@ public class SeparatedConfigurateDao extends AbstractConfigurateDao {
     @Override
     public List<HeldPermission<String>> getGroupsWithPermission(Constraint constraint) throws Exception {
         List<HeldPermission<String>> held = new ArrayList<>();
-        try (Stream<Path> stream = Files.list(getDirectory(StorageLocation.USER))) {
-            stream.filter(getFileTypeFilter())
-                    .forEach(file -> {
-                        String fileName = file.getFileName().toString();
-                        try {
-                            registerFileAction(StorageLocation.GROUP, file);
-                            ConfigurationNode object = readFile(file);
-                            String holder = fileName.substring(0, fileName.length() - this.fileExtension.length());
-                            Set<NodeDataContainer> nodes = readNodes(object);
-                            for (NodeDataContainer e : nodes) {
-                                if (!constraint.eval(e.getPermission())) {
-                                    continue;
-                                }
-                                held.add(NodeHeldPermission.of(holder, e));
-                            }
-                        } catch (Exception e) {
-                            throw reportException(file.getFileName().toString(), e);
-                        }
-                    });
+        for (String holder : this.groupIndex.getHolders(constraint)) {
+            Path file = getDirectory(StorageLocation.GROUP).resolve(holder + this.fileExtension);
+            try {
+                registerFileAction(StorageLocation.GROUP, file);
+                ConfigurationNode object = readFile(file);
+                if (object == null) {
+                    continue;
+                }
+
+                Set<NodeDataContainer> nodes = readNodes(object);
+                for (NodeDataContainer e : nodes) {
+                    if (!constraint.eval(e.getPermission())) {
+                        continue;
+                    }
+                    held.add(NodeHeldPermission.of(holder, e));
+                }
+            } catch (Exception e) {
+                throw reportException(file.getFileName().toString(), e);
+            }
         }
         return held;
     }
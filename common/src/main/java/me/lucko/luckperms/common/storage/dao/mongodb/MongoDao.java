@@ -26,6 +26,7 @@
 package me.lucko.luckperms.common.storage.dao.mongodb;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
 import com.mongodb.MongoClient;
 import com.mongodb.MongoClientOptions;
 import com.mongodb.MongoClientURI;
@@ -34,8 +35,16 @@ import com.mongodb.ServerAddress;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
 import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
 
 import me.lucko.luckperms.api.HeldPermission;
 import me.lucko.luckperms.api.LogEntry;
@@ -46,7 +55,10 @@ import me.lucko.luckperms.api.context.ImmutableContextSet;
 import me.lucko.luckperms.api.context.MutableContextSet;
 import me.lucko.luckperms.common.actionlog.ExtendedLogEntry;
 import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogFilter;
+import me.lucko.luckperms.common.actionlog.LogPage;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
+import me.lucko.luckperms.common.bulkupdate.BulkUpdateExecutor;
 import me.lucko.luckperms.common.bulkupdate.comparisons.Constraint;
 import me.lucko.luckperms.common.managers.group.GroupManager;
 import me.lucko.luckperms.common.managers.track.TrackManager;
@@ -61,29 +73,49 @@ import me.lucko.luckperms.common.node.model.NodeDataContainer;
 import me.lucko.luckperms.common.node.model.NodeHeldPermission;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.storage.PlayerSaveResultImpl;
+import me.lucko.luckperms.common.storage.StorageChanges;
 import me.lucko.luckperms.common.storage.StorageCredentials;
 import me.lucko.luckperms.common.storage.dao.AbstractDao;
+import me.lucko.luckperms.common.storage.dao.ChangeSequence;
 
 import org.bson.Document;
+import org.bson.conversions.Bson;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 public class MongoDao extends AbstractDao {
+    private static final int BULK_UPDATE_CHUNK_SIZE = 500;
+    private static final int MAX_USER_LOAD_BATCH_SIZE = 500;
+
+    private static final String CHANGE_USER = "U";
+    private static final String CHANGE_GROUP = "G";
+    private static final String CHANGE_TRACK = "T";
+    private static final String CHANGE_ALL = "*";
+
+    // the number of recent changes to keep in the changes collection
+    private static final int CHANGES_RETAINED = 10000;
+
+    // how often (in recorded changes) old changes are removed
+    private static final int CHANGES_TRIM_INTERVAL = 1000;
 
     private final StorageCredentials configuration;
     private MongoClient mongoClient;
     private MongoDatabase database;
     private final String prefix;
     private final String connectionUri;
+    private final AtomicInteger changesRecorded = new AtomicInteger();
+    private final ChangeSequence changeSequence = new ChangeSequence();
 
     public MongoDao(LuckPermsPlugin plugin, StorageCredentials configuration, String prefix, String connectionUri) {
         super(plugin, "MongoDB");
@@ -119,6 +151,17 @@ public class MongoDao extends AbstractDao {
         }
         
         this.database = this.mongoClient.getDatabase(this.configuration.getDatabase());
+
+        // indexes used by paginated log queries
+        MongoCollection<Document> actions = this.database.getCollection(this.prefix + "action");
+        actions.createIndex(Indexes.ascending("timestamp"));
+        actions.createIndex(Indexes.ascending("actor"));
+        actions.createIndex(Indexes.ascending("acted"));
+        actions.createIndex(Indexes.ascending("actedName"));
+
+        // indexes used by permission searches
+        this.database.getCollection(this.prefix + "users").createIndex(Indexes.ascending("permissions.permission"));
+        this.database.getCollection(this.prefix + "groups").createIndex(Indexes.ascending("permissions.permission"));
     }
 
     @Override
@@ -175,80 +218,152 @@ public class MongoDao extends AbstractDao {
         MongoCollection<Document> c = this.database.getCollection(this.prefix + "action");
         try (MongoCursor<Document> cursor = c.find().iterator()) {
             while (cursor.hasNext()) {
-                Document d = cursor.next();
+                log.add(logEntryFromDoc(cursor.next()));
+            }
+        }
+        return log.build();
+    }
 
-                UUID actedUuid = null;
-                if (d.containsKey("acted")) {
-                    actedUuid = d.get("acted", UUID.class);
+    @Override
+    public LogPage getLogPage(LogFilter filter, int pageNo, int entriesPerPage) {
+        MongoCollection<Document> c = this.database.getCollection(this.prefix + "action");
+        Bson query = logFilterToBson(filter);
+
+        int total = (int) c.count(query);
+        int page = LogPage.resolvePage(pageNo, total, entriesPerPage);
+
+        List<ExtendedLogEntry> entries = new ArrayList<>();
+        if (LogPage.isInRange(page, total, entriesPerPage)) {
+            try (MongoCursor<Document> cursor = c.find(query)
+                    .sort(Sorts.ascending("timestamp", "_id"))
+                    .skip(LogPage.getOffset(page, entriesPerPage))
+                    .limit(entriesPerPage)
+                    .iterator()) {
+                while (cursor.hasNext()) {
+                    entries.add(logEntryFromDoc(cursor.next()));
                 }
-
-                ExtendedLogEntry e = ExtendedLogEntry.build()
-                        .timestamp(d.getLong("timestamp"))
-                        .actor(d.get("actor", UUID.class))
-                        .actorName(d.getString("actorName"))
-                        .type(LogEntry.Type.valueOf(d.getString("type").charAt(0)))
-                        .acted(actedUuid)
-                        .actedName(d.getString("actedName"))
-                        .action(d.getString("action"))
-                        .build();
-
-                log.add(e);
             }
         }
-        return log.build();
+
+        return LogPage.of(page, entriesPerPage, total, entries);
     }
 
     @Override
-    public void applyBulkUpdate(BulkUpdate bulkUpdate) {
+    public void applyBulkUpdate(BulkUpdate bulkUpdate) throws Exception {
         if (bulkUpdate.getDataType().isIncludingUsers()) {
-            MongoCollection<Document> c = this.database.getCollection(this.prefix + "users");
-            try (MongoCursor<Document> cursor = c.find().iterator()) {
-                while (cursor.hasNext()) {
-                    Document d = cursor.next();
+            applyBulkUpdate(bulkUpdate, this.database.getCollection(this.prefix + "users"), true);
+        }
 
-                    UUID uuid = d.get("_id", UUID.class);
-                    Set<NodeDataContainer> nodes = new HashSet<>(nodesFromDoc(d));
-                    Set<NodeDataContainer> results = nodes.stream()
-                            .map(bulkUpdate::apply)
-                            .filter(Objects::nonNull)
-                            .collect(Collectors.toSet());
+        if (bulkUpdate.getDataType().isIncludingGroups()) {
+            applyBulkUpdate(bulkUpdate, this.database.getCollection(this.prefix + "groups"), false);
+        }
 
-                    if (!nodes.equals(results)) {
-                        List<Document> newNodes = results.stream()
-                                .map(MongoDao::nodeToDoc)
-                                .collect(Collectors.toList());
+        // the affected holders aren't known, so everything needs to be reloaded
+        if (!bulkUpdate.isDryRun()) {
+            recordChange(CHANGE_ALL, CHANGE_ALL);
+        }
+    }
 
-                        d.append("permissions", newNodes).remove("perms");
-                        c.replaceOne(new Document("_id", uuid), d);
+    private static void applyBulkUpdate(BulkUpdate bulkUpdate, MongoCollection<Document> c, boolean users) throws Exception {
+        try (MongoCursor<Document> cursor = c.find().batchSize(BULK_UPDATE_CHUNK_SIZE).iterator()) {
+            BulkUpdateExecutor.process(cursor, BULK_UPDATE_CHUNK_SIZE, BulkUpdateExecutor.DEFAULT_THREADS, chunk -> {
+                List<WriteModel<Document>> writes = new ArrayList<>();
+                for (Document d : chunk) {
+                    Set<NodeDataContainer> results = bulkUpdate.apply(new HashSet<>(nodesFromDoc(d)), users);
+                    if (results == null) {
+                        continue;
                     }
+
+                    List<Document> newNodes = results.stream()
+                            .map(MongoDao::nodeToDoc)
+                            .collect(Collectors.toList());
+
+                    d.append("permissions", newNodes).remove("perms");
+                    writes.add(new ReplaceOneModel<>(Filters.eq("_id", d.get("_id")), d));
                 }
-            }
+
+                if (!writes.isEmpty() && !bulkUpdate.isDryRun()) {
+                    c.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+                }
+            });
         }
+    }
 
-        if (bulkUpdate.getDataType().isIncludingGroups()) {
-            MongoCollection<Document> c = this.database.getCollection(this.prefix + "groups");
-            try (MongoCursor<Document> cursor = c.find().iterator()) {
-                while (cursor.hasNext()) {
-                    Document d = cursor.next();
+    @Override
+    public StorageChanges getChanges(long since) {
+        MongoCollection<Document> c = this.database.getCollection(this.prefix + "changes");
 
-                    String holder = d.getString("_id");
-                    Set<NodeDataContainer> nodes = new HashSet<>(nodesFromDoc(d));
-                    Set<NodeDataContainer> results = nodes.stream()
-                            .map(bulkUpdate::apply)
-                            .filter(Objects::nonNull)
-                            .collect(Collectors.toSet());
+        Document counter = this.database.getCollection(this.prefix + "counters").find(new Document("_id", "changes")).first();
+        long max = counter == null ? 0 : counter.get("seq", Number.class).longValue();
+        Document first = c.find().sort(Sorts.ascending("_id")).first();
+        long min = first == null ? 0 : first.get("_id", Number.class).longValue();
 
-                    if (!nodes.equals(results)) {
-                        List<Document> newNodes = results.stream()
-                                .map(MongoDao::nodeToDoc)
-                                .collect(Collectors.toList());
+        // we can't know what's changed if the changes have since been trimmed, or the collection has been reset
+        if (since == -1 || min > since + 1 || max < since) {
+            this.changeSequence.reset();
+            return StorageChanges.all(max);
+        }
 
-                        d.append("permissions", newNodes).remove("perms");
-                        c.replaceOne(new Document("_id", holder), d);
-                    }
+        long version = since;
+        Set<UUID> users = new HashSet<>();
+        Set<String> groups = new HashSet<>();
+        Set<String> tracks = new HashSet<>();
+        try (MongoCursor<Document> cursor = c.find(Filters.gt("_id", this.changeSequence.readFrom(since))).sort(Sorts.ascending("_id")).iterator()) {
+            while (cursor.hasNext()) {
+                Document d = cursor.next();
+                long id = d.get("_id", Number.class).longValue();
+                if (!this.changeSequence.accept(since, id)) {
+                    continue;
+                }
+
+                version = Math.max(version, id);
+                String holder = d.getString("holder");
+                switch (d.getString("type")) {
+                    case CHANGE_USER:
+                        users.add(UUID.fromString(holder));
+                        break;
+                    case CHANGE_GROUP:
+                        groups.add(holder);
+                        break;
+                    case CHANGE_TRACK:
+                        tracks.add(holder);
+                        break;
+                    default:
+                        this.changeSequence.reset();
+                        return StorageChanges.all(max);
                 }
             }
         }
+        return StorageChanges.of(version, users, groups, tracks);
+    }
+
+    /**
+     * Records that a holder has changed, so other servers can pick up the
+     * change in their next sync.
+     *
+     * @param type the type of holder
+     * @param holder the holder's id
+     */
+    private void recordChange(String type, String holder) {
+        try {
+            Document counter = this.database.getCollection(this.prefix + "counters").findOneAndUpdate(
+                    Filters.eq("_id", "changes"),
+                    Updates.inc("seq", 1L),
+                    new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER)
+            );
+            long id = counter.get("seq", Number.class).longValue();
+
+            MongoCollection<Document> c = this.database.getCollection(this.prefix + "changes");
+            c.insertOne(new Document("_id", id).append("type", type).append("holder", holder));
+
+            // occasionally remove old changes
+            if (this.changesRecorded.incrementAndGet() % CHANGES_TRIM_INTERVAL == 0) {
+                c.deleteMany(Filters.lte("_id", id - CHANGES_RETAINED));
+            }
+        } catch (Exception e) {
+            this.plugin.getLogger().warn("Unable to record a change to " + holder + " - other servers may not see it until their next full sync.");
+            e.printStackTrace();
+        }
     }
 
     @Override
@@ -258,37 +373,87 @@ public class MongoDao extends AbstractDao {
         try {
             MongoCollection<Document> c = this.database.getCollection(this.prefix + "users");
             try (MongoCursor<Document> cursor = c.find(new Document("_id", user.getUuid())).iterator()) {
-                if (cursor.hasNext()) {
-                    // User exists, let's load.
-                    Document d = cursor.next();
+                applyUserDoc(c, user, cursor.hasNext() ? cursor.next() : null);
+            }
+        } finally {
+            user.getIoLock().unlock();
+        }
+        return user;
+    }
 
-                    String name = d.getString("name");
-                    user.getPrimaryGroup().setStoredValue(d.getString("primaryGroup"));
+    @Override
+    public User loadDetachedUser(UUID uuid) {
+        User user = User.detached(uuid, this.plugin);
+        MongoCollection<Document> c = this.database.getCollection(this.prefix + "users");
+        try (MongoCursor<Document> cursor = c.find(new Document("_id", uuid)).iterator()) {
+            applyUserDoc(c, user, cursor.hasNext() ? cursor.next() : null);
+        }
+        return user;
+    }
 
-                    Set<Node> nodes = nodesFromDoc(d).stream().map(NodeDataContainer::toNode).collect(Collectors.toSet());
-                    user.setNodes(NodeMapType.ENDURING, nodes);
-                    user.setName(name, true);
+    @Override
+    public Map<UUID, User> loadUsers(Set<UUID> uuids) {
+        // sort the users, so concurrent bulk loads always acquire their locks in the same order
+        List<UUID> sorted = new ArrayList<>(uuids);
+        sorted.sort(null);
 
-                    boolean save = this.plugin.getUserManager().giveDefaultIfNeeded(user, false);
-                    if (user.getName().isPresent() && (name == null || !user.getName().get().equalsIgnoreCase(name))) {
-                        save = true;
-                    }
+        MongoCollection<Document> c = this.database.getCollection(this.prefix + "users");
 
-                    if (save | user.auditTemporaryPermissions()) {
-                        c.replaceOne(new Document("_id", user.getUuid()), userToDoc(user));
-                    }
-                } else {
-                    if (this.plugin.getUserManager().shouldSave(user)) {
-                        user.clearNodes();
-                        user.getPrimaryGroup().setStoredValue(null);
-                        this.plugin.getUserManager().giveDefaultIfNeeded(user, false);
+        Map<UUID, User> users = new HashMap<>();
+        for (List<UUID> batch : Lists.partition(sorted, MAX_USER_LOAD_BATCH_SIZE)) {
+            List<User> batchUsers = new ArrayList<>(batch.size());
+            for (UUID uuid : batch) {
+                batchUsers.add(this.plugin.getUserManager().getOrMake(UserIdentifier.of(uuid, null)));
+            }
+
+            batchUsers.forEach(user -> user.getIoLock().lock());
+            try {
+                Map<UUID, Document> docs = new HashMap<>();
+                try (MongoCursor<Document> cursor = c.find(Filters.in("_id", batch)).iterator()) {
+                    while (cursor.hasNext()) {
+                        Document d = cursor.next();
+                        docs.put(d.get("_id", UUID.class), d);
                     }
                 }
+
+                for (User user : batchUsers) {
+                    applyUserDoc(c, user, docs.get(user.getUuid()));
+                    users.put(user.getUuid(), user);
+                }
+            } finally {
+                batchUsers.forEach(user -> user.getIoLock().unlock());
+            }
+        }
+        return users;
+    }
+
+    private void applyUserDoc(MongoCollection<Document> c, User user, Document d) {
+        if (d != null) {
+            // User exists, let's load.
+            String name = d.getString("name");
+            user.getPrimaryGroup().setStoredValue(d.getString("primaryGroup"));
+
+            Set<Node> nodes = nodesFromDoc(d).stream().map(NodeDataContainer::toNode).collect(Collectors.toSet());
+            user.setNodes(NodeMapType.ENDURING, nodes);
+            user.setName(name, true);
+
+            boolean save = this.plugin.getUserManager().giveDefaultIfNeeded(user, false);
+            if (user.getName().isPresent() && (name == null || !user.getName().get().equalsIgnoreCase(name))) {
+                save = true;
+            }
+
+            // detached copies are read-only
+            if ((save | user.auditTemporaryPermissions()) && !user.isDetached()) {
+                c.replaceOne(new Document("_id", user.getUuid()), userToDoc(user));
+                recordChange(CHANGE_USER, user.getUuid().toString());
+            }
+        } else {
+            if (this.plugin.getUserManager().shouldSave(user)) {
+                user.clearNodes();
+                user.getPrimaryGroup().setStoredValue(null);
+                this.plugin.getUserManager().giveDefaultIfNeeded(user, false);
             }
-        } finally {
-            user.getIoLock().unlock();
         }
-        return user;
     }
 
     @Override
@@ -301,6 +466,7 @@ public class MongoDao extends AbstractDao {
             } else {
                 c.replaceOne(new Document("_id", user.getUuid()), userToDoc(user), new UpdateOptions().upsert(true));
             }
+            recordChange(CHANGE_USER, user.getUuid().toString());
         } finally {
             user.getIoLock().unlock();
         }
@@ -323,7 +489,7 @@ public class MongoDao extends AbstractDao {
     public List<HeldPermission<UUID>> getUsersWithPermission(Constraint constraint) {
         List<HeldPermission<UUID>> held = new ArrayList<>();
         MongoCollection<Document> c = this.database.getCollection(this.prefix + "users");
-        try (MongoCursor<Document> cursor = c.find().iterator()) {
+        try (MongoCursor<Document> cursor = c.find(permissionSearchFilter(constraint)).iterator()) {
             while (cursor.hasNext()) {
                 Document d = cursor.next();
                 UUID holder = d.get("_id", UUID.class);
@@ -353,6 +519,7 @@ public class MongoDao extends AbstractDao {
                     group.setNodes(NodeMapType.ENDURING, nodes);
                 } else {
                     c.insertOne(groupToDoc(group));
+                    recordChange(CHANGE_GROUP, group.getName());
                 }
             }
         } finally {
@@ -428,6 +595,7 @@ public class MongoDao extends AbstractDao {
         try {
             MongoCollection<Document> c = this.database.getCollection(this.prefix + "groups");
             c.replaceOne(new Document("_id", group.getName()), groupToDoc(group), new UpdateOptions().upsert(true));
+            recordChange(CHANGE_GROUP, group.getName());
         } finally {
             group.getIoLock().unlock();
         }
@@ -439,6 +607,7 @@ public class MongoDao extends AbstractDao {
         try {
             MongoCollection<Document> c = this.database.getCollection(this.prefix + "groups");
             c.deleteOne(new Document("_id", group.getName()));
+            recordChange(CHANGE_GROUP, group.getName());
         } finally {
             group.getIoLock().unlock();
         }
@@ -448,7 +617,7 @@ public class MongoDao extends AbstractDao {
     public List<HeldPermission<String>> getGroupsWithPermission(Constraint constraint) {
         List<HeldPermission<String>> held = new ArrayList<>();
         MongoCollection<Document> c = this.database.getCollection(this.prefix + "groups");
-        try (MongoCursor<Document> cursor = c.find().iterator()) {
+        try (MongoCursor<Document> cursor = c.find(permissionSearchFilter(constraint)).iterator()) {
             while (cursor.hasNext()) {
                 Document d = cursor.next();
 
@@ -474,6 +643,7 @@ public class MongoDao extends AbstractDao {
             try (MongoCursor<Document> cursor = c.find(new Document("_id", track.getName())).iterator()) {
                 if (!cursor.hasNext()) {
                     c.insertOne(trackToDoc(track));
+                    recordChange(CHANGE_TRACK, track.getName());
                 } else {
                     Document d = cursor.next();
                     //noinspection unchecked
@@ -554,6 +724,7 @@ public class MongoDao extends AbstractDao {
         try {
             MongoCollection<Document> c = this.database.getCollection(this.prefix + "tracks");
             c.replaceOne(new Document("_id", track.getName()), trackToDoc(track));
+            recordChange(CHANGE_TRACK, track.getName());
         } finally {
             track.getIoLock().unlock();
         }
@@ -565,6 +736,7 @@ public class MongoDao extends AbstractDao {
         try {
             MongoCollection<Document> c = this.database.getCollection(this.prefix + "tracks");
             c.deleteOne(new Document("_id", track.getName()));
+            recordChange(CHANGE_TRACK, track.getName());
         } finally {
             track.getIoLock().unlock();
         }
@@ -622,6 +794,54 @@ public class MongoDao extends AbstractDao {
         return null;
     }
 
+    private static ExtendedLogEntry logEntryFromDoc(Document d) {
+        UUID actedUuid = null;
+        if (d.containsKey("acted")) {
+            actedUuid = d.get("acted", UUID.class);
+        }
+
+        return ExtendedLogEntry.build()
+                .timestamp(d.getLong("timestamp"))
+                .actor(d.get("actor", UUID.class))
+                .actorName(d.getString("actorName"))
+                .type(LogEntry.Type.valueOf(d.getString("type").charAt(0)))
+                .acted(actedUuid)
+                .actedName(d.getString("actedName"))
+                .action(d.getString("action"))
+                .build();
+    }
+
+    private static Bson logFilterToBson(LogFilter filter) {
+        List<Bson> filters = new ArrayList<>();
+
+        if (filter.hasTimeRange()) {
+            filters.add(Filters.gte("timestamp", filter.getStartTime()));
+            filters.add(Filters.lte("timestamp", filter.getEndTime()));
+        }
+        if (filter.getType() != null) {
+            filters.add(Filters.eq("type", Character.toString(filter.getType().getCode())));
+        }
+        if (filter.getActor() != null) {
+            filters.add(Filters.eq("actor", filter.getActor()));
+        }
+        if (filter.getActed() != null) {
+            filters.add(Filters.eq("acted", filter.getActed()));
+        }
+        if (filter.getActedName() != null) {
+            filters.add(Filters.eq("actedName", filter.getActedName()));
+        }
+        if (filter.getQuery() != null) {
+            Pattern pattern = Pattern.compile(Pattern.quote(filter.getQuery()), Pattern.CASE_INSENSITIVE);
+            filters.add(Filters.or(
+                    Filters.regex("actorName", pattern),
+                    Filters.regex("actedName", pattern),
+                    Filters.regex("action", pattern)
+            ));
+        }
+
+        return filters.isEmpty() ? new Document() : Filters.and(filters);
+    }
+
     private static Document userToDoc(User user) {
         List<Document> nodes = user.enduringData().immutable().values().stream()
                 .map(NodeDataContainer::fromNode)
@@ -634,6 +854,12 @@ public class MongoDao extends AbstractDao {
                 .append("permissions", nodes);
     }
 
+    private static Bson permissionSearchFilter(Constraint constraint) {
+        // documents still in the legacy "perms" format can't be filtered server-side,
+        // so they are always returned & evaluated locally.
+        return Filters.or(constraint.createMongoFilter("permissions", "permission"), Filters.exists("perms"));
+    }
+
     private static List<NodeDataContainer> nodesFromDoc(Document document) {
         List<NodeDataContainer> nodes = new ArrayList<>();
 
@@ -0,0 +1,115 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package me.lucko.luckperms.common.storage.dao.sql;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the (time, id) keys of action log entries at known positions in
+ * each filtered view of the log.
+ *
+ * <p>This allows a page next to one which has already been read to be found
+ * by seeking from a known key, instead of skipping over every preceding row
+ * with an OFFSET.</p>
+ */
+final class LogPageKeys {
+
+    /** The most keys remembered for a single view */
+    private static final int MAX_KEYS_PER_VIEW = 256;
+
+    private final Cache<String, Positions> views = Caffeine.newBuilder()
+            .maximumSize(64)
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * Gets the known positions for a view of the log
+     *
+     * @param view a string identifying the filter applied to the log
+     * @return the positions
+     */
+    Positions get(String view) {
+        return this.views.get(view, v -> new Positions());
+    }
+
+    /**
+     * The key of an entry in the actions table
+     */
+    static final class Key {
+        private final long time;
+        private final long id;
+
+        Key(long time, long id) {
+            this.time = time;
+            this.id = id;
+        }
+
+        public long getTime() {
+            return this.time;
+        }
+
+        public long getId() {
+            return this.id;
+        }
+    }
+
+    /**
+     * The known keys in a view, by their position (starting at 1, oldest first)
+     */
+    static final class Positions {
+        private final NavigableMap<Integer, Key> keys = new TreeMap<>();
+
+        synchronized Map.Entry<Integer, Key> floor(int position) {
+            return this.keys.floorEntry(position);
+        }
+
+        synchronized Map.Entry<Integer, Key> ceiling(int position) {
+            return this.keys.ceilingEntry(position);
+        }
+
+        synchronized Map.Entry<Integer, Key> latest() {
+            return this.keys.lastEntry();
+        }
+
+        synchronized void put(int position, Key key) {
+            this.keys.put(position, key);
+
+            // forget the oldest positions first - the most recent pages are read far more often
+            while (this.keys.size() > MAX_KEYS_PER_VIEW) {
+                this.keys.pollFirstEntry();
+            }
+        }
+
+        synchronized void clear() {
+            this.keys.clear();
+        }
+    }
+}
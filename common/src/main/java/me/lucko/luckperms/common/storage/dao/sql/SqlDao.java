@@ -25,6 +25,7 @@
 
 package me.lucko.luckperms.common.storage.dao.sql;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
@@ -35,9 +36,12 @@ import me.lucko.luckperms.api.Node;
 import me.lucko.luckperms.api.PlayerSaveResult;
 import me.lucko.luckperms.common.actionlog.ExtendedLogEntry;
 import me.lucko.luckperms.common.actionlog.Log;
+import me.lucko.luckperms.common.actionlog.LogFilter;
+import me.lucko.luckperms.common.actionlog.LogPage;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
 import me.lucko.luckperms.common.bulkupdate.PreparedStatementBuilder;
 import me.lucko.luckperms.common.bulkupdate.comparisons.Constraint;
+import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.contexts.ContextSetJsonSerializer;
 import me.lucko.luckperms.common.managers.group.GroupManager;
 import me.lucko.luckperms.common.managers.track.TrackManager;
@@ -51,7 +55,9 @@ import me.lucko.luckperms.common.node.model.NodeDataContainer;
 import me.lucko.luckperms.common.node.model.NodeHeldPermission;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.storage.PlayerSaveResultImpl;
+import me.lucko.luckperms.common.storage.StorageChanges;
 import me.lucko.luckperms.common.storage.dao.AbstractDao;
+import me.lucko.luckperms.common.storage.dao.ChangeSequence;
 import me.lucko.luckperms.common.storage.dao.sql.connection.AbstractConnectionFactory;
 import me.lucko.luckperms.common.storage.dao.sql.connection.file.SQLiteConnectionFactory;
 import me.lucko.luckperms.common.storage.dao.sql.connection.hikari.PostgreConnectionFactory;
@@ -62,41 +68,58 @@ import java.io.InputStreamReader;
 import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class SqlDao extends AbstractDao {
     private static final Type LIST_STRING_TYPE = new TypeToken<List<String>>(){}.getType();
 
     private static final String USER_PERMISSIONS_SELECT = "SELECT permission, value, server, world, expiry, contexts FROM {prefix}user_permissions WHERE uuid=?";
+    private static final String USER_PERMISSIONS_SELECT_WITH_PLAYER = "SELECT permission, value, server, world, expiry, contexts, NULL AS username, NULL AS primary_group FROM {prefix}user_permissions WHERE uuid=? " +
+            "UNION ALL SELECT NULL, NULL, NULL, NULL, NULL, NULL, username, primary_group FROM {prefix}players WHERE uuid=?";
     private static final String USER_PERMISSIONS_DELETE_SPECIFIC = "DELETE FROM {prefix}user_permissions WHERE uuid=? AND permission=? AND value=? AND server=? AND world=? AND expiry=? AND contexts=?";
     private static final String USER_PERMISSIONS_DELETE = "DELETE FROM {prefix}user_permissions WHERE uuid=?";
     private static final String USER_PERMISSIONS_INSERT = "INSERT INTO {prefix}user_permissions(uuid, permission, value, server, world, expiry, contexts) VALUES(?, ?, ?, ?, ?, ?, ?)";
     private static final String USER_PERMISSIONS_SELECT_DISTINCT = "SELECT DISTINCT uuid FROM {prefix}user_permissions";
     private static final String USER_PERMISSIONS_SELECT_PERMISSION = "SELECT uuid, permission, value, server, world, expiry, contexts FROM {prefix}user_permissions WHERE ";
+    private static final String USER_PERMISSIONS_SELECT_MULTIPLE = "SELECT uuid, permission, value, server, world, expiry, contexts FROM {prefix}user_permissions WHERE uuid IN ";
 
     private static final String PLAYER_SELECT_UUID_BY_USERNAME = "SELECT uuid FROM {prefix}players WHERE username=? LIMIT 1";
     private static final String PLAYER_SELECT_USERNAME_BY_UUID = "SELECT username FROM {prefix}players WHERE uuid=? LIMIT 1";
-    private static final String PLAYER_UPDATE_USERNAME_FOR_UUID = "UPDATE {prefix}players SET username=? WHERE uuid=?";
-    private static final String PLAYER_INSERT = "INSERT INTO {prefix}players (uuid, username, primary_group) VALUES(?, ?, ?)";
-    private static final String PLAYER_SELECT_ALL_UUIDS_BY_USERNAME = "SELECT uuid FROM {prefix}players WHERE username=? AND NOT uuid=?";
+    private static final String MYSQL_PLAYER_UPSERT = "INSERT INTO {prefix}players (uuid, username, primary_group) VALUES(?, ?, ?) ON DUPLICATE KEY UPDATE username=VALUES(username)";
+    private static final String H2_PLAYER_UPSERT = "MERGE INTO {prefix}players (uuid, username, primary_group) KEY (uuid) VALUES(?1, ?2, COALESCE((SELECT primary_group FROM {prefix}players WHERE uuid=?1), ?3))";
+    private static final String SQLITE_PLAYER_UPSERT = "INSERT OR REPLACE INTO {prefix}players (uuid, username, primary_group) VALUES(?1, ?2, COALESCE((SELECT primary_group FROM {prefix}players WHERE uuid=?1), ?3))";
+    private static final String POSTGRESQL_PLAYER_UPSERT = "INSERT INTO {prefix}players (uuid, username, primary_group) VALUES(?, ?, ?) ON CONFLICT (uuid) DO UPDATE SET username=EXCLUDED.username";
+    private static final String MYSQL_PLAYER_PRIMARY_GROUP_UPSERT = "INSERT INTO {prefix}players (uuid, username, primary_group) VALUES(?, ?, ?) ON DUPLICATE KEY UPDATE primary_group=VALUES(primary_group)";
+    private static final String H2_PLAYER_PRIMARY_GROUP_UPSERT = "MERGE INTO {prefix}players (uuid, username, primary_group) KEY (uuid) VALUES(?1, COALESCE((SELECT username FROM {prefix}players WHERE uuid=?1), ?2), ?3)";
+    private static final String SQLITE_PLAYER_PRIMARY_GROUP_UPSERT = "INSERT OR REPLACE INTO {prefix}players (uuid, username, primary_group) VALUES(?1, COALESCE((SELECT username FROM {prefix}players WHERE uuid=?1), ?2), ?3)";
+    private static final String POSTGRESQL_PLAYER_PRIMARY_GROUP_UPSERT = "INSERT INTO {prefix}players (uuid, username, primary_group) VALUES(?, ?, ?) ON CONFLICT (uuid) DO UPDATE SET primary_group=EXCLUDED.primary_group";
+    private static final String PLAYER_SELECT_BY_UUID_OR_USERNAME = "SELECT uuid, username FROM {prefix}players WHERE uuid=? OR username=?";
     private static final String PLAYER_DELETE_ALL_UUIDS_BY_USERNAME = "DELETE FROM {prefix}players WHERE username=? AND NOT uuid=?";
-    private static final String PLAYER_SELECT_BY_UUID = "SELECT username, primary_group FROM {prefix}players WHERE uuid=?";
-    private static final String PLAYER_SELECT_PRIMARY_GROUP_BY_UUID = "SELECT primary_group FROM {prefix}players WHERE uuid=? LIMIT 1";
+    private static final String PLAYER_SELECT_BY_UUID_MULTIPLE = "SELECT uuid, username, primary_group FROM {prefix}players WHERE uuid IN ";
     private static final String PLAYER_UPDATE_PRIMARY_GROUP_BY_UUID = "UPDATE {prefix}players SET primary_group=? WHERE uuid=?";
 
     private static final String GROUP_PERMISSIONS_SELECT = "SELECT permission, value, server, world, expiry, contexts FROM {prefix}group_permissions WHERE name=?";
+    private static final String GROUP_PERMISSIONS_SELECT_MULTIPLE = "SELECT name, permission, value, server, world, expiry, contexts FROM {prefix}group_permissions WHERE name IN ";
     private static final String GROUP_PERMISSIONS_DELETE = "DELETE FROM {prefix}group_permissions WHERE name=?";
     private static final String GROUP_PERMISSIONS_DELETE_SPECIFIC = "DELETE FROM {prefix}group_permissions WHERE name=? AND permission=? AND value=? AND server=? AND world=? AND expiry=? AND contexts=?";
     private static final String GROUP_PERMISSIONS_INSERT = "INSERT INTO {prefix}group_permissions(name, permission, value, server, world, expiry, contexts) VALUES(?, ?, ?, ?, ?, ?, ?)";
@@ -117,10 +140,46 @@ public class SqlDao extends AbstractDao {
 
     private static final String ACTION_INSERT = "INSERT INTO {prefix}actions(time, actor_uuid, actor_name, type, acted_uuid, acted_name, action) VALUES(?, ?, ?, ?, ?, ?, ?)";
     private static final String ACTION_SELECT_ALL = "SELECT * FROM {prefix}actions";
+    private static final String ACTION_SELECT = "SELECT id, time, actor_uuid, actor_name, type, acted_uuid, acted_name, action FROM {prefix}actions";
+    private static final String ACTION_COUNT = "SELECT COUNT(*) FROM {prefix}actions";
+
+    // keyset conditions on (time, id), written so the time index can be used for the range
+    private static final String ACTION_AFTER_KEY = "time >= ? AND (time > ? OR id > ?)";
+    private static final String ACTION_BEFORE_KEY = "time <= ? AND (time < ? OR id < ?)";
+    private static final String[] ACTION_INDEXED_COLUMNS = {"time", "actor_uuid", "acted_uuid", "acted_name"};
+
+    private static final int MAX_USER_LOAD_BATCH_SIZE = 500;
+
+    private static final String CHANGES_INSERT = "INSERT INTO {prefix}changes(holder_type, holder) VALUES(?, ?)";
+    static final String CHANGES_SELECT = "SELECT id, holder_type, holder FROM {prefix}changes WHERE id > ? ORDER BY id";
+    static final String CHANGES_SELECT_RANGE = "SELECT MIN(id), MAX(id) FROM {prefix}changes";
+    private static final String CHANGES_DELETE = "DELETE FROM {prefix}changes WHERE id <= ?";
+
+    static final String CHANGE_USER = "U";
+    private static final String CHANGE_GROUP = "G";
+    private static final String CHANGE_TRACK = "T";
+    static final String CHANGE_ALL = "*";
+
+    /** Recorded when the layout of a table has changed, so other servers re-detect it */
+    static final String CHANGE_SCHEMA = "S";
+
+    /** How many changes are kept in the changes table */
+    private static final int CHANGES_RETAINED = 10000;
+
+    /** How many changes are recorded by this instance between trims of the changes table */
+    private static final int CHANGES_TRIM_INTERVAL = 1000;
 
     private final Gson gson;
     private final AbstractConnectionFactory provider;
     private final Function<String, String> prefix;
+    private final AtomicInteger changesRecorded = new AtomicInteger(0);
+    private final ChangeSequence changeSequence = new ChangeSequence();
+    private final LogPageKeys logPageKeys = new LogPageKeys();
+
+    // the layout of the uuid columns in each table, detected on init, and again if it changes
+    private volatile UuidFormat userUuids = UuidFormat.STRING;
+    private volatile UuidFormat playerUuids = UuidFormat.STRING;
+    private volatile UuidFormat actionUuids = UuidFormat.STRING;
 
     public SqlDao(LuckPermsPlugin plugin, AbstractConnectionFactory provider, String prefix) {
         super(plugin, provider.getName());
@@ -141,7 +200,7 @@ public class SqlDao extends AbstractDao {
         return this.prefix;
     }
 
-    private boolean tableExists(String table) throws SQLException {
+    boolean tableExists(String table) throws SQLException {
         try (Connection connection = this.provider.getConnection()) {
             try (ResultSet rs = connection.getMetaData().getTables(null, null, "%", null)) {
                 while (rs.next()) {
@@ -154,44 +213,192 @@ public class SqlDao extends AbstractDao {
         }
     }
 
-    @Override
-    public void init() throws Exception {
-        this.provider.init();
+    private boolean indexExists(String table, String index) throws SQLException {
+        try (Connection connection = this.provider.getConnection()) {
+            DatabaseMetaData meta = connection.getMetaData();
+            String catalog = connection.getCatalog();
 
-        // Init tables
-        if (!tableExists(this.prefix.apply("{prefix}user_permissions"))) {
-            String schemaFileName = "me/lucko/luckperms/schema/" + this.provider.getName().toLowerCase() + ".sql";
-            try (InputStream is = this.plugin.getBootstrap().getResourceStream(schemaFileName)) {
-                if (is == null) {
-                    throw new Exception("Couldn't locate schema file for " + this.provider.getName());
+            for (String tableName : identifierCandidates(meta, table)) {
+                try (ResultSet rs = meta.getIndexInfo(catalog, null, tableName, false, true)) {
+                    while (rs.next()) {
+                        String name = rs.getString("INDEX_NAME");
+                        if (name != null && name.equalsIgnoreCase(index)) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    UuidFormat getUuidFormat(String table, String column) throws SQLException {
+        try (Connection connection = this.provider.getConnection()) {
+            DatabaseMetaData meta = connection.getMetaData();
+            String catalog = connection.getCatalog();
+
+            for (String tableName : identifierCandidates(meta, table)) {
+                try (ResultSet rs = meta.getColumns(catalog, null, tableName, "%")) {
+                    while (rs.next()) {
+                        if (rs.getString("COLUMN_NAME").equalsIgnoreCase(column)) {
+                            return UuidFormat.ofColumnType(this.provider.getName(), rs.getInt("DATA_TYPE"));
+                        }
+                    }
                 }
+            }
+        }
+        return UuidFormat.STRING;
+    }
 
-                try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
-                    try (Connection connection = this.provider.getConnection()) {
-                        try (Statement s = connection.createStatement()) {
-                            StringBuilder sb = new StringBuilder();
-                            String line;
-                            while ((line = reader.readLine()) != null) {
-                                if (line.startsWith("--") || line.startsWith("#")) continue;
+    /**
+     * Detects the layout of the uuid columns in each table.
+     *
+     * @return true if the layout of any table has changed since it was last detected
+     * @throws SQLException if the layout couldn't be read
+     */
+    private synchronized boolean detectUuidFormats() throws SQLException {
+        UuidFormat userUuids = getUuidFormat(this.prefix.apply("{prefix}user_permissions"), "uuid");
+        UuidFormat playerUuids = getUuidFormat(this.prefix.apply("{prefix}players"), "uuid");
+        UuidFormat actionUuids = getUuidFormat(this.prefix.apply("{prefix}actions"), "actor_uuid");
+
+        boolean changed = userUuids != this.userUuids || playerUuids != this.playerUuids || actionUuids != this.actionUuids;
+        this.userUuids = userUuids;
+        this.playerUuids = playerUuids;
+        this.actionUuids = actionUuids;
+        return changed;
+    }
 
-                                sb.append(line);
+    /**
+     * Gets if an exception was caused by a value not matching the type of its column,
+     * for example a string uuid being written to a binary column.
+     *
+     * @param e the exception
+     * @return true if it is a type error
+     */
+    private static boolean isTypeError(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (!(t instanceof SQLException)) {
+                continue;
+            }
 
-                                // check for end of declaration
-                                if (line.endsWith(";")) {
-                                    sb.deleteCharAt(sb.length() - 1);
+            // class 22 is a data exception, 42804 (datatype mismatch) and 42883 (no such operator) are
+            // raised by PostgreSQL when a uuid column is compared with a string
+            String state = ((SQLException) t).getSQLState();
+            if (state != null && (state.startsWith("22") || state.equals("42804") || state.equals("42883"))) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-                                    String result = this.prefix.apply(sb.toString().trim());
-                                    if (!result.isEmpty()) s.addBatch(result);
+    @Override
+    public boolean recover(Exception e) {
+        // the tables may have been converted to another layout by another server
+        if (!isTypeError(e)) {
+            return false;
+        }
 
-                                    // reset
-                                    sb = new StringBuilder();
-                                }
-                            }
-                            s.executeBatch();
-                        }
+        try {
+            if (detectUuidFormats()) {
+                this.plugin.getLogger().info("The layout of the uuid columns in the SQL tables has changed - retrying with the new layout.");
+                return true;
+            }
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Gets the names a table could be stored under by the database - either exactly as
+     * it was written (if it was quoted), or in the database's default case.
+     *
+     * @param meta the database metadata
+     * @param identifier the identifier
+     * @return the possible names
+     * @throws SQLException if the metadata couldn't be read
+     */
+    private static Set<String> identifierCandidates(DatabaseMetaData meta, String identifier) throws SQLException {
+        Set<String> candidates = new LinkedHashSet<>();
+        candidates.add(identifier);
+        if (meta.storesUpperCaseIdentifiers()) {
+            candidates.add(identifier.toUpperCase());
+        } else if (meta.storesLowerCaseIdentifiers()) {
+            candidates.add(identifier.toLowerCase());
+        }
+        return candidates;
+    }
+
+    /**
+     * Reads the statements in the schema file for the current database type.
+     *
+     * @param binaryUuids if the schema with binary uuid columns should be read
+     * @return the statements, without the prefix applied
+     * @throws Exception if an error occurs
+     */
+    List<String> readSchema(boolean binaryUuids) throws Exception {
+        String schemaFileName = "me/lucko/luckperms/schema/" + (binaryUuids ? "binary-uuids/" : "") + this.provider.getName().toLowerCase() + ".sql";
+        try (InputStream is = this.plugin.getBootstrap().getResourceStream(schemaFileName)) {
+            if (is == null) {
+                throw new Exception("Couldn't locate schema file for " + this.provider.getName());
+            }
+
+            List<String> statements = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+                StringBuilder sb = new StringBuilder();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("--") || line.startsWith("#")) continue;
+
+                    sb.append(line);
+
+                    // check for end of declaration
+                    if (line.endsWith(";")) {
+                        sb.deleteCharAt(sb.length() - 1);
+
+                        String statement = sb.toString().trim();
+                        if (!statement.isEmpty()) statements.add(statement);
+
+                        // reset
+                        sb = new StringBuilder();
                     }
                 }
             }
+            return statements;
+        }
+    }
+
+    /**
+     * Executes the statements in the schema file for the current database type.
+     *
+     * @param binaryUuids if the schema with binary uuid columns should be used
+     * @param filter a filter applied to each statement, before the prefix is applied
+     * @throws Exception if an error occurs
+     */
+    private void executeSchema(boolean binaryUuids, Predicate<String> filter) throws Exception {
+        List<String> statements = readSchema(binaryUuids);
+        try (Connection connection = this.provider.getConnection()) {
+            try (Statement s = connection.createStatement()) {
+                for (String statement : statements) {
+                    if (filter.test(statement)) s.addBatch(this.prefix.apply(statement));
+                }
+                s.executeBatch();
+            }
+        }
+    }
+
+    @Override
+    public void init() throws Exception {
+        this.provider.init();
+
+        boolean binaryUuids = this.plugin.getConfiguration().get(ConfigKeys.SQL_BINARY_UUIDS);
+
+        // Init tables
+        if (!tableExists(this.prefix.apply("{prefix}user_permissions"))) {
+            executeSchema(binaryUuids, statement -> true);
+        } else if (!tableExists(this.prefix.apply("{prefix}changes"))) {
+            // added after the rest of the schema
+            executeSchema(binaryUuids, statement -> statement.contains("{prefix}changes"));
         }
 
         // migrations
@@ -207,6 +414,38 @@ public class SqlDao extends AbstractDao {
         } catch (Exception e) {
             e.printStackTrace();
         }
+
+        // add indexes used by paginated log queries to tables created before they were in the schema
+        try {
+            String quote = this.provider instanceof PostgreConnectionFactory ? "\"" : "`";
+            for (String column : ACTION_INDEXED_COLUMNS) {
+                String index = this.prefix.apply("{prefix}actions_" + column);
+                if (indexExists(this.prefix.apply("{prefix}actions"), index)) {
+                    continue;
+                }
+
+                try (Connection connection = this.provider.getConnection()) {
+                    try (Statement s = connection.createStatement()) {
+                        s.execute("CREATE INDEX " + quote + index + quote + " ON " + quote + this.prefix.apply("{prefix}actions") + quote + " (" + quote + column + quote + ")");
+                    }
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        // convert uuid columns to the binary layout, if enabled
+        if (binaryUuids) {
+            try {
+                new UuidColumnMigration(this).run();
+            } catch (Exception e) {
+                this.plugin.getLogger().severe("Unable to convert uuid columns to the binary layout - the existing layout will be used for now.");
+                e.printStackTrace();
+            }
+        }
+
+        // either layout can be read and written, so detect what each table is actually using
+        detectUuidFormats();
     }
 
     @Override
@@ -228,10 +467,10 @@ public class SqlDao extends AbstractDao {
         try (Connection c = this.provider.getConnection()) {
             try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(ACTION_INSERT))) {
                 ps.setLong(1, entry.getTimestamp());
-                ps.setString(2, entry.getActor().toString());
+                this.actionUuids.set(ps, 2, entry.getActor());
                 ps.setString(3, entry.getActorName());
                 ps.setString(4, Character.toString(entry.getType().getCode()));
-                ps.setString(5, entry.getActed().map(UUID::toString).orElse("null"));
+                this.actionUuids.set(ps, 5, entry.getActed().orElse(null));
                 ps.setString(6, entry.getActedName());
                 ps.setString(7, entry.getAction());
                 ps.execute();
@@ -246,18 +485,7 @@ public class SqlDao extends AbstractDao {
             try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(ACTION_SELECT_ALL))) {
                 try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
-                        final String actedUuid = rs.getString("acted_uuid");
-                        ExtendedLogEntry e = ExtendedLogEntry.build()
-                                .timestamp(rs.getLong("time"))
-                                .actor(UUID.fromString(rs.getString("actor_uuid")))
-                                .actorName(rs.getString("actor_name"))
-                                .type(LogEntry.Type.valueOf(rs.getString("type").toCharArray()[0]))
-                                .acted(actedUuid.equals("null") ? null : UUID.fromString(actedUuid))
-                                .actedName(rs.getString("acted_name"))
-                                .action(rs.getString("action"))
-                                .build();
-                        
-                        log.add(e);
+                        log.add(readLogEntry(rs));
                     }
                 }
             }
@@ -265,23 +493,365 @@ public class SqlDao extends AbstractDao {
         return log.build();
     }
 
+    @Override
+    public LogPage getLogPage(LogFilter filter, int pageNo, int entriesPerPage) throws SQLException {
+        List<Object> variables = new ArrayList<>();
+        String where = buildLogWhereClause(filter, variables);
+
+        // the positions of entries which have already been read in this view of the log
+        LogPageKeys.Positions positions = this.logPageKeys.get(where + variables.stream().map(SqlDao::describeVariable).collect(Collectors.toList()));
+
+        try (Connection c = this.provider.getConnection()) {
+            // count the entries, and how many of them come after the latest known position
+            Map.Entry<Integer, LogPageKeys.Key> latest = positions.latest();
+            int total = 0;
+            int appended = 0;
+            String count = latest == null ? ACTION_COUNT : "SELECT COUNT(*), COUNT(CASE WHEN " + ACTION_AFTER_KEY + " THEN 1 END) FROM {prefix}actions";
+            try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(count + where))) {
+                int i = 1;
+                if (latest != null) {
+                    i = setKey(ps, i, latest.getValue());
+                }
+                setVariables(ps, i, variables);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        total = rs.getInt(1);
+                        appended = latest == null ? 0 : rs.getInt(2);
+                    }
+                }
+            }
+
+            // entries are usually only ever added to the end of the log, but if any were
+            // inserted before the known positions (e.g. due to clock skew), they have moved
+            if (latest != null && total - appended != latest.getKey()) {
+                positions.clear();
+            }
+
+            int page = LogPage.resolvePage(pageNo, total, entriesPerPage);
+            List<ExtendedLogEntry> entries = new ArrayList<>();
+
+            if (LogPage.isInRange(page, total, entriesPerPage)) {
+                int first = LogPage.getOffset(page, entriesPerPage) + 1;
+                int last = Math.min(first + entriesPerPage - 1, total);
+
+                // seek from whichever known position is closest - either end of the log is always known.
+                // when paging through the log one page at a time, nothing needs to be skipped at all
+                Map.Entry<Integer, LogPageKeys.Key> before = positions.floor(first - 1);
+                Map.Entry<Integer, LogPageKeys.Key> after = positions.ceiling(last + 1);
+                int skipForwards = first - 1 - (before == null ? 0 : before.getKey());
+                int skipBackwards = (after == null ? total + 1 : after.getKey()) - last - 1;
+
+                boolean forwards = skipForwards <= skipBackwards;
+                LogPageKeys.Key seekFrom = forwards ? (before == null ? null : before.getValue()) : (after == null ? null : after.getValue());
+                int skip = forwards ? skipForwards : skipBackwards;
+
+                StringBuilder query = new StringBuilder(ACTION_SELECT).append(where);
+                if (seekFrom != null) {
+                    query.append(where.isEmpty() ? " WHERE " : " AND ").append(forwards ? ACTION_AFTER_KEY : ACTION_BEFORE_KEY);
+                }
+                query.append(forwards ? " ORDER BY time, id" : " ORDER BY time DESC, id DESC").append(" LIMIT ?");
+                if (skip != 0) {
+                    query.append(" OFFSET ?");
+                }
+
+                List<LogPageKeys.Key> keys = new ArrayList<>();
+                try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(query.toString()))) {
+                    int i = setVariables(ps, 1, variables);
+                    if (seekFrom != null) {
+                        i = setKey(ps, i, seekFrom);
+                    }
+                    ps.setInt(i++, last - first + 1);
+                    if (skip != 0) {
+                        ps.setInt(i, skip);
+                    }
+
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            entries.add(readLogEntry(rs));
+                            keys.add(new LogPageKeys.Key(rs.getLong("time"), rs.getLong("id")));
+                        }
+                    }
+                }
+
+                if (!forwards) {
+                    Collections.reverse(entries);
+                    Collections.reverse(keys);
+                }
+
+                // remember where the page starts and ends, so the pages either side can be found directly
+                if (keys.size() == last - first + 1) {
+                    positions.put(first, keys.get(0));
+                    positions.put(last, keys.get(keys.size() - 1));
+                }
+            }
+
+            return LogPage.of(page, entriesPerPage, total, entries);
+        }
+    }
+
+    private static int setVariables(PreparedStatement ps, int index, List<Object> variables) throws SQLException {
+        for (Object variable : variables) {
+            ps.setObject(index++, variable);
+        }
+        return index;
+    }
+
+    private static int setKey(PreparedStatement ps, int index, LogPageKeys.Key key) throws SQLException {
+        ps.setLong(index++, key.getTime());
+        ps.setLong(index++, key.getTime());
+        ps.setLong(index++, key.getId());
+        return index;
+    }
+
+    private static String describeVariable(Object variable) {
+        return variable instanceof byte[] ? Arrays.toString((byte[]) variable) : String.valueOf(variable);
+    }
+
+    private String buildLogWhereClause(LogFilter filter, List<Object> variables) {
+        List<String> conditions = new ArrayList<>();
+
+        if (filter.hasTimeRange()) {
+            conditions.add("time >= ?");
+            variables.add(filter.getStartTime());
+            conditions.add("time <= ?");
+            variables.add(filter.getEndTime());
+        }
+        if (filter.getType() != null) {
+            conditions.add("type = ?");
+            variables.add(Character.toString(filter.getType().getCode()));
+        }
+        if (filter.getActor() != null) {
+            conditions.add("actor_uuid = ?");
+            variables.add(this.actionUuids.toObject(filter.getActor()));
+        }
+        if (filter.getActed() != null) {
+            conditions.add("acted_uuid = ?");
+            variables.add(this.actionUuids.toObject(filter.getActed()));
+        }
+        if (filter.getActedName() != null) {
+            conditions.add("acted_name = ?");
+            variables.add(filter.getActedName());
+        }
+        if (filter.getQuery() != null) {
+            String pattern = "%" + filter.getQuery().replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+            conditions.add("(LOWER(actor_name) LIKE ? ESCAPE '!' OR LOWER(acted_name) LIKE ? ESCAPE '!' OR LOWER(action) LIKE ? ESCAPE '!')");
+            variables.add(pattern);
+            variables.add(pattern);
+            variables.add(pattern);
+        }
+
+        if (conditions.isEmpty()) {
+            return "";
+        }
+        return " WHERE " + String.join(" AND ", conditions);
+    }
+
+    private ExtendedLogEntry readLogEntry(ResultSet rs) throws SQLException {
+        return ExtendedLogEntry.build()
+                .timestamp(rs.getLong("time"))
+                .actor(this.actionUuids.get(rs, "actor_uuid"))
+                .actorName(rs.getString("actor_name"))
+                .type(LogEntry.Type.valueOf(rs.getString("type").toCharArray()[0]))
+                .acted(this.actionUuids.get(rs, "acted_uuid"))
+                .actedName(rs.getString("acted_name"))
+                .action(rs.getString("action"))
+                .build();
+    }
+
     @Override
     public void applyBulkUpdate(BulkUpdate bulkUpdate) throws SQLException {
         try (Connection c = this.provider.getConnection()) {
             if (bulkUpdate.getDataType().isIncludingUsers()) {
-                String table = this.prefix.apply("{prefix}user_permissions");
-                try (PreparedStatement ps = bulkUpdate.buildAsSql().build(c, q -> q.replace("{table}", table))) {
-                    ps.execute();
-                }
+                applyBulkUpdate(c, bulkUpdate, this.prefix.apply("{prefix}user_permissions"), "uuid", true);
             }
 
             if (bulkUpdate.getDataType().isIncludingGroups()) {
-                String table = this.prefix.apply("{prefix}group_permissions");
-                try (PreparedStatement ps = bulkUpdate.buildAsSql().build(c, q -> q.replace("{table}", table))) {
-                    ps.execute();
+                applyBulkUpdate(c, bulkUpdate, this.prefix.apply("{prefix}group_permissions"), "name", false);
+            }
+        }
+
+        // the affected holders aren't known, so everything needs to be reloaded
+        if (!bulkUpdate.isDryRun()) {
+            recordChange(CHANGE_ALL, CHANGE_ALL);
+        }
+    }
+
+    @Override
+    public StorageChanges getChanges(long since) throws SQLException {
+        try (Connection c = this.provider.getConnection()) {
+            long min = 0;
+            long max = 0;
+            try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(CHANGES_SELECT_RANGE))) {
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        min = rs.getLong(1);
+                        max = rs.getLong(2);
+                    }
+                }
+            }
+
+            // we can't know what's changed if the changes have since been trimmed, or the table has been reset
+            if (since == -1 || min > since + 1 || max < since) {
+                this.changeSequence.reset();
+                return StorageChanges.all(max);
+            }
+
+            long version = since;
+            Set<UUID> users = new HashSet<>();
+            Set<String> groups = new HashSet<>();
+            Set<String> tracks = new HashSet<>();
+            try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(CHANGES_SELECT))) {
+                ps.setLong(1, this.changeSequence.readFrom(since));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        long id = rs.getLong("id");
+                        if (!this.changeSequence.accept(since, id)) {
+                            continue;
+                        }
+
+                        version = Math.max(version, id);
+                        String holder = rs.getString("holder");
+                        switch (rs.getString("holder_type")) {
+                            case CHANGE_USER:
+                                users.add(UUID.fromString(holder));
+                                break;
+                            case CHANGE_GROUP:
+                                groups.add(holder);
+                                break;
+                            case CHANGE_TRACK:
+                                tracks.add(holder);
+                                break;
+                            case CHANGE_SCHEMA:
+                                // anything read in the old layout may be wrong
+                                detectUuidFormats();
+                                this.changeSequence.reset();
+                                return StorageChanges.all(max);
+                            default:
+                                this.changeSequence.reset();
+                                return StorageChanges.all(max);
+                        }
+                    }
+                }
+            }
+            return StorageChanges.of(version, users, groups, tracks);
+        }
+    }
+
+    /**
+     * Records that a holder has changed, so other servers can pick up the
+     * change in their next sync.
+     *
+     * @param type the type of holder
+     * @param holder the holder's id
+     */
+    void recordChange(String type, String holder) {
+        try (Connection c = this.provider.getConnection()) {
+            recordChanges(c, type, Collections.singleton(holder));
+            trimChanges(c);
+        } catch (SQLException e) {
+            this.plugin.getLogger().warn("Unable to record a change to " + holder + " - other servers may not see it until their next full sync.");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Records that a number of holders have changed, using the given connection.
+     *
+     * <p>Saves call this on the connection they write with, within their
+     * transaction, so the change is recorded without another round trip,
+     * and only if the save is committed.</p>
+     *
+     * @param c the connection
+     * @param type the type of holder
+     * @param holders the holders' ids
+     * @throws SQLException if the changes can't be recorded
+     */
+    private void recordChanges(Connection c, String type, Collection<String> holders) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(CHANGES_INSERT))) {
+            for (String holder : holders) {
+                ps.setString(1, type);
+                ps.setString(2, holder);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        this.changesRecorded.addAndGet(holders.size());
+    }
+
+    /**
+     * Occasionally removes old changes from the changes table.
+     *
+     * @param c the connection
+     */
+    private void trimChanges(Connection c) {
+        if (this.changesRecorded.get() < CHANGES_TRIM_INTERVAL) {
+            return;
+        }
+        this.changesRecorded.set(0);
+
+        try {
+            long max = 0;
+            try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(CHANGES_SELECT_RANGE))) {
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        max = rs.getLong(2);
+                    }
+                }
+            }
+            try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(CHANGES_DELETE))) {
+                ps.setLong(1, max - CHANGES_RETAINED);
+                ps.execute();
+            }
+        } catch (SQLException e) {
+            this.plugin.getLogger().warn("Unable to remove old changes from the changes table.");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Runs an action in a transaction on the given connection, rolling it back
+     * if the action fails.
+     *
+     * @param c the connection
+     * @param action the action
+     * @throws SQLException if the action fails
+     */
+    private static void transaction(Connection c, SqlAction action) throws SQLException {
+        boolean autoCommit = c.getAutoCommit();
+        c.setAutoCommit(false);
+        try {
+            action.run();
+            c.commit();
+        } catch (SQLException | RuntimeException e) {
+            c.rollback();
+            throw e;
+        } finally {
+            c.setAutoCommit(autoCommit);
+        }
+    }
+
+    @FunctionalInterface
+    private interface SqlAction {
+        void run() throws SQLException;
+    }
+
+    private static void applyBulkUpdate(Connection c, BulkUpdate bulkUpdate, String table, String holderColumn, boolean users) throws SQLException {
+        // count the rows which will be affected, so the outcome can be reported
+        try (PreparedStatement ps = bulkUpdate.buildAsSqlCount(holderColumn).build(c, q -> q.replace("{table}", table))) {
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    bulkUpdate.getStatistics().recordBatch(users, rs.getInt(2), rs.getInt(1));
                 }
             }
         }
+
+        if (bulkUpdate.isDryRun()) {
+            return;
+        }
+
+        try (PreparedStatement ps = bulkUpdate.buildAsSql().build(c, q -> q.replace("{table}", table))) {
+            ps.execute();
+        }
     }
 
     @Override
@@ -289,113 +859,209 @@ public class SqlDao extends AbstractDao {
         User user = this.plugin.getUserManager().getOrMake(UserIdentifier.of(uuid, username));
         user.getIoLock().lock();
         try {
-            List<NodeDataContainer> data = new ArrayList<>();
-            String primaryGroup = null;
-            String userName = null;
+            readUser(user);
+        } finally {
+            user.getIoLock().unlock();
+        }
+        return user;
+    }
 
-            // Collect user permissions
-            try (Connection c = this.provider.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(USER_PERMISSIONS_SELECT))) {
-                    ps.setString(1, user.getUuid().toString());
+    @Override
+    public User loadDetachedUser(UUID uuid) throws SQLException {
+        User user = User.detached(uuid, this.plugin);
+        readUser(user);
+        return user;
+    }
 
-                    try (ResultSet rs = ps.executeQuery()) {
-                        while (rs.next()) {
-                            String permission = rs.getString("permission");
-                            boolean value = rs.getBoolean("value");
-                            String server = rs.getString("server");
-                            String world = rs.getString("world");
-                            long expiry = rs.getLong("expiry");
-                            String contexts = rs.getString("contexts");
-                            data.add(deserializeNode(permission, value, server, world, expiry, contexts));
-                        }
-                    }
-                }
-            }
+    private void readUser(User user) throws SQLException {
+        List<NodeDataContainer> data = new ArrayList<>();
+        String primaryGroup = null;
+        String userName = null;
 
-            // Collect user meta (username & primary group)
-            try (Connection c = this.provider.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(PLAYER_SELECT_BY_UUID))) {
-                    ps.setString(1, user.getUuid().toString());
+        // Collect user permissions, and user meta (username & primary group) in the same query.
+        // the players row is the one without a permission.
+        try (Connection c = this.provider.getConnection()) {
+            try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(USER_PERMISSIONS_SELECT_WITH_PLAYER))) {
+                this.userUuids.set(ps, 1, user.getUuid());
+                this.playerUuids.set(ps, 2, user.getUuid());
 
-                    try (ResultSet rs = ps.executeQuery()) {
-                        if (rs.next()) {
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        String permission = rs.getString("permission");
+                        if (permission == null) {
                             userName = rs.getString("username");
                             primaryGroup = rs.getString("primary_group");
+                            continue;
                         }
+
+                        boolean value = rs.getBoolean("value");
+                        String server = rs.getString("server");
+                        String world = rs.getString("world");
+                        long expiry = rs.getLong("expiry");
+                        String contexts = rs.getString("contexts");
+                        data.add(deserializeNode(permission, value, server, world, expiry, contexts));
                     }
                 }
             }
+        }
+
+        applyUserData(user, data, primaryGroup, userName);
+    }
 
-            // update username & primary group
-            if (primaryGroup == null) {
-                primaryGroup = NodeFactory.DEFAULT_GROUP_NAME;
+    @Override
+    public Map<UUID, User> loadUsers(Set<UUID> uuids) throws SQLException {
+        // sort the users, so concurrent bulk loads always acquire their locks in the same order
+        List<UUID> sorted = new ArrayList<>(uuids);
+        sorted.sort(null);
+
+        Map<UUID, User> users = new HashMap<>();
+        for (List<UUID> batch : Lists.partition(sorted, MAX_USER_LOAD_BATCH_SIZE)) {
+            List<User> batchUsers = new ArrayList<>(batch.size());
+            for (UUID uuid : batch) {
+                batchUsers.add(this.plugin.getUserManager().getOrMake(UserIdentifier.of(uuid, null)));
             }
-            user.getPrimaryGroup().setStoredValue(primaryGroup);
 
-            // Update their username to what was in the storage if the one in the local instance is null
-            user.setName(userName, true);
+            batchUsers.forEach(user -> user.getIoLock().lock());
+            try {
+                Map<UUID, List<NodeDataContainer>> data = new HashMap<>();
+                Map<UUID, String> primaryGroups = new HashMap<>();
+                Map<UUID, String> userNames = new HashMap<>();
 
-            // If the user has any data in storage
-            if (!data.isEmpty()) {
-                Set<Node> nodes = data.stream().map(NodeDataContainer::toNode).collect(Collectors.toSet());
-                user.setNodes(NodeMapType.ENDURING, nodes);
+                String placeholders = batch.stream().map(uuid -> "?").collect(Collectors.joining(", ", "(", ")"));
+
+                try (Connection c = this.provider.getConnection()) {
+                    // Collect user permissions
+                    try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(USER_PERMISSIONS_SELECT_MULTIPLE + placeholders))) {
+                        for (int i = 0; i < batch.size(); i++) {
+                            this.userUuids.set(ps, i + 1, batch.get(i));
+                        }
+
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                UUID uuid = this.userUuids.get(rs, "uuid");
+                                String permission = rs.getString("permission");
+                                boolean value = rs.getBoolean("value");
+                                String server = rs.getString("server");
+                                String world = rs.getString("world");
+                                long expiry = rs.getLong("expiry");
+                                String contexts = rs.getString("contexts");
+                                data.computeIfAbsent(uuid, x -> new ArrayList<>()).add(deserializeNode(permission, value, server, world, expiry, contexts));
+                            }
+                        }
+                    }
+
+                    // Collect user meta (username & primary group)
+                    try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(PLAYER_SELECT_BY_UUID_MULTIPLE + placeholders))) {
+                        for (int i = 0; i < batch.size(); i++) {
+                            this.playerUuids.set(ps, i + 1, batch.get(i));
+                        }
 
-                // Save back to the store if data they were given any defaults or had permissions expire
-                if (this.plugin.getUserManager().giveDefaultIfNeeded(user, false) | user.auditTemporaryPermissions()) {
-                    // This should be fine, as the lock will be acquired by the same thread.
-                    saveUser(user);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                UUID uuid = this.playerUuids.get(rs, "uuid");
+                                userNames.put(uuid, rs.getString("username"));
+                                primaryGroups.put(uuid, rs.getString("primary_group"));
+                            }
+                        }
+                    }
                 }
 
-            } else {
-                // User has no data in storage.
-                if (this.plugin.getUserManager().shouldSave(user)) {
-                    user.clearNodes();
-                    user.getPrimaryGroup().setStoredValue(null);
-                    this.plugin.getUserManager().giveDefaultIfNeeded(user, false);
+                for (User user : batchUsers) {
+                    UUID uuid = user.getUuid();
+                    applyUserData(user, data.getOrDefault(uuid, Collections.emptyList()), primaryGroups.get(uuid), userNames.get(uuid));
+                    users.put(uuid, user);
                 }
+            } finally {
+                batchUsers.forEach(user -> user.getIoLock().unlock());
+            }
+        }
+        return users;
+    }
+
+    private void applyUserData(User user, List<NodeDataContainer> data, String primaryGroup, String userName) throws SQLException {
+        // update username & primary group
+        if (primaryGroup == null) {
+            primaryGroup = NodeFactory.DEFAULT_GROUP_NAME;
+        }
+        user.getPrimaryGroup().setStoredValue(primaryGroup);
+
+        // Update their username to what was in the storage if the one in the local instance is null
+        user.setName(userName, true);
+
+        // If the user has any data in storage
+        if (!data.isEmpty()) {
+            Set<Node> nodes = data.stream().map(NodeDataContainer::toNode).collect(Collectors.toSet());
+            user.setNodes(NodeMapType.ENDURING, nodes);
+
+            // Save back to the store if data they were given any defaults or had permissions expire
+            // (detached copies are read-only)
+            if ((this.plugin.getUserManager().giveDefaultIfNeeded(user, false) | user.auditTemporaryPermissions()) && !user.isDetached()) {
+                // This should be fine, as the lock will be acquired by the same thread.
+                saveUser(user);
+            }
+
+        } else {
+            // User has no data in storage.
+            if (this.plugin.getUserManager().shouldSave(user)) {
+                user.clearNodes();
+                user.getPrimaryGroup().setStoredValue(null);
+                this.plugin.getUserManager().giveDefaultIfNeeded(user, false);
             }
-        } finally {
-            user.getIoLock().unlock();
         }
-        return user;
     }
 
     @Override
     public void saveUser(User user) throws SQLException {
+        String primaryGroupUpsert;
+        switch (this.provider.getName()) {
+            case "H2":
+                primaryGroupUpsert = H2_PLAYER_PRIMARY_GROUP_UPSERT;
+                break;
+            case "SQLite":
+                primaryGroupUpsert = SQLITE_PLAYER_PRIMARY_GROUP_UPSERT;
+                break;
+            case "PostgreSQL":
+                primaryGroupUpsert = POSTGRESQL_PLAYER_PRIMARY_GROUP_UPSERT;
+                break;
+            default:
+                primaryGroupUpsert = MYSQL_PLAYER_PRIMARY_GROUP_UPSERT;
+                break;
+        }
+
         user.getIoLock().lock();
-        try {
+        try (Connection c = this.provider.getConnection()) {
             // Empty data - just delete from the DB.
             if (!this.plugin.getUserManager().shouldSave(user)) {
-                try (Connection c = this.provider.getConnection()) {
+                transaction(c, () -> {
                     try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(USER_PERMISSIONS_DELETE))) {
-                        ps.setString(1, user.getUuid().toString());
+                        this.userUuids.set(ps, 1, user.getUuid());
                         ps.execute();
                     }
                     try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(PLAYER_UPDATE_PRIMARY_GROUP_BY_UUID))) {
                         ps.setString(1, NodeFactory.DEFAULT_GROUP_NAME);
-                        ps.setString(2, user.getUuid().toString());
+                        this.playerUuids.set(ps, 2, user.getUuid());
                         ps.execute();
                     }
-                }
+                    recordChanges(c, CHANGE_USER, Collections.singleton(user.getUuid().toString()));
+                });
+                trimChanges(c);
                 return;
             }
 
             // Get a snapshot of current data.
             Set<NodeDataContainer> remote = new HashSet<>();
-            try (Connection c = this.provider.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(USER_PERMISSIONS_SELECT))) {
-                    ps.setString(1, user.getUuid().toString());
+            try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(USER_PERMISSIONS_SELECT))) {
+                this.userUuids.set(ps, 1, user.getUuid());
 
-                    try (ResultSet rs = ps.executeQuery()) {
-                        while (rs.next()) {
-                            String permission = rs.getString("permission");
-                            boolean value = rs.getBoolean("value");
-                            String server = rs.getString("server");
-                            String world = rs.getString("world");
-                            long expiry = rs.getLong("expiry");
-                            String contexts = rs.getString("contexts");
-                            remote.add(deserializeNode(permission, value, server, world, expiry, contexts));
-                        }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        String permission = rs.getString("permission");
+                        boolean value = rs.getBoolean("value");
+                        String server = rs.getString("server");
+                        String world = rs.getString("world");
+                        long expiry = rs.getLong("expiry");
+                        String contexts = rs.getString("contexts");
+                        remote.add(deserializeNode(permission, value, server, world, expiry, contexts));
                     }
                 }
             }
@@ -407,11 +1073,11 @@ public class SqlDao extends AbstractDao {
             Set<NodeDataContainer> toAdd = diff.getKey();
             Set<NodeDataContainer> toRemove = diff.getValue();
 
-            if (!toRemove.isEmpty()) {
-                try (Connection c = this.provider.getConnection()) {
+            transaction(c, () -> {
+                if (!toRemove.isEmpty()) {
                     try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(USER_PERMISSIONS_DELETE_SPECIFIC))) {
                         for (NodeDataContainer nd : toRemove) {
-                            ps.setString(1, user.getUuid().toString());
+                            this.userUuids.set(ps, 1, user.getUuid());
                             ps.setString(2, nd.getPermission());
                             ps.setBoolean(3, nd.getValue());
                             ps.setString(4, nd.getServer());
@@ -423,13 +1089,11 @@ public class SqlDao extends AbstractDao {
                         ps.executeBatch();
                     }
                 }
-            }
 
-            if (!toAdd.isEmpty()) {
-                try (Connection c = this.provider.getConnection()) {
+                if (!toAdd.isEmpty()) {
                     try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(USER_PERMISSIONS_INSERT))) {
                         for (NodeDataContainer nd : toAdd) {
-                            ps.setString(1, user.getUuid().toString());
+                            this.userUuids.set(ps, 1, user.getUuid());
                             ps.setString(2, nd.getPermission());
                             ps.setBoolean(3, nd.getValue());
                             ps.setString(4, nd.getServer());
@@ -441,36 +1105,19 @@ public class SqlDao extends AbstractDao {
                         ps.executeBatch();
                     }
                 }
-            }
-
-            try (Connection c = this.provider.getConnection()) {
-                boolean hasPrimaryGroupSaved;
-
-                try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(PLAYER_SELECT_PRIMARY_GROUP_BY_UUID))) {
-                    ps.setString(1, user.getUuid().toString());
-                    try (ResultSet rs = ps.executeQuery()) {
-                        hasPrimaryGroupSaved = rs.next();
-                    }
-                }
 
-                if (hasPrimaryGroupSaved) {
-                    // update
-                    try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(PLAYER_UPDATE_PRIMARY_GROUP_BY_UUID))) {
-                        ps.setString(1, user.getPrimaryGroup().getStoredValue().orElse(NodeFactory.DEFAULT_GROUP_NAME));
-                        ps.setString(2, user.getUuid().toString());
-                        ps.execute();
-                    }
-                } else {
-                    // insert
-                    try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(PLAYER_INSERT))) {
-                        ps.setString(1, user.getUuid().toString());
-                        ps.setString(2, user.getName().orElse("null"));
-                        ps.setString(3, user.getPrimaryGroup().getStoredValue().orElse(NodeFactory.DEFAULT_GROUP_NAME));
-                        ps.execute();
-                    }
+                // update the primary group, or insert the player if they don't have a row yet - the
+                // username is only used for the insert, so a stale name never overwrites a newer one
+                try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(primaryGroupUpsert))) {
+                    this.playerUuids.set(ps, 1, user.getUuid());
+                    ps.setString(2, user.getName().orElse("null"));
+                    ps.setString(3, user.getPrimaryGroup().getStoredValue().orElse(NodeFactory.DEFAULT_GROUP_NAME));
+                    ps.execute();
                 }
 
-            }
+                recordChanges(c, CHANGE_USER, Collections.singleton(user.getUuid().toString()));
+            });
+            trimChanges(c);
         } finally {
             user.getIoLock().unlock();
         }
@@ -483,8 +1130,7 @@ public class SqlDao extends AbstractDao {
             try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(USER_PERMISSIONS_SELECT_DISTINCT))) {
                 try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
-                        String uuid = rs.getString("uuid");
-                        uuids.add(UUID.fromString(uuid));
+                        uuids.add(this.userUuids.get(rs, "uuid"));
                     }
                 }
             }
@@ -502,7 +1148,7 @@ public class SqlDao extends AbstractDao {
             try (PreparedStatement ps = builder.build(c, this.prefix)) {
                 try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
-                        UUID holder = UUID.fromString(rs.getString("uuid"));
+                        UUID holder = this.userUuids.get(rs, "uuid");
                         String perm = rs.getString("permission");
                         boolean value = rs.getBoolean("value");
                         String server = rs.getString("server");
@@ -543,6 +1189,7 @@ public class SqlDao extends AbstractDao {
                 ps.execute();
             }
         }
+        recordChange(CHANGE_GROUP, name.toLowerCase());
 
         return loadGroup(name).get();
     }
@@ -601,6 +1248,67 @@ public class SqlDao extends AbstractDao {
         return Optional.of(group);
     }
 
+    @Override
+    public Map<String, Group> loadGroups(Set<String> names) throws SQLException {
+        List<String> existing = new ArrayList<>();
+        Map<String, List<NodeDataContainer>> data = new HashMap<>();
+
+        try (Connection c = this.provider.getConnection()) {
+            // Check which of the groups actually exist
+            try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(GROUP_SELECT_ALL))) {
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        String name = rs.getString("name").toLowerCase();
+                        if (names.contains(name)) {
+                            existing.add(name);
+                        }
+                    }
+                }
+            }
+
+            if (!existing.isEmpty()) {
+                String placeholders = existing.stream().map(name -> "?").collect(Collectors.joining(", ", "(", ")"));
+                try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(GROUP_PERMISSIONS_SELECT_MULTIPLE + placeholders))) {
+                    for (int i = 0; i < existing.size(); i++) {
+                        ps.setString(i + 1, existing.get(i));
+                    }
+
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            String name = rs.getString("name").toLowerCase();
+                            String permission = rs.getString("permission");
+                            boolean value = rs.getBoolean("value");
+                            String server = rs.getString("server");
+                            String world = rs.getString("world");
+                            long expiry = rs.getLong("expiry");
+                            String contexts = rs.getString("contexts");
+                            data.computeIfAbsent(name, x -> new ArrayList<>()).add(deserializeNode(permission, value, server, world, expiry, contexts));
+                        }
+                    }
+                }
+            }
+        }
+
+        Map<String, Group> groups = new HashMap<>();
+        for (String name : existing) {
+            Group group = this.plugin.getGroupManager().getOrMake(name);
+            group.getIoLock().lock();
+            try {
+                List<NodeDataContainer> groupData = data.get(name);
+                if (groupData != null) {
+                    Set<Node> nodes = groupData.stream().map(NodeDataContainer::toNode).collect(Collectors.toSet());
+                    group.setNodes(NodeMapType.ENDURING, nodes);
+                } else {
+                    group.clearNodes();
+                }
+            } finally {
+                group.getIoLock().unlock();
+            }
+            groups.put(name, group);
+        }
+        return groups;
+    }
+
     @Override
     public void loadAllGroups() throws SQLException {
         List<String> groups = new ArrayList<>();
@@ -637,34 +1345,34 @@ public class SqlDao extends AbstractDao {
     @Override
     public void saveGroup(Group group) throws SQLException {
         group.getIoLock().lock();
-        try {
+        try (Connection c = this.provider.getConnection()) {
             // Empty data, just delete.
             if (group.enduringData().immutable().isEmpty()) {
-                try (Connection c = this.provider.getConnection()) {
+                transaction(c, () -> {
                     try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(GROUP_PERMISSIONS_DELETE))) {
                         ps.setString(1, group.getName());
                         ps.execute();
                     }
-                }
+                    recordChanges(c, CHANGE_GROUP, Collections.singleton(group.getName()));
+                });
+                trimChanges(c);
                 return;
             }
 
             // Get a snapshot of current data
             Set<NodeDataContainer> remote = new HashSet<>();
-            try (Connection c = this.provider.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(GROUP_PERMISSIONS_SELECT))) {
-                    ps.setString(1, group.getName());
+            try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(GROUP_PERMISSIONS_SELECT))) {
+                ps.setString(1, group.getName());
 
-                    try (ResultSet rs = ps.executeQuery()) {
-                        while (rs.next()) {
-                            String permission = rs.getString("permission");
-                            boolean value = rs.getBoolean("value");
-                            String server = rs.getString("server");
-                            String world = rs.getString("world");
-                            long expiry = rs.getLong("expiry");
-                            String contexts = rs.getString("contexts");
-                            remote.add(deserializeNode(permission, value, server, world, expiry, contexts));
-                        }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        String permission = rs.getString("permission");
+                        boolean value = rs.getBoolean("value");
+                        String server = rs.getString("server");
+                        String world = rs.getString("world");
+                        long expiry = rs.getLong("expiry");
+                        String contexts = rs.getString("contexts");
+                        remote.add(deserializeNode(permission, value, server, world, expiry, contexts));
                     }
                 }
             }
@@ -676,8 +1384,13 @@ public class SqlDao extends AbstractDao {
             Set<NodeDataContainer> toAdd = diff.getKey();
             Set<NodeDataContainer> toRemove = diff.getValue();
 
-            if (!toRemove.isEmpty()) {
-                try (Connection c = this.provider.getConnection()) {
+            // nothing to write, so nothing has changed
+            if (toAdd.isEmpty() && toRemove.isEmpty()) {
+                return;
+            }
+
+            transaction(c, () -> {
+                if (!toRemove.isEmpty()) {
                     try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(GROUP_PERMISSIONS_DELETE_SPECIFIC))) {
                         for (NodeDataContainer nd : toRemove) {
                             ps.setString(1, group.getName());
@@ -692,10 +1405,8 @@ public class SqlDao extends AbstractDao {
                         ps.executeBatch();
                     }
                 }
-            }
 
-            if (!toAdd.isEmpty()) {
-                try (Connection c = this.provider.getConnection()) {
+                if (!toAdd.isEmpty()) {
                     try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(GROUP_PERMISSIONS_INSERT))) {
                         for (NodeDataContainer nd : toAdd) {
                             ps.setString(1, group.getName());
@@ -710,7 +1421,10 @@ public class SqlDao extends AbstractDao {
                         ps.executeBatch();
                     }
                 }
-            }
+
+                recordChanges(c, CHANGE_GROUP, Collections.singleton(group.getName()));
+            });
+            trimChanges(c);
         } finally {
             group.getIoLock().unlock();
         }
@@ -731,6 +1445,7 @@ public class SqlDao extends AbstractDao {
                     ps.execute();
                 }
             }
+            recordChange(CHANGE_GROUP, group.getName());
         } finally {
             group.getIoLock().unlock();
         }
@@ -796,6 +1511,7 @@ public class SqlDao extends AbstractDao {
                         ps.execute();
                     }
                 }
+                recordChange(CHANGE_TRACK, track.getName());
             }
         } finally {
             track.getIoLock().unlock();
@@ -884,6 +1600,7 @@ public class SqlDao extends AbstractDao {
                     ps.execute();
                 }
             }
+            recordChange(CHANGE_TRACK, track.getName());
         } finally {
             track.getIoLock().unlock();
         }
@@ -899,6 +1616,7 @@ public class SqlDao extends AbstractDao {
                     ps.execute();
                 }
             }
+            recordChange(CHANGE_TRACK, track.getName());
         } finally {
             track.getIoLock().unlock();
         }
@@ -910,57 +1628,84 @@ public class SqlDao extends AbstractDao {
     public PlayerSaveResult savePlayerData(UUID uuid, String username) throws SQLException {
         username = username.toLowerCase();
 
-        // find any existing mapping
-        String oldUsername = getPlayerName(uuid);
-
-        // do the insert
-        if (!username.equalsIgnoreCase(oldUsername)) {
-            try (Connection c = this.provider.getConnection()) {
-                if (oldUsername != null) {
-                    try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(PLAYER_UPDATE_USERNAME_FOR_UUID))) {
-                        ps.setString(1, username);
-                        ps.setString(2, uuid.toString());
-                        ps.execute();
-                    }
-                } else {
-                    try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(PLAYER_INSERT))) {
-                        ps.setString(1, uuid.toString());
-                        ps.setString(2, username);
-                        ps.setString(3, NodeFactory.DEFAULT_GROUP_NAME);
-                        ps.execute();
-                    }
-                }
-            }
+        String upsert;
+        switch (this.provider.getName()) {
+            case "H2":
+                upsert = H2_PLAYER_UPSERT;
+                break;
+            case "SQLite":
+                upsert = SQLITE_PLAYER_UPSERT;
+                break;
+            case "PostgreSQL":
+                upsert = POSTGRESQL_PLAYER_UPSERT;
+                break;
+            default:
+                upsert = MYSQL_PLAYER_UPSERT;
+                break;
         }
 
-        PlayerSaveResultImpl result = PlayerSaveResultImpl.determineBaseResult(username, oldUsername);
-
-        Set<UUID> conflicting = new HashSet<>();
         try (Connection c = this.provider.getConnection()) {
-            try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(PLAYER_SELECT_ALL_UUIDS_BY_USERNAME))) {
-                ps.setString(1, username);
-                ps.setString(2, uuid.toString());
+            // find the existing mapping for the uuid, and any other uuids mapped to the username, in one query
+            String oldUsername = null;
+            Set<UUID> conflicting = new HashSet<>();
+            try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(PLAYER_SELECT_BY_UUID_OR_USERNAME))) {
+                this.playerUuids.set(ps, 1, uuid);
+                ps.setString(2, username);
                 try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
-                        conflicting.add(UUID.fromString(rs.getString("uuid")));
+                        UUID rowUuid = this.playerUuids.get(rs, "uuid");
+                        if (rowUuid.equals(uuid)) {
+                            oldUsername = rs.getString("username");
+                        } else {
+                            conflicting.add(rowUuid);
+                        }
                     }
                 }
             }
-        }
 
-        if (!conflicting.isEmpty()) {
-            // remove the mappings for conflicting uuids
-            try (Connection c = this.provider.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(PLAYER_DELETE_ALL_UUIDS_BY_USERNAME))) {
-                    ps.setString(1, username);
-                    ps.setString(2, uuid.toString());
-                    ps.execute();
+            // only write if the mapping has changed
+            boolean writeMapping = !username.equalsIgnoreCase(oldUsername);
+            if (writeMapping || !conflicting.isEmpty()) {
+                // the users whose rows are written to
+                List<String> changed = new ArrayList<>();
+                if (writeMapping) {
+                    changed.add(uuid.toString());
                 }
+                conflicting.forEach(other -> changed.add(other.toString()));
+
+                String finalUsername = username;
+                transaction(c, () -> {
+                    // the upsert keeps a concurrent login on another server from failing
+                    // the insert, and never overwrites the primary group
+                    if (writeMapping) {
+                        try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(upsert))) {
+                            this.playerUuids.set(ps, 1, uuid);
+                            ps.setString(2, finalUsername);
+                            ps.setString(3, NodeFactory.DEFAULT_GROUP_NAME);
+                            ps.execute();
+                        }
+                    }
+
+                    // remove the mappings for conflicting uuids
+                    if (!conflicting.isEmpty()) {
+                        try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(PLAYER_DELETE_ALL_UUIDS_BY_USERNAME))) {
+                            ps.setString(1, finalUsername);
+                            this.playerUuids.set(ps, 2, uuid);
+                            ps.execute();
+                        }
+                    }
+
+                    recordChanges(c, CHANGE_USER, changed);
+                });
+                trimChanges(c);
             }
-            result = result.withOtherUuidsPresent(conflicting);
-        }
 
-        return result;
+            PlayerSaveResultImpl result = PlayerSaveResultImpl.determineBaseResult(username, oldUsername);
+            if (!conflicting.isEmpty()) {
+                result = result.withOtherUuidsPresent(conflicting);
+            }
+            return result;
+        }
     }
 
     @Override
@@ -971,7 +1716,7 @@ public class SqlDao extends AbstractDao {
                 ps.setString(1, username);
                 try (ResultSet rs = ps.executeQuery()) {
                     if (rs.next()) {
-                        return UUID.fromString(rs.getString("uuid"));
+                        return this.playerUuids.get(rs, "uuid");
                     }
                 }
             }
@@ -983,7 +1728,7 @@ public class SqlDao extends AbstractDao {
     public String getPlayerName(UUID uuid) throws SQLException {
         try (Connection c = this.provider.getConnection()) {
             try (PreparedStatement ps = c.prepareStatement(this.prefix.apply(PLAYER_SELECT_USERNAME_BY_UUID))) {
-                ps.setString(1, uuid.toString());
+                this.playerUuids.set(ps, 1, uuid);
                 try (ResultSet rs = ps.executeQuery()) {
                     if (rs.next()) {
                         return rs.getString("username");
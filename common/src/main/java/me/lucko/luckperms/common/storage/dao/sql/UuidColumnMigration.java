@@ -0,0 +1,612 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage.dao.sql;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+import me.lucko.luckperms.common.storage.dao.ChangeSequence;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+/**
+ * Converts the uuid columns in the SQL tables to the binary layout.
+ *
+ * <p>Each table is copied into a new table using the binary layout, a batch
+ * at a time, and then swapped with the original. The original table isn't
+ * locked for the duration of the copy, and the new table is indexed before
+ * it is swapped in. A conversion which is interrupted isn't
+ * resumed - the partial copy is dropped, and the conversion starts again from
+ * the beginning on the next startup.</p>
+ *
+ * <p>Other servers sharing the database can keep writing while a table is being
+ * copied. Their writes are found through the changes table, which records each
+ * user whose data or player entry is saved: once the bulk copy has finished, the
+ * rows of the changed users are copied again, until there are no more changes.
+ * The tables are then swapped, and the rows of users changed just before the swap
+ * are copied across from the original table before it is dropped. Actions are
+ * only ever appended, so any added during the copy are copied after it.</p>
+ *
+ * <p>Only one server converts the tables at a time, coordinated using a lock row.
+ * Once a table has been converted, a schema change is recorded, so that other
+ * servers re-detect the layout of the table on their next sync, or sooner if a
+ * write fails because of the new layout.</p>
+ */
+final class UuidColumnMigration {
+    private static final int BATCH_SIZE = 1000;
+
+    /** How many users are copied again in one statement while catching up with changes */
+    private static final int CATCH_UP_BATCH_SIZE = 500;
+
+    /** How many times to catch up with changes made during the copy, before giving up */
+    private static final int MAX_CATCH_UP_ROUNDS = 10;
+
+    /** How long the lock can go without being refreshed, before it is assumed to have been abandoned */
+    private static final long LOCK_EXPIRY_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /** Matches the name of the index in a CREATE INDEX statement, if it has one */
+    private static final Pattern INDEX_NAME = Pattern.compile("^CREATE INDEX ([`\"])([^`\"]+)\\1 ON ");
+
+    private static final String LOCK_TABLE = "{prefix}uuid_migration_lock";
+    private static final int LOCK_ID = 1;
+
+    private static final List<Table> TABLES = ImmutableList.of(
+            new Table("user_permissions", "id", 0, ImmutableList.of("uuid", "permission", "value", "server", "world", "expiry", "contexts"), ImmutableSet.of("uuid"), "uuid"),
+            new Table("players", "uuid", "", ImmutableList.of("uuid", "username", "primary_group"), ImmutableSet.of("uuid"), "uuid"),
+            new Table("actions", "id", 0, ImmutableList.of("time", "actor_uuid", "actor_name", "type", "acted_uuid", "acted_name", "action"), ImmutableSet.of("actor_uuid", "acted_uuid"), null)
+    );
+
+    private final SqlDao dao;
+    private final UuidFormat format;
+    private final String lockTable;
+
+    UuidColumnMigration(SqlDao dao) {
+        this.dao = dao;
+        this.format = UuidFormat.binary(dao.getProvider().getName());
+        this.lockTable = dao.getPrefix().apply(LOCK_TABLE);
+    }
+
+    public void run() throws Exception {
+        if (!acquireLock()) {
+            this.dao.getPlugin().getLogger().info("Another server is converting the uuid columns in the SQL tables - the existing layout will be used for now.");
+            return;
+        }
+
+        try {
+            List<String> schema = this.dao.readSchema(true);
+            for (Table table : TABLES) {
+                convert(schema, table);
+            }
+        } finally {
+            releaseLock();
+        }
+    }
+
+    private void convert(List<String> schema, Table table) throws Exception {
+        String name = this.dao.getPrefix().apply("{prefix}" + table.name);
+        String newName = name + "_new";
+        String oldName = name + "_old";
+
+        // interrupted during the swap, after the original table was moved aside - put it back
+        if (!this.dao.tableExists(name) && this.dao.tableExists(oldName)) {
+            execute("ALTER TABLE " + oldName + " RENAME TO " + name);
+        }
+
+        // interrupted after the swap, before the original table was dropped
+        if (this.dao.tableExists(oldName)) {
+            this.dao.getPlugin().getLogger().warn(oldName + " was left behind by an interrupted conversion. It may hold changes made just before " +
+                    "the conversion was interrupted - it should be checked, and then removed.");
+            return;
+        }
+
+        if (this.dao.getUuidFormat(name, table.uuidColumns.iterator().next()) != UuidFormat.STRING) {
+            return;
+        }
+
+        this.dao.getPlugin().getLogger().info("Converting uuid columns in " + name + " to the binary layout...");
+
+        // left over from an interrupted copy - start again
+        if (this.dao.tableExists(newName)) {
+            execute("DROP TABLE " + newName);
+        }
+
+        for (String statement : schema) {
+            if (statement.startsWith("CREATE TABLE") && table.isReferencedBy(statement)) {
+                execute(this.dao.getPrefix().apply(table.rename(statement, table.name + "_new")));
+            }
+        }
+
+        ChangeLog changes = new ChangeLog();
+        Progress progress = new Progress(table.keyStart);
+        copy(table, name, newName, progress);
+
+        // index the new table now, so it's never in use without its indexes
+        Map<String, String> tempIndexes = createIndexes(schema, table);
+
+        // catch up with the changes made while the table was being copied
+        int rounds = 0;
+        boolean changed;
+        do {
+            Set<UUID> users = table.holderColumn == null ? Collections.emptySet() : changes.read(Long.MAX_VALUE);
+            if (users == null || ++rounds > MAX_CATCH_UP_ROUNDS) {
+                execute("DROP TABLE " + newName);
+                throw new SQLException(name + " was modified too much while it was being converted. The conversion will be retried on the next startup.");
+            }
+            changed = catchUp(table, name, newName, users, progress);
+        } while (changed);
+
+        // swap the tables, then copy across anything changed just before the swap
+        execute("ALTER TABLE " + name + " RENAME TO " + oldName);
+        execute("ALTER TABLE " + newName + " RENAME TO " + name);
+        long swapped = currentChangeId();
+
+        Set<UUID> users = table.holderColumn == null ? Collections.emptySet() : changes.read(swapped);
+        if (users == null) {
+            this.dao.getPlugin().getLogger().warn(name + " was modified in bulk while it was being converted - any bulk updates made " +
+                    "in the last few moments should be checked, and made again if necessary.");
+        } else {
+            catchUp(table, oldName, name, users, progress);
+        }
+
+        execute("DROP TABLE " + oldName);
+        renameIndexes(schema, table, tempIndexes);
+
+        // let the other servers know that the layout has changed
+        this.dao.recordChange(SqlDao.CHANGE_SCHEMA, table.name);
+
+        if (progress.skipped != 0) {
+            this.dao.getPlugin().getLogger().warn("Skipped " + progress.skipped + " rows in " + name + " with invalid uuids.");
+        }
+        this.dao.getPlugin().getLogger().info("Converted " + progress.copied + " rows in " + name + ".");
+    }
+
+    /**
+     * Copies the rows of a table into the new table, converting the uuid columns,
+     * starting from the last key copied.
+     *
+     * @return true if any rows were read
+     */
+    private boolean copy(Table table, String from, String to, Progress progress) throws SQLException {
+        List<String> selectColumns = new ArrayList<>(table.columns);
+        if (!selectColumns.contains(table.key)) {
+            selectColumns.add(table.key);
+        }
+
+        String select = "SELECT " + String.join(", ", selectColumns) + " FROM " + from + " WHERE " + table.key + " > ? ORDER BY " + table.key + " LIMIT " + BATCH_SIZE;
+
+        boolean any = false;
+        while (true) {
+            try (Connection c = this.dao.getProvider().getConnection()) {
+                refreshLock(c);
+
+                List<Object[]> rows = new ArrayList<>();
+                int read = 0;
+                try (PreparedStatement ps = c.prepareStatement(select)) {
+                    ps.setObject(1, progress.lastKey);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            read++;
+                            progress.lastKey = rs.getObject(table.key);
+
+                            Object[] row = readRow(table, rs);
+                            if (row == null) {
+                                progress.skipped++;
+                            } else {
+                                rows.add(row);
+                            }
+                        }
+                    }
+                }
+
+                if (read == 0) {
+                    break;
+                }
+                any = true;
+
+                // every row in the batch may have been skipped
+                writeRows(c, table, to, Collections.emptyList(), rows);
+                progress.copied += rows.size();
+
+                if (read < BATCH_SIZE) {
+                    break;
+                }
+            }
+        }
+        return any;
+    }
+
+    /**
+     * Copies the changes made to a table into the new table.
+     *
+     * @param users the users which have changed, for tables holding user data
+     * @return true if anything was copied
+     */
+    private boolean catchUp(Table table, String from, String to, Set<UUID> users, Progress progress) throws SQLException {
+        // actions are never modified, so only new rows need to be copied
+        if (table.holderColumn == null) {
+            return copy(table, from, to, progress);
+        }
+
+        if (users.isEmpty()) {
+            return false;
+        }
+
+        for (List<UUID> batch : Lists.partition(new ArrayList<>(users), CATCH_UP_BATCH_SIZE)) {
+            String placeholders = String.join(", ", Collections.nCopies(batch.size(), "?"));
+            String select = "SELECT " + String.join(", ", table.columns) + " FROM " + from + " WHERE " + table.holderColumn + " IN (" + placeholders + ")";
+
+            try (Connection c = this.dao.getProvider().getConnection()) {
+                refreshLock(c);
+
+                List<Object[]> rows = new ArrayList<>();
+                try (PreparedStatement ps = c.prepareStatement(select)) {
+                    for (int i = 0; i < batch.size(); i++) {
+                        UuidFormat.STRING.set(ps, i + 1, batch.get(i));
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            Object[] row = readRow(table, rs);
+                            if (row != null) {
+                                rows.add(row);
+                            }
+                        }
+                    }
+                }
+
+                // replace whatever was copied for the users before
+                writeRows(c, table, to, batch, rows);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes rows to the new table in a single transaction, first removing the rows
+     * of the given users.
+     */
+    private void writeRows(Connection c, Table table, String to, List<UUID> replacedUsers, List<Object[]> rows) throws SQLException {
+        if (replacedUsers.isEmpty() && rows.isEmpty()) {
+            return;
+        }
+
+        String insert = "INSERT INTO " + to + " (" + String.join(", ", table.columns) + ") VALUES(" + String.join(", ", Collections.nCopies(table.columns.size(), "?")) + ")";
+
+        boolean autoCommit = c.getAutoCommit();
+        c.setAutoCommit(false);
+        try {
+            if (!replacedUsers.isEmpty()) {
+                String delete = "DELETE FROM " + to + " WHERE " + table.holderColumn + " IN (" + String.join(", ", Collections.nCopies(replacedUsers.size(), "?")) + ")";
+                try (PreparedStatement ps = c.prepareStatement(delete)) {
+                    for (int i = 0; i < replacedUsers.size(); i++) {
+                        this.format.set(ps, i + 1, replacedUsers.get(i));
+                    }
+                    ps.execute();
+                }
+            }
+
+            if (!rows.isEmpty()) {
+                try (PreparedStatement ps = c.prepareStatement(insert)) {
+                    for (Object[] row : rows) {
+                        for (int i = 0; i < row.length; i++) {
+                            String column = table.columns.get(i);
+                            if (table.uuidColumns.contains(column)) {
+                                this.format.set(ps, i + 1, (UUID) row[i]);
+                            } else {
+                                ps.setObject(i + 1, row[i]);
+                            }
+                        }
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            }
+            c.commit();
+        } catch (SQLException e) {
+            c.rollback();
+            throw e;
+        } finally {
+            c.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static Object[] readRow(Table table, ResultSet rs) throws SQLException {
+        Object[] row = new Object[table.columns.size()];
+        for (int i = 0; i < row.length; i++) {
+            String column = table.columns.get(i);
+            if (!table.uuidColumns.contains(column)) {
+                row[i] = rs.getObject(column);
+                continue;
+            }
+
+            try {
+                row[i] = UuidFormat.STRING.get(rs, column);
+            } catch (IllegalArgumentException e) {
+                row[i] = null;
+            }
+
+            // only acted_uuid can be missing
+            if (row[i] == null && !column.equals("acted_uuid")) {
+                return null;
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Creates the indexes of a table on the new copy of the table.
+     *
+     * <p>Except on MySQL, index names are unique across all tables, and the original table
+     * still holds the indexes with the usual names - so the indexes of the copy are created
+     * under temporary names, and renamed once the original table has been dropped.</p>
+     *
+     * @return the temporary names of the indexes, by their usual names
+     */
+    private Map<String, String> createIndexes(List<String> schema, Table table) throws SQLException {
+        String providerName = this.dao.getProvider().getName();
+        boolean namesPerTable = providerName.equals("MySQL") || providerName.equals("MariaDB");
+
+        Map<String, String> tempNames = new LinkedHashMap<>();
+        for (String statement : schema) {
+            if (!statement.startsWith("CREATE INDEX") || !table.isReferencedBy(statement)) {
+                continue;
+            }
+
+            String create = table.rename(statement, table.name + "_new");
+            Matcher matcher = INDEX_NAME.matcher(create);
+            if (!namesPerTable && matcher.find()) {
+                String quote = matcher.group(1);
+                String indexName = matcher.group(2);
+                create = matcher.replaceFirst(Matcher.quoteReplacement("CREATE INDEX " + quote + indexName + "_new" + quote + " ON "));
+                tempNames.put(this.dao.getPrefix().apply(quote + indexName + quote), this.dao.getPrefix().apply(quote + indexName + "_new" + quote));
+            }
+            execute(this.dao.getPrefix().apply(create));
+        }
+        return tempNames;
+    }
+
+    /**
+     * Gives the indexes created by {@link #createIndexes(List, Table)} their usual names.
+     */
+    private void renameIndexes(List<String> schema, Table table, Map<String, String> tempNames) throws SQLException {
+        if (tempNames.isEmpty()) {
+            return;
+        }
+
+        if (!this.dao.getProvider().getName().equals("SQLite")) {
+            for (Map.Entry<String, String> e : tempNames.entrySet()) {
+                execute("ALTER INDEX " + e.getValue() + " RENAME TO " + e.getKey());
+            }
+            return;
+        }
+
+        // indexes can't be renamed in SQLite - create them again under the usual
+        // name, before removing the temporary ones
+        for (String statement : schema) {
+            if (statement.startsWith("CREATE INDEX") && table.isReferencedBy(statement)) {
+                execute(this.dao.getPrefix().apply(statement));
+            }
+        }
+        for (String tempName : tempNames.values()) {
+            execute("DROP INDEX " + tempName);
+        }
+    }
+
+    private long currentChangeId() throws SQLException {
+        try (Connection c = this.dao.getProvider().getConnection()) {
+            try (PreparedStatement ps = c.prepareStatement(this.dao.getPrefix().apply(SqlDao.CHANGES_SELECT_RANGE))) {
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? rs.getLong(2) : 0;
+                }
+            }
+        }
+    }
+
+    private boolean acquireLock() throws SQLException {
+        if (!this.dao.tableExists(this.lockTable)) {
+            try {
+                execute("CREATE TABLE " + this.lockTable + " (id INT NOT NULL, heartbeat BIGINT NOT NULL, PRIMARY KEY (id))");
+            } catch (SQLException e) {
+                // created by another server at the same time
+                if (!this.dao.tableExists(this.lockTable)) {
+                    throw e;
+                }
+            }
+        }
+
+        try (Connection c = this.dao.getProvider().getConnection()) {
+            // take over a lock which has been abandoned
+            try (PreparedStatement ps = c.prepareStatement("DELETE FROM " + this.lockTable + " WHERE id = ? AND heartbeat < ?")) {
+                ps.setInt(1, LOCK_ID);
+                ps.setLong(2, System.currentTimeMillis() - LOCK_EXPIRY_MILLIS);
+                ps.execute();
+            }
+
+            try (PreparedStatement ps = c.prepareStatement("INSERT INTO " + this.lockTable + " (id, heartbeat) VALUES(?, ?)")) {
+                ps.setInt(1, LOCK_ID);
+                ps.setLong(2, System.currentTimeMillis());
+                ps.execute();
+                return true;
+            } catch (SQLException e) {
+                // the insert fails if the lock is held by another server
+                try (PreparedStatement ps = c.prepareStatement("SELECT id FROM " + this.lockTable + " WHERE id = ?")) {
+                    ps.setInt(1, LOCK_ID);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) {
+                            return false;
+                        }
+                    }
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void refreshLock(Connection c) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("UPDATE " + this.lockTable + " SET heartbeat = ? WHERE id = ?")) {
+            ps.setLong(1, System.currentTimeMillis());
+            ps.setInt(2, LOCK_ID);
+            if (ps.executeUpdate() == 0) {
+                throw new SQLException("The conversion lock was taken over by another server.");
+            }
+        }
+    }
+
+    private void releaseLock() {
+        try (Connection c = this.dao.getProvider().getConnection()) {
+            try (PreparedStatement ps = c.prepareStatement("DELETE FROM " + this.lockTable + " WHERE id = ?")) {
+                ps.setInt(1, LOCK_ID);
+                ps.execute();
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void execute(String statement) throws SQLException {
+        try (Connection c = this.dao.getProvider().getConnection()) {
+            try (Statement s = c.createStatement()) {
+                s.execute(statement);
+            }
+        }
+    }
+
+    /**
+     * Reads the users changed since the conversion of a table started.
+     */
+    private final class ChangeLog {
+        private final ChangeSequence sequence = new ChangeSequence();
+        private long version;
+
+        private ChangeLog() throws SQLException {
+            this.version = currentChangeId();
+        }
+
+        /**
+         * Reads the users changed since the last read.
+         *
+         * @param upTo the highest change id to read
+         * @return the changed users, or null if anything may have changed
+         */
+        @Nullable
+        private Set<UUID> read(long upTo) throws SQLException {
+            long since = this.version;
+            Set<UUID> users = new HashSet<>();
+
+            try (Connection c = UuidColumnMigration.this.dao.getProvider().getConnection()) {
+                // changes which have since been trimmed can't be read
+                try (PreparedStatement ps = c.prepareStatement(UuidColumnMigration.this.dao.getPrefix().apply(SqlDao.CHANGES_SELECT_RANGE))) {
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next() && rs.getLong(1) > since + 1) {
+                            return null;
+                        }
+                    }
+                }
+
+                try (PreparedStatement ps = c.prepareStatement(UuidColumnMigration.this.dao.getPrefix().apply(SqlDao.CHANGES_SELECT))) {
+                    ps.setLong(1, this.sequence.readFrom(since));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            long id = rs.getLong("id");
+                            if (id > upTo) {
+                                break;
+                            }
+                            if (!this.sequence.accept(since, id)) {
+                                continue;
+                            }
+
+                            this.version = Math.max(this.version, id);
+                            String type = rs.getString("holder_type");
+                            if (type.equals(SqlDao.CHANGE_USER)) {
+                                users.add(UUID.fromString(rs.getString("holder")));
+                            } else if (type.equals(SqlDao.CHANGE_ALL)) {
+                                return null;
+                            }
+                        }
+                    }
+                }
+            }
+            return users;
+        }
+    }
+
+    private static final class Progress {
+        private Object lastKey;
+        private int copied = 0;
+        private int skipped = 0;
+
+        private Progress(Object lastKey) {
+            this.lastKey = lastKey;
+        }
+    }
+
+    private static final class Table {
+        private final String name;
+        private final String key;
+        private final Object keyStart;
+        private final List<String> columns;
+        private final Set<String> uuidColumns;
+
+        // the column holding the uuid of the user each row belongs to, or null if rows are only ever appended
+        @Nullable
+        private final String holderColumn;
+
+        private Table(String name, String key, Object keyStart, List<String> columns, Set<String> uuidColumns, @Nullable String holderColumn) {
+            this.name = name;
+            this.key = key;
+            this.keyStart = keyStart;
+            this.columns = columns;
+            this.uuidColumns = uuidColumns;
+            this.holderColumn = holderColumn;
+        }
+
+        private boolean isReferencedBy(String statement) {
+            return statement.contains("{prefix}" + this.name + "`") || statement.contains("{prefix}" + this.name + "\"");
+        }
+
+        private String rename(String statement, String newName) {
+            return statement.replace("{prefix}" + this.name + "`", "{prefix}" + newName + "`")
+                    .replace("{prefix}" + this.name + "\"", "{prefix}" + newName + "\"");
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package me.lucko.luckperms.common.storage.dao.sql;
+
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.UUID;
+
+/**
+ * The ways a uuid can be stored in a SQL column.
+ */
+public enum UuidFormat {
+
+    /**
+     * The original layout - a VARCHAR(36) column, holding the string "null" for missing uuids
+     */
+    STRING {
+        @Override
+        public Object toObject(UUID uuid) {
+            return uuid == null ? "null" : uuid.toString();
+        }
+
+        @Override
+        public UUID get(ResultSet rs, String column) throws SQLException {
+            String s = rs.getString(column);
+            return s == null || s.equals("null") ? null : UUID.fromString(s);
+        }
+    },
+
+    /**
+     * A BINARY(16) or BLOB column, holding the most significant bits followed by the least significant bits
+     */
+    BINARY {
+        @Override
+        public Object toObject(UUID uuid) {
+            if (uuid == null) {
+                return null;
+            }
+            ByteBuffer buf = ByteBuffer.allocate(Long.BYTES * 2);
+            buf.putLong(uuid.getMostSignificantBits());
+            buf.putLong(uuid.getLeastSignificantBits());
+            return buf.array();
+        }
+
+        @Override
+        public UUID get(ResultSet rs, String column) throws SQLException {
+            byte[] bytes = rs.getBytes(column);
+            if (bytes == null) {
+                return null;
+            }
+            ByteBuffer buf = ByteBuffer.wrap(bytes);
+            return new UUID(buf.getLong(), buf.getLong());
+        }
+    },
+
+    /**
+     * A native UUID column, for databases with a uuid type
+     */
+    NATIVE {
+        @Override
+        public Object toObject(UUID uuid) {
+            return uuid;
+        }
+
+        @Override
+        public UUID get(ResultSet rs, String column) throws SQLException {
+            Object o = rs.getObject(column);
+            if (o == null || o instanceof UUID) {
+                return (UUID) o;
+            }
+            return UUID.fromString(o.toString());
+        }
+    };
+
+    /**
+     * Gets the binary format used by the given database type.
+     *
+     * @param databaseName the name of the database type
+     * @return the format
+     */
+    public static UuidFormat binary(String databaseName) {
+        switch (databaseName) {
+            case "H2":
+            case "PostgreSQL":
+                return NATIVE;
+            default:
+                return BINARY;
+        }
+    }
+
+    /**
+     * Determines the format of a column from its JDBC type.
+     *
+     * @param databaseName the name of the database type
+     * @param sqlType the type of the column, from {@link Types}
+     * @return the format
+     */
+    public static UuidFormat ofColumnType(String databaseName, int sqlType) {
+        switch (sqlType) {
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+                return STRING;
+            default:
+                return binary(databaseName);
+        }
+    }
+
+    /**
+     * Converts a uuid to the value stored in the column.
+     *
+     * @param uuid the uuid, or null
+     * @return the value
+     */
+    public abstract Object toObject(UUID uuid);
+
+    /**
+     * Reads a uuid from a column.
+     *
+     * @param rs the result set
+     * @param column the column
+     * @return the uuid, or null if there isn't one
+     * @throws SQLException if an error occurs
+     */
+    public abstract UUID get(ResultSet rs, String column) throws SQLException;
+
+    /**
+     * Sets a statement parameter to a uuid.
+     *
+     * @param ps the statement
+     * @param index the parameter index
+     * @param uuid the uuid, or null
+     * @throws SQLException if an error occurs
+     */
+    public void set(PreparedStatement ps, int index, UUID uuid) throws SQLException {
+        Object value = toObject(uuid);
+        if (value == null) {
+            ps.setNull(index, this == NATIVE ? Types.OTHER : Types.BINARY);
+        } else if (value instanceof byte[]) {
+            ps.setBytes(index, (byte[]) value);
+        } else if (value instanceof String) {
+            ps.setString(index, (String) value);
+        } else {
+            ps.setObject(index, value);
+        }
+    }
+}
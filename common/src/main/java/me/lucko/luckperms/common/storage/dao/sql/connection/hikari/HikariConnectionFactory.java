@@ -95,6 +95,31 @@ public abstract class HikariConnectionFactory extends AbstractConnectionFactory
         this.hikari = new HikariDataSource(config);
     }
 
+    /**
+     * Creates a data source holding a single connection, separate from the main pool.
+     *
+     * <p>Used for connections which are held open for long periods of time, and
+     * would otherwise take a connection away from the pool for as long.</p>
+     *
+     * @param name the name of the data source
+     * @return the data source. The caller is responsible for closing it.
+     */
+    public HikariDataSource createDedicatedDataSource(String name) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("luckperms-" + name);
+
+        appendConfigurationInfo(config);
+        appendProperties(config, this.configuration);
+
+        config.setMaximumPoolSize(1);
+        config.setMinimumIdle(0);
+        config.setMaxLifetime(this.configuration.getMaxLifetime());
+        config.setConnectionTimeout(this.configuration.getConnectionTimeout());
+        config.setInitializationFailTimeout(-1);
+
+        return new HikariDataSource(config);
+    }
+
     @Override
     public void shutdown() {
         if (this.hikari != null) {
@@ -66,6 +66,7 @@ public interface PhasedStorage extends Storage {
                         case "getName":
                         case "init":
                         case "getMeta":
+                        case "markAllChanged":
                             return method.invoke(delegate, args);
                     }
 
@@ -25,11 +25,25 @@
 
 package me.lucko.luckperms.common.tasks;
 
+import me.lucko.luckperms.common.model.ExpiryQueue;
 import me.lucko.luckperms.common.model.Group;
 import me.lucko.luckperms.common.model.PermissionHolder;
 import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.utils.Uuids;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Removes expired temporary nodes.
+ *
+ * <p>Only the holders with a temporary node which has expired, according to
+ * the plugin's {@link ExpiryQueue}, are audited.</p>
+ */
 public class ExpireTemporaryTask implements Runnable {
     private final LuckPermsPlugin plugin;
 
@@ -39,23 +53,36 @@ public class ExpireTemporaryTask implements Runnable {
 
     @Override
     public void run() {
-        boolean groupChanges = false;
-        for (Group group : this.plugin.getGroupManager().getAll().values()) {
-            if (shouldSkip(group)) {
-                continue;
-            }
-            if (group.auditTemporaryPermissions()) {
-                this.plugin.getStorage().saveGroup(group);
-                groupChanges = true;
+        ExpiryQueue queue = this.plugin.getExpiryQueue();
+        List<ExpiryQueue.Entry> expired = queue.pollExpired(System.currentTimeMillis() / 1000L);
+        if (expired.isEmpty()) {
+            return;
+        }
+
+        // group the entries by holder, so each is only audited once
+        Map<PermissionHolder, List<ExpiryQueue.Entry>> holders = new LinkedHashMap<>();
+        for (ExpiryQueue.Entry entry : expired) {
+            PermissionHolder holder = getIfLoaded(entry);
+            if (holder != null) {
+                holders.computeIfAbsent(holder, h -> new ArrayList<>()).add(entry);
             }
         }
 
-        for (User user : this.plugin.getUserManager().getAll().values()) {
-            if (shouldSkip(user)) {
+        boolean groupChanges = false;
+        for (Map.Entry<PermissionHolder, List<ExpiryQueue.Entry>> e : holders.entrySet()) {
+            PermissionHolder holder = e.getKey();
+            if (shouldSkip(holder)) {
+                // try again on the next run
+                e.getValue().forEach(queue::reschedule);
                 continue;
             }
-            if (user.auditTemporaryPermissions()) {
-                this.plugin.getStorage().saveUser(user);
+            if (holder.auditTemporaryPermissions()) {
+                if (holder instanceof Group) {
+                    this.plugin.getStorage().saveGroup((Group) holder);
+                    groupChanges = true;
+                } else {
+                    this.plugin.getStorage().saveUser((User) holder);
+                }
             }
         }
 
@@ -64,6 +91,15 @@ public class ExpireTemporaryTask implements Runnable {
         }
     }
 
+    private PermissionHolder getIfLoaded(ExpiryQueue.Entry entry) {
+        if (entry.getType().isGroup()) {
+            return this.plugin.getGroupManager().getIfLoaded(entry.getObjectName());
+        }
+
+        UUID uuid = Uuids.parseNullable(entry.getObjectName());
+        return uuid == null ? null : this.plugin.getUserManager().getIfLoaded(uuid);
+    }
+
     // return true if the holder's io lock is currently held, false otherwise
     private static boolean shouldSkip(PermissionHolder holder) {
         // if the holder is currently being manipulated by the storage dao,
@@ -25,11 +25,28 @@
 
 package me.lucko.luckperms.common.tasks;
 
+import com.google.common.collect.ImmutableSetMultimap;
+
+import me.lucko.luckperms.api.LocalizedNode;
+import me.lucko.luckperms.api.context.ImmutableContextSet;
 import me.lucko.luckperms.api.event.cause.CreationCause;
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.model.Group;
+import me.lucko.luckperms.common.model.PermissionHolder;
+import me.lucko.luckperms.common.model.Track;
 import me.lucko.luckperms.common.node.factory.NodeFactory;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.storage.LocalSnapshot;
+import me.lucko.luckperms.common.storage.StorageChanges;
 
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 /**
  * System wide update task for LuckPerms.
@@ -60,23 +77,120 @@ public class UpdateTask implements Runnable {
             return;
         }
 
+        StorageChanges changes = this.plugin.getStorage().pollChanges().join();
+        boolean fullSync = this.initialUpdate || changes.isAll() || !this.plugin.getConfiguration().get(ConfigKeys.INCREMENTAL_SYNC);
+        if (fullSync) {
+            runFullSync();
+        } else if (!changes.isEmpty()) {
+            runIncrementalSync(changes);
+        }
+
+        // keep the local snapshot up to date
+        if (fullSync || !changes.getGroups().isEmpty() || !changes.getTracks().isEmpty()) {
+            this.plugin.getLocalSnapshot().ifPresent(LocalSnapshot::save);
+        }
+
+        this.plugin.onPostUpdate();
+
+        this.plugin.getEventFactory().handlePostSync();
+    }
+
+    private void runFullSync() {
+        Map<String, ImmutableSetMultimap<ImmutableContextSet, LocalizedNode>> groupsBefore = snapshotGroups();
+
         // Reload all groups
         this.plugin.getStorage().loadAllGroups().join();
-        if (!this.plugin.getGroupManager().isLoaded(NodeFactory.DEFAULT_GROUP_NAME)) {
-            this.plugin.getStorage().createAndLoadGroup(NodeFactory.DEFAULT_GROUP_NAME, CreationCause.INTERNAL).join();
-        }
+        ensureDefaultGroup();
 
         // Reload all tracks
         this.plugin.getStorage().loadAllTracks().join();
 
+        invalidateDependents(groupsBefore);
+
         // Refresh all online users.
         CompletableFuture<Void> userUpdateFut = this.plugin.getUserManager().updateAllUsers();
         if (!this.initialUpdate) {
             userUpdateFut.join();
         }
+    }
 
-        this.plugin.onPostUpdate();
+    private void runIncrementalSync(StorageChanges changes) {
+        Map<String, ImmutableSetMultimap<ImmutableContextSet, LocalizedNode>> groupsBefore = snapshotGroups();
 
-        this.plugin.getEventFactory().handlePostSync();
+        // Reload changed groups, in a single batch
+        CompletableFuture<Void> groupLoad = CompletableFuture.completedFuture(null);
+        if (!changes.getGroups().isEmpty()) {
+            groupLoad = this.plugin.getStorage().loadGroups(changes.getGroups()).thenAccept(loaded -> {
+                for (String name : changes.getGroups()) {
+                    Group group = this.plugin.getGroupManager().getIfLoaded(name);
+                    if (!loaded.containsKey(name) && group != null) {
+                        // the group has been deleted
+                        this.plugin.getGroupManager().unload(group);
+                    }
+                }
+            });
+        }
+
+        // Reload changed tracks
+        CompletableFuture<?>[] trackLoads = changes.getTracks().stream()
+                .map(name -> {
+                    Track track = this.plugin.getTrackManager().getIfLoaded(name);
+                    return this.plugin.getStorage().loadTrack(name).thenAccept(loaded -> {
+                        if (!loaded.isPresent() && track != null) {
+                            // the track has been deleted
+                            this.plugin.getTrackManager().unload(track);
+                        }
+                    });
+                })
+                .toArray(CompletableFuture[]::new);
+
+        groupLoad.join();
+        ensureDefaultGroup();
+        CompletableFuture.allOf(trackLoads).join();
+
+        invalidateDependents(groupsBefore);
+
+        // Refresh changed users which are loaded
+        Set<UUID> users = changes.getUsers().stream()
+                .filter(uuid -> this.plugin.getUserManager().getIfLoaded(uuid) != null)
+                .collect(Collectors.toSet());
+        if (!users.isEmpty()) {
+            this.plugin.getStorage().loadUsers(users).join();
+        }
+    }
+
+    private void ensureDefaultGroup() {
+        if (!this.plugin.getGroupManager().isLoaded(NodeFactory.DEFAULT_GROUP_NAME)) {
+            this.plugin.getStorage().createAndLoadGroup(NodeFactory.DEFAULT_GROUP_NAME, CreationCause.INTERNAL).join();
+        }
+    }
+
+    private Map<String, ImmutableSetMultimap<ImmutableContextSet, LocalizedNode>> snapshotGroups() {
+        Map<String, ImmutableSetMultimap<ImmutableContextSet, LocalizedNode>> snapshot = new HashMap<>();
+        for (Group group : this.plugin.getGroupManager().getAll().values()) {
+            snapshot.put(group.getName(), group.enduringData().immutable());
+        }
+        return snapshot;
+    }
+
+    private void invalidateDependents(Map<String, ImmutableSetMultimap<ImmutableContextSet, LocalizedNode>> groupsBefore) {
+        // find the groups which were created, deleted or changed by the reload
+        Set<String> changed = new HashSet<>(groupsBefore.keySet());
+        for (Group group : this.plugin.getGroupManager().getAll().values()) {
+            if (Objects.equals(groupsBefore.get(group.getName()), group.enduringData().immutable())) {
+                changed.remove(group.getName());
+            } else {
+                changed.add(group.getName());
+            }
+        }
+
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        // changed groups have already been invalidated when reloaded, but anything which
+        // inherits from them (and anything derived from that, e.g. a user's primary group)
+        // is still out of date
+        this.plugin.getInheritanceHandler().findDependents(changed).forEach(PermissionHolder::invalidateCache);
     }
 }
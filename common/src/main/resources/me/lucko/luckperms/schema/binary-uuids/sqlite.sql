@@ -0,0 +1,67 @@
+-- LuckPerms SQLite Schema (binary uuids)
+
+CREATE TABLE `{prefix}user_permissions` (
+  `id`         INTEGER PRIMARY KEY NOT NULL,
+  `uuid`       BLOB                NOT NULL,
+  `permission` VARCHAR(200)        NOT NULL,
+  `value`      BOOL                NOT NULL,
+  `server`     VARCHAR(36)         NOT NULL,
+  `world`      VARCHAR(36)         NOT NULL,
+  `expiry`     INT(11)             NOT NULL,
+  `contexts`   VARCHAR(200)        NOT NULL
+);
+CREATE INDEX `{prefix}user_permissions_uuid` ON `{prefix}user_permissions` (`uuid`);
+CREATE INDEX `{prefix}user_permissions_permission` ON `{prefix}user_permissions` (`permission`);
+
+CREATE TABLE `{prefix}group_permissions` (
+  `id`         INTEGER PRIMARY KEY NOT NULL,
+  `name`       VARCHAR(36)         NOT NULL,
+  `permission` VARCHAR(200)        NOT NULL,
+  `value`      BOOL                NOT NULL,
+  `server`     VARCHAR(36)         NOT NULL,
+  `world`      VARCHAR(36)         NOT NULL,
+  `expiry`     INT(11)             NOT NULL,
+  `contexts`   VARCHAR(200)        NOT NULL
+);
+CREATE INDEX `{prefix}group_permissions_name` ON `{prefix}group_permissions` (`name`);
+CREATE INDEX `{prefix}group_permissions_permission` ON `{prefix}group_permissions` (`permission`);
+
+CREATE TABLE `{prefix}players` (
+  `uuid`          BLOB        NOT NULL,
+  `username`      VARCHAR(16) NOT NULL,
+  `primary_group` VARCHAR(36) NOT NULL,
+  PRIMARY KEY (`uuid`)
+);
+CREATE INDEX `{prefix}players_username` ON `{prefix}players` (`username`);
+
+CREATE TABLE `{prefix}groups` (
+  `name` VARCHAR(36) NOT NULL,
+  PRIMARY KEY (`name`)
+);
+
+CREATE TABLE `{prefix}actions` (
+  `id`         INTEGER PRIMARY KEY NOT NULL,
+  `time`       BIGINT              NOT NULL,
+  `actor_uuid` BLOB                NOT NULL,
+  `actor_name` VARCHAR(100)        NOT NULL,
+  `type`       CHAR(1)             NOT NULL,
+  `acted_uuid` BLOB                NULL,
+  `acted_name` VARCHAR(36)         NOT NULL,
+  `action`     VARCHAR(300)        NOT NULL
+);
+CREATE INDEX `{prefix}actions_time` ON `{prefix}actions` (`time`);
+CREATE INDEX `{prefix}actions_actor_uuid` ON `{prefix}actions` (`actor_uuid`);
+CREATE INDEX `{prefix}actions_acted_uuid` ON `{prefix}actions` (`acted_uuid`);
+CREATE INDEX `{prefix}actions_acted_name` ON `{prefix}actions` (`acted_name`);
+
+CREATE TABLE `{prefix}tracks` (
+  `name`   VARCHAR(36) NOT NULL,
+  `groups` TEXT        NOT NULL,
+  PRIMARY KEY (`name`)
+);
+
+CREATE TABLE `{prefix}changes` (
+  `id`          INTEGER PRIMARY KEY NOT NULL,
+  `holder_type` CHAR(1)             NOT NULL,
+  `holder`      VARCHAR(36)         NOT NULL
+);
\ No newline at end of file
@@ -52,9 +52,20 @@ CREATE TABLE `{prefix}actions` (
   `action`     VARCHAR(300)       NOT NULL,
   PRIMARY KEY (`id`)
 ) DEFAULT CHARSET = utf8;
+CREATE INDEX `{prefix}actions_time` ON `{prefix}actions` (`time`);
+CREATE INDEX `{prefix}actions_actor_uuid` ON `{prefix}actions` (`actor_uuid`);
+CREATE INDEX `{prefix}actions_acted_uuid` ON `{prefix}actions` (`acted_uuid`);
+CREATE INDEX `{prefix}actions_acted_name` ON `{prefix}actions` (`acted_name`);
 
 CREATE TABLE `{prefix}tracks` (
   `name`   VARCHAR(36) NOT NULL,
   `groups` TEXT        NOT NULL,
   PRIMARY KEY (`name`)
+) DEFAULT CHARSET = utf8;
+
+CREATE TABLE `{prefix}changes` (
+  `id`          INT AUTO_INCREMENT NOT NULL,
+  `holder_type` CHAR(1)            NOT NULL,
+  `holder`      VARCHAR(36)        NOT NULL,
+  PRIMARY KEY (`id`)
 ) DEFAULT CHARSET = utf8;
\ No newline at end of file
@@ -47,8 +47,18 @@ CREATE TABLE "{prefix}actions" (
   "acted_name" VARCHAR(36)              NOT NULL,
   "action"     VARCHAR(300)             NOT NULL
 );
+CREATE INDEX "{prefix}actions_time" ON "{prefix}actions" ("time");
+CREATE INDEX "{prefix}actions_actor_uuid" ON "{prefix}actions" ("actor_uuid");
+CREATE INDEX "{prefix}actions_acted_uuid" ON "{prefix}actions" ("acted_uuid");
+CREATE INDEX "{prefix}actions_acted_name" ON "{prefix}actions" ("acted_name");
 
 CREATE TABLE "{prefix}tracks" (
   "name"   VARCHAR(36) PRIMARY KEY NOT NULL,
   "groups" TEXT                    NOT NULL
+);
+
+CREATE TABLE "{prefix}changes" (
+  "id"          SERIAL PRIMARY KEY NOT NULL,
+  "holder_type" CHAR(1)            NOT NULL,
+  "holder"      VARCHAR(36)        NOT NULL
 );
\ No newline at end of file
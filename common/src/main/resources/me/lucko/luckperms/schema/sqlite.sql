@@ -49,9 +49,19 @@ CREATE TABLE `{prefix}actions` (
   `acted_name` VARCHAR(36)         NOT NULL,
   `action`     VARCHAR(300)        NOT NULL
 );
+CREATE INDEX `{prefix}actions_time` ON `{prefix}actions` (`time`);
+CREATE INDEX `{prefix}actions_actor_uuid` ON `{prefix}actions` (`actor_uuid`);
+CREATE INDEX `{prefix}actions_acted_uuid` ON `{prefix}actions` (`acted_uuid`);
+CREATE INDEX `{prefix}actions_acted_name` ON `{prefix}actions` (`acted_name`);
 
 CREATE TABLE `{prefix}tracks` (
   `name`   VARCHAR(36) NOT NULL,
   `groups` TEXT        NOT NULL,
   PRIMARY KEY (`name`)
+);
+
+CREATE TABLE `{prefix}changes` (
+  `id`          INTEGER PRIMARY KEY NOT NULL,
+  `holder_type` CHAR(1)             NOT NULL,
+  `holder`      VARCHAR(36)         NOT NULL
 );
\ No newline at end of file
@@ -0,0 +1,54 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package me.lucko.luckperms.common.bulkupdate.comparisons;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StandardComparisonTest {
+
+    @Test
+    public void testLikeToRegex() {
+        assertEquals("^group\\..*$", StandardComparison.likeToRegex("group.%"));
+        assertEquals("^a.b\\(c\\)\\\\Q\\*$", StandardComparison.likeToRegex("a_b(c)\\Q*"));
+    }
+
+    @Test
+    public void testMetacharactersAreLiteral() {
+        assertTrue(StandardComparison.SIMILAR.matches("Prefix.100.[Admin]+", "prefix.100.[admin]+"));
+        assertFalse(StandardComparison.SIMILAR.matches("prefixX100X[admin]", "prefix.100.[admin]+"));
+        assertTrue(StandardComparison.SIMILAR.matches("some.perm\\E.node", "some.perm\\E.%"));
+        assertTrue(StandardComparison.NOT_SIMILAR.matches("a*", "a.%"));
+    }
+
+    @Test
+    public void testWildcardsMatchAnyCharacter() {
+        assertTrue(StandardComparison.SIMILAR.matches("line\nbreak", "line_break"));
+        assertTrue(StandardComparison.SIMILAR.matches("line\nbreak", "line%"));
+    }
+}
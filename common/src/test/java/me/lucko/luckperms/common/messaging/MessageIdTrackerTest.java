@@ -0,0 +1,81 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package me.lucko.luckperms.common.messaging;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+public class MessageIdTrackerTest {
+
+    @Test
+    public void testGapDetection() {
+        MessageIdTracker sender = new MessageIdTracker();
+        MessageIdTracker receiver = new MessageIdTracker();
+
+        UUID first = sender.nextId();
+        UUID second = sender.nextId();
+        UUID third = sender.nextId();
+        UUID fourth = sender.nextId();
+
+        assertEquals(MessageIdTracker.Status.NEW, receiver.accept(first));
+        assertEquals(MessageIdTracker.Status.NEW_AFTER_GAP, receiver.accept(third));
+        assertEquals(1, receiver.getMissed());
+
+        // the late arrival fills the gap without being reported again
+        assertEquals(MessageIdTracker.Status.NEW, receiver.accept(second));
+        assertEquals(MessageIdTracker.Status.DUPLICATE, receiver.accept(second));
+        assertEquals(MessageIdTracker.Status.NEW, receiver.accept(fourth));
+        assertEquals(1, receiver.getMissed());
+        assertEquals(1, receiver.getDuplicates());
+    }
+
+    @Test
+    public void testOwnMessagesIgnored() {
+        MessageIdTracker tracker = new MessageIdTracker();
+        assertEquals(MessageIdTracker.Status.DUPLICATE, tracker.accept(tracker.nextId()));
+        assertEquals(MessageIdTracker.Status.DUPLICATE, tracker.accept(tracker.nextUnsequencedId()));
+    }
+
+    @Test
+    public void testUnsequencedIdsNeverCauseGaps() {
+        MessageIdTracker sender = new MessageIdTracker();
+        MessageIdTracker receiver = new MessageIdTracker();
+
+        UUID first = sender.nextId();
+        sender.nextUnsequencedId(); // allocated, but never sent
+        UUID second = sender.nextId();
+
+        assertEquals(MessageIdTracker.Status.NEW, receiver.accept(first));
+        assertEquals(MessageIdTracker.Status.NEW, receiver.accept(second));
+        assertEquals(0, receiver.getMissed());
+
+        UUID legacy = UUID.randomUUID();
+        assertEquals(MessageIdTracker.Status.NEW, receiver.accept(legacy));
+        assertEquals(MessageIdTracker.Status.DUPLICATE, receiver.accept(legacy));
+    }
+}
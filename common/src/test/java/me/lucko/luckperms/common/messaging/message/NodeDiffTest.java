@@ -0,0 +1,90 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package me.lucko.luckperms.common.messaging.message;
+
+import com.google.common.collect.ImmutableSet;
+
+import me.lucko.luckperms.api.context.ImmutableContextSet;
+import me.lucko.luckperms.common.messaging.message.TargetedUpdateMessageImpl.NodeDiff;
+import me.lucko.luckperms.common.node.model.NodeDataContainer;
+
+import org.junit.Test;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class NodeDiffTest {
+    private static final NodeDataContainer FLY = NodeDataContainer.of("essentials.fly");
+    private static final NodeDataContainer BUILD = NodeDataContainer.of("build", false, "global", "world_nether", 0L, ImmutableContextSet.of("server", "survival", "gamemode", "creative"));
+    private static final NodeDataContainer PREFIX = NodeDataContainer.of("prefix.100.&c[Admin]");
+
+    @Test
+    public void testApply() {
+        Set<NodeDataContainer> from = ImmutableSet.of(FLY, BUILD);
+        Set<NodeDataContainer> to = ImmutableSet.of(BUILD, PREFIX);
+
+        NodeDiff diff = NodeDiff.between(from, to);
+        assertEquals(2, diff.size());
+        assertTrue(diff.appliesTo(from));
+        assertEquals(to, diff.applyTo(from));
+    }
+
+    @Test
+    public void testOnlyAppliesToBase() {
+        Set<NodeDataContainer> from = ImmutableSet.of(FLY, BUILD);
+        NodeDiff diff = NodeDiff.between(from, ImmutableSet.of(FLY));
+
+        assertFalse(diff.appliesTo(ImmutableSet.of(FLY)));
+        assertFalse(diff.appliesTo(ImmutableSet.of(FLY, BUILD, PREFIX)));
+        assertFalse(diff.appliesTo(ImmutableSet.of(FLY, BUILD.setValue(true))));
+
+        // the digest doesn't depend on iteration order
+        Set<NodeDataContainer> reordered = new LinkedHashSet<>();
+        reordered.add(NodeDataContainer.of("build", false, "global", "world_nether", 0L, ImmutableContextSet.of("gamemode", "creative", "server", "survival")));
+        reordered.add(FLY);
+        assertTrue(diff.appliesTo(reordered));
+    }
+
+    @Test
+    public void testApplyAfterEncoding() {
+        Set<NodeDataContainer> from = ImmutableSet.of(FLY, BUILD);
+        Set<NodeDataContainer> to = ImmutableSet.of(FLY, PREFIX);
+
+        TargetedUpdateMessageImpl message = new TargetedUpdateMessageImpl(UUID.randomUUID(), TargetedUpdateMessageImpl.Target.GROUP, "admin", NodeDiff.between(from, to));
+        TargetedUpdateMessageImpl decoded = TargetedUpdateMessageImpl.decode(message.asEncodedString());
+        assertNotNull(decoded);
+
+        NodeDiff diff = decoded.getDiff();
+        assertNotNull(diff);
+        assertTrue(diff.appliesTo(from));
+        assertEquals(to, diff.applyTo(from));
+    }
+}
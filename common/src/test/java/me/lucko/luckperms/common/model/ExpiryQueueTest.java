@@ -0,0 +1,73 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+package me.lucko.luckperms.common.model;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ExpiryQueueTest {
+
+    @Test
+    public void testPollsInExpiryOrder() {
+        ExpiryQueue queue = new ExpiryQueue();
+        queue.schedule(HolderType.GROUP, "admin", 300);
+        queue.schedule(HolderType.USER, "c9a6d3b2-5f3e-4d41-9f8e-2b7c5e1a0d44", 100);
+        queue.schedule(HolderType.GROUP, "mod", 200);
+
+        // entries only expire once their time has passed
+        assertTrue(queue.pollExpired(100).isEmpty());
+
+        List<ExpiryQueue.Entry> expired = queue.pollExpired(201);
+        assertEquals(2, expired.size());
+        assertEquals(HolderType.USER, expired.get(0).getType());
+        assertEquals(100, expired.get(0).getExpiryTime());
+        assertEquals("mod", expired.get(1).getObjectName());
+
+        // polled entries are removed
+        assertTrue(queue.pollExpired(201).isEmpty());
+        assertEquals(1, queue.pollExpired(Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void testDuplicatesAndReschedule() {
+        ExpiryQueue queue = new ExpiryQueue();
+        queue.schedule(HolderType.GROUP, "admin", 100);
+        queue.schedule(HolderType.GROUP, "admin", 100);
+        queue.schedule(HolderType.GROUP, "admin", 150);
+
+        List<ExpiryQueue.Entry> expired = queue.pollExpired(1000);
+        assertEquals(2, expired.size());
+
+        queue.reschedule(expired.get(0));
+        expired = queue.pollExpired(1000);
+        assertEquals(1, expired.size());
+        assertEquals("admin", expired.get(0).getObjectName());
+        assertEquals(100, expired.get(0).getExpiryTime());
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage;
+
+import me.lucko.luckperms.common.storage.StorageExecutor.Priority;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StorageExecutorTest {
+    private StorageExecutor executor;
+    private CountDownLatch release;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        this.executor = new StorageExecutor(1, 2);
+        this.release = new CountDownLatch(1);
+
+        // occupy the only worker thread, so further tasks are queued
+        CountDownLatch started = new CountDownLatch(1);
+        this.executor.execute(Priority.LOGIN, () -> {
+            started.countDown();
+            try {
+                this.release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+    @After
+    public void tearDown() {
+        this.release.countDown();
+        this.executor.shutdown();
+    }
+
+    @Test
+    public void testRunsInPriorityOrder() throws InterruptedException {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(4);
+
+        this.executor.execute(Priority.BACKGROUND, () -> { order.add("background"); done.countDown(); });
+        this.executor.execute(Priority.INTERACTIVE, () -> { order.add("interactive-1"); done.countDown(); });
+        this.executor.execute(Priority.LOGIN, () -> { order.add("login"); done.countDown(); });
+        this.executor.execute(Priority.INTERACTIVE, () -> { order.add("interactive-2"); done.countDown(); });
+
+        this.release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("login", "interactive-1", "interactive-2", "background"), order);
+    }
+
+    @Test
+    public void testShedsLoadOverQueueLimit() {
+        this.executor.execute(Priority.LOGIN, () -> {});
+        this.executor.execute(Priority.LOGIN, () -> {});
+        assertRejected(Priority.LOGIN);
+        assertEquals(1, this.executor.getRejected(Priority.LOGIN));
+        assertEquals(2, this.executor.getQueueDepth(Priority.LOGIN));
+
+        // background work is refused once the total queue is full,
+        // rather than being run on the submitting thread
+        assertRejected(Priority.BACKGROUND);
+        assertEquals(0, this.executor.getQueueDepth(Priority.BACKGROUND));
+
+        // other lanes are bounded separately
+        this.executor.execute(Priority.INTERACTIVE, () -> {});
+        this.executor.execute(Priority.INTERACTIVE, () -> {});
+        assertRejected(Priority.INTERACTIVE);
+    }
+
+    private void assertRejected(Priority priority) {
+        try {
+            this.executor.execute(priority, () -> fail("rejected task was run"));
+            fail("expected " + priority + " task to be rejected");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage.dao.sql;
+
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class UuidFormatTest {
+    private static final UUID UUID_VALUE = UUID.fromString("c9a6d3b2-5f3e-4d41-9f8e-2b7c5e1a0d44");
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        for (UuidFormat format : UuidFormat.values()) {
+            assertEquals(format.name(), UUID_VALUE, roundTrip(format, UUID_VALUE));
+            assertNull(format.name(), roundTrip(format, null));
+        }
+    }
+
+    @Test
+    public void testStoredValues() {
+        assertEquals("c9a6d3b2-5f3e-4d41-9f8e-2b7c5e1a0d44", UuidFormat.STRING.toObject(UUID_VALUE));
+        assertEquals("null", UuidFormat.STRING.toObject(null));
+
+        // most significant bits first
+        byte[] bytes = (byte[]) UuidFormat.BINARY.toObject(UUID_VALUE);
+        assertArrayEquals(new byte[]{
+                (byte) 0xc9, (byte) 0xa6, (byte) 0xd3, (byte) 0xb2, 0x5f, 0x3e, 0x4d, 0x41,
+                (byte) 0x9f, (byte) 0x8e, 0x2b, 0x7c, 0x5e, 0x1a, 0x0d, 0x44
+        }, bytes);
+
+        assertEquals(UUID_VALUE, UuidFormat.NATIVE.toObject(UUID_VALUE));
+    }
+
+    @Test
+    public void testDetectsFormat() {
+        assertEquals(UuidFormat.STRING, UuidFormat.ofColumnType("MySQL", Types.VARCHAR));
+        assertEquals(UuidFormat.BINARY, UuidFormat.ofColumnType("MySQL", Types.BINARY));
+        assertEquals(UuidFormat.BINARY, UuidFormat.ofColumnType("SQLite", Types.BLOB));
+        assertEquals(UuidFormat.NATIVE, UuidFormat.ofColumnType("PostgreSQL", Types.OTHER));
+        assertEquals(UuidFormat.NATIVE, UuidFormat.ofColumnType("H2", Types.BINARY));
+    }
+
+    /**
+     * Writes a uuid to a statement parameter, and reads it back from a result set column
+     * holding the same value.
+     */
+    private static UUID roundTrip(UuidFormat format, UUID uuid) throws Exception {
+        Map<Integer, Object> params = new HashMap<>();
+        PreparedStatement ps = (PreparedStatement) Proxy.newProxyInstance(UuidFormatTest.class.getClassLoader(), new Class[]{PreparedStatement.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "setString":
+                case "setBytes":
+                case "setObject":
+                    params.put((Integer) args[0], args[1]);
+                    return null;
+                case "setNull":
+                    params.put((Integer) args[0], null);
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+        format.set(ps, 1, uuid);
+
+        Object stored = params.get(1);
+        ResultSet rs = (ResultSet) Proxy.newProxyInstance(UuidFormatTest.class.getClassLoader(), new Class[]{ResultSet.class}, (proxy, method, args) -> {
+            assertEquals("uuid", args[0]);
+            switch (method.getName()) {
+                case "getString":
+                    return (String) stored;
+                case "getBytes":
+                    return (byte[]) stored;
+                case "getObject":
+                    return stored;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+        return format.get(rs, "uuid");
+    }
+}
@@ -29,7 +29,9 @@ import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.google.common.collect.ForwardingMap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.treeview.PermissionRegistry;
@@ -39,6 +41,7 @@ import cn.nukkit.plugin.PluginManager;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -68,6 +71,12 @@ public final class LPPermissionMap extends ForwardingMap<String, Permission> {
     private final LoadingCache<String, Map<String, Boolean>> falseChildPermissions = Caffeine.newBuilder()
             .build(new ChildPermissionResolver(false));
 
+    // cache from a list of (permission, value) pairs --> the combined children of each pair.
+    // values are shared between all of the processors holding an identical set of permissions.
+    private final LoadingCache<List<Map.Entry<String, Boolean>>, Map<String, Boolean>> combinedChildPermissions = Caffeine.newBuilder()
+            .weakValues()
+            .build(this::resolveCombinedChildren);
+
     /**
      * The plugin instance
      */
@@ -82,9 +91,47 @@ public final class LPPermissionMap extends ForwardingMap<String, Permission> {
         return value ? this.trueChildPermissions.get(permission) : this.falseChildPermissions.get(permission);
     }
 
+    /**
+     * Gets the combined child permissions of all of the given permissions.
+     *
+     * <p>Where the children of two permissions conflict, the permission which
+     * is iterated last takes priority.</p>
+     *
+     * @param permissions the permissions
+     * @return an immutable map of the combined children
+     */
+    public Map<String, Boolean> getChildPermissions(Map<String, Boolean> permissions) {
+        ImmutableList.Builder<Map.Entry<String, Boolean>> sources = ImmutableList.builder();
+        for (Map.Entry<String, Boolean> e : permissions.entrySet()) {
+            // only permissions which actually have children are included in the key
+            if (!getChildPermissions(e.getKey(), e.getValue()).isEmpty()) {
+                sources.add(Maps.immutableEntry(e.getKey(), e.getValue()));
+            }
+        }
+
+        List<Map.Entry<String, Boolean>> key = sources.build();
+        switch (key.size()) {
+            case 0:
+                return ImmutableMap.of();
+            case 1:
+                return getChildPermissions(key.get(0).getKey(), key.get(0).getValue());
+            default:
+                return this.combinedChildPermissions.get(key);
+        }
+    }
+
+    private Map<String, Boolean> resolveCombinedChildren(List<Map.Entry<String, Boolean>> sources) {
+        Map<String, Boolean> children = new HashMap<>();
+        for (Map.Entry<String, Boolean> e : sources) {
+            children.putAll(getChildPermissions(e.getKey(), e.getValue()));
+        }
+        return ImmutableMap.copyOf(children);
+    }
+
     private void update() {
         this.trueChildPermissions.invalidateAll();
         this.falseChildPermissions.invalidateAll();
+        this.combinedChildPermissions.invalidateAll();
     }
 
     @Override
@@ -115,6 +162,15 @@ public final class LPPermissionMap extends ForwardingMap<String, Permission> {
         return ret;
     }
 
+    @Override
+    public Permission remove(Object object) {
+        Permission ret = super.remove(object);
+        if (ret != null) {
+            update();
+        }
+        return ret;
+    }
+
     private final class ChildPermissionResolver implements CacheLoader<String, Map<String, Boolean>> {
         private final boolean value;
 
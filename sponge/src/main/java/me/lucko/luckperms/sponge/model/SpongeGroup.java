@@ -38,7 +38,7 @@ public class SpongeGroup extends Group implements SpongePermissionHolder {
     }
 
     @Override
-    protected void invalidateCache() {
+    public void invalidateCache() {
         super.invalidateCache();
 
         this.spongeData.fireUpdateEvent();
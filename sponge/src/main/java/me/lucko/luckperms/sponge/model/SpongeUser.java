@@ -49,7 +49,7 @@ public class SpongeUser extends User implements SpongePermissionHolder {
     }
 
     @Override
-    protected void invalidateCache() {
+    public void invalidateCache() {
         super.invalidateCache();
 
         this.spongeData.fireUpdateEvent();
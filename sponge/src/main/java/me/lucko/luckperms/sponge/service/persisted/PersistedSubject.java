@@ -164,7 +164,7 @@ public class PersistedSubject extends CalculatedSubject implements LPSubject {
 
     private final class SaveBuffer extends BufferedRequest<Void> {
         public SaveBuffer(LuckPermsPlugin plugin) {
-            super(1000L, 500L, plugin.getBootstrap().getScheduler().async());
+            super(1000L, plugin.getBootstrap().getScheduler().async());
         }
 
         @Override